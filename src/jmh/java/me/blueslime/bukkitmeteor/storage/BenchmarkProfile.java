@@ -0,0 +1,344 @@
+package me.blueslime.bukkitmeteor.storage;
+
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageConstructor;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageIdentifier;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageKey;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Player profile with 50 stored fields used by the storage benchmarks.
+ */
+public class BenchmarkProfile implements StorageObject {
+
+    @StorageIdentifier
+    @StorageKey(key = "id")
+    private final String id;
+
+    @StorageKey(key = "name")
+    private final String name;
+
+    @StorageKey(key = "level1")
+    private final int level1;
+
+    @StorageKey(key = "coins1")
+    private final long coins1;
+
+    @StorageKey(key = "balance1")
+    private final double balance1;
+
+    @StorageKey(key = "flying1")
+    private final boolean flying1;
+
+    @StorageKey(key = "title1")
+    private final String title1;
+
+    @StorageKey(key = "level2")
+    private final int level2;
+
+    @StorageKey(key = "coins2")
+    private final long coins2;
+
+    @StorageKey(key = "balance2")
+    private final double balance2;
+
+    @StorageKey(key = "flying2")
+    private final boolean flying2;
+
+    @StorageKey(key = "title2")
+    private final String title2;
+
+    @StorageKey(key = "level3")
+    private final int level3;
+
+    @StorageKey(key = "coins3")
+    private final long coins3;
+
+    @StorageKey(key = "balance3")
+    private final double balance3;
+
+    @StorageKey(key = "flying3")
+    private final boolean flying3;
+
+    @StorageKey(key = "title3")
+    private final String title3;
+
+    @StorageKey(key = "level4")
+    private final int level4;
+
+    @StorageKey(key = "coins4")
+    private final long coins4;
+
+    @StorageKey(key = "balance4")
+    private final double balance4;
+
+    @StorageKey(key = "flying4")
+    private final boolean flying4;
+
+    @StorageKey(key = "title4")
+    private final String title4;
+
+    @StorageKey(key = "level5")
+    private final int level5;
+
+    @StorageKey(key = "coins5")
+    private final long coins5;
+
+    @StorageKey(key = "balance5")
+    private final double balance5;
+
+    @StorageKey(key = "flying5")
+    private final boolean flying5;
+
+    @StorageKey(key = "title5")
+    private final String title5;
+
+    @StorageKey(key = "level6")
+    private final int level6;
+
+    @StorageKey(key = "coins6")
+    private final long coins6;
+
+    @StorageKey(key = "balance6")
+    private final double balance6;
+
+    @StorageKey(key = "flying6")
+    private final boolean flying6;
+
+    @StorageKey(key = "title6")
+    private final String title6;
+
+    @StorageKey(key = "level7")
+    private final int level7;
+
+    @StorageKey(key = "coins7")
+    private final long coins7;
+
+    @StorageKey(key = "balance7")
+    private final double balance7;
+
+    @StorageKey(key = "flying7")
+    private final boolean flying7;
+
+    @StorageKey(key = "title7")
+    private final String title7;
+
+    @StorageKey(key = "level8")
+    private final int level8;
+
+    @StorageKey(key = "coins8")
+    private final long coins8;
+
+    @StorageKey(key = "balance8")
+    private final double balance8;
+
+    @StorageKey(key = "flying8")
+    private final boolean flying8;
+
+    @StorageKey(key = "title8")
+    private final String title8;
+
+    @StorageKey(key = "level9")
+    private final int level9;
+
+    @StorageKey(key = "coins9")
+    private final long coins9;
+
+    @StorageKey(key = "balance9")
+    private final double balance9;
+
+    @StorageKey(key = "flying9")
+    private final boolean flying9;
+
+    @StorageKey(key = "title9")
+    private final String title9;
+
+    @StorageKey(key = "level10")
+    private final int level10;
+
+    @StorageKey(key = "friends")
+    private final List<String> friends;
+
+    @StorageKey(key = "stats")
+    private final Map<String, Integer> stats;
+
+    @StorageConstructor
+    public BenchmarkProfile(
+        @StorageIdentifier @StorageKey(key = "id") String id,
+        @StorageKey(key = "name") String name,
+        @StorageKey(key = "level1") int level1,
+        @StorageKey(key = "coins1") long coins1,
+        @StorageKey(key = "balance1") double balance1,
+        @StorageKey(key = "flying1") boolean flying1,
+        @StorageKey(key = "title1") String title1,
+        @StorageKey(key = "level2") int level2,
+        @StorageKey(key = "coins2") long coins2,
+        @StorageKey(key = "balance2") double balance2,
+        @StorageKey(key = "flying2") boolean flying2,
+        @StorageKey(key = "title2") String title2,
+        @StorageKey(key = "level3") int level3,
+        @StorageKey(key = "coins3") long coins3,
+        @StorageKey(key = "balance3") double balance3,
+        @StorageKey(key = "flying3") boolean flying3,
+        @StorageKey(key = "title3") String title3,
+        @StorageKey(key = "level4") int level4,
+        @StorageKey(key = "coins4") long coins4,
+        @StorageKey(key = "balance4") double balance4,
+        @StorageKey(key = "flying4") boolean flying4,
+        @StorageKey(key = "title4") String title4,
+        @StorageKey(key = "level5") int level5,
+        @StorageKey(key = "coins5") long coins5,
+        @StorageKey(key = "balance5") double balance5,
+        @StorageKey(key = "flying5") boolean flying5,
+        @StorageKey(key = "title5") String title5,
+        @StorageKey(key = "level6") int level6,
+        @StorageKey(key = "coins6") long coins6,
+        @StorageKey(key = "balance6") double balance6,
+        @StorageKey(key = "flying6") boolean flying6,
+        @StorageKey(key = "title6") String title6,
+        @StorageKey(key = "level7") int level7,
+        @StorageKey(key = "coins7") long coins7,
+        @StorageKey(key = "balance7") double balance7,
+        @StorageKey(key = "flying7") boolean flying7,
+        @StorageKey(key = "title7") String title7,
+        @StorageKey(key = "level8") int level8,
+        @StorageKey(key = "coins8") long coins8,
+        @StorageKey(key = "balance8") double balance8,
+        @StorageKey(key = "flying8") boolean flying8,
+        @StorageKey(key = "title8") String title8,
+        @StorageKey(key = "level9") int level9,
+        @StorageKey(key = "coins9") long coins9,
+        @StorageKey(key = "balance9") double balance9,
+        @StorageKey(key = "flying9") boolean flying9,
+        @StorageKey(key = "title9") String title9,
+        @StorageKey(key = "level10") int level10,
+        @StorageKey(key = "friends") List<String> friends,
+        @StorageKey(key = "stats") Map<String, Integer> stats
+    ) {
+        this.id = id;
+        this.name = name;
+        this.level1 = level1;
+        this.coins1 = coins1;
+        this.balance1 = balance1;
+        this.flying1 = flying1;
+        this.title1 = title1;
+        this.level2 = level2;
+        this.coins2 = coins2;
+        this.balance2 = balance2;
+        this.flying2 = flying2;
+        this.title2 = title2;
+        this.level3 = level3;
+        this.coins3 = coins3;
+        this.balance3 = balance3;
+        this.flying3 = flying3;
+        this.title3 = title3;
+        this.level4 = level4;
+        this.coins4 = coins4;
+        this.balance4 = balance4;
+        this.flying4 = flying4;
+        this.title4 = title4;
+        this.level5 = level5;
+        this.coins5 = coins5;
+        this.balance5 = balance5;
+        this.flying5 = flying5;
+        this.title5 = title5;
+        this.level6 = level6;
+        this.coins6 = coins6;
+        this.balance6 = balance6;
+        this.flying6 = flying6;
+        this.title6 = title6;
+        this.level7 = level7;
+        this.coins7 = coins7;
+        this.balance7 = balance7;
+        this.flying7 = flying7;
+        this.title7 = title7;
+        this.level8 = level8;
+        this.coins8 = coins8;
+        this.balance8 = balance8;
+        this.flying8 = flying8;
+        this.title8 = title8;
+        this.level9 = level9;
+        this.coins9 = coins9;
+        this.balance9 = balance9;
+        this.flying9 = flying9;
+        this.title9 = title9;
+        this.level10 = level10;
+        this.friends = friends;
+        this.stats = stats;
+    }
+
+    /**
+     * Creates a profile with different values for every seed.
+     * @param id of the profile
+     * @param seed of the values
+     * @return profile
+     */
+    public static BenchmarkProfile create(String id, int seed) {
+        List<String> friends = new ArrayList<>();
+        Map<String, Integer> stats = new HashMap<>();
+        for (int i = 0; i < 10; i++) {
+            friends.add("friend-" + (seed + i));
+            stats.put("stat-" + i, seed * i);
+        }
+        return new BenchmarkProfile(
+            id,
+            "player-" + seed,
+            seed,
+            seed * 1_000L,
+            seed * 0.5D,
+            seed % 2 == 0,
+            "title1-" + seed,
+            seed,
+            seed * 1_000L,
+            seed * 0.5D,
+            seed % 2 == 0,
+            "title2-" + seed,
+            seed,
+            seed * 1_000L,
+            seed * 0.5D,
+            seed % 2 == 0,
+            "title3-" + seed,
+            seed,
+            seed * 1_000L,
+            seed * 0.5D,
+            seed % 2 == 0,
+            "title4-" + seed,
+            seed,
+            seed * 1_000L,
+            seed * 0.5D,
+            seed % 2 == 0,
+            "title5-" + seed,
+            seed,
+            seed * 1_000L,
+            seed * 0.5D,
+            seed % 2 == 0,
+            "title6-" + seed,
+            seed,
+            seed * 1_000L,
+            seed * 0.5D,
+            seed % 2 == 0,
+            "title7-" + seed,
+            seed,
+            seed * 1_000L,
+            seed * 0.5D,
+            seed % 2 == 0,
+            "title8-" + seed,
+            seed,
+            seed * 1_000L,
+            seed * 0.5D,
+            seed % 2 == 0,
+            "title9-" + seed,
+            seed,
+            friends,
+            stats
+        );
+    }
+
+    public String getId() {
+        return id;
+    }
+}
@@ -0,0 +1,91 @@
+package me.blueslime.bukkitmeteor.storage;
+
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageIgnore;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageKey;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.util.*;
+
+/**
+ * Copy of the reflective code used by the services before {@link StorageSchema} to create the saved documents,
+ * used by the benchmarks as the baseline.
+ */
+public final class ReflectiveDocuments {
+
+    private final StorageDatabase database;
+
+    public ReflectiveDocuments(StorageDatabase database) {
+        this.database = database;
+    }
+
+    public Map<String, Object> create(Object obj) {
+        Map<String, Object> result = new HashMap<>();
+        for (Field field : obj.getClass().getDeclaredFields()) {
+            field.setAccessible(true);
+            try {
+                if (field.isAnnotationPresent(StorageIgnore.class)) {
+                    continue;
+                }
+
+                Object value = field.get(obj);
+                String name = field.getName();
+
+                if (field.isAnnotationPresent(StorageKey.class)) {
+                    StorageKey key = field.getAnnotation(StorageKey.class);
+                    if (!key.key().isEmpty()) {
+                        name = key.key();
+                    }
+                    if (value == null && !key.defaultValue().isEmpty()) {
+                        value = database.convertValue(field.getType(), key.defaultValue());
+                    }
+                }
+
+                if (database.isComplexObject(field.getType())) {
+                    result.put(name, value(value));
+                } else {
+                    result.put(name, value);
+                }
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return result;
+    }
+
+    private Object value(Object obj) throws IllegalAccessException {
+        if (obj == null) {
+            return null;
+        }
+        if (obj instanceof Iterable<?> iterable) {
+            List<Object> list = new ArrayList<>();
+            for (Object element : iterable) {
+                list.add(value(element));
+            }
+            return list;
+        }
+        if (obj.getClass().isArray()) {
+            List<Object> list = new ArrayList<>();
+            for (int i = 0; i < Array.getLength(obj); i++) {
+                list.add(value(Array.get(obj, i)));
+            }
+            return list;
+        }
+        if (obj instanceof Map<?, ?> map) {
+            Map<Object, Object> result = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                result.put(value(entry.getKey()), value(entry.getValue()));
+            }
+            return result;
+        }
+        if (obj.getClass().isPrimitive() || obj instanceof Number || obj instanceof Boolean || obj instanceof String) {
+            return obj;
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (Field field : obj.getClass().getDeclaredFields()) {
+            field.setAccessible(true);
+            result.put(field.getName(), value(field.get(obj)));
+        }
+        return result;
+    }
+}
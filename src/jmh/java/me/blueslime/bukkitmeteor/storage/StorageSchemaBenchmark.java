@@ -0,0 +1,99 @@
+package me.blueslime.bukkitmeteor.storage;
+
+import me.blueslime.bukkitmeteor.storage.file.JsonDocumentCodec;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageConstructor;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageIdentifier;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageKey;
+import me.blueslime.bukkitmeteor.storage.type.FileDatabaseService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Parameter;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cached {@link StorageSchema} plan with the reflective path used by the services before it:
+ * reading the 50 fields of a profile into a document and creating the profile again from the document.
+ * <p>
+ * Run: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=StorageSchemaBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageSchemaBenchmark {
+
+    private FileDatabaseService database;
+    private ReflectiveDocuments reflective;
+    private BenchmarkProfile profile;
+    private Map<String, Object> document;
+
+    @Setup
+    public void setup() throws Exception {
+        File folder = Files.createTempDirectory("schema-benchmark").toFile();
+        database = new FileDatabaseService(folder, null, new JsonDocumentCodec(true)) { };
+        reflective = new ReflectiveDocuments(database);
+        profile = BenchmarkProfile.create("benchmark", 7);
+        document = database.createDocument(profile);
+    }
+
+    @Benchmark
+    public Map<String, Object> schemaDocument() {
+        return database.createDocument(profile);
+    }
+
+    @Benchmark
+    public Map<String, Object> reflectiveDocument() {
+        return reflective.create(profile);
+    }
+
+    @Benchmark
+    public BenchmarkProfile schemaInstance() {
+        return database.instantiateDocument(BenchmarkProfile.class, document, "benchmark");
+    }
+
+    @Benchmark
+    public BenchmarkProfile reflectiveInstance() throws Exception {
+        return reflectiveInstance(BenchmarkProfile.class, document, "benchmark");
+    }
+
+    // Camino de los servicios antes de StorageSchema, sin cambios
+
+    @SuppressWarnings("unchecked")
+    private <T> T reflectiveInstance(Class<?> clazz, Map<String, Object> document, String identifier) throws Exception {
+        for (Constructor<?> constructor : clazz.getConstructors()) {
+            if (!constructor.isAnnotationPresent(StorageConstructor.class)) {
+                continue;
+            }
+            Parameter[] parameters = constructor.getParameters();
+            Object[] values = new Object[parameters.length];
+
+            for (int i = 0; i < parameters.length; i++) {
+                StorageKey annotation = parameters[i].getAnnotation(StorageKey.class);
+                String name = annotation != null && !annotation.key().isEmpty() ? annotation.key() : parameters[i].getName();
+
+                Object value;
+                if (parameters[i].isAnnotationPresent(StorageIdentifier.class)) {
+                    value = identifier;
+                } else if (database.isComplexObject(parameters[i].getType())) {
+                    Object section = document.get(name);
+                    value = section instanceof Map ? reflectiveInstance(parameters[i].getType(), (Map<String, Object>) section, identifier) : section;
+                } else {
+                    value = document.get(name);
+                }
+
+                if (value == null && annotation != null && !annotation.defaultValue().isEmpty()) {
+                    value = database.convertValue(parameters[i].getType(), annotation.defaultValue());
+                }
+                values[i] = value;
+            }
+            return (T) constructor.newInstance(values);
+        }
+        return null;
+    }
+}
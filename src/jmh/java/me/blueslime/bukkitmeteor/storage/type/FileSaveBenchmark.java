@@ -0,0 +1,85 @@
+package me.blueslime.bukkitmeteor.storage.type;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import me.blueslime.bukkitmeteor.storage.BenchmarkProfile;
+import me.blueslime.bukkitmeteor.storage.ReflectiveDocuments;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Save latency of a profile with 50 fields: the JSON and YAML services with their document codecs against
+ * the save of the services before the codecs, Gson with pretty printing and the Bukkit {@link YamlConfiguration}.
+ * <p>
+ * The target of the codecs is a third of the previous latency.
+ * Run: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=FileSaveBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileSaveBenchmark {
+
+    @Param({"json", "yaml"})
+    public String backend;
+
+    private FileDatabaseService database;
+    private ReflectiveDocuments reflective;
+    private BenchmarkProfile profile;
+    private Gson gson;
+    private File baselineFile;
+    private Path folder;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        folder = Files.createTempDirectory("save-benchmark");
+        database = backend.equals("yaml")
+            ? new YamlDatabaseService(folder.resolve("codec").toFile(), null, RegistrationType.DONT_REGISTER, null)
+            : new JsonDatabaseService(folder.resolve("codec").toFile(), null, RegistrationType.DONT_REGISTER, null);
+        reflective = new ReflectiveDocuments(database);
+        profile = BenchmarkProfile.create("benchmark", 7);
+        gson = new GsonBuilder().setPrettyPrinting().create();
+        baselineFile = folder.resolve("benchmark." + (backend.equals("yaml") ? "yml" : "json")).toFile();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(folder)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public void codec() {
+        database.saveOrUpdateSync(profile);
+    }
+
+    // Guardado de los servicios antes de los codecs, sin cambios
+
+    @Benchmark
+    public void baseline() throws IOException {
+        Map<String, Object> document = reflective.create(profile);
+        if (backend.equals("yaml")) {
+            FileConfiguration config = YamlConfiguration.loadConfiguration(baselineFile);
+            document.forEach(config::set);
+            config.save(baselineFile);
+        } else {
+            try (FileWriter writer = new FileWriter(baselineFile)) {
+                gson.toJson(document, writer);
+            }
+        }
+    }
+}
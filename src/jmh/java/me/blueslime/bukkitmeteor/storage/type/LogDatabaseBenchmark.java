@@ -0,0 +1,90 @@
+package me.blueslime.bukkitmeteor.storage.type;
+
+import me.blueslime.bukkitmeteor.storage.BenchmarkProfile;
+import me.blueslime.bukkitmeteor.storage.StorageDatabase;
+import me.blueslime.bukkitmeteor.storage.log.LogSettings;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Compares the {@link LogDatabaseService} with the {@link JsonDatabaseService} and the {@link YamlDatabaseService}:
+ * single saves and loads of random profiles in a database that already stores 10k, 100k or 1M profiles.
+ * <p>
+ * The 1M runs need several GB of free disk for the file databases and a long setup.
+ * Run: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=LogDatabaseBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LogDatabaseBenchmark {
+
+    private static final int SETUP_BATCH = 1_000;
+    private static final int SAVED_PROFILES = 10_000;
+
+    @Param({"10000", "100000", "1000000"})
+    public int records;
+
+    @Param({"log", "json", "yaml"})
+    public String backend;
+
+    private StorageDatabase database;
+    private BenchmarkProfile[] profiles;
+    private Path folder;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        folder = Files.createTempDirectory("log-benchmark");
+        database = switch (backend) {
+            case "json" -> new JsonDatabaseService(folder.toFile(), null, RegistrationType.DONT_REGISTER, null);
+            case "yaml" -> new YamlDatabaseService(folder.toFile(), null, RegistrationType.DONT_REGISTER, null);
+            default -> new LogDatabaseService(folder.toFile(), LogSettings.create(), RegistrationType.DONT_REGISTER, null);
+        };
+        database.connect();
+
+        List<BenchmarkProfile> batch = new ArrayList<>(SETUP_BATCH);
+        for (int i = 0; i < records; i++) {
+            batch.add(BenchmarkProfile.create("profile-" + i, i));
+            if (batch.size() == SETUP_BATCH) {
+                database.saveAllSync(batch);
+                batch.clear();
+            }
+        }
+        database.saveAllSync(batch);
+
+        profiles = new BenchmarkProfile[Math.min(records, SAVED_PROFILES)];
+        for (int i = 0; i < profiles.length; i++) {
+            profiles[i] = BenchmarkProfile.create("profile-" + i, i + 1);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        database.closeConnection();
+        try (Stream<Path> files = Files.walk(folder)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public void save() {
+        database.saveOrUpdateSync(profiles[ThreadLocalRandom.current().nextInt(profiles.length)]);
+    }
+
+    @Benchmark
+    public Object load() {
+        return database.loadByIdSync(BenchmarkProfile.class, "profile-" + ThreadLocalRandom.current().nextInt(records)).orElseThrow();
+    }
+}
@@ -0,0 +1,97 @@
+package me.blueslime.bukkitmeteor.storage.type;
+
+import me.blueslime.bukkitmeteor.storage.BenchmarkProfile;
+import me.blueslime.bukkitmeteor.storage.StorageDatabase;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link ReactiveMongoDatabaseService} with the {@link ModernMongoDatabaseService}: every invocation
+ * starts 1k concurrent loads with {@link StorageDatabase#loadByIdAsync(Class, String)} and waits for all of them,
+ * the score is loads per second and the peak of live threads of every iteration is printed after it.
+ * <p>
+ * Needs a mongod, by default the local one, another server is selected with the JMH option -p uri=mongodb://host:27017.
+ * The profiles are stored in the bukkitmeteor_benchmark database and deleted after the run.
+ * Run: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=MongoLoadBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MongoLoadBenchmark {
+
+    private static final String DATABASE = "bukkitmeteor_benchmark";
+    private static final int CONCURRENT_LOADS = 1_000;
+    private static final int SETUP_BATCH = 1_000;
+
+    @Param({"mongodb://localhost:27017"})
+    public String uri;
+
+    @Param({"sync", "reactive"})
+    public String backend;
+
+    @Param({"10000"})
+    public int records;
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private StorageDatabase database;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        database = backend.equals("reactive")
+            ? new ReactiveMongoDatabaseService(uri, DATABASE, RegistrationType.DONT_REGISTER, null)
+            : new ModernMongoDatabaseService(uri, DATABASE, RegistrationType.DONT_REGISTER, null);
+        database.connect();
+
+        List<BenchmarkProfile> batch = new ArrayList<>(SETUP_BATCH);
+        for (int i = 0; i < records; i++) {
+            batch.add(BenchmarkProfile.create("profile-" + i, i));
+            if (batch.size() == SETUP_BATCH) {
+                database.saveAllSync(batch);
+                batch.clear();
+            }
+        }
+        database.saveAllSync(batch);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetThreads() {
+        threads.resetPeakThreadCount();
+    }
+
+    @TearDown(Level.Iteration)
+    public void printThreads() {
+        System.out.println(backend + " peak threads: " + threads.getPeakThreadCount() + ", live threads: " + threads.getThreadCount());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        List<String> identifiers = new ArrayList<>(records);
+        for (int i = 0; i < records; i++) {
+            identifiers.add("profile-" + i);
+        }
+        database.deleteByIdsSync(BenchmarkProfile.class, identifiers);
+        database.closeConnection();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONCURRENT_LOADS)
+    public void concurrentLoads() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        CompletableFuture<?>[] loads = new CompletableFuture[CONCURRENT_LOADS];
+        for (int i = 0; i < loads.length; i++) {
+            loads[i] = database.loadByIdAsync(BenchmarkProfile.class, "profile-" + random.nextInt(records));
+        }
+        CompletableFuture.allOf(loads).join();
+    }
+}
@@ -7,6 +7,7 @@ import me.blueslime.bukkitmeteor.builder.impls.EmptyImplement;
 import me.blueslime.bukkitmeteor.colors.TextUtilities;
 import me.blueslime.bukkitmeteor.commands.CommandBuilder;
 import me.blueslime.bukkitmeteor.commands.list.OpenMenuCommand;
+import me.blueslime.bukkitmeteor.commands.list.StorageMigrateCommand;
 import me.blueslime.bukkitmeteor.conditions.Conditions;
 import me.blueslime.bukkitmeteor.getter.MeteorGetter;
 import me.blueslime.bukkitmeteor.implementation.Implementer;
@@ -20,6 +21,10 @@ import me.blueslime.bukkitmeteor.logs.MeteorLogger;
 import me.blueslime.bukkitmeteor.menus.Menus;
 import me.blueslime.bukkitmeteor.scoreboards.Scoreboards;
 import me.blueslime.bukkitmeteor.storage.StorageDatabase;
+import me.blueslime.bukkitmeteor.storage.file.FileStorageSettings;
+import me.blueslime.bukkitmeteor.storage.save.AutoSaveService;
+import me.blueslime.bukkitmeteor.storage.shard.ShardedStorageDatabase;
+import me.blueslime.bukkitmeteor.storage.sql.SqlPoolSettings;
 import me.blueslime.bukkitmeteor.storage.type.*;
 import me.blueslime.bukkitmeteor.utils.FileUtil;
 import me.blueslime.utilitiesapi.item.nbt.PersistentDataNBT;
@@ -32,16 +37,20 @@ import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.File;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 
 @SuppressWarnings("unused")
 public abstract class BukkitMeteorPlugin extends JavaPlugin implements MeteorLogger, Implementer {
     private final Map<LoggerType, String> logMap = new EnumMap<>(LoggerType.class);
     private final Map<Class<?>, Module> moduleMap = new LinkedHashMap<>();
+    private final List<StorageDatabase> databases = new ArrayList<>();
     private EmptyImplement implement = EmptyImplement.NULL;
+    private AutoSaveService autoSave = null;
 
     /**
      * Use here the {@link BukkitMeteorPlugin#initialize(Object)} method to load the entire plugin data.
@@ -119,6 +128,8 @@ public abstract class BukkitMeteorPlugin extends JavaPlugin implements MeteorLog
     private void registerOwnModules(PluginBuilder builder) {
         this.implement = builder.getImplement();
         registerImpl(EmptyImplement.class, implement, true);
+        this.autoSave = new AutoSaveService(builder.getAutoSaveSettings());
+        registerImpl(AutoSaveService.class, autoSave, true);
         registerModule(
             !builder.isMenus() ?
                 fetch(Menus.class).disableFolderGeneration() :
@@ -233,6 +244,7 @@ public abstract class BukkitMeteorPlugin extends JavaPlugin implements MeteorLog
     public void registerDatabase(StorageDatabase... databases) {
         for (StorageDatabase database : databases) {
             database.connect();
+            this.databases.add(database);
         }
     }
 
@@ -249,110 +261,91 @@ public abstract class BukkitMeteorPlugin extends JavaPlugin implements MeteorLog
     }
 
     public void registerDatabase(ConfigurationSection section, String path, DatabaseType defType, RegistrationType defRegister, boolean identifier, String id) {
+        registerDatabase(createDatabase(section, path, defType, defRegister, identifier, id));
+    }
+
+    /**
+     * Creates a database from a configuration section without connecting it
+     * @param section of the configuration
+     * @param path of the database settings
+     * @param defType database used when the "database" key is missing
+     * @param defRegister registration of the database
+     * @param identifier if the database is registered with an identifier
+     * @param id of the registration
+     * @return database
+     */
+    public StorageDatabase createDatabase(ConfigurationSection section, String path, DatabaseType defType, RegistrationType defRegister, boolean identifier, String id) {
         path = path.isEmpty() ? "" : path.endsWith(".") ? path : path + ".";
 
         String type = section.getString(path + "database");
 
         DatabaseType selectedDatabase = type != null ? DatabaseType.fromString(type) : defType;
 
-        switch (selectedDatabase) {
-            case POSTGRE -> {
-                if (identifier) {
-                    registerDatabase(
-                        new PostgreDatabaseService(
-                            section.getString(path + "postgre.uri"),
-                            section.getString(path + "postgre.user"),
-                            section.getString(path + "postgre.password"),
-                            defRegister,
-                            id
-                        )
-                    );
-                    return;
-                }
-                registerDatabase(
-                    new PostgreDatabaseService(
-                        section.getString(path + "postgre.uri"),
-                        section.getString(path + "postgre.user"),
-                        section.getString(path + "postgre.password"),
-                        defRegister
-                    )
-                );
-            }
-            case YAML -> {
-                if (identifier) {
-                    registerDatabase(
-                        new YamlDatabaseService(
-                            defRegister,
-                            id
-                        )
-                    );
-                    return;
-                }
-                registerDatabase(
-                    new YamlDatabaseService(
-                        defRegister
-                    )
-                );
-            }
-            case JSON -> {
-                if (identifier) {
-                    registerDatabase(
-                        new JsonDatabaseService(
-                            defRegister,
-                            id
-                        )
-                    );
-                    return;
-                }
-                registerDatabase(
-                    new JsonDatabaseService(
-                        defRegister
-                    )
+        return switch (selectedDatabase) {
+            case POSTGRE -> new PostgreDatabaseService(
+                section.getString(path + "postgre.uri"),
+                section.getString(path + "postgre.user"),
+                section.getString(path + "postgre.password"),
+                SqlPoolSettings.fromSection(section, path + "postgre.pool"),
+                defRegister,
+                identifier ? id : null
+            );
+            case YAML -> new YamlDatabaseService(
+                FileStorageSettings.fromSection(section, path + "yaml"),
+                defRegister,
+                identifier ? id : null
+            );
+            case JSON -> new JsonDatabaseService(
+                FileStorageSettings.fromSection(section, path + "json"),
+                defRegister,
+                identifier ? id : null
+            );
+            case SQLITE -> new SqliteDatabaseService(
+                new File(getDataFolder(), section.getString(path + "sqlite.file", "data.db")),
+                SqlPoolSettings.fromSection(section, path + "sqlite.pool"),
+                defRegister,
+                identifier ? id : null
+            );
+            case LOG -> new LogDatabaseService(
+                defRegister,
+                identifier ? id : null
+            );
+            case MARIADB -> new MariaDatabaseService(
+                section.getString(path + "mariadb.url"),
+                section.getString(path + "mariadb.user"),
+                section.getString(path + "mariadb.password"),
+                SqlPoolSettings.fromSection(section, path + "mariadb.pool"),
+                defRegister,
+                identifier ? id : null
+            );
+            case MONGODB -> identifier ?
+                new ModernMongoDatabaseService(
+                    section.getString(path + "mongodb.uri"),
+                    section.getString(path + "mongodb.database"),
+                    defRegister,
+                    id
+                ) :
+                new ModernMongoDatabaseService(
+                    section.getString(path + "mongodb.uri"),
+                    section.getString(path + "mongodb.database"),
+                    defRegister
                 );
-            }
-            case MARIADB -> {
-                if (identifier) {
-                    registerDatabase(
-                        new MariaDatabaseService(
-                            section.getString(path + "mariadb.url"),
-                            section.getString(path + "mariadb.user"),
-                            section.getString(path + "mariadb.password"),
-                            defRegister,
-                            id
-                        )
-                    );
-                    return;
-                }
-                registerDatabase(
-                    new MariaDatabaseService(
-                        section.getString(path + "mariadb.url"),
-                        section.getString(path + "mariadb.user"),
-                        section.getString(path + "mariadb.password"),
-                        defRegister
-                    )
-                );
-            }
-            case MONGODB -> {
-                if (identifier) {
-                    registerDatabase(
-                        new ModernMongoDatabaseService(
-                            section.getString(path + "mongodb.uri"),
-                            section.getString(path + "mongodb.database"),
-                            defRegister,
-                            id
-                        )
-                    );
-                    return;
-                }
-                registerDatabase(
-                    new ModernMongoDatabaseService(
-                        section.getString(path + "mongodb.uri"),
-                        section.getString(path + "mongodb.database"),
-                        defRegister
-                    )
-                );
-            }
-        }
+            case REACTIVE_MONGODB -> new ReactiveMongoDatabaseService(
+                section.getString(path + "mongodb.uri"),
+                section.getString(path + "mongodb.database"),
+                section.getInt(path + "mongodb.max-in-flight", ReactiveMongoDatabaseService.DEFAULT_MAX_IN_FLIGHT),
+                defRegister,
+                identifier ? id : null
+            );
+            // Cada shard usa las mismas claves que una base de datos normal
+            case SHARDED -> ShardedStorageDatabase.fromSection(
+                section,
+                path + "sharded",
+                shardPath -> createDatabase(section, shardPath, defType == DatabaseType.SHARDED ? DatabaseType.YAML : defType, RegistrationType.DONT_REGISTER, false, ""),
+                defRegister,
+                identifier ? id : null
+            );
+        };
     }
 
     /**
@@ -362,6 +355,14 @@ public abstract class BukkitMeteorPlugin extends JavaPlugin implements MeteorLog
         Implements.createInstance(OpenMenuCommand.class).register();
     }
 
+    /**
+     * Here you can auto register a /meteor-migrate command if you want,
+     * it migrates the stored objects between two registered databases.
+     */
+    public void registerStorageMigrateCommand() {
+        Implements.createInstance(StorageMigrateCommand.class).register();
+    }
+
     /**
      * This method reloads all other modules
      */
@@ -378,6 +379,13 @@ public abstract class BukkitMeteorPlugin extends JavaPlugin implements MeteorLog
         for (Module module : new LinkedList<>(moduleMap.values())) {
             module.shutdown();
         }
+        // Saves queued by the modules during their shutdown are written before the plugin is disabled
+        if (autoSave != null) {
+            autoSave.shutdown();
+        }
+        for (StorageDatabase database : databases) {
+            database.shutdownWriteBehind();
+        }
     }
 
     /**
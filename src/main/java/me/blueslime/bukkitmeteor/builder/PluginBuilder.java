@@ -1,9 +1,11 @@
 package me.blueslime.bukkitmeteor.builder;
 
 import me.blueslime.bukkitmeteor.builder.impls.EmptyImplement;
+import me.blueslime.bukkitmeteor.storage.save.AutoSaveSettings;
 
 public class PluginBuilder {
     private EmptyImplement implement = EmptyImplement.NULL;
+    private AutoSaveSettings autoSave = AutoSaveSettings.create();
     private String[] supportedLanguages = { "es", "en" };
     private boolean messageConfiguration = true;
     private boolean multilingual = false;
@@ -48,6 +50,16 @@ public class PluginBuilder {
         return this;
     }
 
+    /**
+     * Settings of the {@link me.blueslime.bukkitmeteor.storage.save.AutoSaveService} registered by the plugin
+     * @param settings of the auto-save
+     * @return builder
+     */
+    public PluginBuilder autoSave(AutoSaveSettings settings) {
+        this.autoSave = settings;
+        return this;
+    }
+
     public boolean isMultilingual() {
         return multilingual;
     }
@@ -68,6 +80,10 @@ public class PluginBuilder {
         return implement;
     }
 
+    public AutoSaveSettings getAutoSaveSettings() {
+        return autoSave;
+    }
+
     public boolean hasMessageFile() {
         return messageConfiguration;
     }
@@ -0,0 +1,175 @@
+package me.blueslime.bukkitmeteor.commands.list;
+
+import me.blueslime.bukkitmeteor.BukkitMeteorPlugin;
+import me.blueslime.bukkitmeteor.commands.InjectedCommand;
+import me.blueslime.bukkitmeteor.implementation.Implements;
+import me.blueslime.bukkitmeteor.storage.StorageDatabase;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageObject;
+import me.blueslime.bukkitmeteor.storage.migrate.MigrationProgress;
+import me.blueslime.bukkitmeteor.storage.migrate.MigrationSettings;
+import me.blueslime.bukkitmeteor.storage.migrate.StorageMigrator;
+import me.blueslime.utilitiesapi.commands.sender.Sender;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * /meteor-migrate start (source) (target) (classes...) [--verify] [--restart]
+ * <p>
+ * The databases are the identifiers used to register them, "default" is the database registered without identifier.
+ * The classes are the full names of the stored classes.
+ */
+public class StorageMigrateCommand extends InjectedCommand {
+
+    private volatile StorageMigrator migrator = null;
+
+    public StorageMigrateCommand() {
+        super("meteor-migrate");
+    }
+
+    @Override
+    public void executeCommand(Sender sender, String command, String[] arguments) {
+        if (!sender.isConsole() && !sender.hasPermission("bukkitmeteor.admin")) {
+            return;
+        }
+
+        if (arguments.length == 0) {
+            sendUsage(sender, command);
+            return;
+        }
+
+        switch (arguments[0].toLowerCase(Locale.ENGLISH)) {
+            case "start" -> start(sender, command, arguments);
+            case "status" -> status(sender);
+            case "cancel" -> {
+                StorageMigrator current = migrator;
+                if (current == null || !current.isRunning()) {
+                    sender.send("&cThere is no migration running.");
+                    return;
+                }
+                current.cancel();
+                sender.send("&eThe migration will stop after the batches that are being written.");
+            }
+            default -> sendUsage(sender, command);
+        }
+    }
+
+    private void start(Sender sender, String command, String[] arguments) {
+        List<String> values = new ArrayList<>();
+        boolean verify = false;
+        boolean restart = false;
+
+        for (int i = 1; i < arguments.length; i++) {
+            String argument = arguments[i];
+            if (argument.equalsIgnoreCase("--verify")) {
+                verify = true;
+            } else if (argument.equalsIgnoreCase("--restart")) {
+                restart = true;
+            } else {
+                values.add(argument);
+            }
+        }
+
+        if (values.size() < 3) {
+            sendUsage(sender, command);
+            return;
+        }
+
+        StorageMigrator current = migrator;
+        if (current != null && current.isRunning()) {
+            sender.send("&cA migration is already running, use /" + command + " status.");
+            return;
+        }
+
+        StorageDatabase source = findDatabase(values.get(0));
+        StorageDatabase target = findDatabase(values.get(1));
+
+        if (source == null || target == null) {
+            sender.send("&cDatabase &f" + (source == null ? values.get(0) : values.get(1)) + " &cis not registered.");
+            return;
+        }
+
+        if (source == target) {
+            sender.send("&cSource and target databases must be different.");
+            return;
+        }
+
+        List<Class<? extends StorageObject>> classes = new ArrayList<>();
+        for (String name : values.subList(2, values.size())) {
+            Class<? extends StorageObject> clazz = findClass(name);
+            if (clazz == null) {
+                sender.send("&cClass &f" + name + " &cis not a StorageObject.");
+                return;
+            }
+            classes.add(clazz);
+        }
+
+        StorageMigrator created = new StorageMigrator(
+            source,
+            target,
+            MigrationSettings.create().setVerify(verify).setResume(!restart)
+        );
+        migrator = created;
+
+        @SuppressWarnings("unchecked")
+        Class<? extends StorageObject>[] array = classes.toArray(new Class[0]);
+
+        sender.send("&aMigrating " + classes.size() + " classes from &f" + values.get(0) + " &ato &f" + values.get(1) + "&a, the progress is written in the console.");
+
+        created.migrateAsync(array).whenComplete((result, error) -> {
+            if (error != null) {
+                sender.send("&cThe migration failed: " + error.getMessage());
+                return;
+            }
+            for (MigrationProgress progress : result) {
+                sender.send("&7" + progress);
+            }
+        });
+    }
+
+    private void status(Sender sender) {
+        StorageMigrator current = migrator;
+        if (current == null) {
+            sender.send("&cNo migration was started.");
+            return;
+        }
+        List<MigrationProgress> progress = current.getProgress();
+        if (progress.isEmpty()) {
+            sender.send(current.isRunning() ? "&eCounting the source objects..." : "&cThe migration did not migrate any class.");
+            return;
+        }
+        sender.send("&eMigration " + (current.isRunning() ? "running" : "finished") + ":");
+        for (MigrationProgress entry : progress) {
+            sender.send("&7" + entry);
+        }
+    }
+
+    private void sendUsage(Sender sender, String command) {
+        sender.send(
+            "&e/" + command + " start <source> <target> <classes...> [--verify] [--restart]",
+            "&e/" + command + " status",
+            "&e/" + command + " cancel"
+        );
+    }
+
+    private static StorageDatabase findDatabase(String identifier) {
+        try {
+            return identifier.equalsIgnoreCase("default")
+                ? Implements.fetch(StorageDatabase.class)
+                : Implements.fetch(StorageDatabase.class, identifier);
+        } catch (RuntimeException ignored) {
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<? extends StorageObject> findClass(String name) {
+        try {
+            Class<?> clazz = Class.forName(name, true, Implements.fetch(BukkitMeteorPlugin.class).getClass().getClassLoader());
+            return StorageObject.class.isAssignableFrom(clazz) ? (Class<? extends StorageObject>) clazz : null;
+        } catch (ClassNotFoundException | LinkageError ignored) {
+            return null;
+        }
+    }
+}
@@ -2,12 +2,19 @@ package me.blueslime.bukkitmeteor.storage;
 
 import me.blueslime.bukkitmeteor.implementation.module.Service;
 import me.blueslime.bukkitmeteor.logs.MeteorLogger;
-import me.blueslime.bukkitmeteor.storage.interfaces.StorageConstructor;
-import me.blueslime.bukkitmeteor.storage.interfaces.StorageKey;
 import me.blueslime.bukkitmeteor.storage.interfaces.StorageObject;
+import me.blueslime.bukkitmeteor.storage.query.QueryMatcher;
+import me.blueslime.bukkitmeteor.storage.query.StorageQuery;
+import me.blueslime.bukkitmeteor.storage.schema.StorageEntry;
+import me.blueslime.bukkitmeteor.storage.schema.StorageField;
+import me.blueslime.bukkitmeteor.storage.schema.StorageParameter;
+import me.blueslime.bukkitmeteor.storage.track.ChangeTracker;
+import me.blueslime.bukkitmeteor.storage.write.WriteBehindQueue;
+import me.blueslime.bukkitmeteor.storage.write.WriteBehindSettings;
 import me.blueslime.bukkitmeteor.utils.list.OptimizedList;
 import me.blueslime.utilitiesapi.utils.consumer.PluginConsumer;
 
+import java.lang.reflect.Array;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.*;
@@ -15,12 +22,24 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public abstract class StorageDatabase implements Service {
 
+    /**
+     * Amount of objects fetched from the database in every round trip of {@link #streamAll(Class)}.
+     */
+    protected static final int STREAM_BATCH_SIZE = 500;
+
     private final Map<Class<?>, Function<Collection<?>, ?>> collections = new ConcurrentHashMap<>();
     private final Map<Class<?>, PluginConsumer.PluginExecutableConsumer<Map<Object, Object>>> mapCreator = new ConcurrentHashMap<>();
     private final Map<Class<?>, Function<String, ?>> converters = new ConcurrentHashMap<>();
+    private final Map<StorageEntry, Object> defaults = new ConcurrentHashMap<>();
+    private final ChangeTracker changes = new ChangeTracker();
+
+    private volatile WriteBehindQueue writeBehind;
 
     public StorageDatabase() {
         converters.put(String.class, s -> s);
@@ -53,6 +72,7 @@ public abstract class StorageDatabase implements Service {
         converters.put(HashMap.class, s -> new HashMap<>());
         converters.put(BigInteger.class, BigInteger::new);
         converters.put(BigDecimal.class, BigDecimal::new);
+        converters.put(UUID.class, UUID::fromString);
 
         collections.put(ArrayList.class, ArrayList::new);
         collections.put(LinkedList.class, LinkedList::new);
@@ -124,6 +144,70 @@ public abstract class StorageDatabase implements Service {
      */
     public abstract <T extends StorageObject> Set<T> loadAllSync(Class<T> clazz);
 
+    /**
+     * Streams all objects of a given type, objects are read and decoded while the stream is consumed.
+     * The stream holds database resources, so it must be closed, use it in a try-with-resources block.
+     * Objects waiting in the write-behind queue are not included.
+     *
+     * @param clazz The class type of the objects.
+     * @param <T>   The type of the storage object.
+     * @return A stream of all stored objects.
+     */
+    public <T extends StorageObject> Stream<T> streamAll(Class<T> clazz) {
+        return streamAll(clazz, false);
+    }
+
+    /**
+     * Streams all objects of a given type, see {@link #streamAll(Class)}.
+     *
+     * @param clazz    The class type of the objects.
+     * @param parallel If the objects are decoded in parallel, the cursor is still read by one thread at a time.
+     * @param <T>      The type of the storage object.
+     * @return A stream of all stored objects.
+     */
+    public <T extends StorageObject> Stream<T> streamAll(Class<T> clazz, boolean parallel) {
+        Stream<T> stream = loadAllSync(clazz).stream();
+        return parallel ? stream.parallel() : stream;
+    }
+
+    /**
+     * Creates a query over the objects of a given type.
+     *
+     * @param clazz The class type of the objects.
+     * @param <T>   The type of the storage object.
+     * @return A new query.
+     */
+    public <T extends StorageObject> StorageQuery<T> query(Class<T> clazz) {
+        return new StorageQuery<>(this, clazz);
+    }
+
+    /**
+     * Executes a query, databases that can filter natively should override it,
+     * by default every object is streamed and filtered in memory.
+     *
+     * @param query The query to execute.
+     * @param <T>   The type of the storage object.
+     * @return A stream with the results, it must be closed.
+     */
+    public <T extends StorageObject> Stream<T> streamQuery(StorageQuery<T> query) {
+        Predicate<Function<String, Object>> matcher = QueryMatcher.matcher(query);
+        Stream<T> stream = streamAll(query.getType()).filter(object -> matcher.test(QueryMatcher.reader(object)));
+        return QueryMatcher.order(query, stream);
+    }
+
+    /**
+     * Counts the results of a query.
+     *
+     * @param query The query to count.
+     * @param <T>   The type of the storage object.
+     * @return The amount of results.
+     */
+    public <T extends StorageObject> long countQuery(StorageQuery<T> query) {
+        try (Stream<T> stream = streamQuery(query)) {
+            return stream.count();
+        }
+    }
+
     /**
      * Asynchronously saves or updates an object in the storage.
      *
@@ -136,6 +220,7 @@ public abstract class StorageDatabase implements Service {
      * Synchronously saves or updates an object in the storage.
      *
      * @param obj The object to save or update.
+     * @throws IllegalStateException if the object can't be written.
      */
     public abstract void saveOrUpdateSync(StorageObject obj);
 
@@ -149,6 +234,556 @@ public abstract class StorageDatabase implements Service {
      */
     public abstract void closeConnection();
 
+    /**
+     * Text that identifies where this database stores the objects, it does not change between restarts.
+     * Used to name the files of a {@link me.blueslime.bukkitmeteor.storage.migrate.StorageMigrator}.
+     * @return identity of the storage, by default the name of the class
+     */
+    public String getStorageIdentity() {
+        return getClass().getName();
+    }
+
+    /**
+     * Enables the write-behind mode, {@link #saveOrUpdateAsync(StorageObject)} and {@link #saveAllAsync(Collection)} calls are queued,
+     * coalesced by identifier and written in batches.
+     * @param settings of the queue
+     */
+    public void enableWriteBehind(WriteBehindSettings settings) {
+        WriteBehindQueue queue = new WriteBehindQueue(this, settings);
+        queue.start();
+
+        // La cola anterior sigue visible para las lecturas hasta que se escribe
+        WriteBehindQueue previous = writeBehind;
+        if (previous != null) {
+            previous.close();
+        }
+        writeBehind = queue;
+    }
+
+    public boolean isWriteBehindEnabled() {
+        return writeBehind != null;
+    }
+
+    /**
+     * @return the write-behind queue or null if write-behind is not enabled
+     */
+    public WriteBehindQueue getWriteBehind() {
+        return writeBehind;
+    }
+
+    /**
+     * Writes all the queued saves in the caller thread.
+     */
+    public void flushWriteBehind() {
+        WriteBehindQueue queue = writeBehind;
+        if (queue != null) {
+            queue.flush();
+        }
+    }
+
+    /**
+     * Disables the write-behind mode writing all the queued saves before returning.
+     */
+    public void shutdownWriteBehind() {
+        WriteBehindQueue queue = writeBehind;
+        if (queue != null) {
+            // Las lecturas ven los objetos pendientes hasta que se escriben
+            queue.close();
+            if (writeBehind == queue) {
+                writeBehind = null;
+            }
+        }
+    }
+
+    /**
+     * @return persisted state of the {@link me.blueslime.bukkitmeteor.storage.interfaces.StorageTracked} objects
+     */
+    public ChangeTracker getChangeTracker() {
+        return changes;
+    }
+
+    /**
+     * Checks if an object must be written, only {@link me.blueslime.bukkitmeteor.storage.interfaces.StorageTracked}
+     * objects with a known persisted state can be unchanged.
+     * @param obj to check
+     * @return true if the object changed since it was loaded or saved
+     */
+    public boolean hasChanges(StorageObject obj) {
+        StorageSchema schema = StorageSchema.of(obj.getClass());
+        if (!schema.isTracked()) {
+            return true;
+        }
+        Set<String> changed = findChanges(obj, schema.extractIdentifier(obj), createDocument(obj));
+        return changed == null || !changed.isEmpty();
+    }
+
+    /**
+     * Asynchronously saves or updates a group of objects, when write-behind is enabled the objects are queued.
+     *
+     * @param objects The objects to save or update.
+     * @return A CompletableFuture representing the operation.
+     */
+    public CompletableFuture<Void> saveAllAsync(Collection<? extends StorageObject> objects) {
+        WriteBehindQueue queue = writeBehind;
+        if (queue != null) {
+            List<CompletableFuture<Void>> futures = new ArrayList<>(objects.size());
+            List<StorageObject> rejected = new ArrayList<>();
+            for (StorageObject object : objects) {
+                CompletableFuture<Void> future = queue.enqueue(object);
+                if (future == null) {
+                    rejected.add(object);
+                } else {
+                    futures.add(future);
+                }
+            }
+            if (!rejected.isEmpty()) {
+                futures.add(CompletableFuture.runAsync(() -> saveAllSync(rejected)));
+            }
+            return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+        }
+        return CompletableFuture.runAsync(() -> saveAllSync(objects));
+    }
+
+    /**
+     * Synchronously saves or updates a group of objects, the write-behind queue uses this method for every flush.
+     * Databases with native batch support should override it.
+     *
+     * @param objects The objects to save or update.
+     */
+    public void saveAllSync(Collection<? extends StorageObject> objects) {
+        RuntimeException failure = null;
+        for (StorageObject object : objects) {
+            try {
+                saveOrUpdateSync(object);
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Asynchronously loads a group of objects by their identifiers.
+     *
+     * @param clazz       The class type of the objects.
+     * @param identifiers The unique identifiers of the objects.
+     * @param <T>         The type of the storage object.
+     * @return A CompletableFuture containing the loaded objects by identifier, missing objects are not present.
+     */
+    public <T extends StorageObject> CompletableFuture<Map<String, T>> loadByIdsAsync(Class<T> clazz, Collection<String> identifiers) {
+        return CompletableFuture.supplyAsync(() -> loadByIdsSync(clazz, identifiers));
+    }
+
+    /**
+     * Synchronously loads a group of objects by their identifiers.
+     * Databases with native batch support should override it.
+     *
+     * @param clazz       The class type of the objects.
+     * @param identifiers The unique identifiers of the objects.
+     * @param <T>         The type of the storage object.
+     * @return The loaded objects by identifier, missing objects are not present.
+     */
+    public <T extends StorageObject> Map<String, T> loadByIdsSync(Class<T> clazz, Collection<String> identifiers) {
+        Map<String, T> results = new HashMap<>();
+        for (String identifier : new LinkedHashSet<>(identifiers)) {
+            loadByIdSync(clazz, identifier).ifPresent(value -> results.put(identifier, value));
+        }
+        return results;
+    }
+
+    /**
+     * Asynchronously deletes a group of objects by their identifiers.
+     *
+     * @param clazz       The class type of the objects.
+     * @param identifiers The unique identifiers of the objects.
+     * @param <T>         The type of the storage object.
+     * @return A CompletableFuture representing the deletion process.
+     */
+    public <T extends StorageObject> CompletableFuture<Void> deleteByIdsAsync(Class<T> clazz, Collection<String> identifiers) {
+        return CompletableFuture.runAsync(() -> deleteByIdsSync(clazz, identifiers));
+    }
+
+    /**
+     * Synchronously deletes a group of objects by their identifiers.
+     * Databases with native batch support should override it.
+     *
+     * @param clazz       The class type of the objects.
+     * @param identifiers The unique identifiers of the objects.
+     * @param <T>         The type of the storage object.
+     */
+    public <T extends StorageObject> void deleteByIdsSync(Class<T> clazz, Collection<String> identifiers) {
+        for (String identifier : new LinkedHashSet<>(identifiers)) {
+            deleteByIdSync(clazz, identifier);
+        }
+    }
+
+    /**
+     * Asynchronously loads only some fields of an object.
+     *
+     * @param clazz      The class type of the object.
+     * @param identifier The unique identifier of the object.
+     * @param keys       Storage names of the fields, empty to load every stored field.
+     * @param <T>        The type of the storage object.
+     * @return A CompletableFuture containing the values by storage name, or empty if the object is not stored.
+     */
+    public <T extends StorageObject> CompletableFuture<Optional<Map<String, Object>>> loadFieldsByIdAsync(Class<T> clazz, String identifier, String... keys) {
+        return CompletableFuture.supplyAsync(() -> loadFieldsByIdSync(clazz, identifier, keys));
+    }
+
+    /**
+     * Synchronously loads only some fields of an object, without creating the object.
+     * Values are converted to the field types and missing values use the default value of the field.
+     *
+     * @param clazz      The class type of the object.
+     * @param identifier The unique identifier of the object.
+     * @param keys       Storage names of the fields, empty to load every stored field.
+     * @param <T>        The type of the storage object.
+     * @return The values by storage name, or empty if the object is not stored.
+     * @throws IllegalArgumentException if a key is not a stored field of the class.
+     */
+    public <T extends StorageObject> Optional<Map<String, Object>> loadFieldsByIdSync(Class<T> clazz, String identifier, String... keys) {
+        List<StorageField> fields = resolveFields(clazz, keys);
+
+        T pending = findPendingWrite(clazz, identifier);
+        if (pending != null) {
+            return Optional.of(extractFields(pending, fields));
+        }
+        if (identifier == null) {
+            return Optional.empty();
+        }
+        return loadFields(clazz, identifier, fields);
+    }
+
+    /**
+     * Reads some stored fields of an object like {@link #loadFieldsByIdSync(Class, String, String...)}.
+     * @param obj to read
+     * @param keys storage names of the fields, empty to read every stored field
+     * @return values by storage name
+     */
+    public Map<String, Object> extractFields(StorageObject obj, String... keys) {
+        return extractFields(obj, resolveFields(obj.getClass(), keys));
+    }
+
+    /**
+     * Loads the fields of a stored object, databases that can read only some fields should override it.
+     * @param clazz of the object
+     * @param identifier of the object, not null
+     * @param fields to load
+     * @return values by storage name or empty if the object is not stored
+     */
+    protected <T extends StorageObject> Optional<Map<String, Object>> loadFields(Class<T> clazz, String identifier, List<StorageField> fields) {
+        return loadByIdSync(clazz, identifier).map(object -> extractFields(object, fields));
+    }
+
+    /**
+     * Asynchronously adds deltas to numeric fields of stored objects, see {@link #incrementSync(Class, Map)}.
+     *
+     * @param clazz  The class type of the objects.
+     * @param deltas The deltas by identifier, every delta by storage name of the field.
+     * @param <T>    The type of the storage objects.
+     * @return A CompletableFuture representing the operation.
+     */
+    public <T extends StorageObject> CompletableFuture<Void> incrementAsync(Class<T> clazz, Map<String, Map<String, Long>> deltas) {
+        return CompletableFuture.runAsync(() -> incrementSync(clazz, deltas));
+    }
+
+    /**
+     * Adds deltas to numeric fields of stored objects, objects that are not stored are skipped.
+     * <p>
+     * Databases with atomic increments apply them without reading the objects, the other databases
+     * load the objects, add the deltas and save them, see {@link #applyIncrements(Class, Map)}.
+     *
+     * @param clazz  The class type of the objects.
+     * @param deltas The deltas by identifier, every delta by storage name of the field.
+     * @param <T>    The type of the storage objects.
+     * @throws IllegalArgumentException if a key is not a numeric stored field of the class.
+     */
+    public <T extends StorageObject> void incrementSync(Class<T> clazz, Map<String, Map<String, Long>> deltas) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (Map<String, Long> values : deltas.values()) {
+            keys.addAll(values.keySet());
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+        for (StorageField field : resolveFields(clazz, keys.toArray(new String[0]))) {
+            if (!StorageSchema.isNumber(field.getType())) {
+                throw new IllegalArgumentException("Field " + field.getName() + " of class " + clazz.getSimpleName() + " is not a number");
+            }
+        }
+
+        // Una escritura pendiente reemplazaría el objeto guardado, esos objetos se actualizan con un guardado completo
+        Map<String, Map<String, Long>> pending = new LinkedHashMap<>();
+        Map<String, Map<String, Long>> direct = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<String, Long>> entry : deltas.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                (findPendingWrite(clazz, entry.getKey()) != null ? pending : direct).put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (!pending.isEmpty()) {
+            mergeIncrements(clazz, pending);
+        }
+        if (!direct.isEmpty()) {
+            applyIncrements(clazz, direct);
+        }
+    }
+
+    /**
+     * Adds the deltas to the stored objects, databases with atomic increments should override it.
+     * By default the objects are loaded, merged with the deltas and saved.
+     * @param clazz of the objects
+     * @param deltas by identifier, the keys are numeric stored fields
+     */
+    protected <T extends StorageObject> void applyIncrements(Class<T> clazz, Map<String, Map<String, Long>> deltas) {
+        mergeIncrements(clazz, deltas);
+    }
+
+    private <T extends StorageObject> void mergeIncrements(Class<T> clazz, Map<String, Map<String, Long>> deltas) {
+        Set<String> untracked = new HashSet<>();
+        for (String identifier : deltas.keySet()) {
+            if (identifier != null && !changes.isTracked(clazz, identifier)) {
+                untracked.add(identifier);
+            }
+        }
+
+        Map<String, T> loaded = loadByIdsSync(clazz, deltas.keySet());
+        List<T> updated = new ArrayList<>(loaded.size());
+        for (Map.Entry<String, T> entry : loaded.entrySet()) {
+            String identifier = entry.getKey();
+            Map<String, Object> persisted = createDocument(entry.getValue());
+            Map<String, Object> document = new LinkedHashMap<>(persisted);
+            for (Map.Entry<String, Long> delta : deltas.getOrDefault(identifier, Collections.emptyMap()).entrySet()) {
+                document.put(delta.getKey(), addDelta(document.get(delta.getKey()), delta.getValue()));
+            }
+
+            T object = instantiateDocument(clazz, document, identifier);
+            if (object != null) {
+                // Se conserva el estado anterior, así los objetos con seguimiento solo escriben los contadores
+                markPersisted(object, identifier, persisted);
+                updated.add(object);
+            }
+        }
+        if (updated.isEmpty()) {
+            untracked.forEach(identifier -> changes.forget(clazz, identifier));
+            return;
+        }
+        // Nadie tiene los objetos combinados, solo se conserva el estado de los objetos cargados antes
+        if (isWriteBehindEnabled()) {
+            // Reemplaza las escrituras pendientes de estos objetos
+            saveAllAsync(updated).whenComplete((result, error) -> untracked.forEach(identifier -> changes.forget(clazz, identifier)));
+        } else {
+            try {
+                saveAllSync(updated);
+            } finally {
+                untracked.forEach(identifier -> changes.forget(clazz, identifier));
+            }
+        }
+    }
+
+    private static Object addDelta(Object current, long delta) {
+        if (current instanceof Double || current instanceof Float) {
+            return ((Number) current).doubleValue() + delta;
+        }
+        return (current instanceof Number number ? number.longValue() : 0L) + delta;
+    }
+
+    /**
+     * @param clazz of the objects
+     * @param keys storage names, empty for every stored field
+     * @return stored fields in the order of the keys
+     * @throws IllegalArgumentException if a key is not a stored field of the class
+     */
+    protected List<StorageField> resolveFields(Class<?> clazz, String... keys) {
+        StorageSchema schema = StorageSchema.of(clazz);
+        if (keys == null || keys.length == 0) {
+            return schema.getStoredFields();
+        }
+        List<StorageField> fields = new ArrayList<>(keys.length);
+        for (String key : keys) {
+            StorageField field = schema.getStoredField(key);
+            if (field == null) {
+                throw new IllegalArgumentException("Class " + clazz.getSimpleName() + " don't have a stored field named " + key);
+            }
+            if (!fields.contains(field)) {
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * @param fields of a projection
+     * @return storage names of the fields
+     */
+    protected Set<String> namesOf(List<StorageField> fields) {
+        Set<String> names = new LinkedHashSet<>(Math.max(16, fields.size() * 2));
+        for (StorageField field : fields) {
+            names.add(field.getName());
+        }
+        return names;
+    }
+
+    /**
+     * Reads the values of some fields of an object, null values use the default value of the field.
+     * @param obj to read
+     * @param fields to read
+     * @return values by storage name
+     */
+    protected Map<String, Object> extractFields(Object obj, List<StorageField> fields) {
+        Map<String, Object> values = new LinkedHashMap<>(Math.max(16, fields.size() * 2));
+        for (StorageField field : fields) {
+            Object value = null;
+            try {
+                value = field.get(obj);
+            } catch (IllegalStateException e) {
+                logError("Can't get data from field " + field.getFieldName(), e);
+            }
+            values.put(field.getName(), value == null ? convertDefault(field) : value);
+        }
+        return values;
+    }
+
+    /**
+     * Converts the values of a partial document to the field types, null values use the default value of the field.
+     * @param fields to decode
+     * @param document with the values by storage name, it may contain other values
+     * @param identifier of the object, null to read it from the document
+     * @return values by storage name
+     */
+    protected Map<String, Object> decodeFields(List<StorageField> fields, Map<String, Object> document, String identifier) {
+        Map<String, Object> values = new LinkedHashMap<>(Math.max(16, fields.size() * 2));
+        for (StorageField field : fields) {
+            Object value = null;
+            try {
+                if (field.isIdentifier() && identifier != null) {
+                    value = decodeValue(field, identifier);
+                } else {
+                    value = decodeValue(field, document.get(field.getName()));
+                }
+            } catch (Exception e) {
+                logError("Error decoding field: " + field.getName(), e);
+            }
+            values.put(field.getName(), value == null ? convertDefault(field) : value);
+        }
+        return values;
+    }
+
+    /**
+     * Creates a lazy stream over a database cursor.
+     * @param cursor with the raw records
+     * @param decoder of every record, null results are skipped
+     * @param parallel if the records are decoded in parallel
+     * @param close releases the cursor resources
+     * @return stream of the decoded objects
+     */
+    protected <R, T> Stream<T> createStream(Iterator<R> cursor, Function<R, T> decoder, boolean parallel, Runnable close) {
+        Spliterator<R> spliterator = Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, parallel)
+            .map(decoder)
+            .filter(Objects::nonNull)
+            .onClose(close);
+    }
+
+    /**
+     * Queues the object if write-behind is enabled, otherwise runs the save asynchronously.
+     * @param obj to save
+     * @param save direct save of this object
+     * @return future completed when the object is written
+     */
+    protected CompletableFuture<Void> submitSave(StorageObject obj, Runnable save) {
+        WriteBehindQueue queue = writeBehind;
+        if (queue != null) {
+            CompletableFuture<Void> future = queue.enqueue(obj);
+            if (future != null) {
+                return future;
+            }
+        }
+        return CompletableFuture.runAsync(save);
+    }
+
+    /**
+     * Gets an object that is waiting in the write-behind queue, so loads can see saves that are not written yet.
+     * @param clazz of the object
+     * @param identifier of the object
+     * @return pending object or null
+     */
+    protected <T extends StorageObject> T findPendingWrite(Class<T> clazz, String identifier) {
+        WriteBehindQueue queue = writeBehind;
+        if (queue == null || identifier == null) {
+            return null;
+        }
+        return queue.getPending(clazz, identifier);
+    }
+
+    /**
+     * Removes a queued save and the tracked state, deleted objects must not be written again by a later flush.
+     * @param clazz of the object
+     * @param identifier of the object
+     */
+    protected void cancelPendingWrite(Class<?> clazz, String identifier) {
+        if (identifier == null) {
+            return;
+        }
+        changes.forget(clazz, identifier);
+        WriteBehindQueue queue = writeBehind;
+        if (queue != null) {
+            queue.cancel(clazz, identifier);
+        }
+    }
+
+    /**
+     * Gets the fields that changed since the object was loaded or saved,
+     * only {@link me.blueslime.bukkitmeteor.storage.interfaces.StorageTracked} classes are tracked.
+     * @param obj to save
+     * @param identifier of the object
+     * @param document of the object, created with {@link #createDocument(Object)}
+     * @return changed storage names, empty if nothing changed or null if the whole object must be written
+     */
+    protected Set<String> findChanges(Object obj, String identifier, Map<String, Object> document) {
+        if (identifier == null || !StorageSchema.of(obj.getClass()).isTracked()) {
+            return null;
+        }
+        return changes.getChanges(obj.getClass(), identifier, document);
+    }
+
+    /**
+     * Remembers the written state of a tracked object
+     * @param obj written
+     * @param identifier of the object
+     * @param document written, created with {@link #createDocument(Object)}
+     */
+    protected void markPersisted(Object obj, String identifier, Map<String, Object> document) {
+        if (identifier != null && StorageSchema.of(obj.getClass()).isTracked()) {
+            changes.remember(obj.getClass(), identifier, document);
+        }
+    }
+
+    /**
+     * Puts the objects waiting in the write-behind queue in the results of a bulk load.
+     * @param clazz of the objects
+     * @param identifiers requested
+     * @param results where the pending objects are added
+     * @return identifiers that must be loaded from the database, without duplicates
+     */
+    protected <T extends StorageObject> List<String> resolvePendingWrites(Class<T> clazz, Collection<String> identifiers, Map<String, T> results) {
+        List<String> missing = new ArrayList<>(identifiers.size());
+        for (String identifier : new LinkedHashSet<>(identifiers)) {
+            T pending = findPendingWrite(clazz, identifier);
+            if (pending != null) {
+                results.put(identifier, pending);
+            } else if (identifier != null) {
+                missing.add(identifier);
+            }
+        }
+        return missing;
+    }
+
     public Map<Object, Object> createMap(Class<?> clazz) {
         return mapCreator.getOrDefault(clazz, HashMap::new).accept();
     }
@@ -170,6 +805,29 @@ public abstract class StorageDatabase implements Service {
         return value;
     }
 
+    /**
+     * Converts the {@link me.blueslime.bukkitmeteor.storage.interfaces.StorageKey#defaultValue()} of an entry,
+     * immutable values are converted only once and shared.
+     * @param entry with the default value
+     * @return converted value or null if the entry don't have a default value
+     */
+    public Object convertDefault(StorageEntry entry) {
+        if (!entry.hasDefaultValue()) {
+            return null;
+        }
+        if (!entry.isImmutable()) {
+            return convertValue(entry.getType(), entry.getDefaultValue());
+        }
+        Object value = defaults.get(entry);
+        if (value == null) {
+            value = convertValue(entry.getType(), entry.getDefaultValue());
+            if (value != null) {
+                defaults.put(entry, value);
+            }
+        }
+        return value;
+    }
+
     public Object convertCollection(Class<? extends Collection<?>> clazz, Collection<?> value) {
         Function<Collection<?>, ?> converter = collections.get(clazz);
         if (converter != null) {
@@ -181,6 +839,7 @@ public abstract class StorageDatabase implements Service {
 
     public void registerDefaultValueConverter(Class<?> key, Function<String, ?> converter) {
         converters.put(key, converter);
+        defaults.clear();
     }
 
     public void registerCollectionConverter(Class<? extends Collection<?>> key, Function<Collection<?>, ?> converter) {
@@ -189,26 +848,228 @@ public abstract class StorageDatabase implements Service {
 
     public void unregisterDefaultValueConverter(Class<?> clazz) {
         converters.remove(clazz);
+        defaults.clear();
     }
 
     public void unregisterCollectionConverter(Class<? extends Collection<?>> clazz) {
         collections.remove(clazz);
     }
 
+    /**
+     * Converts a value to a document value: nested objects and maps become maps with string keys,
+     * arrays and collections become lists, numbers and booleans are kept and every other value becomes a string.
+     * @param obj to convert
+     * @return document value
+     */
+    protected Object toDocument(Object obj) {
+        if (obj == null || obj instanceof String || obj instanceof Number || obj instanceof Boolean) {
+            return obj;
+        }
+        if (obj instanceof Enum<?> constant) {
+            return constant.name();
+        }
+        if (obj instanceof Iterable<?> iterable) {
+            List<Object> list = new ArrayList<>();
+            for (Object element : iterable) {
+                list.add(toDocument(element));
+            }
+            return list;
+        }
+        if (obj.getClass().isArray()) {
+            int length = Array.getLength(obj);
+            List<Object> list = new ArrayList<>(length);
+            for (int i = 0; i < length; i++) {
+                list.add(toDocument(Array.get(obj, i)));
+            }
+            return list;
+        }
+        if (obj instanceof Map<?, ?> map) {
+            Map<String, Object> document = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                Object key = toDocument(entry.getKey());
+                document.put(String.valueOf(key), toDocument(entry.getValue()));
+            }
+            return document;
+        }
+        if (!isComplexObject(obj.getClass())) {
+            return obj instanceof Number || obj instanceof Boolean ? obj : obj.toString();
+        }
+        Map<String, Object> document = new LinkedHashMap<>();
+        for (StorageField field : StorageSchema.of(obj.getClass()).getStoredFields()) {
+            try {
+                document.put(field.getName(), toDocument(field.get(obj)));
+            } catch (IllegalStateException e) {
+                logError("Can't get data from field " + field.getFieldName(), e);
+            }
+        }
+        return document;
+    }
+
+    /**
+     * Creates the document of the stored fields by storage name, null values use the default value of the field.
+     * @param obj to convert
+     * @return document
+     */
+    protected Map<String, Object> createDocument(Object obj) {
+        List<StorageField> fields = StorageSchema.of(obj.getClass()).getStoredFields();
+        Map<String, Object> document = new LinkedHashMap<>(Math.max(16, fields.size() * 2));
+        for (StorageField field : fields) {
+            try {
+                Object value = field.get(obj);
+                if (value == null) {
+                    value = convertDefault(field);
+                }
+                document.put(field.getName(), toDocument(value));
+            } catch (IllegalStateException e) {
+                logError("Can't save field: " + field.getFieldName(), e);
+            }
+        }
+        return document;
+    }
+
+    private Object[] resolveDocumentArgs(StorageSchema schema, Map<String, Object> document, String identifier) {
+        List<StorageParameter> parameters = schema.getParameters();
+        Object[] values = new Object[parameters.size()];
+
+        for (StorageParameter param : parameters) {
+            String paramName = param.getName();
+            Object value = null;
+            try {
+                if (param.isIdentifier() && identifier != null) {
+                    value = decodeValue(param, identifier);
+                } else {
+                    value = decodeValue(param, document.get(paramName));
+                }
+                if (value == null) {
+                    value = convertDefault(param);
+                }
+            } catch (Exception e) {
+                logError("Error searching argument for parameter: " + paramName, e);
+            }
+            values[param.getIndex()] = value;
+        }
+        return values;
+    }
+
+    protected Object decodeValue(StorageEntry entry, Object value) {
+        return decodeValue(entry.getType(), entry.getKeyType(), entry.getElementType(), value);
+    }
+
+    /**
+     * Converts a document value to the expected java type
+     * @param type expected
+     * @param keyType of map keys
+     * @param elementType of collection elements or map values
+     * @param value read from the database
+     * @return converted value
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    protected Object decodeValue(Class<?> type, Class<?> keyType, Class<?> elementType, Object value) {
+        if (value == null) {
+            return null;
+        }
+
+        if (isComplexObject(type) && value instanceof Map<?, ?> map) {
+            return instantiateDocument(type, (Map<String, Object>) map, null);
+        }
+
+        if (type.isArray() && value instanceof List<?> list) {
+            Class<?> componentType = type.getComponentType();
+            Object array = Array.newInstance(componentType, list.size());
+            for (int i = 0; i < list.size(); i++) {
+                Object element = decodeValue(componentType, Object.class, Object.class, list.get(i));
+                if (element != null || !componentType.isPrimitive()) {
+                    Array.set(array, i, element);
+                }
+            }
+            return array;
+        }
+
+        if (Collection.class.isAssignableFrom(type) && value instanceof List<?> list) {
+            List<Object> elements = new ArrayList<>(list.size());
+            for (Object element : list) {
+                elements.add(decodeValue(elementType, Object.class, Object.class, element));
+            }
+            Object collection = convertCollection((Class) type, elements);
+            if (collection != null) {
+                return collection;
+            }
+            return Set.class.isAssignableFrom(type) ? new HashSet<>(elements) : elements;
+        }
+
+        if (Map.class.isAssignableFrom(type) && value instanceof Map<?, ?> map) {
+            Map<Object, Object> result = createMap(type);
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                result.put(
+                    decodeValue(keyType, Object.class, Object.class, entry.getKey()),
+                    decodeValue(elementType, Object.class, Object.class, entry.getValue())
+                );
+            }
+            return result;
+        }
+
+        if (value instanceof Number number) {
+            if (type == int.class || type == Integer.class) return number.intValue();
+            if (type == long.class || type == Long.class) return number.longValue();
+            if (type == double.class || type == Double.class) return number.doubleValue();
+            if (type == float.class || type == Float.class) return number.floatValue();
+            if (type == short.class || type == Short.class) return number.shortValue();
+            if (type == byte.class || type == Byte.class) return number.byteValue();
+            if (type == boolean.class || type == Boolean.class) return number.intValue() != 0;
+        }
+
+        if (value instanceof String text && type != String.class && type != Object.class) {
+            return convertValue(type, text);
+        }
+        return value;
+    }
+
+    /**
+     * Creates an object with its {@link me.blueslime.bukkitmeteor.storage.interfaces.StorageConstructor}
+     * @param clazz of the object
+     * @param document with the values by storage name
+     * @param identifier of the object, null to read it from the document
+     * @return object or null if it can't be created
+     */
+    @SuppressWarnings("unchecked")
+    protected <T> T instantiateDocument(Class<?> clazz, Map<String, Object> document, String identifier) {
+        try {
+            StorageSchema schema = StorageSchema.of(clazz);
+            if (schema.hasConstructor()) {
+                Object[] args = resolveDocumentArgs(schema, document, identifier);
+                return (T) schema.newInstance(args);
+            }
+        } catch (Exception e) {
+            logError("Error with instance of: " + clazz.getSimpleName(), e);
+        }
+        return null;
+    }
+
+    /**
+     * Remembers the state of a loaded object if its class is tracked, only the objects returned by the loads
+     * by identifier are tracked, streams, queries and nested values are never tracked.
+     * @param object loaded
+     * @return the same object
+     */
+    protected <T> T trackLoaded(T object) {
+        if (object == null) {
+            return null;
+        }
+        StorageSchema schema = StorageSchema.of(object.getClass());
+        if (schema.isTracked()) {
+            String identifier = schema.extractIdentifier(object);
+            if (identifier != null) {
+                changes.remember(object.getClass(), identifier, createDocument(object));
+            }
+        }
+        return object;
+    }
+
     protected void logError(String message, Exception e) {
         fetch(MeteorLogger.class).error(e, message);
     }
 
     protected boolean isComplexObject(Class<?> clazz) {
-        if (!clazz.isPrimitive() && !clazz.getName().startsWith("java.lang")) {
-            boolean annotatedFields = Arrays.stream(clazz.getDeclaredFields()).anyMatch(
-                    field -> field.isAnnotationPresent(StorageKey.class)
-            );
-            boolean annotatedConstructor = Arrays.stream(clazz.getDeclaredConstructors()).anyMatch(
-                    constructor -> constructor.isAnnotationPresent(StorageConstructor.class)
-            );
-            return annotatedFields || annotatedConstructor;
-        }
-        return false;
+        return StorageSchema.isComplex(clazz);
     }
 }
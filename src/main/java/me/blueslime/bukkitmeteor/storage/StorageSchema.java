@@ -0,0 +1,253 @@
+package me.blueslime.bukkitmeteor.storage;
+
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageConstructor;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageKey;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageTracked;
+import me.blueslime.bukkitmeteor.storage.schema.StorageField;
+import me.blueslime.bukkitmeteor.storage.schema.StorageParameter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Immutable storage plan of a class.
+ * <p>
+ * Reflection (fields, annotations, generic types and the {@link StorageConstructor})
+ * is resolved only once per class and shared by every {@link StorageDatabase} implementation,
+ * so saving and loading objects only uses the cached accessors.
+ */
+public final class StorageSchema {
+
+    private static final MethodType FACTORY_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    private static final ClassValue<StorageSchema> SCHEMAS = new ClassValue<>() {
+        @Override
+        protected StorageSchema computeValue(Class<?> type) {
+            return new StorageSchema(type);
+        }
+    };
+
+    private static final ClassValue<Boolean> COMPLEX = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            if (type.isPrimitive() || type.getName().startsWith("java.lang")) {
+                return false;
+            }
+            boolean annotatedFields = Arrays.stream(type.getDeclaredFields()).anyMatch(
+                    field -> field.isAnnotationPresent(StorageKey.class)
+            );
+            boolean annotatedConstructor = Arrays.stream(type.getDeclaredConstructors()).anyMatch(
+                    constructor -> constructor.isAnnotationPresent(StorageConstructor.class)
+            );
+            return annotatedFields || annotatedConstructor;
+        }
+    };
+
+    private final Class<?> type;
+    private final List<StorageField> fields;
+    private final List<StorageField> storedFields;
+    private final Map<String, StorageField> storedNames;
+    private final StorageField identifier;
+    private final List<StorageParameter> parameters;
+    private final MethodHandle factory;
+    private final boolean tracked;
+
+    private StorageSchema(Class<?> type) {
+        this.type = type;
+        this.tracked = type.isAnnotationPresent(StorageTracked.class);
+
+        List<StorageField> fields = new ArrayList<>();
+        List<StorageField> storedFields = new ArrayList<>();
+        StorageField identifier = null;
+
+        for (Field field : type.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+                continue;
+            }
+            StorageField storageField = StorageField.of(field);
+            if (storageField == null) {
+                continue;
+            }
+            fields.add(storageField);
+            if (storageField.isIgnored()) {
+                continue;
+            }
+            storedFields.add(storageField);
+            if (identifier == null && storageField.isIdentifier()) {
+                identifier = storageField;
+            }
+        }
+
+        this.fields = Collections.unmodifiableList(fields);
+        this.storedFields = Collections.unmodifiableList(storedFields);
+        this.identifier = identifier;
+
+        Map<String, StorageField> storedNames = new HashMap<>();
+        for (StorageField field : storedFields) {
+            storedNames.putIfAbsent(field.getName(), field);
+        }
+        this.storedNames = Collections.unmodifiableMap(storedNames);
+
+        List<StorageParameter> parameters = new ArrayList<>();
+        MethodHandle factory = null;
+
+        for (Constructor<?> constructor : type.getConstructors()) {
+            if (!constructor.isAnnotationPresent(StorageConstructor.class)) {
+                continue;
+            }
+            Parameter[] params = constructor.getParameters();
+            for (int i = 0; i < params.length; i++) {
+                parameters.add(new StorageParameter(params[i], i));
+            }
+            try {
+                constructor.setAccessible(true);
+                factory = MethodHandles.lookup()
+                        .unreflectConstructor(constructor)
+                        .asFixedArity()
+                        .asSpreader(Object[].class, params.length)
+                        .asType(FACTORY_TYPE);
+            } catch (IllegalAccessException | RuntimeException e) {
+                parameters.clear();
+                continue;
+            }
+            break;
+        }
+
+        this.parameters = Collections.unmodifiableList(parameters);
+        this.factory = factory;
+    }
+
+    /**
+     * Gets the cached schema of a class, it is created if this is the first request.
+     * @param type of the stored object
+     * @return schema
+     */
+    public static StorageSchema of(Class<?> type) {
+        return SCHEMAS.get(type);
+    }
+
+    /**
+     * Checks if a class is stored as a nested object,
+     * it means a class with {@link StorageKey} fields or a {@link StorageConstructor}.
+     * @param type to check
+     * @return result
+     */
+    public static boolean isComplex(Class<?> type) {
+        return COMPLEX.get(type);
+    }
+
+    /**
+     * @param type of a field
+     * @return true if the type is a primitive number or its wrapper
+     */
+    public static boolean isNumber(Class<?> type) {
+        return type == int.class || type == Integer.class || type == long.class || type == Long.class ||
+            type == double.class || type == Double.class || type == float.class || type == Float.class ||
+            type == short.class || type == Short.class || type == byte.class || type == Byte.class;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * All instance fields declared in this class, including {@link me.blueslime.bukkitmeteor.storage.interfaces.StorageIgnore} fields.
+     * @return fields
+     */
+    public List<StorageField> getFields() {
+        return fields;
+    }
+
+    /**
+     * Instance fields that should be stored.
+     * @return fields
+     */
+    public List<StorageField> getStoredFields() {
+        return storedFields;
+    }
+
+    /**
+     * Gets a stored field by its storage name
+     * @param name {@link StorageKey#key()} or java name of the field
+     * @return field or null if this class don't store a field with this name
+     */
+    public StorageField getStoredField(String name) {
+        return storedNames.get(name);
+    }
+
+    /**
+     * @return the {@link me.blueslime.bukkitmeteor.storage.interfaces.StorageIdentifier} field or null if not present.
+     */
+    public StorageField getIdentifier() {
+        return identifier;
+    }
+
+    /**
+     * @return true if the identifier field is a {@link UUID}, stored as binary by the SQL and Mongo databases.
+     */
+    public boolean hasUuidIdentifier() {
+        return identifier != null && identifier.getType() == UUID.class;
+    }
+
+    /**
+     * Reads the identifier of an object
+     * @param instance to read
+     * @return identifier or null if the class don't have identifier or the value is null
+     */
+    public String extractIdentifier(Object instance) {
+        if (identifier == null) {
+            return null;
+        }
+        Object value = identifier.get(instance);
+        return value != null ? value.toString() : null;
+    }
+
+    /**
+     * Parameters of the {@link StorageConstructor}
+     * @return parameters, empty if this class don't have a constructor.
+     */
+    public List<StorageParameter> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * @return true if the class has {@link StorageTracked}
+     */
+    public boolean isTracked() {
+        return tracked;
+    }
+
+    public boolean hasConstructor() {
+        return factory != null;
+    }
+
+    /**
+     * Creates an instance using the {@link StorageConstructor}
+     * @param args resolved for each {@link #getParameters()}
+     * @return new instance
+     */
+    public Object newInstance(Object[] args) {
+        if (factory == null) {
+            throw new IllegalStateException("Can't find @StorageConstructor at class: " + type.getSimpleName());
+        }
+        try {
+            return (Object) factory.invokeExact(args);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable throwable) {
+            throw new IllegalStateException("Can't create instance of class: " + type.getSimpleName(), throwable);
+        }
+    }
+}
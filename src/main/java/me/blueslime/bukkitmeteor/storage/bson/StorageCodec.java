@@ -0,0 +1,419 @@
+package me.blueslime.bukkitmeteor.storage.bson;
+
+import me.blueslime.bukkitmeteor.implementation.Implements;
+import me.blueslime.bukkitmeteor.logs.MeteorLogger;
+import me.blueslime.bukkitmeteor.storage.StorageDatabase;
+import me.blueslime.bukkitmeteor.storage.StorageSchema;
+import me.blueslime.bukkitmeteor.storage.schema.StorageField;
+import me.blueslime.bukkitmeteor.storage.schema.StorageParameter;
+import org.bson.BsonBinary;
+import org.bson.BsonBinarySubType;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.BsonTypeClassMap;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecConfigurationException;
+import org.bson.codecs.configuration.CodecRegistry;
+
+import java.lang.reflect.Array;
+import java.util.*;
+
+/**
+ * Codec of a storage class built from its {@link StorageSchema}.
+ * <p>
+ * Objects are written straight to the {@link BsonWriter} and the constructor arguments are read straight
+ * from the {@link BsonReader}, without intermediate documents. Layout: "_id" with the identifier (binary subtype 4 for
+ * {@link UUID} identifiers) and every stored
+ * field by storage name, null values use the default value of the field, enums are written by name, maps are
+ * written as documents with string keys and arrays or collections as lists.
+ */
+public class StorageCodec<T> implements Codec<T> {
+
+    private static final BsonTypeClassMap TYPES = new BsonTypeClassMap();
+    private static final Object MISSING = new Object();
+
+    private final Map<String, StorageParameter> parameters = new HashMap<>();
+    private final StorageCodecProvider provider;
+    private final CodecRegistry registry;
+    private final StorageSchema schema;
+    private final Class<T> type;
+
+    StorageCodec(StorageCodecProvider provider, Class<T> type, CodecRegistry registry) {
+        this.schema = StorageSchema.of(type);
+        this.provider = provider;
+        this.registry = registry;
+        this.type = type;
+
+        for (StorageParameter parameter : schema.getParameters()) {
+            parameters.put(parameter.getName(), parameter);
+        }
+    }
+
+    @Override
+    public Class<T> getEncoderClass() {
+        return type;
+    }
+
+    @Override
+    public void encode(BsonWriter writer, T value, EncoderContext context) {
+        StorageSchema valueSchema = StorageSchema.of(value.getClass());
+        writer.writeStartDocument();
+
+        String identifier = valueSchema.extractIdentifier(value);
+        if (identifier != null && valueSchema.getStoredField("_id") == null) {
+            if (valueSchema.hasUuidIdentifier()) {
+                writer.writeBinaryData("_id", new BsonBinary(UUID.fromString(identifier)));
+            } else {
+                writer.writeString("_id", identifier);
+            }
+        }
+        writeFields(writer, value, valueSchema, context);
+
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public T decode(BsonReader reader, DecoderContext context) {
+        return decode(reader, null, context);
+    }
+
+    /**
+     * Reads an object
+     * @param reader positioned at the document
+     * @param identifier of the object, null to read it from the "_id" of the document
+     * @param context of the decoder
+     * @return object or null if it can't be created
+     */
+    public T decode(BsonReader reader, String identifier, DecoderContext context) {
+        return type.cast(readObject(reader, identifier, identifier == null, context));
+    }
+
+    /**
+     * Writes the update of the changed fields of an object, $setOnInsert writes the other fields if the document was removed
+     * @param writer of the update
+     * @param obj updated
+     * @param changes storage names of the changed fields
+     */
+    void writeUpdate(BsonWriter writer, Object obj, Set<String> changes) {
+        EncoderContext context = EncoderContext.builder().build();
+        List<StorageField> fields = StorageSchema.of(obj.getClass()).getStoredFields();
+
+        Object[] values = new Object[fields.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readField(fields.get(i), obj);
+        }
+
+        writer.writeStartDocument();
+        writeUpdateSection(writer, "$set", fields, values, changes, context);
+        writeUpdateSection(writer, "$unset", fields, values, changes, context);
+        writeUpdateSection(writer, "$setOnInsert", fields, values, changes, context);
+        writer.writeEndDocument();
+    }
+
+    private void writeUpdateSection(BsonWriter writer, String operator, List<StorageField> fields, Object[] values, Set<String> changes, EncoderContext context) {
+        boolean started = false;
+        for (int i = 0; i < values.length; i++) {
+            String name = fields.get(i).getName();
+            Object value = values[i];
+            if (value == MISSING) {
+                continue;
+            }
+
+            boolean include = switch (operator) {
+                case "$set" -> changes.contains(name) && value != null;
+                case "$unset" -> changes.contains(name) && value == null;
+                default -> !changes.contains(name) && !name.equals("_id");
+            };
+            if (!include) {
+                continue;
+            }
+
+            if (!started) {
+                writer.writeStartDocument(operator);
+                started = true;
+            }
+            writer.writeName(name);
+            if (operator.equals("$unset")) {
+                writer.writeString("");
+            } else {
+                writeValue(writer, value, context);
+            }
+        }
+        if (started) {
+            writer.writeEndDocument();
+        }
+    }
+
+    private void writeFields(BsonWriter writer, Object obj, StorageSchema objectSchema, EncoderContext context) {
+        for (StorageField field : objectSchema.getStoredFields()) {
+            Object value = readField(field, obj);
+            if (value != MISSING) {
+                writer.writeName(field.getName());
+                writeValue(writer, value, context);
+            }
+        }
+    }
+
+    private Object readField(StorageField field, Object obj) {
+        try {
+            Object value = field.get(obj);
+            return value != null ? value : provider.getDatabase().convertDefault(field);
+        } catch (RuntimeException e) {
+            logError("Failed to save field: " + field.getFieldName(), e);
+            return MISSING;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeValue(BsonWriter writer, Object value, EncoderContext context) {
+        if (value == null) {
+            writer.writeNull();
+        } else if (value instanceof String text) {
+            writer.writeString(text);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            writer.writeInt32(((Number) value).intValue());
+        } else if (value instanceof Long number) {
+            writer.writeInt64(number);
+        } else if (value instanceof Double || value instanceof Float) {
+            writer.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Boolean bool) {
+            writer.writeBoolean(bool);
+        } else if (value instanceof Enum<?> constant) {
+            writer.writeString(constant.name());
+        } else if (value instanceof UUID uuid) {
+            // Los UUID de los campos se guardan como texto, igual que en las bases de datos de archivos
+            writer.writeString(uuid.toString());
+        } else if (value instanceof Map<?, ?> map) {
+            writer.writeStartDocument();
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                Object key = entry.getKey();
+                writer.writeName(key instanceof Enum<?> constant ? constant.name() : String.valueOf(key));
+                writeValue(writer, entry.getValue(), context);
+            }
+            writer.writeEndDocument();
+        } else if (value instanceof Iterable<?> iterable) {
+            writer.writeStartArray();
+            for (Object element : iterable) {
+                writeValue(writer, element, context);
+            }
+            writer.writeEndArray();
+        } else if (value.getClass().isArray()) {
+            writer.writeStartArray();
+            int length = Array.getLength(value);
+            for (int i = 0; i < length; i++) {
+                writeValue(writer, Array.get(value, i), context);
+            }
+            writer.writeEndArray();
+        } else if (StorageSchema.isComplex(value.getClass())) {
+            writer.writeStartDocument();
+            writeFields(writer, value, StorageSchema.of(value.getClass()), context);
+            writer.writeEndDocument();
+        } else {
+            Codec<Object> codec;
+            try {
+                codec = (Codec<Object>) registry.get(value.getClass());
+            } catch (CodecConfigurationException e) {
+                // Sin codec se guarda como texto, igual que en las bases de datos de archivos
+                writer.writeString(value.toString());
+                return;
+            }
+            context.encodeWithChildContext(codec, writer, value);
+        }
+    }
+
+    private Object readObject(BsonReader reader, String identifier, boolean readIdentifier, DecoderContext context) {
+        Object[] args = new Object[schema.getParameters().size()];
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = reader.readName();
+            StorageParameter parameter = parameters.get(name);
+
+            if (readIdentifier && name.equals("_id")) {
+                if (reader.getCurrentBsonType() == BsonType.BINARY && reader.peekBinarySubType() == BsonBinarySubType.UUID_STANDARD.getValue()) {
+                    identifier = reader.readBinaryData().asUuid().toString();
+                } else {
+                    Object id = readGeneric(reader, context);
+                    identifier = id != null ? id.toString() : null;
+                }
+                if (parameter != null && identifier != null) {
+                    args[parameter.getIndex()] = readString(parameter.getType(), identifier);
+                }
+                continue;
+            }
+
+            if (parameter == null) {
+                reader.skipValue();
+                continue;
+            }
+            args[parameter.getIndex()] = readValue(
+                reader,
+                parameter.getType(),
+                parameter.getKeyType(),
+                parameter.getElementType(),
+                identifier,
+                context
+            );
+        }
+        reader.readEndDocument();
+
+        StorageDatabase database = provider.getDatabase();
+        for (StorageParameter parameter : schema.getParameters()) {
+            int index = parameter.getIndex();
+            if (parameter.isIdentifier() && identifier != null) {
+                args[index] = readString(parameter.getType(), identifier);
+            }
+            if (args[index] == null) {
+                args[index] = database.convertDefault(parameter);
+            }
+            if (args[index] == null && parameter.getType().isPrimitive()) {
+                args[index] = Array.get(Array.newInstance(parameter.getType(), 1), 0);
+            }
+        }
+
+        try {
+            return schema.newInstance(args);
+        } catch (RuntimeException e) {
+            logError("Failed to instantiate object: " + type.getSimpleName(), e);
+            return null;
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Object readValue(BsonReader reader, Class<?> valueType, Class<?> keyType, Class<?> elementType, String identifier, DecoderContext context) {
+        BsonType bsonType = reader.getCurrentBsonType();
+        switch (bsonType) {
+            case NULL -> {
+                reader.readNull();
+                return null;
+            }
+            case STRING -> {
+                return readString(valueType, reader.readString());
+            }
+            case INT32 -> {
+                return readNumber(valueType, reader.readInt32());
+            }
+            case INT64 -> {
+                return readNumber(valueType, reader.readInt64());
+            }
+            case DOUBLE -> {
+                return readNumber(valueType, reader.readDouble());
+            }
+            case BOOLEAN -> {
+                return reader.readBoolean();
+            }
+            case DOCUMENT -> {
+                if (StorageSchema.isComplex(valueType)) {
+                    // Los objetos anidados reciben el identificador del objeto principal
+                    return provider.codec(valueType, registry).readObject(reader, identifier, false, context);
+                }
+                if (Map.class.isAssignableFrom(valueType)) {
+                    Map<Object, Object> map = provider.getDatabase().createMap(valueType);
+                    reader.readStartDocument();
+                    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                        Object key = readString(keyType, reader.readName());
+                        map.put(key, readValue(reader, elementType, Object.class, Object.class, identifier, context));
+                    }
+                    reader.readEndDocument();
+                    return map;
+                }
+                return readGeneric(reader, context);
+            }
+            case ARRAY -> {
+                if (valueType.isArray()) {
+                    Class<?> componentType = valueType.getComponentType();
+                    List<Object> list = readList(reader, componentType, identifier, context);
+                    Object array = Array.newInstance(componentType, list.size());
+                    for (int i = 0; i < list.size(); i++) {
+                        Object element = list.get(i);
+                        if (element != null || !componentType.isPrimitive()) {
+                            Array.set(array, i, element);
+                        }
+                    }
+                    return array;
+                }
+                if (Collection.class.isAssignableFrom(valueType)) {
+                    List<Object> list = readList(reader, elementType, identifier, context);
+                    Object collection = provider.getDatabase().convertCollection((Class) valueType, list);
+                    if (collection != null) {
+                        return collection;
+                    }
+                    return Set.class.isAssignableFrom(valueType) ? new HashSet<>(list) : list;
+                }
+                return readGeneric(reader, context);
+            }
+            default -> {
+                if (valueType != Object.class && !valueType.isPrimitive()) {
+                    Codec<?> codec = null;
+                    try {
+                        codec = registry.get(valueType);
+                    } catch (CodecConfigurationException ignored) {
+                    }
+                    if (codec != null) {
+                        return codec.decode(reader, context);
+                    }
+                }
+                return readGeneric(reader, context);
+            }
+        }
+    }
+
+    private List<Object> readList(BsonReader reader, Class<?> elementType, String identifier, DecoderContext context) {
+        List<Object> list = new ArrayList<>();
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            list.add(readValue(reader, elementType, Object.class, Object.class, identifier, context));
+        }
+        reader.readEndArray();
+        return list;
+    }
+
+    private Object readGeneric(BsonReader reader, DecoderContext context) {
+        BsonType bsonType = reader.getCurrentBsonType();
+        if (bsonType == BsonType.NULL) {
+            reader.readNull();
+            return null;
+        }
+        return context.decodeWithChildContext(registry.get(TYPES.get(bsonType)), reader);
+    }
+
+    private Object readString(Class<?> valueType, String value) {
+        if (valueType == String.class || valueType == Object.class) {
+            return value;
+        }
+        try {
+            if (valueType == int.class || valueType == Integer.class) return Integer.valueOf(value);
+            if (valueType == long.class || valueType == Long.class) return Long.valueOf(value);
+            if (valueType == double.class || valueType == Double.class) return Double.valueOf(value);
+            if (valueType == float.class || valueType == Float.class) return Float.valueOf(value);
+            if (valueType == short.class || valueType == Short.class) return Short.valueOf(value);
+            if (valueType == byte.class || valueType == Byte.class) return Byte.valueOf(value);
+        } catch (NumberFormatException e) {
+            logError("Can't convert " + value + " to " + valueType.getSimpleName(), e);
+            return null;
+        }
+        if (valueType == boolean.class || valueType == Boolean.class) {
+            return Boolean.valueOf(value);
+        }
+        return provider.getDatabase().convertValue(valueType, value);
+    }
+
+    private static Object readNumber(Class<?> valueType, Number number) {
+        if (valueType == int.class || valueType == Integer.class) return number.intValue();
+        if (valueType == long.class || valueType == Long.class) return number.longValue();
+        if (valueType == double.class || valueType == Double.class) return number.doubleValue();
+        if (valueType == float.class || valueType == Float.class) return number.floatValue();
+        if (valueType == short.class || valueType == Short.class) return number.shortValue();
+        if (valueType == byte.class || valueType == Byte.class) return number.byteValue();
+        if (valueType == boolean.class || valueType == Boolean.class) return number.intValue() != 0;
+        if (valueType == String.class) return number.toString();
+        return number;
+    }
+
+    private static void logError(String message, Exception e) {
+        Implements.fetch(MeteorLogger.class).error(e, message);
+    }
+}
@@ -0,0 +1,68 @@
+package me.blueslime.bukkitmeteor.storage.bson;
+
+import me.blueslime.bukkitmeteor.storage.StorageDatabase;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageObject;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecProvider;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Provides a {@link StorageCodec} for every {@link StorageObject} class,
+ * the codecs use the default values and converters of a database.
+ */
+public class StorageCodecProvider implements CodecProvider {
+
+    private final Map<Class<?>, StorageCodec<?>> codecs = new ConcurrentHashMap<>();
+    private final StorageDatabase database;
+
+    public StorageCodecProvider(StorageDatabase database) {
+        this.database = database;
+    }
+
+    @Override
+    public <T> Codec<T> get(Class<T> clazz, CodecRegistry registry) {
+        if (!StorageObject.class.isAssignableFrom(clazz)) {
+            return null;
+        }
+        return codec(clazz, registry);
+    }
+
+    /**
+     * Gets the codec of a class, nested objects without {@link StorageObject} use it too.
+     * @param clazz of the objects
+     * @param registry for the values without a storage schema
+     * @return codec
+     */
+    @SuppressWarnings("unchecked")
+    public <T> StorageCodec<T> codec(Class<T> clazz, CodecRegistry registry) {
+        return (StorageCodec<T>) codecs.computeIfAbsent(clazz, k -> new StorageCodec<>(this, k, registry));
+    }
+
+    /**
+     * Creates the update of the changed fields of an object, the fields are encoded when the update is sent.
+     * @param obj updated
+     * @param changes storage names of the changed fields
+     * @return update with $set, $unset and $setOnInsert
+     */
+    public Bson createUpdate(Object obj, Set<String> changes) {
+        return new Bson() {
+            @Override
+            public <D> BsonDocument toBsonDocument(Class<D> documentClass, CodecRegistry registry) {
+                BsonDocument update = new BsonDocument();
+                codec(obj.getClass(), registry).writeUpdate(new BsonDocumentWriter(update), obj, changes);
+                return update;
+            }
+        };
+    }
+
+    public StorageDatabase getDatabase() {
+        return database;
+    }
+}
@@ -0,0 +1,116 @@
+package me.blueslime.bukkitmeteor.storage.cache;
+
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageObject;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+
+/**
+ * Settings of a {@link CachingStorageDatabase}
+ */
+public class CacheSettings {
+
+    private final Map<Class<?>, Long> classSizes = new ConcurrentHashMap<>();
+
+    private ToIntFunction<StorageObject> weigher = null;
+    private long maximumSize = 1_000L;
+    private long expireAfterWrite = 0L;
+    private long expireAfterAccess = 0L;
+    private long fieldCacheSize = 0L;
+
+    private CacheSettings() {
+
+    }
+
+    public static CacheSettings create() {
+        return new CacheSettings();
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Max amount of cached objects of every class,
+     * when a weigher is set this is the max total weight.
+     * @param maximumSize of each class cache
+     * @return settings
+     */
+    public CacheSettings setMaximumSize(long maximumSize) {
+        this.maximumSize = Math.max(0L, maximumSize);
+        return this;
+    }
+
+    /**
+     * Overrides the max size for a specific class
+     * @param clazz of the objects
+     * @param maximumSize of this class cache, 0 disables the cache for this class
+     * @return settings
+     */
+    public CacheSettings setMaximumSize(Class<? extends StorageObject> clazz, long maximumSize) {
+        classSizes.put(clazz, Math.max(0L, maximumSize));
+        return this;
+    }
+
+    public long getMaximumSize(Class<?> clazz) {
+        return classSizes.getOrDefault(clazz, maximumSize);
+    }
+
+    public ToIntFunction<StorageObject> getWeigher() {
+        return weigher;
+    }
+
+    /**
+     * Weight of each cached object, used to bound the cache by memory instead of by amount.
+     * @param weigher of the objects or null to count every object as 1
+     * @return settings
+     */
+    public CacheSettings setWeigher(ToIntFunction<StorageObject> weigher) {
+        this.weigher = weigher;
+        return this;
+    }
+
+    public long getExpireAfterWrite() {
+        return expireAfterWrite;
+    }
+
+    /**
+     * Objects are removed after this time since they were loaded.
+     * @param expireAfterWrite in milliseconds, 0 disables it
+     * @return settings
+     */
+    public CacheSettings setExpireAfterWrite(long expireAfterWrite) {
+        this.expireAfterWrite = Math.max(0L, expireAfterWrite);
+        return this;
+    }
+
+    public long getExpireAfterAccess() {
+        return expireAfterAccess;
+    }
+
+    /**
+     * Objects are removed after this time without being read.
+     * @param expireAfterAccess in milliseconds, 0 disables it
+     * @return settings
+     */
+    public CacheSettings setExpireAfterAccess(long expireAfterAccess) {
+        this.expireAfterAccess = Math.max(0L, expireAfterAccess);
+        return this;
+    }
+
+    public long getFieldCacheSize() {
+        return fieldCacheSize;
+    }
+
+    /**
+     * Max amount of objects of every class with cached fields, the fields are loaded with
+     * {@link CachingStorageDatabase#loadFieldsByIdSync(Class, String, String...)} and use the same expiration as the objects.
+     * @param fieldCacheSize of each class, 0 disables the field cache
+     * @return settings
+     */
+    public CacheSettings setFieldCacheSize(long fieldCacheSize) {
+        this.fieldCacheSize = Math.max(0L, fieldCacheSize);
+        return this;
+    }
+}
@@ -0,0 +1,72 @@
+package me.blueslime.bukkitmeteor.storage.cache;
+
+/**
+ * Snapshot of the counters of a {@link CachingStorageDatabase}.
+ */
+public class CacheStats {
+
+    private final long hits;
+    private final long misses;
+    private final long loads;
+    private final long evictions;
+    private final long size;
+
+    public CacheStats(long hits, long misses, long loads, long evictions, long size) {
+        this.hits = hits;
+        this.misses = misses;
+        this.loads = loads;
+        this.evictions = evictions;
+        this.size = size;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return calls made to the wrapped database, concurrent misses of the same id share one load
+     */
+    public long getLoads() {
+        return loads;
+    }
+
+    /**
+     * @return objects removed to keep the cache under its max size
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 1.0D : (double) hits / requests;
+    }
+
+    public CacheStats plus(CacheStats other) {
+        return new CacheStats(
+            hits + other.hits,
+            misses + other.misses,
+            loads + other.loads,
+            evictions + other.evictions,
+            size + other.size
+        );
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + hits +
+            ", misses=" + misses +
+            ", loads=" + loads +
+            ", evictions=" + evictions +
+            ", size=" + size +
+            ", hitRate=" + String.format("%.2f", getHitRate());
+    }
+}
@@ -0,0 +1,523 @@
+package me.blueslime.bukkitmeteor.storage.cache;
+
+import me.blueslime.bukkitmeteor.storage.StorageDatabase;
+import me.blueslime.bukkitmeteor.storage.StorageSchema;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageObject;
+import me.blueslime.bukkitmeteor.storage.query.StorageQuery;
+import me.blueslime.bukkitmeteor.storage.track.ChangeTracker;
+import me.blueslime.bukkitmeteor.storage.type.RegistrationType;
+import me.blueslime.bukkitmeteor.storage.write.WriteBehindQueue;
+import me.blueslime.bukkitmeteor.storage.write.WriteBehindSettings;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Read-through cache over any {@link StorageDatabase}.
+ * <p>
+ * Loads by identifier are cached per {@link StorageObject} class, concurrent loads of the same identifier
+ * share a single call to the wrapped database, and saves or deletes invalidate the cached object.
+ * Projection loads read the cached objects, and can cache single fields with {@link CacheSettings#setFieldCacheSize(long)}.
+ */
+@SuppressWarnings("unused")
+public class CachingStorageDatabase extends StorageDatabase {
+
+    private final Map<Class<?>, ObjectCache> caches = new ConcurrentHashMap<>();
+    private final Map<Class<?>, FieldCache> fieldCaches = new ConcurrentHashMap<>();
+    private final StorageDatabase delegate;
+    private final CacheSettings settings;
+
+    /**
+     * Create a cache over your database
+     * @param delegate database to cache
+     * @param settings of the cache
+     * @param register to the implements
+     */
+    public CachingStorageDatabase(StorageDatabase delegate, CacheSettings settings, RegistrationType register) {
+        this(delegate, settings, register, null);
+    }
+
+    /**
+     * Create a cache over your database
+     * @param delegate database to cache
+     * @param settings of the cache
+     * @param register to the implements
+     * @param identifier for the implements
+     */
+    public CachingStorageDatabase(StorageDatabase delegate, CacheSettings settings, RegistrationType register, String identifier) {
+        this.settings = settings == null ? CacheSettings.create() : settings;
+        this.delegate = delegate;
+
+        if (register == null) {
+            register = RegistrationType.DONT_REGISTER;
+        }
+
+        if (register.isDouble() || register.isOnlyThis()) {
+            registerImpl(CachingStorageDatabase.class, identifier, this, true);
+        }
+
+        if (register.isDouble()) {
+            registerImpl(StorageDatabase.class, identifier, this, true);
+        }
+    }
+
+    public StorageDatabase getDelegate() {
+        return delegate;
+    }
+
+    public CacheSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * @return counters of all classes
+     */
+    public CacheStats getStats() {
+        CacheStats stats = new CacheStats(0L, 0L, 0L, 0L, 0L);
+        for (ObjectCache cache : caches.values()) {
+            stats = stats.plus(cache.getStats());
+        }
+        return stats;
+    }
+
+    /**
+     * @param clazz of the objects
+     * @return counters of this class
+     */
+    public CacheStats getStats(Class<? extends StorageObject> clazz) {
+        return cacheOf(clazz).getStats();
+    }
+
+    /**
+     * @param clazz of the objects
+     * @return counters of the field cache of this class
+     */
+    public CacheStats getFieldStats(Class<? extends StorageObject> clazz) {
+        return fieldsOf(clazz).getStats();
+    }
+
+    /**
+     * Removes a cached object and its cached fields, use it when the object was modified outside this database.
+     * @param clazz of the object
+     * @param identifier of the object
+     */
+    public void invalidate(Class<? extends StorageObject> clazz, String identifier) {
+        if (identifier != null) {
+            cacheOf(clazz).invalidate(identifier);
+            fieldsOf(clazz).invalidate(identifier);
+        }
+    }
+
+    /**
+     * Checks if an object is cached, it doesn't count as an access of the object.
+     * @param clazz of the object
+     * @param identifier of the object
+     * @return true if the object is cached
+     */
+    public boolean isCached(Class<? extends StorageObject> clazz, String identifier) {
+        return identifier != null && cacheOf(clazz).peek(identifier) != null;
+    }
+
+    public void invalidateAll(Class<? extends StorageObject> clazz) {
+        cacheOf(clazz).invalidateAll();
+        fieldsOf(clazz).invalidateAll();
+    }
+
+    public void invalidateAll() {
+        for (ObjectCache cache : caches.values()) {
+            cache.invalidateAll();
+        }
+        for (FieldCache cache : fieldCaches.values()) {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> CompletableFuture<Optional<T>> loadByIdAsync(Class<T> clazz, String identifier) {
+        ObjectCache cache = cacheOf(clazz);
+        if (identifier == null || !cache.isEnabled()) {
+            return delegate.loadByIdAsync(clazz, identifier);
+        }
+
+        StorageObject cached = cache.get(identifier);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(Optional.of(clazz.cast(cached)));
+        }
+        return CompletableFuture.supplyAsync(() -> load(cache, clazz, identifier));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> Optional<T> loadByIdSync(Class<T> clazz, String identifier) {
+        ObjectCache cache = cacheOf(clazz);
+        if (identifier == null || !cache.isEnabled()) {
+            return delegate.loadByIdSync(clazz, identifier);
+        }
+
+        StorageObject cached = cache.get(identifier);
+        if (cached != null) {
+            return Optional.of(clazz.cast(cached));
+        }
+        return load(cache, clazz, identifier);
+    }
+
+    private <T extends StorageObject> Optional<T> load(ObjectCache cache, Class<T> clazz, String identifier) {
+        CompletableFuture<Optional<StorageObject>> future = new CompletableFuture<>();
+        CompletableFuture<Optional<StorageObject>> current = cache.startLoad(identifier, future);
+        if (current != null) {
+            return current.join().map(clazz::cast);
+        }
+
+        try {
+            Optional<T> result = delegate.loadByIdSync(clazz, identifier);
+            cache.completeLoad(identifier, future, result.orElse(null));
+            future.complete(result.map(StorageObject.class::cast));
+            return result;
+        } catch (RuntimeException e) {
+            cache.completeLoad(identifier, future, null);
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Cached objects are returned directly, the missing objects are loaded with a single bulk call.
+     */
+    @Override
+    public <T extends StorageObject> Map<String, T> loadByIdsSync(Class<T> clazz, Collection<String> identifiers) {
+        ObjectCache cache = cacheOf(clazz);
+        if (!cache.isEnabled()) {
+            return delegate.loadByIdsSync(clazz, identifiers);
+        }
+
+        Map<String, T> results = new HashMap<>();
+        Map<String, CompletableFuture<Optional<StorageObject>>> started = new HashMap<>();
+        Map<String, CompletableFuture<Optional<StorageObject>>> waiting = new HashMap<>();
+
+        for (String identifier : new LinkedHashSet<>(identifiers)) {
+            if (identifier == null) {
+                continue;
+            }
+            StorageObject cached = cache.get(identifier);
+            if (cached != null) {
+                results.put(identifier, clazz.cast(cached));
+                continue;
+            }
+            CompletableFuture<Optional<StorageObject>> future = new CompletableFuture<>();
+            CompletableFuture<Optional<StorageObject>> current = cache.startLoad(identifier, future);
+            if (current == null) {
+                started.put(identifier, future);
+            } else {
+                waiting.put(identifier, current);
+            }
+        }
+
+        if (!started.isEmpty()) {
+            Map<String, T> loaded;
+            try {
+                loaded = delegate.loadByIdsSync(clazz, started.keySet());
+            } catch (RuntimeException e) {
+                started.forEach((identifier, future) -> {
+                    cache.completeLoad(identifier, future, null);
+                    future.completeExceptionally(e);
+                });
+                throw e;
+            }
+            started.forEach((identifier, future) -> {
+                T value = loaded.get(identifier);
+                cache.completeLoad(identifier, future, value);
+                future.complete(Optional.ofNullable(value));
+            });
+            results.putAll(loaded);
+        }
+
+        waiting.forEach(
+            (identifier, future) -> future.join().ifPresent(value -> results.put(identifier, clazz.cast(value)))
+        );
+        return results;
+    }
+
+    /**
+     * Cached objects are read without a call to the wrapped database,
+     * other projections use the field cache when it is enabled.
+     */
+    @Override
+    public <T extends StorageObject> Optional<Map<String, Object>> loadFieldsByIdSync(Class<T> clazz, String identifier, String... keys) {
+        if (identifier == null) {
+            return delegate.loadFieldsByIdSync(clazz, identifier, keys);
+        }
+
+        ObjectCache cache = cacheOf(clazz);
+        if (cache.isEnabled()) {
+            StorageObject cached = cache.peek(identifier);
+            if (cached != null) {
+                return Optional.of(delegate.extractFields(cached, keys));
+            }
+        }
+
+        FieldCache fields = fieldsOf(clazz);
+        if (!fields.isEnabled() || keys == null || keys.length == 0) {
+            return delegate.loadFieldsByIdSync(clazz, identifier, keys);
+        }
+
+        Map<String, Object> values = fields.get(identifier, keys);
+        if (values != null) {
+            return Optional.of(values);
+        }
+
+        Object token = fields.startLoad(identifier);
+        Optional<Map<String, Object>> result;
+        try {
+            result = delegate.loadFieldsByIdSync(clazz, identifier, keys);
+        } catch (RuntimeException e) {
+            fields.completeLoad(identifier, token, null);
+            throw e;
+        }
+        fields.completeLoad(identifier, token, result.orElse(null));
+        return result;
+    }
+
+    @Override
+    public Map<String, Object> extractFields(StorageObject obj, String... keys) {
+        return delegate.extractFields(obj, keys);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> CompletableFuture<Void> deleteByIdAsync(Class<T> clazz, String identifier) {
+        invalidate(clazz, identifier);
+        return delegate.deleteByIdAsync(clazz, identifier).whenComplete((result, error) -> invalidate(clazz, identifier));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> void deleteByIdSync(Class<T> clazz, String identifier) {
+        invalidate(clazz, identifier);
+        try {
+            delegate.deleteByIdSync(clazz, identifier);
+        } finally {
+            invalidate(clazz, identifier);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> void deleteByIdsSync(Class<T> clazz, Collection<String> identifiers) {
+        identifiers.forEach(identifier -> invalidate(clazz, identifier));
+        try {
+            delegate.deleteByIdsSync(clazz, identifiers);
+        } finally {
+            identifiers.forEach(identifier -> invalidate(clazz, identifier));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> CompletableFuture<Void> incrementAsync(Class<T> clazz, Map<String, Map<String, Long>> deltas) {
+        deltas.keySet().forEach(identifier -> invalidate(clazz, identifier));
+        return delegate.incrementAsync(clazz, deltas).whenComplete((result, error) -> deltas.keySet().forEach(identifier -> invalidate(clazz, identifier)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> void incrementSync(Class<T> clazz, Map<String, Map<String, Long>> deltas) {
+        deltas.keySet().forEach(identifier -> invalidate(clazz, identifier));
+        try {
+            delegate.incrementSync(clazz, deltas);
+        } finally {
+            deltas.keySet().forEach(identifier -> invalidate(clazz, identifier));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> saveOrUpdateAsync(StorageObject obj) {
+        invalidate(obj);
+        return delegate.saveOrUpdateAsync(obj).whenComplete((result, error) -> invalidate(obj));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void saveOrUpdateSync(StorageObject obj) {
+        invalidate(obj);
+        try {
+            delegate.saveOrUpdateSync(obj);
+        } finally {
+            invalidate(obj);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> saveAllAsync(Collection<? extends StorageObject> objects) {
+        objects.forEach(this::invalidate);
+        return delegate.saveAllAsync(objects).whenComplete((result, error) -> objects.forEach(this::invalidate));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void saveAllSync(Collection<? extends StorageObject> objects) {
+        objects.forEach(this::invalidate);
+        try {
+            delegate.saveAllSync(objects);
+        } finally {
+            objects.forEach(this::invalidate);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> CompletableFuture<Set<T>> loadAllAsync(Class<T> clazz) {
+        return delegate.loadAllAsync(clazz);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> Set<T> loadAllSync(Class<T> clazz) {
+        return delegate.loadAllSync(clazz);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> Stream<T> streamAll(Class<T> clazz, boolean parallel) {
+        return delegate.streamAll(clazz, parallel);
+    }
+
+    /**
+     * Queries are not cached, they are executed by the wrapped database.
+     */
+    @Override
+    public <T extends StorageObject> Stream<T> streamQuery(StorageQuery<T> query) {
+        return delegate.streamQuery(query);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> long countQuery(StorageQuery<T> query) {
+        return delegate.countQuery(query);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void connect() {
+        delegate.connect();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void closeConnection() {
+        invalidateAll();
+        delegate.closeConnection();
+    }
+
+    @Override
+    public void enableWriteBehind(WriteBehindSettings settings) {
+        delegate.enableWriteBehind(settings);
+    }
+
+    @Override
+    public boolean isWriteBehindEnabled() {
+        return delegate.isWriteBehindEnabled();
+    }
+
+    @Override
+    public WriteBehindQueue getWriteBehind() {
+        return delegate.getWriteBehind();
+    }
+
+    @Override
+    public void flushWriteBehind() {
+        delegate.flushWriteBehind();
+    }
+
+    @Override
+    public void shutdownWriteBehind() {
+        delegate.shutdownWriteBehind();
+    }
+
+    @Override
+    public ChangeTracker getChangeTracker() {
+        return delegate.getChangeTracker();
+    }
+
+    @Override
+    public String getStorageIdentity() {
+        return delegate.getStorageIdentity();
+    }
+
+    @Override
+    public boolean hasChanges(StorageObject obj) {
+        return delegate.hasChanges(obj);
+    }
+
+    @Override
+    public void registerDefaultValueConverter(Class<?> key, Function<String, ?> converter) {
+        delegate.registerDefaultValueConverter(key, converter);
+    }
+
+    @Override
+    public void registerCollectionConverter(Class<? extends Collection<?>> key, Function<Collection<?>, ?> converter) {
+        delegate.registerCollectionConverter(key, converter);
+    }
+
+    @Override
+    public void unregisterDefaultValueConverter(Class<?> clazz) {
+        delegate.unregisterDefaultValueConverter(clazz);
+    }
+
+    @Override
+    public void unregisterCollectionConverter(Class<? extends Collection<?>> clazz) {
+        delegate.unregisterCollectionConverter(clazz);
+    }
+
+    private void invalidate(StorageObject obj) {
+        invalidate(obj.getClass(), StorageSchema.of(obj.getClass()).extractIdentifier(obj));
+    }
+
+    private ObjectCache cacheOf(Class<?> clazz) {
+        // Los objetos expulsados ya no se guardan desde la caché, su estado persistido se olvida
+        return caches.computeIfAbsent(clazz, key -> new ObjectCache(settings, key, identifier -> delegate.getChangeTracker().forget(key, identifier)));
+    }
+
+    private FieldCache fieldsOf(Class<?> clazz) {
+        return fieldCaches.computeIfAbsent(clazz, key -> new FieldCache(settings));
+    }
+}
@@ -0,0 +1,139 @@
+package me.blueslime.bukkitmeteor.storage.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Field values of a single {@link me.blueslime.bukkitmeteor.storage.interfaces.StorageObject} class,
+ * filled by the projection loads.
+ * <p>
+ * Entries are kept in LRU order by identifier, and the fields of a projection are merged with the
+ * fields already cached for the same identifier, so different projections of an object share one entry.
+ */
+class FieldCache {
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75F, true);
+    private final Map<String, Object> loading = new HashMap<>();
+
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+
+    private final long expireAfterAccess;
+    private final long expireAfterWrite;
+    private final long maximumSize;
+
+    FieldCache(CacheSettings settings) {
+        this.maximumSize = settings.getFieldCacheSize();
+        this.expireAfterAccess = settings.getExpireAfterAccess();
+        this.expireAfterWrite = settings.getExpireAfterWrite();
+    }
+
+    boolean isEnabled() {
+        return maximumSize > 0;
+    }
+
+    /**
+     * @param identifier of the object
+     * @param keys storage names of the fields
+     * @return values by storage name or null if a field is not cached
+     */
+    synchronized Map<String, Object> get(String identifier, String[] keys) {
+        Entry entry = entries.get(identifier);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        if (isExpired(entry, now)) {
+            entries.remove(identifier);
+            misses.increment();
+            return null;
+        }
+
+        Map<String, Object> values = new LinkedHashMap<>(Math.max(16, keys.length * 2));
+        for (String key : keys) {
+            if (!entry.values.containsKey(key)) {
+                misses.increment();
+                return null;
+            }
+            values.put(key, entry.values.get(key));
+        }
+
+        entry.accessedAt = now;
+        hits.increment();
+        return values;
+    }
+
+    /**
+     * Registers a projection load of an identifier
+     * @param identifier to load
+     * @return token of this load
+     */
+    synchronized Object startLoad(String identifier) {
+        Object token = new Object();
+        loading.put(identifier, token);
+        return token;
+    }
+
+    /**
+     * Caches the loaded fields, if this identifier was invalidated or loaded again while loading the fields are not cached.
+     */
+    synchronized void completeLoad(String identifier, Object token, Map<String, Object> values) {
+        if (!loading.remove(identifier, token) || values == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(identifier);
+        if (entry == null || isExpired(entry, now)) {
+            entry = new Entry(now);
+            entries.put(identifier, entry);
+        }
+        entry.values.putAll(values);
+        loads.increment();
+
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maximumSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    synchronized void invalidate(String identifier) {
+        loading.remove(identifier);
+        entries.remove(identifier);
+    }
+
+    synchronized void invalidateAll() {
+        loading.clear();
+        entries.clear();
+    }
+
+    synchronized CacheStats getStats() {
+        return new CacheStats(hits.sum(), misses.sum(), loads.sum(), evictions.sum(), entries.size());
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return (expireAfterWrite > 0 && now - entry.writtenAt > expireAfterWrite) ||
+            (expireAfterAccess > 0 && now - entry.accessedAt > expireAfterAccess);
+    }
+
+    private static class Entry {
+        private final Map<String, Object> values = new HashMap<>();
+        private final long writtenAt;
+
+        private long accessedAt;
+
+        private Entry(long now) {
+            this.writtenAt = now;
+            this.accessedAt = now;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package me.blueslime.bukkitmeteor.storage.cache;
+
+/**
+ * Count-min sketch with 4 bit counters that estimates how often a key was requested.
+ * Counters are halved periodically, so old popularity fades out.
+ * <p>
+ * This class is not thread-safe, the owner cache guards it.
+ */
+class FrequencySketch {
+
+    private static final int MAX_WIDTH = 1 << 22;
+    private static final int MAX_COUNT = 15;
+
+    private final byte[] table;
+    private final int sampleSize;
+    private final int mask;
+
+    private int additions = 0;
+
+    FrequencySketch(long expectedSize) {
+        int width = Integer.highestOneBit((int) Math.max(16L, Math.min(MAX_WIDTH, expectedSize)) - 1) << 1;
+        this.table = new byte[width];
+        this.mask = width - 1;
+        this.sampleSize = width * 10;
+    }
+
+    /**
+     * @param hash of the key
+     * @return estimated frequency of the key, from 0 to 15
+     */
+    int frequency(int hash) {
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < 4; i++) {
+            frequency = Math.min(frequency, table[indexOf(hash, i)]);
+        }
+        return frequency;
+    }
+
+    void increment(int hash) {
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            if (table[index] < MAX_COUNT) {
+                table[index]++;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (byte) (table[i] >>> 1);
+        }
+        additions /= 2;
+    }
+
+    private int indexOf(int hash, int depth) {
+        int h = hash * (0x9E3779B9 + (depth << 1));
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return h & mask;
+    }
+}
@@ -0,0 +1,184 @@
+package me.blueslime.bukkitmeteor.storage.cache;
+
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageObject;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Cache of a single {@link StorageObject} class.
+ * <p>
+ * Entries are kept in LRU order, and a new entry only replaces the LRU entry
+ * when it was requested at least as often (TinyLFU admission), so one-time scans don't flush popular objects.
+ */
+class ObjectCache {
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75F, true);
+    private final Map<String, CompletableFuture<Optional<StorageObject>>> loading = new ConcurrentHashMap<>();
+
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+
+    private final ToIntFunction<StorageObject> weigher;
+    private final Consumer<String> evicted;
+    private final FrequencySketch sketch;
+    private final long expireAfterAccess;
+    private final long expireAfterWrite;
+    private final long maximumSize;
+
+    private long weight = 0L;
+
+    /**
+     * @param evicted receives the identifiers removed by the max size or the expiration and the rejected objects,
+     *                not the invalidations
+     */
+    ObjectCache(CacheSettings settings, Class<?> clazz, Consumer<String> evicted) {
+        this.maximumSize = settings.getMaximumSize(clazz);
+        this.evicted = evicted;
+        this.expireAfterAccess = settings.getExpireAfterAccess();
+        this.expireAfterWrite = settings.getExpireAfterWrite();
+        this.weigher = settings.getWeigher();
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+
+    boolean isEnabled() {
+        return maximumSize > 0;
+    }
+
+    synchronized StorageObject get(String identifier) {
+        sketch.increment(identifier.hashCode());
+
+        Entry entry = entries.get(identifier);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        if (isExpired(entry, now)) {
+            entries.remove(identifier);
+            weight -= entry.weight;
+            misses.increment();
+            evicted.accept(identifier);
+            return null;
+        }
+
+        entry.accessedAt = now;
+        hits.increment();
+        return entry.value;
+    }
+
+    /**
+     * Gets a cached object without changing the counters or the admission frequency.
+     * @param identifier of the object
+     * @return object or null if it is not cached
+     */
+    synchronized StorageObject peek(String identifier) {
+        Entry entry = entries.get(identifier);
+        if (entry == null || isExpired(entry, System.currentTimeMillis())) {
+            return null;
+        }
+        return entry.value;
+    }
+
+    synchronized void put(String identifier, StorageObject value) {
+        int objectWeight = weigher == null ? 1 : Math.max(0, weigher.applyAsInt(value));
+        if (objectWeight > maximumSize) {
+            evicted.accept(identifier);
+            return;
+        }
+
+        Entry previous = entries.remove(identifier);
+        if (previous != null) {
+            weight -= previous.weight;
+        } else if (weight + objectWeight > maximumSize && !entries.isEmpty()) {
+            String victim = entries.keySet().iterator().next();
+            if (sketch.frequency(identifier.hashCode()) < sketch.frequency(victim.hashCode())) {
+                evicted.accept(identifier);
+                return;
+            }
+        }
+
+        entries.put(identifier, new Entry(value, objectWeight, System.currentTimeMillis()));
+        weight += objectWeight;
+
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (weight > maximumSize && iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            iterator.remove();
+            weight -= eldest.getValue().weight;
+            evictions.increment();
+            evicted.accept(eldest.getKey());
+        }
+    }
+
+    /**
+     * Gets the load in progress of this identifier or registers a new one.
+     * @param identifier to load
+     * @param future of the new load
+     * @return load in progress or null if the new load was registered and must be executed
+     */
+    CompletableFuture<Optional<StorageObject>> startLoad(String identifier, CompletableFuture<Optional<StorageObject>> future) {
+        CompletableFuture<Optional<StorageObject>> current = loading.putIfAbsent(identifier, future);
+        if (current == null) {
+            loads.increment();
+        }
+        return current;
+    }
+
+    /**
+     * Caches a loaded object, if this identifier was invalidated while loading the object is not cached.
+     */
+    synchronized void completeLoad(String identifier, CompletableFuture<Optional<StorageObject>> future, StorageObject value) {
+        if (loading.remove(identifier, future) && value != null) {
+            put(identifier, value);
+        }
+    }
+
+    synchronized void invalidate(String identifier) {
+        loading.remove(identifier);
+        Entry entry = entries.remove(identifier);
+        if (entry != null) {
+            weight -= entry.weight;
+        }
+    }
+
+    synchronized void invalidateAll() {
+        loading.clear();
+        entries.clear();
+        weight = 0L;
+    }
+
+    synchronized CacheStats getStats() {
+        return new CacheStats(hits.sum(), misses.sum(), loads.sum(), evictions.sum(), entries.size());
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return (expireAfterWrite > 0 && now - entry.writtenAt > expireAfterWrite) ||
+            (expireAfterAccess > 0 && now - entry.accessedAt > expireAfterAccess);
+    }
+
+    private static class Entry {
+        private final StorageObject value;
+        private final long writtenAt;
+        private final int weight;
+
+        private long accessedAt;
+
+        private Entry(StorageObject value, int weight, long now) {
+            this.value = value;
+            this.weight = weight;
+            this.writtenAt = now;
+            this.accessedAt = now;
+        }
+    }
+}
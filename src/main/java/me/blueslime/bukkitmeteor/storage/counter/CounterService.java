@@ -0,0 +1,373 @@
+package me.blueslime.bukkitmeteor.storage.counter;
+
+import me.blueslime.bukkitmeteor.implementation.module.Service;
+import me.blueslime.bukkitmeteor.logs.MeteorLogger;
+import me.blueslime.bukkitmeteor.storage.StorageDatabase;
+import me.blueslime.bukkitmeteor.storage.StorageSchema;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageObject;
+import me.blueslime.bukkitmeteor.storage.schema.StorageField;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Numeric fields updated in memory and written as atomic increments.
+ * <p>
+ * Every increment only adds to the {@link LongAdder} of its class, identifier and field, so hot objects
+ * are not locked and the objects are never read to be updated. The pending deltas are written every flush
+ * interval with {@link StorageDatabase#incrementAsync(Class, Map)}: $inc bulk writes in mongo,
+ * UPDATE col = col + ? batches in SQL and a load, merge and save in the file databases.
+ * <p>
+ * A full save of an object writes its value in memory over the increments, so the counter fields should not be
+ * written by other saves, for example use a {@link me.blueslime.bukkitmeteor.storage.interfaces.StorageTracked}
+ * class that never changes them in memory. Increments of objects that are not stored are discarded by the database.
+ */
+public class CounterService implements Service {
+
+    private final Map<CounterKey, Counter> counters = new ConcurrentHashMap<>();
+    private final AtomicBoolean warned = new AtomicBoolean(false);
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final ScheduledExecutorService executor;
+    private final CounterSettings settings;
+    private final StorageDatabase database;
+    private final Object stateLock = new Object();
+
+    // Solo se usa en el hilo de escritura
+    private CompletableFuture<Void> writing = CompletableFuture.completedFuture(null);
+
+    private volatile boolean closed = false;
+    private volatile long lastFlushDuration = 0L;
+    private volatile long lastFlushTime = 0L;
+
+    /**
+     * Inicializa los contadores con los valores por defecto.
+     * @param database donde se escriben los incrementos
+     */
+    public CounterService(StorageDatabase database) {
+        this(database, null);
+    }
+
+    /**
+     * Inicializa los contadores, la escritura periódica empieza inmediatamente.
+     * @param database donde se escriben los incrementos
+     * @param settings de los contadores, null para usar los valores por defecto
+     */
+    public CounterService(StorageDatabase database, CounterSettings settings) {
+        this.settings = settings == null ? CounterSettings.create() : settings;
+        this.database = database;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "BukkitMeteor-Counters");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = this.settings.getFlushInterval();
+        executor.scheduleWithFixedDelay(this::flushPending, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Adds a delta to a numeric field of a stored object
+     * @param clazz of the object
+     * @param identifier of the object
+     * @param key storage name of the field
+     * @param delta to add, it can be negative
+     * @throws IllegalArgumentException if the key is not a numeric stored field of the class
+     */
+    public void increment(Class<? extends StorageObject> clazz, String identifier, String key, long delta) {
+        checkField(clazz, key);
+        if (closed) {
+            if (warned.compareAndSet(false, true)) {
+                fetch(MeteorLogger.class).warn("Can't increment " + clazz.getSimpleName() + " counters, the service is shutdown");
+            }
+            return;
+        }
+        if (delta != 0L) {
+            add(new CounterKey(clazz, identifier, key), delta);
+        }
+    }
+
+    /**
+     * Adds a delta to a numeric field of a stored object
+     * @param obj stored object with identifier
+     * @param key storage name of the field
+     * @param delta to add, it can be negative
+     * @throws IllegalArgumentException if the object don't have identifier or the key is not a numeric stored field
+     */
+    public void increment(StorageObject obj, String key, long delta) {
+        String identifier = StorageSchema.of(obj.getClass()).extractIdentifier(obj);
+        if (identifier == null) {
+            throw new IllegalArgumentException("Can't increment a counter of " + obj.getClass().getSimpleName() + " without identifier");
+        }
+        increment(obj.getClass(), identifier, key, delta);
+    }
+
+    /**
+     * @return delta not written yet, including the deltas being written now
+     */
+    public long getPending(Class<? extends StorageObject> clazz, String identifier, String key) {
+        Counter counter = counters.get(new CounterKey(clazz, identifier, key));
+        return counter == null ? 0L : counter.pending.sum() + counter.flushing.get();
+    }
+
+    /**
+     * Reads the stored value of a counter and adds the pending delta, only this field is loaded
+     * @param clazz of the object
+     * @param identifier of the object
+     * @param key storage name of the field
+     * @return future with the current value
+     */
+    public CompletableFuture<Long> getAsync(Class<? extends StorageObject> clazz, String identifier, String key) {
+        checkField(clazz, key);
+        return database.loadFieldsByIdAsync(clazz, identifier, key)
+            .thenApply(values -> valueOf(values, key) + getPending(clazz, identifier, key));
+    }
+
+    /**
+     * Reads the stored value of a counter and adds the pending delta, only this field is loaded
+     * @param clazz of the object
+     * @param identifier of the object
+     * @param key storage name of the field
+     * @return current value
+     */
+    public long getSync(Class<? extends StorageObject> clazz, String identifier, String key) {
+        checkField(clazz, key);
+        return valueOf(database.loadFieldsByIdSync(clazz, identifier, key), key) + getPending(clazz, identifier, key);
+    }
+
+    /**
+     * Writes the pending deltas without waiting for the interval
+     * @return future completed when the deltas are written
+     */
+    public CompletableFuture<Void> flush() {
+        synchronized (stateLock) {
+            if (closed) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return CompletableFuture.supplyAsync(this::flushPending, executor).thenCompose(future -> future);
+        }
+    }
+
+    /**
+     * Stops the periodic writes and writes the pending deltas, waiting up to the drain timeout.
+     */
+    @Override
+    public void shutdown() {
+        CompletableFuture<Void> drain;
+        synchronized (stateLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            drain = CompletableFuture.supplyAsync(this::flushPending, executor).thenCompose(future -> future);
+        }
+        executor.shutdown();
+
+        try {
+            drain.get(settings.getDrainTimeout(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ignored) {
+            // Ya se registró en la escritura
+        } catch (TimeoutException e) {
+            fetch(MeteorLogger.class).warn("Counter drain timed out, " + counters.size() + " counters may not be written");
+        }
+    }
+
+    public CounterSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * @return counters in memory
+     */
+    public int getCounters() {
+        return counters.size();
+    }
+
+    /**
+     * @return field deltas written
+     */
+    public long getWritten() {
+        return written.sum();
+    }
+
+    /**
+     * @return field deltas that failed and were queued again
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * @return time between the start of the last flush and the end of its last write, in milliseconds
+     */
+    public long getLastFlushDuration() {
+        return lastFlushDuration;
+    }
+
+    /**
+     * @return end time of the last flush with deltas, or 0 if nothing was written yet
+     */
+    public long getLastFlushTime() {
+        return lastFlushTime;
+    }
+
+    private void checkField(Class<? extends StorageObject> clazz, String key) {
+        StorageField field = StorageSchema.of(clazz).getStoredField(key);
+        if (field == null || !StorageSchema.isNumber(field.getType())) {
+            throw new IllegalArgumentException("Class " + clazz.getSimpleName() + " don't have a numeric stored field named " + key);
+        }
+    }
+
+    private static long valueOf(Optional<Map<String, Object>> values, String key) {
+        Object value = values.map(map -> map.get(key)).orElse(null);
+        return value instanceof Number number ? number.longValue() : 0L;
+    }
+
+    /**
+     * Moves the pending deltas to the database, runs in the writer thread.
+     */
+    private CompletableFuture<Void> flushPending() {
+        // Las bases de datos sin incrementos atómicos cargan y guardan el objeto, dos escrituras a la vez perderían deltas
+        writing.join();
+
+        long start = System.nanoTime();
+        Map<Class<? extends StorageObject>, Map<String, List<Drained>>> groups = new LinkedHashMap<>();
+
+        for (Counter counter : counters.values()) {
+            if (drain(counter, groups)) {
+                counter.idleFlushes = 0;
+            } else if (++counter.idleFlushes >= settings.getIdleFlushes()) {
+                retire(counter);
+            }
+        }
+
+        if (groups.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (Map.Entry<Class<? extends StorageObject>, Map<String, List<Drained>>> group : groups.entrySet()) {
+            List<Map.Entry<String, List<Drained>>> entries = new ArrayList<>(group.getValue().entrySet());
+            for (int from = 0; from < entries.size(); from += settings.getMaxBatchSize()) {
+                futures.add(write(group.getKey(), entries.subList(from, Math.min(entries.size(), from + settings.getMaxBatchSize()))));
+            }
+        }
+
+        writing = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).whenComplete((ignored, e) -> {
+            lastFlushDuration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            lastFlushTime = System.currentTimeMillis();
+        });
+        return writing;
+    }
+
+    /**
+     * Adds a delta inside the map, so a counter is never retired while a delta is added to it.
+     */
+    private void add(CounterKey key, long delta) {
+        counters.compute(key, (ignored, counter) -> {
+            if (counter == null) {
+                counter = new Counter(key);
+            }
+            counter.pending.add(delta);
+            return counter;
+        });
+    }
+
+    /**
+     * Removes an idle counter, only if it don't have a pending delta or a delta being written.
+     */
+    private void retire(Counter counter) {
+        // Solo el hilo de escritura mueve deltas a flushing, así que un contador quitado no vuelve a tener deltas
+        counters.computeIfPresent(counter.key, (ignored, current) ->
+            current == counter && counter.pending.sum() == 0L && counter.flushing.get() == 0L ? null : current
+        );
+    }
+
+    /**
+     * Moves the pending delta of a counter to its flushing delta
+     * @return false if the counter don't have a pending delta
+     */
+    private static boolean drain(Counter counter, Map<Class<? extends StorageObject>, Map<String, List<Drained>>> groups) {
+        // Se resta lo leído, así los incrementos que lleguen durante la lectura quedan para la siguiente escritura
+        long value = counter.pending.sum();
+        if (value == 0L) {
+            return false;
+        }
+        counter.flushing.addAndGet(value);
+        counter.pending.add(-value);
+        groups.computeIfAbsent(counter.key.clazz(), k -> new LinkedHashMap<>())
+            .computeIfAbsent(counter.key.identifier(), k -> new ArrayList<>())
+            .add(new Drained(counter, value));
+        return true;
+    }
+
+    private CompletableFuture<Void> write(Class<? extends StorageObject> clazz, List<Map.Entry<String, List<Drained>>> entries) {
+        Map<String, Map<String, Long>> deltas = new LinkedHashMap<>(Math.max(16, entries.size() * 2));
+        int fields = 0;
+        for (Map.Entry<String, List<Drained>> entry : entries) {
+            Map<String, Long> values = new LinkedHashMap<>();
+            for (Drained drained : entry.getValue()) {
+                values.merge(drained.counter.key.key(), drained.value, Long::sum);
+                fields++;
+            }
+            deltas.put(entry.getKey(), values);
+        }
+
+        CompletableFuture<Void> future;
+        try {
+            future = database.incrementAsync(clazz, deltas);
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+
+        int amount = fields;
+        return future.handle((ignored, e) -> {
+            for (Map.Entry<String, List<Drained>> entry : entries) {
+                for (Drained drained : entry.getValue()) {
+                    if (e != null) {
+                        // Se devuelve a un contador activo para el siguiente intento
+                        add(drained.counter.key, drained.value);
+                    }
+                    drained.counter.flushing.addAndGet(-drained.value);
+                }
+            }
+            if (e != null) {
+                failed.add(amount);
+                fetch(MeteorLogger.class).error(e, "Can't write " + amount + " counters of " + clazz.getSimpleName() + ", they will be written in the next flush");
+            } else {
+                written.add(amount);
+            }
+            return null;
+        });
+    }
+
+    private record CounterKey(Class<? extends StorageObject> clazz, String identifier, String key) {
+
+    }
+
+    private record Drained(Counter counter, long value) {
+
+    }
+
+    private static class Counter {
+        private final LongAdder pending = new LongAdder();
+        private final AtomicLong flushing = new AtomicLong();
+        private final CounterKey key;
+
+        private int idleFlushes = 0;
+
+        private Counter(CounterKey key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package me.blueslime.bukkitmeteor.storage.counter;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+/**
+ * Settings of a {@link CounterService}
+ */
+public class CounterSettings {
+
+    private long flushInterval = 5_000L;
+    private int maxBatchSize = 500;
+    private int idleFlushes = 12;
+    private long drainTimeout = 30_000L;
+
+    private CounterSettings() {
+
+    }
+
+    public static CounterSettings create() {
+        return new CounterSettings();
+    }
+
+    /**
+     * Loads the counter settings from a configuration section, missing values will use the default values.
+     * <p>
+     * Keys: flush-interval (in milliseconds), drain-timeout (in seconds), max-batch-size and idle-flushes.
+     * @param section to read
+     * @param path of the counter settings, for example "counters"
+     * @return settings
+     */
+    public static CounterSettings fromSection(ConfigurationSection section, String path) {
+        CounterSettings settings = create();
+
+        if (section == null) {
+            return settings;
+        }
+
+        path = path.isEmpty() ? "" : path.endsWith(".") ? path : path + ".";
+
+        return settings
+            .setFlushInterval(section.getLong(path + "flush-interval", settings.flushInterval))
+            .setMaxBatchSize(section.getInt(path + "max-batch-size", settings.maxBatchSize))
+            .setIdleFlushes(section.getInt(path + "idle-flushes", settings.idleFlushes))
+            .setDrainTimeout(section.getLong(path + "drain-timeout", settings.drainTimeout / 1000L) * 1000L);
+    }
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    /**
+     * Time between the writes of the pending deltas.
+     * @param flushInterval in milliseconds
+     * @return settings
+     */
+    public CounterSettings setFlushInterval(long flushInterval) {
+        this.flushInterval = Math.max(50L, flushInterval);
+        return this;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Max amount of objects incremented in one database request.
+     * @param maxBatchSize of a request
+     * @return settings
+     */
+    public CounterSettings setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        return this;
+    }
+
+    public int getIdleFlushes() {
+        return idleFlushes;
+    }
+
+    /**
+     * Counters without increments in this amount of flushes are removed from memory.
+     * @param idleFlushes before a counter is removed
+     * @return settings
+     */
+    public CounterSettings setIdleFlushes(int idleFlushes) {
+        this.idleFlushes = Math.max(1, idleFlushes);
+        return this;
+    }
+
+    public long getDrainTimeout() {
+        return drainTimeout;
+    }
+
+    /**
+     * Max time writing the pending deltas when the service is shutdown.
+     * @param drainTimeout in milliseconds
+     * @return settings
+     */
+    public CounterSettings setDrainTimeout(long drainTimeout) {
+        this.drainTimeout = Math.max(0L, drainTimeout);
+        return this;
+    }
+}
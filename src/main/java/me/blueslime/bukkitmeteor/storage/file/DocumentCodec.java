@@ -0,0 +1,57 @@
+package me.blueslime.bukkitmeteor.storage.file;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Text format of the documents stored by a file database.
+ * <p>
+ * Documents only contain maps with string keys, lists, strings, numbers, booleans and null values,
+ * codecs must be thread-safe.
+ */
+public interface DocumentCodec {
+
+    /**
+     * @return extension of the files, without the dot
+     */
+    String getExtension();
+
+    /**
+     * @return true if the top level keys with dots are written as nested maps, like the Bukkit configuration paths
+     */
+    default boolean isPathKeys() {
+        return false;
+    }
+
+    /**
+     * Writes a document
+     * @param document to write
+     * @param writer output, it is not closed
+     * @throws IOException if the writer fails
+     */
+    void encode(Map<String, Object> document, Writer writer) throws IOException;
+
+    /**
+     * Reads a document
+     * @param reader input, it is not closed
+     * @return document, empty if the input is empty
+     * @throws IOException if the reader fails or the input is not a valid document
+     */
+    Map<String, Object> decode(Reader reader) throws IOException;
+
+    /**
+     * Reads only some keys of a document, codecs should stop reading once every key was found.
+     * @param reader input, it is not closed
+     * @param keys to read
+     * @return values of the found keys
+     * @throws IOException if the reader fails or the input is not a valid document
+     */
+    default Map<String, Object> decode(Reader reader, Set<String> keys) throws IOException {
+        Map<String, Object> document = decode(reader);
+        document.keySet().retainAll(keys);
+        return document;
+    }
+}
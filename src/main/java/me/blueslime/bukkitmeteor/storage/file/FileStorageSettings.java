@@ -0,0 +1,108 @@
+package me.blueslime.bukkitmeteor.storage.file;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+/**
+ * Settings of the file databases (JSON and YAML)
+ */
+public class FileStorageSettings {
+
+    private boolean compact = false;
+    private boolean syncWrites = false;
+    private int lockStripes = 64;
+    private int fanOutLevels = 0;
+
+    private FileStorageSettings() {
+
+    }
+
+    public static FileStorageSettings create() {
+        return new FileStorageSettings();
+    }
+
+    /**
+     * Loads the file settings from a configuration section, missing values will use the default values.
+     * <p>
+     * Keys: compact, sync-writes, lock-stripes and fan-out-levels.
+     * @param section to read
+     * @param path of the file settings, for example "json"
+     * @return settings
+     */
+    public static FileStorageSettings fromSection(ConfigurationSection section, String path) {
+        FileStorageSettings settings = create();
+
+        if (section == null) {
+            return settings;
+        }
+
+        path = path.isEmpty() ? "" : path.endsWith(".") ? path : path + ".";
+
+        return settings
+            .setCompact(section.getBoolean(path + "compact", settings.compact))
+            .setSyncWrites(section.getBoolean(path + "sync-writes", settings.syncWrites))
+            .setLockStripes(section.getInt(path + "lock-stripes", settings.lockStripes))
+            .setFanOutLevels(section.getInt(path + "fan-out-levels", settings.fanOutLevels));
+    }
+
+    public boolean isCompact() {
+        return compact;
+    }
+
+    /**
+     * Writes every file without indentation or line breaks, the files are smaller and faster to write
+     * but harder to edit by hand. Files in both modes can be read by the database.
+     * @param compact true to write compact files
+     * @return settings
+     */
+    public FileStorageSettings setCompact(boolean compact) {
+        this.compact = compact;
+        return this;
+    }
+
+    public boolean isSyncWrites() {
+        return syncWrites;
+    }
+
+    /**
+     * Forces every file to the disk before it replaces the old file.
+     * Files are always replaced at once, without it a power loss can only lose the last saves.
+     * @param syncWrites true to force every write
+     * @return settings
+     */
+    public FileStorageSettings setSyncWrites(boolean syncWrites) {
+        this.syncWrites = syncWrites;
+        return this;
+    }
+
+    public int getLockStripes() {
+        return lockStripes;
+    }
+
+    /**
+     * Amount of locks shared by the identifiers, operations over the same identifier always use the same lock.
+     * @param lockStripes rounded to a power of two, between 1 and 4096
+     * @return settings
+     */
+    public FileStorageSettings setLockStripes(int lockStripes) {
+        int stripes = Math.max(1, Math.min(4096, lockStripes));
+        this.lockStripes = Integer.highestOneBit(stripes) == stripes ? stripes : Integer.highestOneBit(stripes) << 1;
+        return this;
+    }
+
+    public int getFanOutLevels() {
+        return fanOutLevels;
+    }
+
+    /**
+     * Levels of bucket folders between the class folder and the files, every level has 256 folders named
+     * with two hex characters of the identifier hash, for example "data/User/3f/a1/id.json" with two levels.
+     * Big classes (more than 50k objects) should use one or two levels, existing files are moved to the new
+     * layout the first time the class is used.
+     * @param fanOutLevels between 0 (every file in the class folder) and 3
+     * @return settings
+     */
+    public FileStorageSettings setFanOutLevels(int fanOutLevels) {
+        this.fanOutLevels = Math.max(0, Math.min(3, fanOutLevels));
+        return this;
+    }
+}
@@ -0,0 +1,185 @@
+package me.blueslime.bukkitmeteor.storage.file;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streams documents with the gson {@link JsonWriter} and {@link JsonReader},
+ * without the reflection of {@link com.google.gson.Gson} or an intermediate json tree.
+ */
+public final class JsonDocumentCodec implements DocumentCodec {
+
+    private final boolean compact;
+
+    /**
+     * @param compact true to write without indentation
+     */
+    public JsonDocumentCodec(boolean compact) {
+        this.compact = compact;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getExtension() {
+        return "json";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void encode(Map<String, Object> document, Writer writer) throws IOException {
+        JsonWriter json = new JsonWriter(writer);
+        if (!compact) {
+            json.setIndent("  ");
+        }
+        // NaN e Infinity se escriben igual que antes con Gson.
+        json.setLenient(true);
+        json.setSerializeNulls(false);
+        write(json, document);
+        json.flush();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> decode(Reader reader) throws IOException {
+        JsonReader json = new JsonReader(reader);
+        json.setLenient(true);
+        try {
+            if (json.peek() == JsonToken.END_DOCUMENT) {
+                return new LinkedHashMap<>();
+            }
+            Object value = read(json);
+            if (value instanceof Map<?, ?>) {
+                return (Map<String, Object>) value;
+            }
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Invalid json document", e);
+        }
+        throw new IOException("Json document is not an object");
+    }
+
+    /**
+     * Skips the values of other keys and stops once every key was found.
+     */
+    @Override
+    public Map<String, Object> decode(Reader reader, Set<String> keys) throws IOException {
+        JsonReader json = new JsonReader(reader);
+        json.setLenient(true);
+        Map<String, Object> document = new LinkedHashMap<>();
+        try {
+            if (json.peek() == JsonToken.END_DOCUMENT) {
+                return document;
+            }
+            if (json.peek() != JsonToken.BEGIN_OBJECT) {
+                throw new IOException("Json document is not an object");
+            }
+            json.beginObject();
+            while (document.size() < keys.size() && json.hasNext()) {
+                String name = json.nextName();
+                if (keys.contains(name)) {
+                    document.put(name, read(json));
+                } else {
+                    json.skipValue();
+                }
+            }
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Invalid json document", e);
+        }
+        return document;
+    }
+
+    private static void write(JsonWriter json, Object value) throws IOException {
+        if (value == null) {
+            json.nullValue();
+        } else if (value instanceof Map<?, ?> map) {
+            json.beginObject();
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                json.name(String.valueOf(entry.getKey()));
+                write(json, entry.getValue());
+            }
+            json.endObject();
+        } else if (value instanceof List<?> list) {
+            json.beginArray();
+            for (Object element : list) {
+                write(json, element);
+            }
+            json.endArray();
+        } else if (value instanceof Boolean bool) {
+            json.value(bool.booleanValue());
+        } else if (value instanceof Number number) {
+            json.value(number);
+        } else {
+            json.value(value.toString());
+        }
+    }
+
+    private static Object read(JsonReader json) throws IOException {
+        switch (json.peek()) {
+            case BEGIN_OBJECT -> {
+                Map<String, Object> map = new LinkedHashMap<>();
+                json.beginObject();
+                while (json.hasNext()) {
+                    String name = json.nextName();
+                    map.put(name, read(json));
+                }
+                json.endObject();
+                return map;
+            }
+            case BEGIN_ARRAY -> {
+                List<Object> list = new ArrayList<>();
+                json.beginArray();
+                while (json.hasNext()) {
+                    list.add(read(json));
+                }
+                json.endArray();
+                return list;
+            }
+            case STRING -> {
+                return json.nextString();
+            }
+            case NUMBER -> {
+                return parseNumber(json.nextString());
+            }
+            case BOOLEAN -> {
+                return json.nextBoolean();
+            }
+            case NULL -> {
+                json.nextNull();
+                return null;
+            }
+            default -> throw new IOException("Unexpected json token: " + json.peek());
+        }
+    }
+
+    /**
+     * Integral numbers are kept as int or long, so they are not rounded like the doubles of {@link com.google.gson.Gson}.
+     */
+    private static Number parseNumber(String text) {
+        if (text.indexOf('.') < 0 && text.indexOf('e') < 0 && text.indexOf('E') < 0) {
+            try {
+                long value = Long.parseLong(text);
+                if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                    return (int) value;
+                }
+                return value;
+            } catch (NumberFormatException ignored) { }
+        }
+        return Double.parseDouble(text);
+    }
+}
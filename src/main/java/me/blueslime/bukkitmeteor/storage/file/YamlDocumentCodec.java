@@ -0,0 +1,437 @@
+package me.blueslime.bukkitmeteor.storage.file;
+
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.events.*;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Writes documents directly as YAML text and reads them from the snakeyaml parser events,
+ * without the Bukkit configuration sections or the snakeyaml node tree.
+ * <p>
+ * The files use the same layout as {@link org.bukkit.configuration.file.YamlConfiguration},
+ * files saved with it can be read and the written files can be opened with it. Top level keys with dots
+ * are written as nested maps like {@link org.bukkit.configuration.ConfigurationSection#set(String, Object)}.
+ */
+public final class YamlDocumentCodec implements DocumentCodec {
+
+    private static final Resolver RESOLVER = new Resolver();
+
+    /**
+     * {@link Yaml} instances are not thread-safe, the parser is created by every parse call.
+     */
+    private static final ThreadLocal<Yaml> PARSER = ThreadLocal.withInitial(Yaml::new);
+
+    private static final int INDENT = 2;
+
+    private final boolean compact;
+
+    /**
+     * @param compact true to write the document in a single line
+     */
+    public YamlDocumentCodec(boolean compact) {
+        this.compact = compact;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getExtension() {
+        return "yml";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isPathKeys() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void encode(Map<String, Object> document, Writer writer) throws IOException {
+        document = nestPaths(document);
+        if (compact) {
+            writeFlow(writer, document);
+            writer.write('\n');
+        } else if (document.isEmpty()) {
+            writer.write("{}\n");
+        } else {
+            writeMap(writer, document, 0, false);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> decode(Reader reader) throws IOException {
+        try {
+            Iterator<Event> events = PARSER.get().parse(reader).iterator();
+            Map<String, Object> anchors = new HashMap<>();
+            while (events.hasNext()) {
+                Event event = events.next();
+                if (event instanceof StreamStartEvent || event instanceof DocumentStartEvent) {
+                    continue;
+                }
+                if (event instanceof DocumentEndEvent || event instanceof StreamEndEvent) {
+                    break;
+                }
+                Object value = read(event, events, anchors);
+                if (value instanceof Map<?, ?>) {
+                    return (Map<String, Object>) value;
+                }
+                if (value == null) {
+                    break;
+                }
+                throw new IOException("Yaml document is not a map");
+            }
+        } catch (YAMLException e) {
+            throw new IOException("Invalid yaml document", e);
+        }
+        return new LinkedHashMap<>();
+    }
+
+    /**
+     * Skips the values of other keys and stops the parser once every key was found.
+     */
+    @Override
+    public Map<String, Object> decode(Reader reader, Set<String> keys) throws IOException {
+        Map<String, Object> document = new LinkedHashMap<>();
+        try {
+            Iterator<Event> events = PARSER.get().parse(reader).iterator();
+            Map<String, Object> anchors = new HashMap<>();
+            Event event = nextEvent(events);
+            while (event instanceof StreamStartEvent || event instanceof DocumentStartEvent) {
+                event = nextEvent(events);
+            }
+            if (event instanceof DocumentEndEvent || event instanceof StreamEndEvent) {
+                return document;
+            }
+            if (!(event instanceof MappingStartEvent)) {
+                throw new IOException("Yaml document is not a map");
+            }
+            while (document.size() < keys.size()) {
+                Event next = nextEvent(events);
+                if (next instanceof MappingEndEvent) {
+                    break;
+                }
+                String key = String.valueOf(read(next, events, anchors));
+                if (keys.contains(key)) {
+                    document.put(key, read(nextEvent(events), events, anchors));
+                } else {
+                    skip(nextEvent(events), events, anchors);
+                }
+            }
+        } catch (YAMLException e) {
+            throw new IOException("Invalid yaml document", e);
+        }
+        return document;
+    }
+
+    /**
+     * Moves the keys with dots to nested maps, the maps of the document are copied before a key is added.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> nestPaths(Map<String, Object> document) {
+        boolean paths = false;
+        for (String key : document.keySet()) {
+            if (key.indexOf('.') >= 0) {
+                paths = true;
+                break;
+            }
+        }
+        if (!paths) {
+            return document;
+        }
+
+        Map<String, Object> nested = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : document.entrySet()) {
+            if (entry.getValue() == null) {
+                continue;
+            }
+            String key = entry.getKey();
+            Map<Object, Object> section = (Map<Object, Object>) (Map<?, ?>) nested;
+            int start = 0;
+            int dot;
+            while ((dot = key.indexOf('.', start)) >= 0) {
+                String part = key.substring(start, dot);
+                Object child = section.get(part);
+                // Igual que ConfigurationSection#set, un valor que no es un mapa se reemplaza por una sección.
+                Map<Object, Object> copy = child instanceof Map<?, ?> map ? new LinkedHashMap<>(map) : new LinkedHashMap<>();
+                section.put(part, copy);
+                section = copy;
+                start = dot + 1;
+            }
+            section.put(key.substring(start), entry.getValue());
+        }
+        return nested;
+    }
+
+    private void writeMap(Writer writer, Map<?, ?> map, int indent, boolean inline) throws IOException {
+        boolean first = true;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            Object value = entry.getValue();
+            if (value == null) {
+                // Igual que YamlConfiguration, un valor null no guarda la clave.
+                continue;
+            }
+            if (!first || !inline) {
+                writeIndent(writer, indent);
+            }
+            first = false;
+
+            writeScalar(writer, String.valueOf(entry.getKey()));
+            writer.write(':');
+            writeBlockValue(writer, value, indent + INDENT, indent);
+        }
+        if (first && inline) {
+            writer.write("{}\n");
+        }
+    }
+
+    private void writeList(Writer writer, List<?> list, int indent) throws IOException {
+        for (Object element : list) {
+            writeIndent(writer, indent);
+            writer.write('-');
+            if (element instanceof Map<?, ?> map && !map.isEmpty()) {
+                writer.write(' ');
+                writeMap(writer, map, indent + INDENT, true);
+            } else {
+                writeBlockValue(writer, element, indent + INDENT, indent + INDENT);
+            }
+        }
+    }
+
+    /**
+     * Writes the value after a "key:" or "-"
+     * @param mapIndent indentation of a nested map
+     * @param listIndent indentation of a nested list
+     */
+    private void writeBlockValue(Writer writer, Object value, int mapIndent, int listIndent) throws IOException {
+        if (value instanceof Map<?, ?> map && !map.isEmpty()) {
+            writer.write('\n');
+            writeMap(writer, map, mapIndent, false);
+        } else if (value instanceof List<?> list && !list.isEmpty()) {
+            writer.write('\n');
+            writeList(writer, list, listIndent);
+        } else {
+            writer.write(' ');
+            writeFlow(writer, value);
+            writer.write('\n');
+        }
+    }
+
+    private void writeFlow(Writer writer, Object value) throws IOException {
+        if (value instanceof Map<?, ?> map) {
+            writer.write('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (entry.getValue() == null) {
+                    continue;
+                }
+                if (!first) {
+                    writer.write(", ");
+                }
+                first = false;
+                writeScalar(writer, String.valueOf(entry.getKey()));
+                writer.write(": ");
+                writeFlow(writer, entry.getValue());
+            }
+            writer.write('}');
+        } else if (value instanceof List<?> list) {
+            writer.write('[');
+            for (int i = 0; i < list.size(); i++) {
+                if (i > 0) {
+                    writer.write(", ");
+                }
+                writeFlow(writer, list.get(i));
+            }
+            writer.write(']');
+        } else if (value == null) {
+            writer.write("null");
+        } else if (value instanceof Boolean bool) {
+            writer.write(bool ? "true" : "false");
+        } else if (value instanceof Double || value instanceof Float) {
+            double number = ((Number) value).doubleValue();
+            if (Double.isNaN(number)) {
+                writer.write(".nan");
+            } else if (Double.isInfinite(number)) {
+                writer.write(number > 0 ? ".inf" : "-.inf");
+            } else {
+                writer.write(value.toString());
+            }
+        } else if (value instanceof Number) {
+            writer.write(value.toString());
+        } else {
+            writeScalar(writer, value.toString());
+        }
+    }
+
+    private static void writeScalar(Writer writer, String text) throws IOException {
+        if (isPlain(text)) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"' -> writer.write("\\\"");
+                case '\\' -> writer.write("\\\\");
+                case '\n' -> writer.write("\\n");
+                case '\r' -> writer.write("\\r");
+                case '\t' -> writer.write("\\t");
+                default -> {
+                    if (c < 0x20 || c == 0x7F || c == 0x85 || c == 0x2028 || c == 0x2029 || c == 0xFEFF) {
+                        writer.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        writer.write(c);
+                    }
+                }
+            }
+        }
+        writer.write('"');
+    }
+
+    /**
+     * Strings without indicators that would be read back as a string are written without quotes.
+     */
+    private static boolean isPlain(String text) {
+        int length = text.length();
+        if (length == 0 || length > 128 || !Character.isLetterOrDigit(text.charAt(0)) || text.charAt(length - 1) == ' ') {
+            return false;
+        }
+        for (int i = 1; i < length; i++) {
+            char c = text.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '-' && c != '.' && c != ' ' && c != '/') {
+                return false;
+            }
+        }
+        return RESOLVER.resolve(NodeId.scalar, text, true).equals(Tag.STR);
+    }
+
+    private static void writeIndent(Writer writer, int indent) throws IOException {
+        for (int i = 0; i < indent; i++) {
+            writer.write(' ');
+        }
+    }
+
+    private static Object read(Event event, Iterator<Event> events, Map<String, Object> anchors) throws IOException {
+        if (event instanceof AliasEvent alias) {
+            return anchors.get(alias.getAnchor());
+        }
+        if (event instanceof ScalarEvent scalar) {
+            Object value = readScalar(scalar);
+            anchor(scalar, value, anchors);
+            return value;
+        }
+        if (event instanceof MappingStartEvent start) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            anchor(start, map, anchors);
+            while (true) {
+                Event next = nextEvent(events);
+                if (next instanceof MappingEndEvent) {
+                    return map;
+                }
+                Object key = read(next, events, anchors);
+                map.put(String.valueOf(key), read(nextEvent(events), events, anchors));
+            }
+        }
+        if (event instanceof SequenceStartEvent start) {
+            List<Object> list = new ArrayList<>();
+            anchor(start, list, anchors);
+            while (true) {
+                Event next = nextEvent(events);
+                if (next instanceof SequenceEndEvent) {
+                    return list;
+                }
+                list.add(read(next, events, anchors));
+            }
+        }
+        throw new IOException("Unexpected yaml event: " + event);
+    }
+
+    /**
+     * Consumes the events of a value, values with an anchor are read because a later key can use them.
+     */
+    private static void skip(Event event, Iterator<Event> events, Map<String, Object> anchors) throws IOException {
+        if (event instanceof NodeEvent node && node.getAnchor() != null) {
+            read(event, events, anchors);
+            return;
+        }
+        if (event instanceof MappingStartEvent || event instanceof SequenceStartEvent) {
+            while (true) {
+                Event next = nextEvent(events);
+                if (next instanceof MappingEndEvent || next instanceof SequenceEndEvent) {
+                    return;
+                }
+                skip(next, events, anchors);
+            }
+        }
+    }
+
+    private static Event nextEvent(Iterator<Event> events) throws IOException {
+        if (!events.hasNext()) {
+            throw new IOException("Truncated yaml document");
+        }
+        return events.next();
+    }
+
+    private static void anchor(NodeEvent event, Object value, Map<String, Object> anchors) {
+        if (event.getAnchor() != null) {
+            anchors.put(event.getAnchor(), value);
+        }
+    }
+
+    private static Object readScalar(ScalarEvent scalar) {
+        String value = scalar.getValue();
+        if (!scalar.getImplicit().canOmitTagInPlainScalar()) {
+            // Texto con comillas o con una etiqueta explícita.
+            return value;
+        }
+
+        Tag tag = RESOLVER.resolve(NodeId.scalar, value, true);
+        try {
+            if (Tag.NULL.equals(tag)) {
+                return null;
+            }
+            if (Tag.BOOL.equals(tag)) {
+                String lower = value.toLowerCase(Locale.ROOT);
+                return lower.equals("true") || lower.equals("yes") || lower.equals("on") || lower.equals("y");
+            }
+            if (Tag.INT.equals(tag)) {
+                long number = Long.decode(value.replace("_", ""));
+                if (number >= Integer.MIN_VALUE && number <= Integer.MAX_VALUE) {
+                    return (int) number;
+                }
+                return number;
+            }
+            if (Tag.FLOAT.equals(tag)) {
+                String lower = value.toLowerCase(Locale.ROOT);
+                if (lower.endsWith(".nan")) {
+                    return Double.NaN;
+                }
+                if (lower.endsWith(".inf")) {
+                    return lower.startsWith("-") ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+                }
+                return Double.parseDouble(value.replace("_", ""));
+            }
+        } catch (NumberFormatException ignored) {
+            // Enteros en base 60 u otros formatos raros se dejan como texto.
+        }
+        return value;
+    }
+}
@@ -0,0 +1,17 @@
+package me.blueslime.bukkitmeteor.storage.interfaces;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a stored field used in queries, databases with indexes create one for this field.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD})
+public @interface StorageIndex {
+
+    boolean unique() default false;
+
+}
@@ -0,0 +1,18 @@
+package me.blueslime.bukkitmeteor.storage.interfaces;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Enables change tracking for a {@link StorageObject} class.
+ * <p>
+ * The databases remember the stored values of every loaded or saved object, later saves only write
+ * the changed fields and objects without changes are not written.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE})
+public @interface StorageTracked {
+
+}
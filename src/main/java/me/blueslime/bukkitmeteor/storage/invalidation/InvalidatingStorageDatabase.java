@@ -0,0 +1,317 @@
+package me.blueslime.bukkitmeteor.storage.invalidation;
+
+import me.blueslime.bukkitmeteor.storage.StorageDatabase;
+import me.blueslime.bukkitmeteor.storage.StorageSchema;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageObject;
+import me.blueslime.bukkitmeteor.storage.query.StorageQuery;
+import me.blueslime.bukkitmeteor.storage.track.ChangeTracker;
+import me.blueslime.bukkitmeteor.storage.type.RegistrationType;
+import me.blueslime.bukkitmeteor.storage.write.WriteBehindQueue;
+import me.blueslime.bukkitmeteor.storage.write.WriteBehindSettings;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Publishes every save, delete and increment of the wrapped database to an {@link InvalidationBus},
+ * the objects are published once the write finishes so other servers never load the previous value.
+ * <p>
+ * Use it under a cache, for example a {@link me.blueslime.bukkitmeteor.storage.cache.CachingStorageDatabase} over this
+ * database attached with {@link InvalidationBus#attach(me.blueslime.bukkitmeteor.storage.cache.CachingStorageDatabase)}.
+ */
+@SuppressWarnings("unused")
+public class InvalidatingStorageDatabase extends StorageDatabase {
+
+    private final StorageDatabase delegate;
+    private final InvalidationBus bus;
+
+    /**
+     * Create an invalidating database over your database
+     * @param delegate database to wrap
+     * @param bus where the modified objects are published
+     * @param register to the implements
+     */
+    public InvalidatingStorageDatabase(StorageDatabase delegate, InvalidationBus bus, RegistrationType register) {
+        this(delegate, bus, register, null);
+    }
+
+    /**
+     * Create an invalidating database over your database
+     * @param delegate database to wrap
+     * @param bus where the modified objects are published
+     * @param register to the implements
+     * @param identifier for the implements
+     */
+    public InvalidatingStorageDatabase(StorageDatabase delegate, InvalidationBus bus, RegistrationType register, String identifier) {
+        this.delegate = delegate;
+        this.bus = bus;
+
+        if (register == null) {
+            register = RegistrationType.DONT_REGISTER;
+        }
+
+        if (register.isDouble() || register.isOnlyThis()) {
+            registerImpl(InvalidatingStorageDatabase.class, identifier, this, true);
+        }
+
+        if (register.isDouble()) {
+            registerImpl(StorageDatabase.class, identifier, this, true);
+        }
+    }
+
+    public StorageDatabase getDelegate() {
+        return delegate;
+    }
+
+    public InvalidationBus getBus() {
+        return bus;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> CompletableFuture<Optional<T>> loadByIdAsync(Class<T> clazz, String identifier) {
+        return delegate.loadByIdAsync(clazz, identifier);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> Optional<T> loadByIdSync(Class<T> clazz, String identifier) {
+        return delegate.loadByIdSync(clazz, identifier);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> Map<String, T> loadByIdsSync(Class<T> clazz, Collection<String> identifiers) {
+        return delegate.loadByIdsSync(clazz, identifiers);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> Optional<Map<String, Object>> loadFieldsByIdSync(Class<T> clazz, String identifier, String... keys) {
+        return delegate.loadFieldsByIdSync(clazz, identifier, keys);
+    }
+
+    @Override
+    public Map<String, Object> extractFields(StorageObject obj, String... keys) {
+        return delegate.extractFields(obj, keys);
+    }
+
+    /**
+     * The object is published even when the delete fails, it may be deleted anyway.
+     */
+    @Override
+    public <T extends StorageObject> CompletableFuture<Void> deleteByIdAsync(Class<T> clazz, String identifier) {
+        return delegate.deleteByIdAsync(clazz, identifier).whenComplete((result, error) -> bus.publish(clazz, identifier, true));
+    }
+
+    /**
+     * The object is published even when the delete fails, it may be deleted anyway.
+     */
+    @Override
+    public <T extends StorageObject> void deleteByIdSync(Class<T> clazz, String identifier) {
+        try {
+            delegate.deleteByIdSync(clazz, identifier);
+        } finally {
+            bus.publish(clazz, identifier, true);
+        }
+    }
+
+    /**
+     * A failed batch may be partially deleted, so the objects are published even when it fails.
+     */
+    @Override
+    public <T extends StorageObject> void deleteByIdsSync(Class<T> clazz, Collection<String> identifiers) {
+        try {
+            delegate.deleteByIdsSync(clazz, identifiers);
+        } finally {
+            identifiers.forEach(identifier -> bus.publish(clazz, identifier, true));
+        }
+    }
+
+    /**
+     * A failed batch may be partially written, so the objects are published even when it fails.
+     */
+    @Override
+    public <T extends StorageObject> CompletableFuture<Void> incrementAsync(Class<T> clazz, Map<String, Map<String, Long>> deltas) {
+        return delegate.incrementAsync(clazz, deltas).whenComplete((result, error) -> deltas.keySet().forEach(identifier -> bus.publish(clazz, identifier, false)));
+    }
+
+    /**
+     * A failed batch may be partially written, so the objects are published even when it fails.
+     */
+    @Override
+    public <T extends StorageObject> void incrementSync(Class<T> clazz, Map<String, Map<String, Long>> deltas) {
+        try {
+            delegate.incrementSync(clazz, deltas);
+        } finally {
+            deltas.keySet().forEach(identifier -> bus.publish(clazz, identifier, false));
+        }
+    }
+
+    /**
+     * The object is published even when the save fails, it may be written anyway.
+     */
+    @Override
+    public CompletableFuture<Void> saveOrUpdateAsync(StorageObject obj) {
+        return delegate.saveOrUpdateAsync(obj).whenComplete((result, error) -> bus.publish(obj));
+    }
+
+    /**
+     * The object is published even when the save fails, it may be written anyway.
+     */
+    @Override
+    public void saveOrUpdateSync(StorageObject obj) {
+        try {
+            delegate.saveOrUpdateSync(obj);
+        } finally {
+            bus.publish(obj);
+        }
+    }
+
+    /**
+     * A failed batch may be partially written, so the objects are published even when it fails.
+     */
+    @Override
+    public CompletableFuture<Void> saveAllAsync(Collection<? extends StorageObject> objects) {
+        return delegate.saveAllAsync(objects).whenComplete((result, error) -> objects.forEach(bus::publish));
+    }
+
+    /**
+     * A failed batch may be partially written, so the objects are published even when it fails.
+     */
+    @Override
+    public void saveAllSync(Collection<? extends StorageObject> objects) {
+        try {
+            delegate.saveAllSync(objects);
+        } finally {
+            objects.forEach(bus::publish);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> CompletableFuture<Set<T>> loadAllAsync(Class<T> clazz) {
+        return delegate.loadAllAsync(clazz);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> Set<T> loadAllSync(Class<T> clazz) {
+        return delegate.loadAllSync(clazz);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> Stream<T> streamAll(Class<T> clazz, boolean parallel) {
+        return delegate.streamAll(clazz, parallel);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> Stream<T> streamQuery(StorageQuery<T> query) {
+        return delegate.streamQuery(query);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> long countQuery(StorageQuery<T> query) {
+        return delegate.countQuery(query);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void connect() {
+        delegate.connect();
+    }
+
+    /**
+     * The pending invalidations are sent before the wrapped database is closed.
+     */
+    @Override
+    public void closeConnection() {
+        bus.flush();
+        delegate.closeConnection();
+    }
+
+    @Override
+    public void enableWriteBehind(WriteBehindSettings settings) {
+        delegate.enableWriteBehind(settings);
+    }
+
+    @Override
+    public boolean isWriteBehindEnabled() {
+        return delegate.isWriteBehindEnabled();
+    }
+
+    @Override
+    public WriteBehindQueue getWriteBehind() {
+        return delegate.getWriteBehind();
+    }
+
+    @Override
+    public void flushWriteBehind() {
+        delegate.flushWriteBehind();
+    }
+
+    @Override
+    public void shutdownWriteBehind() {
+        delegate.shutdownWriteBehind();
+    }
+
+    @Override
+    public ChangeTracker getChangeTracker() {
+        return delegate.getChangeTracker();
+    }
+
+    @Override
+    public String getStorageIdentity() {
+        return delegate.getStorageIdentity();
+    }
+
+    @Override
+    public boolean hasChanges(StorageObject obj) {
+        return delegate.hasChanges(obj);
+    }
+
+    @Override
+    public void registerDefaultValueConverter(Class<?> key, Function<String, ?> converter) {
+        delegate.registerDefaultValueConverter(key, converter);
+    }
+
+    @Override
+    public void registerCollectionConverter(Class<? extends Collection<?>> key, Function<Collection<?>, ?> converter) {
+        delegate.registerCollectionConverter(key, converter);
+    }
+
+    @Override
+    public void unregisterDefaultValueConverter(Class<?> clazz) {
+        delegate.unregisterDefaultValueConverter(clazz);
+    }
+
+    @Override
+    public void unregisterCollectionConverter(Class<? extends Collection<?>> clazz) {
+        delegate.unregisterCollectionConverter(clazz);
+    }
+}
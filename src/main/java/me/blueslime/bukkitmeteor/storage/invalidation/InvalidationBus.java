@@ -0,0 +1,420 @@
+package me.blueslime.bukkitmeteor.storage.invalidation;
+
+import me.blueslime.bukkitmeteor.implementation.Implements;
+import me.blueslime.bukkitmeteor.implementation.module.Service;
+import me.blueslime.bukkitmeteor.logs.MeteorLogger;
+import me.blueslime.bukkitmeteor.storage.StorageSchema;
+import me.blueslime.bukkitmeteor.storage.cache.CachingStorageDatabase;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageObject;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cross-server invalidations of stored objects, for servers that share a database behind a proxy.
+ * <p>
+ * Every save or delete published with {@link #publish(Class, String, boolean)}, for example by an
+ * {@link InvalidatingStorageDatabase}, is queued and the queue is sent every flush interval (one tick by default)
+ * as a compact batch: repeated objects are sent once and the class names are written once per batch.
+ * The other servers pass the objects to their listeners, an attached {@link CachingStorageDatabase}
+ * removes or loads again its cached copy. An invalidation only makes the caches read the database again,
+ * so the order in which they arrive does not matter and they don't carry a version.
+ * <p>
+ * Batch format: [byte format][long origin][short classes][utf class...][int objects]
+ * then for every object [short class][utf identifier][byte deleted].
+ */
+public class InvalidationBus implements Service {
+
+    private static final byte FORMAT = 2;
+
+    private final List<InvalidationListener> listeners = new CopyOnWriteArrayList<>();
+    private final Map<String, Class<? extends StorageObject>> classes = new ConcurrentHashMap<>();
+    private final long origin = ThreadLocalRandom.current().nextLong();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final ScheduledExecutorService executor;
+    private final InvalidationTransport transport;
+    private final InvalidationSettings settings;
+    private final Object stateLock = new Object();
+
+    // Protegido por stateLock
+    private Map<PendingKey, Boolean> pending = new LinkedHashMap<>();
+
+    private volatile boolean closed = false;
+
+    /**
+     * Inicializa el bus con los valores por defecto.
+     * @param transport que envía los lotes a los otros servidores
+     */
+    public InvalidationBus(InvalidationTransport transport) {
+        this(transport, null);
+    }
+
+    /**
+     * Inicializa el bus, el transporte y el envío periódico empiezan inmediatamente.
+     * @param transport que envía los lotes a los otros servidores
+     * @param settings del bus, null para usar los valores por defecto
+     */
+    public InvalidationBus(InvalidationTransport transport, InvalidationSettings settings) {
+        this.settings = settings == null ? InvalidationSettings.create() : settings;
+        this.transport = transport;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "BukkitMeteor-Invalidation");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            transport.start(this::receive);
+        } catch (IOException e) {
+            fetch(MeteorLogger.class).error(e, "Can't start the invalidation transport, other servers will not be notified");
+        }
+
+        long interval = this.settings.getFlushInterval();
+        executor.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a bus from a configuration section.
+     * <p>
+     * Keys: transport ("plugin-message" or "socket"), channel, socket.port, socket.peers (list of host:port)
+     * and the keys of {@link InvalidationSettings#fromSection(ConfigurationSection, String)}.
+     * @param section to read
+     * @param path of the bus settings, for example "invalidation"
+     * @return bus
+     */
+    public static InvalidationBus fromSection(ConfigurationSection section, String path) {
+        path = path.isEmpty() ? "" : path.endsWith(".") ? path : path + ".";
+
+        InvalidationSettings settings = InvalidationSettings.fromSection(section, path);
+
+        String type = section == null ? "plugin-message" : section.getString(path + "transport", "plugin-message");
+        String channel = section == null ? PluginMessageTransport.DEFAULT_CHANNEL : section.getString(path + "channel", PluginMessageTransport.DEFAULT_CHANNEL);
+
+        if (!"socket".equalsIgnoreCase(type)) {
+            return new InvalidationBus(new PluginMessageTransport(channel), settings);
+        }
+
+        List<InetSocketAddress> peers = new ArrayList<>();
+        for (String peer : section.getStringList(path + "socket.peers")) {
+            int separator = peer.lastIndexOf(':');
+            if (separator <= 0) {
+                Implements.fetch(MeteorLogger.class).warn("Invalid invalidation peer " + peer + ", use host:port");
+                continue;
+            }
+            peers.add(new InetSocketAddress(peer.substring(0, separator), Integer.parseInt(peer.substring(separator + 1))));
+        }
+
+        return new InvalidationBus(
+            new SocketTransport(new InetSocketAddress(section.getString(path + "socket.host", "127.0.0.1"), section.getInt(path + "socket.port", 25590)), peers),
+            settings
+        );
+    }
+
+    /**
+     * Queues the invalidation of an object, it is sent to the other servers with the next batch.
+     * @param clazz of the object
+     * @param identifier of the object
+     * @param deleted true if the object was deleted
+     */
+    public void publish(Class<? extends StorageObject> clazz, String identifier, boolean deleted) {
+        if (identifier == null) {
+            return;
+        }
+        classes.putIfAbsent(clazz.getName(), clazz);
+
+        boolean full;
+        synchronized (stateLock) {
+            if (closed) {
+                return;
+            }
+            pending.put(new PendingKey(clazz.getName(), identifier), deleted);
+            full = pending.size() >= settings.getMaxPending();
+        }
+        published.increment();
+
+        if (full) {
+            try {
+                executor.execute(this::flush);
+            } catch (RejectedExecutionException ignored) {
+                // El bus se cerró, shutdown envía los pendientes
+            }
+        }
+    }
+
+    /**
+     * Queues the invalidation of a saved object.
+     * @param obj saved object
+     */
+    public void publish(StorageObject obj) {
+        publish(obj.getClass(), StorageSchema.of(obj.getClass()).extractIdentifier(obj), false);
+    }
+
+    /**
+     * Adds a listener of the objects modified by other servers.
+     * @param listener to add
+     * @return the same listener
+     */
+    public InvalidationListener subscribe(InvalidationListener listener) {
+        listeners.add(listener);
+        return listener;
+    }
+
+    public void unsubscribe(InvalidationListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Removes from a cache the objects modified by other servers,
+     * with {@link InvalidationSettings#isRefresh()} the saved objects that were cached are loaded again in the background.
+     * @param cache to update
+     * @return listener of the cache, use it to {@link #unsubscribe(InvalidationListener)}
+     */
+    public InvalidationListener attach(CachingStorageDatabase cache) {
+        boolean refresh = settings.isRefresh();
+        return subscribe(message -> {
+            // Solo se vuelven a cargar los objetos que estaban en la caché
+            boolean cached = refresh && !message.deleted() && cache.isCached(message.type(), message.identifier());
+            cache.invalidate(message.type(), message.identifier());
+            if (cached) {
+                cache.loadByIdAsync(message.type(), message.identifier());
+            }
+        });
+    }
+
+    /**
+     * Registers classes that can be received before this server publishes them,
+     * other classes are found by name with the class loader of the bus.
+     * @param types to register
+     */
+    @SafeVarargs
+    public final void registerClass(Class<? extends StorageObject>... types) {
+        for (Class<? extends StorageObject> type : types) {
+            classes.put(type.getName(), type);
+        }
+    }
+
+    /**
+     * Sends the pending invalidations now.
+     */
+    public void flush() {
+        Map<PendingKey, Boolean> drained;
+        synchronized (stateLock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            drained = pending;
+            pending = new LinkedHashMap<>();
+        }
+
+        try {
+            for (byte[] batch : encode(drained)) {
+                transport.send(batch);
+                batches.increment();
+            }
+        } catch (RuntimeException | IOException e) {
+            fetch(MeteorLogger.class).error(e, "Can't send " + drained.size() + " invalidations to the other servers");
+        }
+    }
+
+    private List<byte[]> encode(Map<PendingKey, Boolean> entries) throws IOException {
+        int limit = transport.getMaxPayload();
+        List<byte[]> result = new ArrayList<>();
+
+        List<Map.Entry<PendingKey, Boolean>> chunk = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        int size = 1 + 8 + 2 + 4;
+
+        for (Map.Entry<PendingKey, Boolean> entry : entries.entrySet()) {
+            PendingKey key = entry.getKey();
+            int entrySize = 2 + 2 + key.identifier().getBytes(StandardCharsets.UTF_8).length + 1;
+            int nameSize = names.contains(key.className()) ? 0 : 2 + key.className().getBytes(StandardCharsets.UTF_8).length;
+
+            if (!chunk.isEmpty() && size + entrySize + nameSize > limit) {
+                result.add(encodeChunk(chunk));
+                chunk.clear();
+                names.clear();
+                size = 1 + 8 + 2 + 4;
+                nameSize = 2 + key.className().getBytes(StandardCharsets.UTF_8).length;
+            }
+
+            chunk.add(entry);
+            names.add(key.className());
+            size += entrySize + nameSize;
+        }
+
+        if (!chunk.isEmpty()) {
+            result.add(encodeChunk(chunk));
+        }
+        return result;
+    }
+
+    private byte[] encodeChunk(List<Map.Entry<PendingKey, Boolean>> chunk) throws IOException {
+        Map<String, Integer> names = new LinkedHashMap<>();
+        for (Map.Entry<PendingKey, Boolean> entry : chunk) {
+            names.putIfAbsent(entry.getKey().className(), names.size());
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeByte(FORMAT);
+        output.writeLong(origin);
+        output.writeShort(names.size());
+        for (String name : names.keySet()) {
+            output.writeUTF(name);
+        }
+        output.writeInt(chunk.size());
+        for (Map.Entry<PendingKey, Boolean> entry : chunk) {
+            output.writeShort(names.get(entry.getKey().className()));
+            output.writeUTF(entry.getKey().identifier());
+            output.writeBoolean(entry.getValue());
+        }
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    private void receive(byte[] payload) {
+        List<InvalidationMessage> messages = new ArrayList<>();
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload))) {
+            if (input.readByte() != FORMAT) {
+                dropped.increment();
+                return;
+            }
+            if (input.readLong() == origin) {
+                return;
+            }
+            List<Class<? extends StorageObject>> types = new ArrayList<>();
+            for (int i = 0, amount = input.readUnsignedShort(); i < amount; i++) {
+                types.add(resolve(input.readUTF()));
+            }
+            for (int i = 0, amount = input.readInt(); i < amount; i++) {
+                Class<? extends StorageObject> type = types.get(input.readUnsignedShort());
+                String identifier = input.readUTF();
+                boolean deleted = input.readBoolean();
+                if (type == null) {
+                    dropped.increment();
+                    continue;
+                }
+                messages.add(new InvalidationMessage(type, identifier, deleted));
+            }
+        } catch (IOException | IndexOutOfBoundsException e) {
+            dropped.increment();
+            fetch(MeteorLogger.class).warn("Received an invalid invalidation batch: " + e.getMessage());
+            return;
+        }
+
+        for (InvalidationMessage message : messages) {
+            received.increment();
+            for (InvalidationListener listener : listeners) {
+                try {
+                    listener.onInvalidation(message);
+                } catch (RuntimeException e) {
+                    fetch(MeteorLogger.class).error(e, "Can't invalidate " + message.type().getSimpleName() + " " + message.identifier());
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Class<? extends StorageObject> resolve(String name) {
+        Class<? extends StorageObject> type = classes.get(name);
+        if (type != null) {
+            return type;
+        }
+        try {
+            Class<?> found = Class.forName(name, false, InvalidationBus.class.getClassLoader());
+            if (!StorageObject.class.isAssignableFrom(found)) {
+                return null;
+            }
+            type = (Class<? extends StorageObject>) found;
+            classes.put(name, type);
+            return type;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Sends the pending invalidations and closes the transport.
+     */
+    @Override
+    public void shutdown() {
+        synchronized (stateLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        transport.close();
+    }
+
+    public InvalidationSettings getSettings() {
+        return settings;
+    }
+
+    public InvalidationTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * @return random identifier of this server, batches of this server are ignored
+     */
+    public long getOrigin() {
+        return origin;
+    }
+
+    /**
+     * @return invalidations published by this server
+     */
+    public long getPublished() {
+        return published.sum();
+    }
+
+    /**
+     * @return invalidations received from other servers
+     */
+    public long getReceived() {
+        return received.sum();
+    }
+
+    /**
+     * @return received invalidations of unknown classes or invalid batches
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return batches sent by this server
+     */
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    private record PendingKey(String className, String identifier) {
+    }
+}
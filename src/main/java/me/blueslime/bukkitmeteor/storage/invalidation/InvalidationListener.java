@@ -0,0 +1,14 @@
+package me.blueslime.bukkitmeteor.storage.invalidation;
+
+/**
+ * Receives the objects modified by other servers, see {@link InvalidationBus#subscribe(InvalidationListener)}.
+ */
+@FunctionalInterface
+public interface InvalidationListener {
+
+    /**
+     * Called for every object modified by another server, it can be called from any thread.
+     * @param message of the modification
+     */
+    void onInvalidation(InvalidationMessage message);
+}
@@ -0,0 +1,12 @@
+package me.blueslime.bukkitmeteor.storage.invalidation;
+
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageObject;
+
+/**
+ * Invalidation received from another server.
+ * @param type of the modified object
+ * @param identifier of the modified object
+ * @param deleted true if the object was deleted
+ */
+public record InvalidationMessage(Class<? extends StorageObject> type, String identifier, boolean deleted) {
+}
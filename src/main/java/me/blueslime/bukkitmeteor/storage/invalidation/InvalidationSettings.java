@@ -0,0 +1,87 @@
+package me.blueslime.bukkitmeteor.storage.invalidation;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+/**
+ * Settings of an {@link InvalidationBus}
+ */
+public class InvalidationSettings {
+
+    private long flushInterval = 50L;
+    private int maxPending = 50_000;
+    private boolean refresh = false;
+
+    private InvalidationSettings() {
+
+    }
+
+    public static InvalidationSettings create() {
+        return new InvalidationSettings();
+    }
+
+    /**
+     * Loads the invalidation settings from a configuration section, missing values will use the default values.
+     * <p>
+     * Keys: flush-interval (in milliseconds), max-pending and refresh.
+     * @param section to read
+     * @param path of the invalidation settings, for example "invalidation"
+     * @return settings
+     */
+    public static InvalidationSettings fromSection(ConfigurationSection section, String path) {
+        InvalidationSettings settings = create();
+
+        if (section == null) {
+            return settings;
+        }
+
+        path = path.isEmpty() ? "" : path.endsWith(".") ? path : path + ".";
+
+        return settings
+            .setFlushInterval(section.getLong(path + "flush-interval", settings.flushInterval))
+            .setMaxPending(section.getInt(path + "max-pending", settings.maxPending))
+            .setRefresh(section.getBoolean(path + "refresh", settings.refresh));
+    }
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    /**
+     * Time between the batches sent to the other servers, by default one tick.
+     * @param flushInterval in milliseconds
+     * @return settings
+     */
+    public InvalidationSettings setFlushInterval(long flushInterval) {
+        this.flushInterval = Math.max(10L, Math.min(5_000L, flushInterval));
+        return this;
+    }
+
+    public int getMaxPending() {
+        return maxPending;
+    }
+
+    /**
+     * Once this amount of objects is waiting the batch is sent before the interval ends.
+     * @param maxPending objects
+     * @return settings
+     */
+    public InvalidationSettings setMaxPending(int maxPending) {
+        this.maxPending = Math.max(1, maxPending);
+        return this;
+    }
+
+    public boolean isRefresh() {
+        return refresh;
+    }
+
+    /**
+     * If the caches attached with {@link InvalidationBus#attach(me.blueslime.bukkitmeteor.storage.cache.CachingStorageDatabase)}
+     * load again the saved objects that were cached instead of only removing them.
+     * @param refresh status
+     * @return settings
+     */
+    public InvalidationSettings setRefresh(boolean refresh) {
+        this.refresh = refresh;
+        return this;
+    }
+}
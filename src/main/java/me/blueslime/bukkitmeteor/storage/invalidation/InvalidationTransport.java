@@ -0,0 +1,31 @@
+package me.blueslime.bukkitmeteor.storage.invalidation;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Sends the invalidation batches to the other servers.
+ */
+public interface InvalidationTransport extends AutoCloseable {
+
+    /**
+     * Starts receiving the batches of the other servers.
+     * @param receiver of the batches
+     * @throws IOException if the transport can't be started
+     */
+    void start(Consumer<byte[]> receiver) throws IOException;
+
+    /**
+     * Sends a batch to every other server.
+     * @param payload of the batch, its size is never bigger than {@link #getMaxPayload()}
+     */
+    void send(byte[] payload);
+
+    /**
+     * @return max size of a batch in bytes
+     */
+    int getMaxPayload();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,165 @@
+package me.blueslime.bukkitmeteor.storage.invalidation;
+
+import me.blueslime.bukkitmeteor.implementation.module.ChannelListener;
+import me.blueslime.bukkitmeteor.logs.MeteorLogger;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Sends the invalidation batches with the Forward message of the BungeeCord channel, supported by BungeeCord and Velocity.
+ * <p>
+ * Plugin messages need an online player: batches published while the server is empty wait and are sent with
+ * the next batch once a player is online, and the proxy only forwards them to servers with online players.
+ * Servers without players that keep caches should use another transport.
+ */
+public class PluginMessageTransport implements InvalidationTransport, ChannelListener {
+
+    public static final String BUNGEE_CHANNEL = "BungeeCord";
+    public static final String DEFAULT_CHANNEL = "BukkitMeteorInvalidation";
+
+    private static final int MAX_WAITING = 1_024;
+
+    private final Queue<byte[]> waiting = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger waitingSize = new AtomicInteger();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final AtomicBoolean warned = new AtomicBoolean(false);
+    private final String subChannel;
+
+    private volatile Consumer<byte[]> receiver = null;
+
+    /**
+     * Inicializa el transporte con el subcanal por defecto.
+     */
+    public PluginMessageTransport() {
+        this(DEFAULT_CHANNEL);
+    }
+
+    /**
+     * Inicializa el transporte, todos los servidores deben usar el mismo subcanal.
+     * @param subChannel del mensaje Forward
+     */
+    public PluginMessageTransport(String subChannel) {
+        this.subChannel = subChannel == null || subChannel.isEmpty() ? DEFAULT_CHANNEL : subChannel;
+    }
+
+    @Override
+    public void start(Consumer<byte[]> receiver) {
+        this.receiver = receiver;
+        registerOutgoingChannels(BUNGEE_CHANNEL);
+        registerAllIncoming(this);
+    }
+
+    @Override
+    public String getChannel() {
+        return BUNGEE_CHANNEL;
+    }
+
+    @Override
+    public void send(byte[] payload) {
+        waiting.add(payload);
+        if (waitingSize.incrementAndGet() > MAX_WAITING) {
+            if (waiting.poll() != null) {
+                waitingSize.decrementAndGet();
+            }
+            if (warned.compareAndSet(false, true)) {
+                fetch(MeteorLogger.class).warn("There are no players to send the invalidations, the oldest batches are discarded");
+            }
+        }
+
+        // Los mensajes se envían en el hilo principal, un solo envío programado a la vez
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                getServer().getScheduler().runTask(getMeteorPlugin(), this::drain);
+            } catch (RuntimeException e) {
+                scheduled.set(false);
+                throw e;
+            }
+        }
+    }
+
+    private void drain() {
+        scheduled.set(false);
+
+        Iterator<? extends Player> players = getServer().getOnlinePlayers().iterator();
+        if (!players.hasNext()) {
+            return;
+        }
+        Player player = players.next();
+        warned.set(false);
+
+        byte[] payload;
+        while ((payload = waiting.poll()) != null) {
+            waitingSize.decrementAndGet();
+            try {
+                player.sendPluginMessage(getMeteorPlugin(), BUNGEE_CHANNEL, forward(payload));
+            } catch (IOException | RuntimeException e) {
+                fetch(MeteorLogger.class).error(e, "Can't send an invalidation batch to the proxy");
+            }
+        }
+    }
+
+    private byte[] forward(byte[] payload) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length + 64);
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeUTF("Forward");
+        output.writeUTF("ALL");
+        output.writeUTF(subChannel);
+        output.writeShort(payload.length);
+        output.write(payload);
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public void onPluginMessageReceived(@NotNull String channel, @NotNull Player player, @NotNull byte[] message) {
+        Consumer<byte[]> current = receiver;
+        if (current == null || !BUNGEE_CHANNEL.equals(channel)) {
+            return;
+        }
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(message))) {
+            if (!subChannel.equals(input.readUTF())) {
+                return;
+            }
+            byte[] payload = new byte[input.readUnsignedShort()];
+            input.readFully(payload);
+            current.accept(payload);
+        } catch (IOException e) {
+            fetch(MeteorLogger.class).warn("Received an invalid " + subChannel + " message: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Max size of a plugin message minus the Forward header.
+     */
+    @Override
+    public int getMaxPayload() {
+        return 30_000;
+    }
+
+    /**
+     * Stops receiving batches, the batches that are waiting for a player are discarded.
+     */
+    @Override
+    public void close() {
+        receiver = null;
+        getMessenger().unregisterIncomingPluginChannel(getMeteorPlugin(), BUNGEE_CHANNEL, this);
+        waiting.clear();
+        waitingSize.set(0);
+    }
+
+    public String getSubChannel() {
+        return subChannel;
+    }
+}
@@ -0,0 +1,103 @@
+package me.blueslime.bukkitmeteor.storage.invalidation;
+
+import me.blueslime.bukkitmeteor.implementation.module.Service;
+import me.blueslime.bukkitmeteor.logs.MeteorLogger;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Sends the invalidation batches as UDP datagrams to a fixed list of servers,
+ * useful for local testing or servers without a proxy. Datagrams can be lost, it should not be used over the internet.
+ */
+public class SocketTransport implements InvalidationTransport, Service {
+
+    private final List<InetSocketAddress> peers;
+    private final InetSocketAddress address;
+
+    private volatile DatagramSocket socket = null;
+    private volatile boolean closed = false;
+
+    /**
+     * Inicializa el transporte.
+     * @param address donde este servidor recibe los lotes
+     * @param peers direcciones de los otros servidores
+     */
+    public SocketTransport(InetSocketAddress address, Collection<InetSocketAddress> peers) {
+        this.peers = List.copyOf(peers);
+        this.address = address;
+    }
+
+    @Override
+    public void start(Consumer<byte[]> receiver) throws IOException {
+        DatagramSocket current = new DatagramSocket(address);
+        this.socket = current;
+
+        Thread thread = new Thread(() -> {
+            byte[] buffer = new byte[65_535];
+            while (!closed) {
+                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                try {
+                    current.receive(packet);
+                    receiver.accept(Arrays.copyOfRange(buffer, packet.getOffset(), packet.getOffset() + packet.getLength()));
+                } catch (SocketException e) {
+                    if (!closed) {
+                        fetch(MeteorLogger.class).error(e, "Invalidation socket was closed");
+                    }
+                    return;
+                } catch (IOException | RuntimeException e) {
+                    fetch(MeteorLogger.class).error(e, "Can't receive an invalidation batch");
+                }
+            }
+        }, "BukkitMeteor-InvalidationSocket");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void send(byte[] payload) {
+        DatagramSocket current = socket;
+        if (current == null || closed) {
+            return;
+        }
+        for (InetSocketAddress peer : peers) {
+            try {
+                current.send(new DatagramPacket(payload, payload.length, peer));
+            } catch (IOException e) {
+                fetch(MeteorLogger.class).warn("Can't send an invalidation batch to " + peer + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Max size of an UDP datagram with some space left.
+     */
+    @Override
+    public int getMaxPayload() {
+        return 60_000;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        DatagramSocket current = socket;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    public InetSocketAddress getAddress() {
+        return address;
+    }
+
+    public List<InetSocketAddress> getPeers() {
+        return peers;
+    }
+}
@@ -0,0 +1,139 @@
+package me.blueslime.bukkitmeteor.storage.journal;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+/**
+ * Settings of a {@link JournaledStorageDatabase}
+ */
+public class JournalSettings {
+
+    private long groupCommitWindow = 2L;
+    private int maxCommitSize = 1_000;
+    private long applyInterval = 250L;
+    private int applyBatchSize = 500;
+    private long maxJournalSize = 64L * 1024L * 1024L;
+    private long drainTimeout = 30_000L;
+
+    private JournalSettings() {
+
+    }
+
+    public static JournalSettings create() {
+        return new JournalSettings();
+    }
+
+    /**
+     * Loads the journal settings from a configuration section, missing values will use the default values.
+     * <p>
+     * Keys: group-commit-window and apply-interval (in milliseconds), max-journal-size (in megabytes),
+     * drain-timeout (in seconds), max-commit-size and apply-batch-size.
+     * @param section to read
+     * @param path of the journal settings, for example "journal"
+     * @return settings
+     */
+    public static JournalSettings fromSection(ConfigurationSection section, String path) {
+        JournalSettings settings = create();
+
+        if (section == null) {
+            return settings;
+        }
+
+        path = path.isEmpty() ? "" : path.endsWith(".") ? path : path + ".";
+
+        return settings
+            .setGroupCommitWindow(section.getLong(path + "group-commit-window", settings.groupCommitWindow))
+            .setMaxCommitSize(section.getInt(path + "max-commit-size", settings.maxCommitSize))
+            .setApplyInterval(section.getLong(path + "apply-interval", settings.applyInterval))
+            .setApplyBatchSize(section.getInt(path + "apply-batch-size", settings.applyBatchSize))
+            .setMaxJournalSize(section.getLong(path + "max-journal-size", settings.maxJournalSize / (1024L * 1024L)) * 1024L * 1024L)
+            .setDrainTimeout(section.getLong(path + "drain-timeout", settings.drainTimeout / 1000L) * 1000L);
+    }
+
+    public long getGroupCommitWindow() {
+        return groupCommitWindow;
+    }
+
+    /**
+     * Time that a commit waits for more records before the journal is synced to the disk,
+     * every save of the window is acknowledged by the same sync.
+     * @param groupCommitWindow in milliseconds, 0 to sync the records that are already waiting
+     * @return settings
+     */
+    public JournalSettings setGroupCommitWindow(long groupCommitWindow) {
+        this.groupCommitWindow = Math.max(0L, Math.min(1_000L, groupCommitWindow));
+        return this;
+    }
+
+    public int getMaxCommitSize() {
+        return maxCommitSize;
+    }
+
+    /**
+     * Max amount of records synced by one commit, a full commit is synced before the window ends.
+     * @param maxCommitSize of a commit
+     * @return settings
+     */
+    public JournalSettings setMaxCommitSize(int maxCommitSize) {
+        this.maxCommitSize = Math.max(1, maxCommitSize);
+        return this;
+    }
+
+    public long getApplyInterval() {
+        return applyInterval;
+    }
+
+    /**
+     * Time between the writes of the journaled records to the wrapped database.
+     * @param applyInterval in milliseconds
+     * @return settings
+     */
+    public JournalSettings setApplyInterval(long applyInterval) {
+        this.applyInterval = Math.max(10L, applyInterval);
+        return this;
+    }
+
+    public int getApplyBatchSize() {
+        return applyBatchSize;
+    }
+
+    /**
+     * Max amount of objects written to the wrapped database in one request.
+     * @param applyBatchSize of a request
+     * @return settings
+     */
+    public JournalSettings setApplyBatchSize(int applyBatchSize) {
+        this.applyBatchSize = Math.max(1, applyBatchSize);
+        return this;
+    }
+
+    public long getMaxJournalSize() {
+        return maxJournalSize;
+    }
+
+    /**
+     * Max size of a journal segment, once the current segment is bigger a new one is started.
+     * Segments with only applied records are deleted, so the journal only keeps the segments with records
+     * that are not applied and the current one.
+     * @param maxJournalSize in bytes
+     * @return settings
+     */
+    public JournalSettings setMaxJournalSize(long maxJournalSize) {
+        this.maxJournalSize = Math.max(0L, maxJournalSize);
+        return this;
+    }
+
+    public long getDrainTimeout() {
+        return drainTimeout;
+    }
+
+    /**
+     * Max time applying the pending records when the connection is closed,
+     * records that are not applied are replayed on the next start.
+     * @param drainTimeout in milliseconds
+     * @return settings
+     */
+    public JournalSettings setDrainTimeout(long drainTimeout) {
+        this.drainTimeout = Math.max(0L, drainTimeout);
+        return this;
+    }
+}
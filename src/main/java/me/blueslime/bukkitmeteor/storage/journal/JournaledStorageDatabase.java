@@ -0,0 +1,730 @@
+package me.blueslime.bukkitmeteor.storage.journal;
+
+import me.blueslime.bukkitmeteor.implementation.Implements;
+import me.blueslime.bukkitmeteor.logs.MeteorLogger;
+import me.blueslime.bukkitmeteor.storage.StorageDatabase;
+import me.blueslime.bukkitmeteor.storage.StorageSchema;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageObject;
+import me.blueslime.bukkitmeteor.storage.log.LogCodec;
+import me.blueslime.bukkitmeteor.storage.query.StorageQuery;
+import me.blueslime.bukkitmeteor.storage.track.ChangeTracker;
+import me.blueslime.bukkitmeteor.storage.type.RegistrationType;
+import me.blueslime.bukkitmeteor.storage.write.WriteBehindQueue;
+import me.blueslime.bukkitmeteor.storage.write.WriteBehindSettings;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Write-ahead journal in front of any {@link StorageDatabase}.
+ * <p>
+ * Saves and deletes are appended to a local {@link WriteAheadJournal} and acknowledged once the group commit
+ * syncs the journal, the records are applied to the wrapped database in the background. Loads by identifier
+ * see the records that are not applied yet, and bulk reads apply the pending records of the class first.
+ * Records that were not applied when the server stopped are replayed by {@link #connect()}.
+ */
+@SuppressWarnings("unused")
+public class JournaledStorageDatabase extends StorageDatabase {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final Map<PendingKey, Pending> pending = new ConcurrentHashMap<>();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final Object appendLock = new Object();
+    private final Object applyLock = new Object();
+
+    private final StorageDatabase delegate;
+    private final JournalSettings settings;
+    private final File folder;
+
+    private volatile WriteAheadJournal journal;
+    private ScheduledExecutorService executor;
+
+    /**
+     * Crea el journal en la carpeta data/journal del plugin.
+     * @param delegate base de datos donde se aplican los registros.
+     * @param register para Implements.
+     */
+    public JournaledStorageDatabase(StorageDatabase delegate, RegistrationType register) {
+        this(delegate, register, null);
+    }
+
+    /**
+     * Crea el journal en la carpeta data/journal del plugin.
+     * @param delegate base de datos donde se aplican los registros.
+     * @param register para Implements.
+     * @param identifier para Implements.
+     */
+    public JournaledStorageDatabase(StorageDatabase delegate, RegistrationType register, String identifier) {
+        this(delegate, new File(new File(Implements.fetch(File.class, "folder"), "data"), "journal"), JournalSettings.create(), register, identifier);
+    }
+
+    /**
+     * Crea el journal en una carpeta, el journal se abre y se repite en {@link #connect()}.
+     * @param delegate base de datos donde se aplican los registros.
+     * @param folder del journal.
+     * @param settings del journal, null para usar los valores por defecto.
+     * @param register para Implements.
+     * @param identifier para Implements.
+     */
+    public JournaledStorageDatabase(StorageDatabase delegate, File folder, JournalSettings settings, RegistrationType register, String identifier) {
+        this.settings = settings == null ? JournalSettings.create() : settings;
+        this.delegate = delegate;
+        this.folder = folder;
+
+        if (register == null) {
+            register = RegistrationType.DONT_REGISTER;
+        }
+
+        if (register.isDouble() || register.isOnlyThis()) {
+            registerImpl(JournaledStorageDatabase.class, identifier, this, true);
+        }
+
+        if (register.isDouble()) {
+            registerImpl(StorageDatabase.class, identifier, this, true);
+        }
+    }
+
+    public StorageDatabase getDelegate() {
+        return delegate;
+    }
+
+    public JournalSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * @return open journal or null if the database is not connected
+     */
+    public WriteAheadJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * @return objects waiting to be applied to the wrapped database
+     */
+    public int getPending() {
+        return pending.size();
+    }
+
+    /**
+     * @return records applied to the wrapped database
+     */
+    public long getApplied() {
+        return applied.sum();
+    }
+
+    /**
+     * @return records that failed to be applied, they are retried in the next apply
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * Connects the wrapped database, opens the journal and replays the records that were not applied.
+     * If the journal can't be opened the saves are written directly to the wrapped database.
+     */
+    @Override
+    public void connect() {
+        delegate.connect();
+
+        synchronized (applyLock) {
+            if (journal != null) {
+                return;
+            }
+
+            WriteAheadJournal opened;
+            try {
+                opened = WriteAheadJournal.open(folder.toPath(), settings);
+            } catch (IOException e) {
+                logError("Can't open the journal, saves will be written directly to the database", e);
+                return;
+            }
+
+            if (opened.getRecoveredBytes() > 0) {
+                fetch(MeteorLogger.class).warn(
+                    "Recovered the journal, removed " + opened.getRecoveredBytes() + " bytes of incomplete records."
+                );
+            }
+            replay(opened, opened.takeRecovered());
+
+            executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "BukkitMeteor-JournalApply");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.scheduleWithFixedDelay(
+                this::applyPending, settings.getApplyInterval(), settings.getApplyInterval(), TimeUnit.MILLISECONDS
+            );
+            journal = opened;
+        }
+    }
+
+    /**
+     * Puts the recovered records in the pending objects, the newest record of every object wins.
+     * Records that can't be replayed are moved to the quarantine file of the journal.
+     */
+    private void replay(WriteAheadJournal opened, List<WriteAheadJournal.Entry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        int skipped = 0;
+        for (WriteAheadJournal.Entry entry : entries) {
+            Class<? extends StorageObject> clazz = resolveClass(entry.className());
+            StorageObject object = null;
+            if (clazz != null && !entry.isDelete()) {
+                Map<String, Object> document = readDocument(entry.payload());
+                object = document == null ? null : instantiateDocument(clazz, document, entry.identifier());
+            }
+            if (clazz == null || (!entry.isDelete() && object == null)) {
+                // Un registro que no se puede aplicar no debe detener el checkpoint
+                try {
+                    opened.quarantine(entry);
+                    fetch(MeteorLogger.class).warn(
+                        "Journal record " + entry.sequence() + " of " + entry.className() + " " + entry.identifier() + " can't be replayed, moved to the quarantine file"
+                    );
+                } catch (IOException e) {
+                    logError("Can't quarantine the journal record " + entry.sequence() + " of " + entry.className() + " " + entry.identifier(), e);
+                }
+                skipped++;
+                continue;
+            }
+            PendingKey key = new PendingKey(clazz, entry.identifier());
+            Pending previous = pending.get(key);
+            pending.put(key, new Pending(entry.sequence(), previous == null ? entry.sequence() : previous.floor(), object));
+        }
+
+        fetch(MeteorLogger.class).info("Replaying " + pending.size() + " objects from the journal");
+        if (skipped > 0) {
+            fetch(MeteorLogger.class).warn(
+                "Can't replay " + skipped + " journal records, they were moved to journal-quarantine.log in " + folder.getPath()
+            );
+        }
+    }
+
+    /**
+     * Applies the synced records to the wrapped database, this is done automatically every apply interval.
+     */
+    public void applyPending() {
+        WriteAheadJournal current = journal;
+        if (current != null) {
+            apply(current, null);
+        }
+    }
+
+    /**
+     * Applies the synced records of a class to the wrapped database
+     * @param clazz of the objects
+     */
+    public void applyPending(Class<? extends StorageObject> clazz) {
+        WriteAheadJournal current = journal;
+        if (current != null) {
+            apply(current, clazz);
+        }
+    }
+
+    private void apply(WriteAheadJournal current, Class<?> only) {
+        synchronized (applyLock) {
+            long synced = current.getSyncedSequence();
+
+            Map<Class<? extends StorageObject>, List<Map.Entry<PendingKey, Pending>>> groups = new HashMap<>();
+            for (Map.Entry<PendingKey, Pending> entry : pending.entrySet()) {
+                if (entry.getValue().sequence() <= synced && (only == null || entry.getKey().clazz() == only)) {
+                    groups.computeIfAbsent(entry.getKey().clazz(), key -> new ArrayList<>()).add(entry);
+                }
+            }
+
+            for (Map.Entry<Class<? extends StorageObject>, List<Map.Entry<PendingKey, Pending>>> group : groups.entrySet()) {
+                List<Map.Entry<PendingKey, Pending>> entries = group.getValue();
+                for (int from = 0; from < entries.size(); from += settings.getApplyBatchSize()) {
+                    write(group.getKey(), entries.subList(from, Math.min(entries.size(), from + settings.getApplyBatchSize())));
+                }
+            }
+
+            // El checkpoint no puede pasar un registro que aún no se ha aplicado
+            long checkpoint = synced;
+            for (Pending value : pending.values()) {
+                checkpoint = Math.min(checkpoint, value.floor() - 1);
+            }
+
+            try {
+                // Los segmentos que solo tienen registros aplicados se borran
+                current.checkpoint(checkpoint);
+            } catch (IOException e) {
+                logError("Can't update the journal checkpoint", e);
+            }
+        }
+    }
+
+    private void write(Class<? extends StorageObject> clazz, List<Map.Entry<PendingKey, Pending>> entries) {
+        List<StorageObject> objects = new ArrayList<>(entries.size());
+        List<String> deleted = new ArrayList<>();
+        for (Map.Entry<PendingKey, Pending> entry : entries) {
+            StorageObject object = entry.getValue().object();
+            if (object == null) {
+                deleted.add(entry.getKey().identifier());
+            } else {
+                objects.add(object);
+            }
+        }
+
+        try {
+            if (!objects.isEmpty()) {
+                delegate.saveAllSync(objects);
+            }
+            if (!deleted.isEmpty()) {
+                delegate.deleteByIdsSync(clazz, deleted);
+            }
+        } catch (RuntimeException e) {
+            failed.add(entries.size());
+            logError("Can't apply " + entries.size() + " journal records of " + clazz.getSimpleName() + ", they will be retried", e);
+            return;
+        }
+
+        for (Map.Entry<PendingKey, Pending> entry : entries) {
+            Pending written = entry.getValue();
+            // Un objeto guardado otra vez durante la escritura ya no retiene los registros aplicados
+            pending.computeIfPresent(entry.getKey(), (key, current) -> current == written
+                ? null
+                : new Pending(current.sequence(), Math.max(current.floor(), written.sequence() + 1), current.object())
+            );
+        }
+        applied.add(entries.size());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> saveOrUpdateAsync(StorageObject obj) {
+        return saveAllAsync(Collections.singletonList(obj));
+    }
+
+    /**
+     * Returns once the object is synced to the journal.
+     */
+    @Override
+    public void saveOrUpdateSync(StorageObject obj) {
+        await(saveOrUpdateAsync(obj));
+    }
+
+    /**
+     * The future is completed once every object is synced to the journal,
+     * objects without identifier are saved directly in the wrapped database.
+     */
+    @Override
+    public CompletableFuture<Void> saveAllAsync(Collection<? extends StorageObject> objects) {
+        WriteAheadJournal current = journal;
+        if (current == null) {
+            return delegate.saveAllAsync(objects);
+        }
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>(objects.size());
+        List<StorageObject> direct = new ArrayList<>();
+        for (StorageObject object : objects) {
+            String identifier = StorageSchema.of(object.getClass()).extractIdentifier(object);
+            if (identifier == null) {
+                direct.add(object);
+            } else {
+                futures.add(append(current, object.getClass(), identifier, object));
+            }
+        }
+        if (!direct.isEmpty()) {
+            futures.add(delegate.saveAllAsync(direct));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * Returns once every object is synced to the journal.
+     */
+    @Override
+    public void saveAllSync(Collection<? extends StorageObject> objects) {
+        await(saveAllAsync(objects));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> CompletableFuture<Void> deleteByIdAsync(Class<T> clazz, String identifier) {
+        return deleteByIdsAsync(clazz, Collections.singletonList(identifier));
+    }
+
+    /**
+     * Returns once the delete is synced to the journal.
+     */
+    @Override
+    public <T extends StorageObject> void deleteByIdSync(Class<T> clazz, String identifier) {
+        await(deleteByIdAsync(clazz, identifier));
+    }
+
+    /**
+     * The future is completed once every delete is synced to the journal.
+     */
+    @Override
+    public <T extends StorageObject> CompletableFuture<Void> deleteByIdsAsync(Class<T> clazz, Collection<String> identifiers) {
+        WriteAheadJournal current = journal;
+        if (current == null) {
+            return delegate.deleteByIdsAsync(clazz, identifiers);
+        }
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>(identifiers.size());
+        for (String identifier : new LinkedHashSet<>(identifiers)) {
+            if (identifier != null) {
+                futures.add(append(current, clazz, identifier, null));
+            }
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * Returns once every delete is synced to the journal.
+     */
+    @Override
+    public <T extends StorageObject> void deleteByIdsSync(Class<T> clazz, Collection<String> identifiers) {
+        await(deleteByIdsAsync(clazz, identifiers));
+    }
+
+    /**
+     * Appends a save or a delete, the object is pending until its record is applied.
+     * @param object to save or null to delete
+     */
+    private CompletableFuture<Void> append(WriteAheadJournal current, Class<? extends StorageObject> clazz, String identifier, StorageObject object) {
+        byte[] payload = object == null ? EMPTY : LogCodec.encode(createDocument(object));
+        byte type = object == null ? WriteAheadJournal.DELETE : WriteAheadJournal.PUT;
+        PendingKey key = new PendingKey(clazz, identifier);
+
+        Pending entry;
+        Pending previous;
+        WriteAheadJournal.Commit commit;
+        try {
+            synchronized (appendLock) {
+                commit = current.append(type, clazz.getName(), identifier, payload);
+                previous = pending.get(key);
+                // Un registro reemplazado sin aplicar mantiene el checkpoint detrás hasta que se aplique el nuevo
+                entry = new Pending(commit.sequence(), previous == null ? commit.sequence() : previous.floor(), object);
+                pending.put(key, entry);
+            }
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return commit.future().whenComplete((result, error) -> {
+            if (error != null) {
+                // El registro anterior sigue en el journal sin aplicar, vuelve a ser el pendiente
+                pending.computeIfPresent(key, (ignored, value) -> value.sequence() != entry.sequence()
+                    ? value
+                    : previous == null ? null : new Pending(previous.sequence(), value.floor(), previous.object())
+                );
+                logError("Can't journal " + clazz.getSimpleName() + " " + identifier, error instanceof Exception exception ? exception : new IllegalStateException(error));
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> CompletableFuture<Optional<T>> loadByIdAsync(Class<T> clazz, String identifier) {
+        Pending entry = pendingOf(clazz, identifier);
+        if (entry != null) {
+            return CompletableFuture.completedFuture(Optional.ofNullable(entry.object()).map(clazz::cast));
+        }
+        return delegate.loadByIdAsync(clazz, identifier);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> Optional<T> loadByIdSync(Class<T> clazz, String identifier) {
+        Pending entry = pendingOf(clazz, identifier);
+        if (entry != null) {
+            return Optional.ofNullable(entry.object()).map(clazz::cast);
+        }
+        return delegate.loadByIdSync(clazz, identifier);
+    }
+
+    /**
+     * Pending objects are returned directly, the other objects are loaded with a single bulk call.
+     */
+    @Override
+    public <T extends StorageObject> Map<String, T> loadByIdsSync(Class<T> clazz, Collection<String> identifiers) {
+        Map<String, T> results = new HashMap<>();
+        List<String> missing = new ArrayList<>(identifiers.size());
+        for (String identifier : new LinkedHashSet<>(identifiers)) {
+            Pending entry = pendingOf(clazz, identifier);
+            if (entry == null) {
+                if (identifier != null) {
+                    missing.add(identifier);
+                }
+            } else if (entry.object() != null) {
+                results.put(identifier, clazz.cast(entry.object()));
+            }
+        }
+        if (!missing.isEmpty()) {
+            results.putAll(delegate.loadByIdsSync(clazz, missing));
+        }
+        return results;
+    }
+
+    /**
+     * Pending objects are read without a call to the wrapped database.
+     */
+    @Override
+    public <T extends StorageObject> Optional<Map<String, Object>> loadFieldsByIdSync(Class<T> clazz, String identifier, String... keys) {
+        Pending entry = pendingOf(clazz, identifier);
+        if (entry != null) {
+            return entry.object() == null ? Optional.empty() : Optional.of(delegate.extractFields(entry.object(), keys));
+        }
+        return delegate.loadFieldsByIdSync(clazz, identifier, keys);
+    }
+
+    @Override
+    public Map<String, Object> extractFields(StorageObject obj, String... keys) {
+        return delegate.extractFields(obj, keys);
+    }
+
+    /**
+     * The pending records of the class are applied before the increments.
+     */
+    @Override
+    public <T extends StorageObject> void incrementSync(Class<T> clazz, Map<String, Map<String, Long>> deltas) {
+        applyPending(clazz);
+        delegate.incrementSync(clazz, deltas);
+    }
+
+    /**
+     * The pending records of the class are applied before the load.
+     */
+    @Override
+    public <T extends StorageObject> CompletableFuture<Set<T>> loadAllAsync(Class<T> clazz) {
+        return CompletableFuture.runAsync(() -> applyPending(clazz)).thenCompose(ignored -> delegate.loadAllAsync(clazz));
+    }
+
+    /**
+     * The pending records of the class are applied before the load.
+     */
+    @Override
+    public <T extends StorageObject> Set<T> loadAllSync(Class<T> clazz) {
+        applyPending(clazz);
+        return delegate.loadAllSync(clazz);
+    }
+
+    /**
+     * The pending records of the class are applied before the stream.
+     */
+    @Override
+    public <T extends StorageObject> Stream<T> streamAll(Class<T> clazz, boolean parallel) {
+        applyPending(clazz);
+        return delegate.streamAll(clazz, parallel);
+    }
+
+    /**
+     * The pending records of the class are applied before the query.
+     */
+    @Override
+    public <T extends StorageObject> Stream<T> streamQuery(StorageQuery<T> query) {
+        applyPending(query.getType());
+        return delegate.streamQuery(query);
+    }
+
+    /**
+     * The pending records of the class are applied before the query.
+     */
+    @Override
+    public <T extends StorageObject> long countQuery(StorageQuery<T> query) {
+        applyPending(query.getType());
+        return delegate.countQuery(query);
+    }
+
+    /**
+     * Stops the journal, applies the pending records until the drain timeout and closes the wrapped database.
+     * Records that are not applied are replayed the next time the database is connected.
+     */
+    @Override
+    public void closeConnection() {
+        WriteAheadJournal current;
+        synchronized (appendLock) {
+            current = journal;
+            journal = null;
+        }
+
+        if (current != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(settings.getDrainTimeout(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            executor = null;
+
+            long deadline = System.currentTimeMillis() + settings.getDrainTimeout();
+            apply(current, null);
+            while (!pending.isEmpty() && System.currentTimeMillis() < deadline && !Thread.currentThread().isInterrupted()) {
+                try {
+                    Thread.sleep(Math.min(1_000L, settings.getApplyInterval()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                apply(current, null);
+            }
+
+            if (!pending.isEmpty()) {
+                fetch(MeteorLogger.class).warn(
+                    "Journal drain finished with " + pending.size() + " objects not applied, they will be replayed on the next start"
+                );
+            }
+
+            try {
+                current.close();
+            } catch (IOException e) {
+                logError("Can't close the journal", e);
+            }
+            pending.clear();
+        }
+
+        delegate.closeConnection();
+    }
+
+    @Override
+    public void enableWriteBehind(WriteBehindSettings settings) {
+        delegate.enableWriteBehind(settings);
+    }
+
+    @Override
+    public boolean isWriteBehindEnabled() {
+        return delegate.isWriteBehindEnabled();
+    }
+
+    @Override
+    public WriteBehindQueue getWriteBehind() {
+        return delegate.getWriteBehind();
+    }
+
+    @Override
+    public void flushWriteBehind() {
+        delegate.flushWriteBehind();
+    }
+
+    @Override
+    public void shutdownWriteBehind() {
+        delegate.shutdownWriteBehind();
+    }
+
+    @Override
+    public ChangeTracker getChangeTracker() {
+        return delegate.getChangeTracker();
+    }
+
+    @Override
+    public String getStorageIdentity() {
+        return delegate.getStorageIdentity();
+    }
+
+    @Override
+    public boolean hasChanges(StorageObject obj) {
+        return delegate.hasChanges(obj);
+    }
+
+    /**
+     * Converters are also used to encode the journal records and to replay them.
+     */
+    @Override
+    public void registerDefaultValueConverter(Class<?> key, Function<String, ?> converter) {
+        super.registerDefaultValueConverter(key, converter);
+        delegate.registerDefaultValueConverter(key, converter);
+    }
+
+    @Override
+    public void registerCollectionConverter(Class<? extends Collection<?>> key, Function<Collection<?>, ?> converter) {
+        super.registerCollectionConverter(key, converter);
+        delegate.registerCollectionConverter(key, converter);
+    }
+
+    @Override
+    public void unregisterDefaultValueConverter(Class<?> clazz) {
+        super.unregisterDefaultValueConverter(clazz);
+        delegate.unregisterDefaultValueConverter(clazz);
+    }
+
+    @Override
+    public void unregisterCollectionConverter(Class<? extends Collection<?>> clazz) {
+        super.unregisterCollectionConverter(clazz);
+        delegate.unregisterCollectionConverter(clazz);
+    }
+
+    private Pending pendingOf(Class<? extends StorageObject> clazz, String identifier) {
+        return identifier == null ? null : pending.get(new PendingKey(clazz, identifier));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> readDocument(byte[] payload) {
+        try {
+            Object document = LogCodec.decode(payload);
+            return document instanceof Map<?, ?> map ? (Map<String, Object>) map : null;
+        } catch (IllegalArgumentException e) {
+            logError("Can't decode a journal record", e);
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Class<? extends StorageObject> resolveClass(String name) {
+        List<ClassLoader> loaders = Arrays.asList(getClass().getClassLoader(), Thread.currentThread().getContextClassLoader());
+        for (ClassLoader loader : loaders) {
+            if (loader == null) {
+                continue;
+            }
+            try {
+                Class<?> clazz = Class.forName(name, true, loader);
+                if (StorageObject.class.isAssignableFrom(clazz)) {
+                    return (Class<? extends StorageObject>) clazz;
+                }
+                return null;
+            } catch (ClassNotFoundException ignored) {
+                // Se prueba con el siguiente class loader
+            }
+        }
+        return null;
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException exception) {
+                throw exception;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * @param clazz of the object
+     * @param identifier of the object
+     */
+    private record PendingKey(Class<? extends StorageObject> clazz, String identifier) { }
+
+    /**
+     * Newest record of an object that is not applied yet
+     * @param sequence of the record
+     * @param floor sequence of the oldest record of this object that is not applied
+     * @param object to save or null for a delete
+     */
+    private record Pending(long sequence, long floor, StorageObject object) { }
+}
@@ -0,0 +1,640 @@
+package me.blueslime.bukkitmeteor.storage.journal;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Write-ahead journal file with group commits.
+ * <p>
+ * Appended records wait in a queue, the commit thread writes every record that arrives in the group commit window
+ * and syncs the file once, so the concurrent saves share the cost of a single sync.
+ * The sequence of the last applied record is stored in a checkpoint file, older records are skipped on replay.
+ * <p>
+ * The records are written in segments named by their first sequence, a new segment is started once the current one
+ * is bigger than {@link JournalSettings#getMaxJournalSize()} and the segments whose records are all at or below
+ * the checkpoint are deleted. Records that can't be replayed are moved to the journal-quarantine.log file.
+ * <p>
+ * Record format: {@code [int length][int crc32c][byte type][long sequence][short class length][class][short id length][id][payload]},
+ * the length and the checksum cover the bytes after the header.
+ */
+public class WriteAheadJournal implements AutoCloseable {
+
+    public static final byte PUT = 1;
+    public static final byte DELETE = 2;
+
+    private static final int HEADER_SIZE = 8;
+    private static final int MIN_BODY = 1 + Long.BYTES + 2 * Short.BYTES;
+    private static final int MAX_NAME = 0xFFFF;
+    private static final int CHECKPOINT_SIZE = Long.BYTES + Integer.BYTES;
+    private static final String LEGACY_FILE = "journal.log";
+    private static final String QUARANTINE_FILE = "journal-quarantine.log";
+
+    private final BlockingQueue<Append> queue = new LinkedBlockingQueue<>();
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder records = new LongAdder();
+    private final Object appendLock = new Object();
+    private final Object writeLock = new Object();
+
+    private final JournalSettings settings;
+    private final Path folder;
+
+    // Segmentos cerrados por su primera secuencia, protegido por writeLock
+    private final TreeMap<Long, Path> segments = new TreeMap<>();
+
+    private FileChannel channel;
+    private FileChannel checkpointChannel;
+    private Thread committer;
+    private long segmentStart;
+    private long closedBytes = 0L;
+
+    private List<Entry> recovered = new ArrayList<>();
+    private long recoveredBytes = 0L;
+
+    private volatile long syncedSequence;
+    private volatile long checkpoint;
+    private volatile long size;
+    private volatile boolean closed = false;
+    private long lastSequence;
+
+    private volatile long lastCommitDuration = 0L;
+    private volatile int lastCommitSize = 0;
+
+    private WriteAheadJournal(Path folder, JournalSettings settings) {
+        this.settings = settings;
+        this.folder = folder;
+    }
+
+    /**
+     * Opens the journal of a folder, incomplete or corrupt records at the end of the journal are removed
+     * and the records after the checkpoint are kept for {@link #takeRecovered()}.
+     * @param folder of the journal
+     * @param settings of the journal
+     * @return journal
+     * @throws IOException if the files can't be opened
+     */
+    public static WriteAheadJournal open(Path folder, JournalSettings settings) throws IOException {
+        Files.createDirectories(folder);
+        WriteAheadJournal journal = new WriteAheadJournal(folder, settings == null ? JournalSettings.create() : settings);
+        journal.load();
+        return journal;
+    }
+
+    private void load() throws IOException {
+        checkpointChannel = FileChannel.open(
+            folder.resolve("journal.checkpoint"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE
+        );
+        checkpoint = readCheckpoint();
+        lastSequence = checkpoint;
+
+        // El journal de un solo archivo es el primer segmento
+        Path legacy = folder.resolve(LEGACY_FILE);
+        if (Files.exists(legacy)) {
+            Files.move(legacy, segmentOf(0L));
+        }
+
+        TreeMap<Long, Path> found = new TreeMap<>();
+        try (Stream<Path> files = Files.list(folder)) {
+            files.forEach(file -> {
+                long start = startOf(file);
+                if (start >= 0L) {
+                    found.put(start, file);
+                }
+            });
+        }
+
+        Map.Entry<Long, Path> active = found.pollLastEntry();
+        for (Map.Entry<Long, Path> segment : found.entrySet()) {
+            Long next = found.higherKey(segment.getKey());
+            long end = (next == null ? active.getKey() : next) - 1L;
+            if (end <= checkpoint) {
+                Files.deleteIfExists(segment.getValue());
+            } else {
+                long length = recover(segment.getValue());
+                segments.put(segment.getKey(), segment.getValue());
+                closedBytes += length;
+            }
+        }
+
+        if (active == null) {
+            segmentStart = checkpoint + 1L;
+            channel = openSegment(segmentOf(segmentStart));
+            size = 0L;
+        } else {
+            segmentStart = active.getKey();
+            lastSequence = Math.max(lastSequence, segmentStart - 1L);
+            channel = openSegment(active.getValue());
+            size = recover(active.getValue());
+        }
+        syncedSequence = lastSequence;
+
+        committer = new Thread(this::commitLoop, "BukkitMeteor-Journal");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    private long readCheckpoint() throws IOException {
+        if (checkpointChannel.size() < CHECKPOINT_SIZE) {
+            return 0L;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(CHECKPOINT_SIZE);
+        while (buffer.hasRemaining() && checkpointChannel.read(buffer, buffer.position()) >= 0) {
+            // Lectura completa del checkpoint
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), 0, Long.BYTES);
+        if ((int) crc.getValue() != buffer.getInt(Long.BYTES)) {
+            // Un checkpoint dañado solo repite registros ya aplicados
+            return 0L;
+        }
+        return buffer.getLong(0);
+    }
+
+    /**
+     * Reads the records of a segment, the segment is cut at the first invalid record.
+     * @return valid size of the segment
+     */
+    private long recover(Path segment) throws IOException {
+        try (FileChannel file = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return recover(file);
+        }
+    }
+
+    private long recover(FileChannel file) throws IOException {
+        long fileSize = file.size();
+        long position = 0L;
+
+        DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(file.position(0L)), 64 * 1024));
+        while (position + HEADER_SIZE <= fileSize) {
+            int length = input.readInt();
+            int checksum = input.readInt();
+            if (length < MIN_BODY || position + HEADER_SIZE + length > fileSize) {
+                break;
+            }
+            byte[] body = new byte[length];
+            input.readFully(body);
+
+            Entry entry = Entry.parse(body, checksum);
+            if (entry == null) {
+                break;
+            }
+            position += HEADER_SIZE + length;
+            lastSequence = Math.max(lastSequence, entry.sequence());
+            if (entry.sequence() > checkpoint) {
+                recovered.add(entry);
+            }
+        }
+
+        if (position < fileSize) {
+            recoveredBytes += fileSize - position;
+            file.truncate(position);
+            file.force(true);
+        }
+        return position;
+    }
+
+    private FileChannel openSegment(Path segment) throws IOException {
+        return FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private Path segmentOf(long start) {
+        return folder.resolve(String.format(Locale.ENGLISH, "journal-%020d.log", start));
+    }
+
+    /**
+     * @return first sequence of a segment file or -1 if the file is not a segment
+     */
+    private static long startOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith("journal-") || !name.endsWith(".log") || name.equals(QUARANTINE_FILE)) {
+            return -1L;
+        }
+        try {
+            return Long.parseLong(name.substring("journal-".length(), name.length() - ".log".length()));
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    /**
+     * Adds a record to the next group commit
+     * @param type {@link #PUT} or {@link #DELETE}
+     * @param className of the object
+     * @param identifier of the object
+     * @param payload encoded object, empty for deletes
+     * @return sequence of the record and a future completed when the record is synced to the disk
+     * @throws IllegalArgumentException if the class name or the identifier is too long
+     * @throws IllegalStateException if the journal is closed
+     */
+    public Commit append(byte type, String className, String identifier, byte[] payload) {
+        byte[] name = className.getBytes(StandardCharsets.UTF_8);
+        byte[] id = identifier.getBytes(StandardCharsets.UTF_8);
+        if (name.length > MAX_NAME || id.length > MAX_NAME) {
+            throw new IllegalArgumentException("Identifier is too long: " + identifier.length());
+        }
+
+        synchronized (appendLock) {
+            if (closed) {
+                throw new IllegalStateException("Journal is closed: " + folder.getFileName());
+            }
+            Append append = new Append(type, ++lastSequence, name, id, payload);
+            queue.add(append);
+            return new Commit(append.sequence, append.future);
+        }
+    }
+
+    private void commitLoop() {
+        List<Append> batch = new ArrayList<>();
+        long window = TimeUnit.MILLISECONDS.toNanos(settings.getGroupCommitWindow());
+
+        while (true) {
+            try {
+                Append first = queue.poll(100L, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (closed && queue.isEmpty()) {
+                        return;
+                    }
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + window;
+                while (batch.size() < settings.getMaxCommitSize()) {
+                    long remaining = deadline - System.nanoTime();
+                    Append next = remaining > 0L ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Los registros pendientes se escriben antes de salir
+                queue.drainTo(batch);
+                closed = true;
+            }
+
+            if (!batch.isEmpty()) {
+                commit(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Writes a group of records and syncs the file once
+     */
+    private void commit(List<Append> batch) {
+        long start = System.nanoTime();
+        try {
+            synchronized (writeLock) {
+                int length = 0;
+                for (Append append : batch) {
+                    length += append.length();
+                }
+                ByteBuffer buffer = ByteBuffer.allocate(length);
+                for (Append append : batch) {
+                    append.encode(buffer);
+                }
+                buffer.flip();
+
+                long position = size;
+                try {
+                    while (buffer.hasRemaining()) {
+                        position += channel.write(buffer, position);
+                    }
+                    channel.force(false);
+                } catch (IOException e) {
+                    // Un registro incompleto al final del journal cortaría los siguientes en la recuperación
+                    try {
+                        channel.truncate(size);
+                    } catch (IOException ignored) { }
+                    throw e;
+                }
+                size = position;
+                syncedSequence = batch.get(batch.size() - 1).sequence;
+
+                if (size > settings.getMaxJournalSize()) {
+                    rotate(syncedSequence + 1L);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            IllegalStateException failure = new IllegalStateException("Can't write the journal: " + folder.getFileName(), e);
+            for (Append append : batch) {
+                append.future.completeExceptionally(failure);
+            }
+            return;
+        }
+
+        commits.increment();
+        records.add(batch.size());
+        lastCommitSize = batch.size();
+        lastCommitDuration = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+        for (Append append : batch) {
+            append.future.complete(null);
+        }
+    }
+
+    /**
+     * Starts a new segment, the records of the current one are already synced. Runs under the write lock.
+     * @param start sequence of the first record of the new segment
+     */
+    private void rotate(long start) throws IOException {
+        FileChannel next = openSegment(segmentOf(start));
+        segments.put(segmentStart, segmentOf(segmentStart));
+        closedBytes += size;
+        channel.close();
+        channel = next;
+        segmentStart = start;
+        size = 0L;
+        deleteApplied();
+    }
+
+    /**
+     * Deletes the closed segments whose records are all at or below the checkpoint. Runs under the write lock.
+     */
+    private void deleteApplied() throws IOException {
+        while (!segments.isEmpty()) {
+            Map.Entry<Long, Path> first = segments.firstEntry();
+            Long next = segments.higherKey(first.getKey());
+            long end = (next == null ? segmentStart : next) - 1L;
+            if (end > checkpoint) {
+                return;
+            }
+            long length = Files.size(first.getValue());
+            Files.deleteIfExists(first.getValue());
+            segments.pollFirstEntry();
+            closedBytes -= length;
+        }
+    }
+
+    /**
+     * Stores the sequence of the last applied record, records up to this sequence are not replayed
+     * and the segments that only have older records are deleted.
+     * @param applied sequence
+     * @throws IOException if the checkpoint can't be written
+     */
+    public void checkpoint(long applied) throws IOException {
+        synchronized (writeLock) {
+            if (applied <= checkpoint || !checkpointChannel.isOpen()) {
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(CHECKPOINT_SIZE);
+            buffer.putLong(applied);
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.array(), 0, Long.BYTES);
+            buffer.putInt((int) crc.getValue());
+            buffer.flip();
+            long position = 0L;
+            while (buffer.hasRemaining()) {
+                position += checkpointChannel.write(buffer, position);
+            }
+            checkpoint = applied;
+
+            if (!segments.isEmpty() && segments.firstKey() <= applied) {
+                // Un checkpoint perdido repetiría registros de segmentos que ya no existen
+                checkpointChannel.force(false);
+                deleteApplied();
+            }
+        }
+    }
+
+    /**
+     * Moves a record that can't be replayed to the quarantine file, so it does not hold the checkpoint back.
+     * @param entry recovered record
+     * @throws IOException if the quarantine file can't be written
+     */
+    public void quarantine(Entry entry) throws IOException {
+        Append append = new Append(
+            entry.type(), entry.sequence(), entry.className().getBytes(StandardCharsets.UTF_8),
+            entry.identifier().getBytes(StandardCharsets.UTF_8), entry.payload()
+        );
+        ByteBuffer buffer = ByteBuffer.allocate(append.length());
+        append.encode(buffer);
+        buffer.flip();
+
+        synchronized (writeLock) {
+            try (FileChannel file = FileChannel.open(
+                folder.resolve(QUARANTINE_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND
+            )) {
+                while (buffer.hasRemaining()) {
+                    file.write(buffer);
+                }
+                file.force(false);
+            }
+        }
+    }
+
+    /**
+     * Records after the checkpoint found when the journal was opened, they are returned only once.
+     * @return recovered records in journal order
+     */
+    public List<Entry> takeRecovered() {
+        List<Entry> entries = recovered;
+        recovered = new ArrayList<>();
+        return entries;
+    }
+
+    /**
+     * @return sequence of the last record synced to the disk
+     */
+    public long getSyncedSequence() {
+        return syncedSequence;
+    }
+
+    /**
+     * @return sequence of the last applied record
+     */
+    public long getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * @return size of the journal segments in bytes
+     */
+    public long getSize() {
+        synchronized (writeLock) {
+            return closedBytes + size;
+        }
+    }
+
+    /**
+     * @return segment files of the journal, including the current one
+     */
+    public int getSegments() {
+        synchronized (writeLock) {
+            return segments.size() + 1;
+        }
+    }
+
+    /**
+     * @return bytes of incomplete or corrupt records removed from the segments when the journal was opened
+     */
+    public long getRecoveredBytes() {
+        return recoveredBytes;
+    }
+
+    /**
+     * @return group commits synced to the disk
+     */
+    public long getCommits() {
+        return commits.sum();
+    }
+
+    /**
+     * @return records synced to the disk
+     */
+    public long getRecords() {
+        return records.sum();
+    }
+
+    /**
+     * @return records of the last group commit
+     */
+    public int getLastCommitSize() {
+        return lastCommitSize;
+    }
+
+    /**
+     * @return duration of the last group commit write and sync in microseconds
+     */
+    public long getLastCommitDuration() {
+        return lastCommitDuration;
+    }
+
+    /**
+     * Stops the appends, waits until the queued records are synced and closes the files
+     * @throws IOException if the files can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            if (!channel.isOpen()) {
+                return;
+            }
+            closed = true;
+        }
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            committer.interrupt();
+        }
+        synchronized (writeLock) {
+            checkpointChannel.force(false);
+            checkpointChannel.close();
+            channel.close();
+        }
+    }
+
+    /**
+     * Appended record
+     * @param sequence of the record
+     * @param future completed when the record is synced to the disk
+     */
+    public record Commit(long sequence, CompletableFuture<Void> future) { }
+
+    /**
+     * Record read from the journal
+     * @param type {@link #PUT} or {@link #DELETE}
+     * @param sequence of the record
+     * @param className of the object
+     * @param identifier of the object
+     * @param payload encoded object, empty for deletes
+     */
+    public record Entry(byte type, long sequence, String className, String identifier, byte[] payload) {
+
+        public boolean isDelete() {
+            return type == DELETE;
+        }
+
+        /**
+         * @param body of the record, without the header
+         * @param checksum of the header
+         * @return entry or null if the record is invalid
+         */
+        private static Entry parse(byte[] body, int checksum) {
+            CRC32C crc = new CRC32C();
+            crc.update(body, 0, body.length);
+            if ((int) crc.getValue() != checksum) {
+                return null;
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(body);
+            byte type = buffer.get();
+            long sequence = buffer.getLong();
+            int nameLength = buffer.getShort() & 0xFFFF;
+            if ((type != PUT && type != DELETE) || buffer.remaining() < nameLength + Short.BYTES) {
+                return null;
+            }
+            String className = new String(body, buffer.position(), nameLength, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + nameLength);
+
+            int idLength = buffer.getShort() & 0xFFFF;
+            if (buffer.remaining() < idLength) {
+                return null;
+            }
+            String identifier = new String(body, buffer.position(), idLength, StandardCharsets.UTF_8);
+            byte[] payload = Arrays.copyOfRange(body, buffer.position() + idLength, body.length);
+            return new Entry(type, sequence, className, identifier, payload);
+        }
+    }
+
+    private static class Append {
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private final byte[] payload;
+        private final long sequence;
+        private final byte[] name;
+        private final byte[] id;
+        private final byte type;
+
+        private Append(byte type, long sequence, byte[] name, byte[] id, byte[] payload) {
+            this.sequence = sequence;
+            this.payload = payload;
+            this.type = type;
+            this.name = name;
+            this.id = id;
+        }
+
+        private int length() {
+            return HEADER_SIZE + MIN_BODY + name.length + id.length + payload.length;
+        }
+
+        private void encode(ByteBuffer buffer) {
+            int start = buffer.position();
+            int length = MIN_BODY + name.length + id.length + payload.length;
+            buffer.putInt(length);
+            buffer.putInt(0);
+            buffer.put(type);
+            buffer.putLong(sequence);
+            buffer.putShort((short) name.length);
+            buffer.put(name);
+            buffer.putShort((short) id.length);
+            buffer.put(id);
+            buffer.put(payload);
+
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.array(), start + HEADER_SIZE, length);
+            buffer.putInt(start + 4, (int) crc.getValue());
+        }
+    }
+}
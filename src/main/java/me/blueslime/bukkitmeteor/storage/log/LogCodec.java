@@ -0,0 +1,298 @@
+package me.blueslime.bukkitmeteor.storage.log;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact binary encoding of document values (maps, lists, strings, numbers and booleans).
+ * <p>
+ * Every value starts with a one byte tag, integers and lengths are written as variable length numbers,
+ * so small numbers and short strings use one or two bytes.
+ */
+public final class LogCodec {
+
+    private static final byte NULL = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final byte INT = 3;
+    private static final byte LONG = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte FLOAT = 6;
+    private static final byte STRING = 7;
+    private static final byte LIST = 8;
+    private static final byte MAP = 9;
+    private static final byte SHORT = 10;
+    private static final byte BYTE = 11;
+    private static final byte BIG_INTEGER = 12;
+    private static final byte BIG_DECIMAL = 13;
+
+    private LogCodec() {
+
+    }
+
+    public static byte[] encode(Object value) {
+        Output output = new Output();
+        write(output, value);
+        return output.toByteArray();
+    }
+
+    /**
+     * @param data encoded value
+     * @return decoded value
+     * @throws IllegalArgumentException if the data is not a valid value
+     */
+    public static Object decode(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        try {
+            return read(buffer);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated value", e);
+        }
+    }
+
+    /**
+     * Decodes only some keys of an encoded map, other values are skipped without being decoded
+     * and the read stops once every key was found.
+     * @param data encoded map
+     * @param keys to decode
+     * @return values of the found keys
+     * @throws IllegalArgumentException if the data is not a valid map
+     */
+    public static Map<String, Object> decode(byte[] data, Set<String> keys) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        try {
+            byte tag = buffer.get();
+            if (tag != MAP) {
+                throw new IllegalArgumentException("Value is not a map: " + tag);
+            }
+            int size = readSize(buffer);
+            Map<String, Object> map = new LinkedHashMap<>(Math.max(16, keys.size() * 2));
+            for (int i = 0; i < size && map.size() < keys.size(); i++) {
+                String key = readString(buffer);
+                if (keys.contains(key)) {
+                    map.put(key, read(buffer));
+                } else {
+                    skip(buffer);
+                }
+            }
+            return map;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated value", e);
+        }
+    }
+
+    private static void write(Output output, Object value) {
+        if (value == null) {
+            output.write(NULL);
+        } else if (value instanceof Boolean bool) {
+            output.write(bool ? TRUE : FALSE);
+        } else if (value instanceof Integer number) {
+            output.write(INT);
+            output.writeVarLong(zigZag(number));
+        } else if (value instanceof Long number) {
+            output.write(LONG);
+            output.writeVarLong(zigZag(number));
+        } else if (value instanceof Double number) {
+            output.write(DOUBLE);
+            output.writeLong(Double.doubleToRawLongBits(number));
+        } else if (value instanceof Float number) {
+            output.write(FLOAT);
+            output.writeInt(Float.floatToRawIntBits(number));
+        } else if (value instanceof Short number) {
+            output.write(SHORT);
+            output.writeVarLong(zigZag(number));
+        } else if (value instanceof Byte number) {
+            output.write(BYTE);
+            output.write(number);
+        } else if (value instanceof BigInteger number) {
+            output.write(BIG_INTEGER);
+            output.writeString(number.toString());
+        } else if (value instanceof BigDecimal number) {
+            output.write(BIG_DECIMAL);
+            output.writeString(number.toString());
+        } else if (value instanceof Map<?, ?> map) {
+            output.write(MAP);
+            output.writeVarLong(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                output.writeString(String.valueOf(entry.getKey()));
+                write(output, entry.getValue());
+            }
+        } else if (value instanceof List<?> list) {
+            output.write(LIST);
+            output.writeVarLong(list.size());
+            for (Object element : list) {
+                write(output, element);
+            }
+        } else {
+            output.write(STRING);
+            output.writeString(value.toString());
+        }
+    }
+
+    private static Object read(ByteBuffer buffer) {
+        byte tag = buffer.get();
+        switch (tag) {
+            case NULL -> {
+                return null;
+            }
+            case TRUE -> {
+                return Boolean.TRUE;
+            }
+            case FALSE -> {
+                return Boolean.FALSE;
+            }
+            case INT -> {
+                return (int) unZigZag(readVarLong(buffer));
+            }
+            case LONG -> {
+                return unZigZag(readVarLong(buffer));
+            }
+            case DOUBLE -> {
+                return Double.longBitsToDouble(buffer.getLong());
+            }
+            case FLOAT -> {
+                return Float.intBitsToFloat(buffer.getInt());
+            }
+            case SHORT -> {
+                return (short) unZigZag(readVarLong(buffer));
+            }
+            case BYTE -> {
+                return buffer.get();
+            }
+            case BIG_INTEGER -> {
+                return new BigInteger(readString(buffer));
+            }
+            case BIG_DECIMAL -> {
+                return new BigDecimal(readString(buffer));
+            }
+            case STRING -> {
+                return readString(buffer);
+            }
+            case LIST -> {
+                int size = readSize(buffer);
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(read(buffer));
+                }
+                return list;
+            }
+            case MAP -> {
+                int size = readSize(buffer);
+                Map<String, Object> map = new LinkedHashMap<>(Math.max(16, size * 2));
+                for (int i = 0; i < size; i++) {
+                    String key = readString(buffer);
+                    map.put(key, read(buffer));
+                }
+                return map;
+            }
+        }
+        throw new IllegalArgumentException("Unknown value tag: " + tag);
+    }
+
+    private static void skip(ByteBuffer buffer) {
+        byte tag = buffer.get();
+        switch (tag) {
+            case NULL, TRUE, FALSE -> { }
+            case INT, LONG, SHORT -> readVarLong(buffer);
+            case DOUBLE -> buffer.position(buffer.position() + Long.BYTES);
+            case FLOAT -> buffer.position(buffer.position() + Integer.BYTES);
+            case BYTE -> buffer.get();
+            case BIG_INTEGER, BIG_DECIMAL, STRING -> {
+                int length = readSize(buffer);
+                buffer.position(buffer.position() + length);
+            }
+            case LIST -> {
+                int size = readSize(buffer);
+                for (int i = 0; i < size; i++) {
+                    skip(buffer);
+                }
+            }
+            case MAP -> {
+                int size = readSize(buffer);
+                for (int i = 0; i < size; i++) {
+                    int length = readSize(buffer);
+                    buffer.position(buffer.position() + length);
+                    skip(buffer);
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown value tag: " + tag);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = readSize(buffer);
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static int readSize(ByteBuffer buffer) {
+        long size = readVarLong(buffer);
+        if (size < 0 || size > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid size: " + size);
+        }
+        return (int) size;
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long result = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte current = buffer.get();
+            result |= (long) (current & 0x7F) << shift;
+            if ((current & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Invalid variable length number");
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static class Output extends ByteArrayOutputStream {
+
+        private Output() {
+            super(128);
+        }
+
+        private void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        private void writeInt(int value) {
+            write(value >>> 24);
+            write(value >>> 16);
+            write(value >>> 8);
+            write(value);
+        }
+
+        private void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        private void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+    }
+}
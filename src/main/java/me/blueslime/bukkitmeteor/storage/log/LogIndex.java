@@ -0,0 +1,376 @@
+package me.blueslime.bukkitmeteor.storage.log;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+/**
+ * Memory-mapped open addressing hash table from identifier hash to record location.
+ * <p>
+ * The table lives outside the java heap and is persisted in the index file, after a clean close
+ * the next start uses it directly instead of reading every segment. The index is not thread-safe,
+ * {@link LogStore} guards it with its lock.
+ */
+class LogIndex {
+
+    private static final int MAGIC = 0x4D4C4958;
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_SIZE = 20;
+    private static final int MIN_CAPACITY = 1024;
+    private static final double MAX_LOAD = 0.7D;
+
+    private static final int EMPTY = 0;
+    private static final int DELETED = -1;
+
+    // Header offsets
+    private static final int CAPACITY = 8;
+    private static final int SIZE = 12;
+    private static final int USED = 16;
+    private static final int CLEAN = 20;
+    private static final int LAST_SEGMENT = 24;
+    private static final int LAST_OFFSET = 28;
+
+    private final Path folder;
+
+    private MappedByteBuffer buffer;
+    private Path file;
+    private int generation;
+    private int capacity;
+    private int size;
+    private int used;
+
+    private LogIndex(Path folder) {
+        this.folder = folder;
+    }
+
+    /**
+     * Opens the newest index file of a folder or creates an empty index
+     * @param folder of the store
+     * @return index
+     * @throws IOException if the index file can't be mapped
+     */
+    static LogIndex open(Path folder) throws IOException {
+        LogIndex index = new LogIndex(folder);
+
+        int generation = -1;
+        try (Stream<Path> files = Files.list(folder)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                int current = parseGeneration(path);
+                if (current > generation) {
+                    generation = current;
+                }
+            }
+        }
+
+        if (generation >= 0) {
+            index.generation = generation;
+            index.file = folder.resolve(fileName(generation));
+            index.buffer = map(index.file, Files.size(index.file));
+            if (index.buffer.getInt(0) == MAGIC && index.buffer.getInt(4) == VERSION) {
+                index.capacity = index.buffer.getInt(CAPACITY);
+                index.size = index.buffer.getInt(SIZE);
+                index.used = index.buffer.getInt(USED);
+                if (index.capacity >= MIN_CAPACITY && Files.size(index.file) >= HEADER_SIZE + (long) index.capacity * SLOT_SIZE) {
+                    index.deleteOldGenerations();
+                    return index;
+                }
+            }
+        }
+
+        index.create(generation + 1, MIN_CAPACITY);
+        return index;
+    }
+
+    /**
+     * 64-bit hash of an identifier, FNV-1a mixed with the murmur finalizer.
+     * @param identifier to hash
+     * @return hash, never 0
+     */
+    static long hash(String identifier) {
+        long hash = 0xCBF29CE484222325L;
+        for (byte value : identifier.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= value & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash == 0L ? 1L : hash;
+    }
+
+    /**
+     * @param hash of the identifier
+     * @return location or null if the identifier is not indexed
+     */
+    LogLocation get(long hash) {
+        int slot = findSlot(hash);
+        return slot < 0 ? null : readLocation(slot);
+    }
+
+    /**
+     * @return previous location or null
+     */
+    LogLocation put(long hash, LogLocation location) throws IOException {
+        if (used + 1 > capacity * MAX_LOAD) {
+            resize();
+        }
+
+        int mask = capacity - 1;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        int reusable = -1;
+
+        while (true) {
+            int segment = segmentAt(slot);
+            if (segment == EMPTY) {
+                break;
+            }
+            if (segment == DELETED) {
+                if (reusable < 0) {
+                    reusable = slot;
+                }
+            } else if (hashAt(slot) == hash) {
+                LogLocation previous = readLocation(slot);
+                writeSlot(slot, hash, location);
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (reusable >= 0) {
+            slot = reusable;
+        } else {
+            used++;
+        }
+        size++;
+        writeSlot(slot, hash, location);
+        writeCounters();
+        return null;
+    }
+
+    /**
+     * @return removed location or null
+     */
+    LogLocation remove(long hash) {
+        int slot = findSlot(hash);
+        if (slot < 0) {
+            return null;
+        }
+        LogLocation previous = readLocation(slot);
+        buffer.putInt(slotOffset(slot) + 8, DELETED);
+        size--;
+        writeCounters();
+        return previous;
+    }
+
+    /**
+     * Visits every indexed location
+     * @param consumer of the hash and location
+     */
+    void forEach(LocationConsumer consumer) {
+        for (int slot = 0; slot < capacity; slot++) {
+            int segment = segmentAt(slot);
+            if (segment != EMPTY && segment != DELETED) {
+                consumer.accept(hashAt(slot), readLocation(slot));
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Removes every entry, used before rebuilding the index from the segments.
+     */
+    void clear() throws IOException {
+        int previous = generation;
+        Path previousFile = file;
+        create(previous + 1, MIN_CAPACITY);
+        deleteQuietly(previousFile);
+    }
+
+    boolean isClean() {
+        return buffer.get(CLEAN) == 1;
+    }
+
+    int getLastSegment() {
+        return buffer.getInt(LAST_SEGMENT);
+    }
+
+    long getLastOffset() {
+        return buffer.getLong(LAST_OFFSET);
+    }
+
+    /**
+     * Marks the index as modified, if the process stops before {@link #markClean(int, long)} the next start rebuilds it.
+     */
+    void markDirty() {
+        buffer.put(CLEAN, (byte) 0);
+        buffer.force();
+    }
+
+    /**
+     * Saves the index and the end of the log it describes
+     * @param lastSegment active segment
+     * @param lastOffset size of the active segment
+     */
+    void markClean(int lastSegment, long lastOffset) {
+        buffer.putInt(LAST_SEGMENT, lastSegment);
+        buffer.putLong(LAST_OFFSET, lastOffset);
+        buffer.force();
+        buffer.put(CLEAN, (byte) 1);
+        buffer.force();
+    }
+
+    private void resize() throws IOException {
+        // Muchos slots borrados: se reconstruye con la misma capacidad.
+        int newCapacity = size + 1 > capacity * MAX_LOAD / 2 ? capacity * 2 : capacity;
+
+        MappedByteBuffer previous = buffer;
+        int previousCapacity = capacity;
+        Path previousFile = file;
+
+        create(generation + 1, newCapacity);
+
+        for (int slot = 0; slot < previousCapacity; slot++) {
+            int offset = HEADER_SIZE + slot * SLOT_SIZE;
+            int segment = previous.getInt(offset + 8);
+            if (segment != EMPTY && segment != DELETED) {
+                long hash = previous.getLong(offset);
+                insertNew(hash, new LogLocation(segment, previous.getInt(offset + 12), previous.getInt(offset + 16)));
+            }
+        }
+        writeCounters();
+        deleteQuietly(previousFile);
+    }
+
+    private void insertNew(long hash, LogLocation location) {
+        int mask = capacity - 1;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (segmentAt(slot) != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        writeSlot(slot, hash, location);
+        size++;
+        used++;
+    }
+
+    private void create(int generation, int capacity) throws IOException {
+        this.generation = generation;
+        this.capacity = capacity;
+        this.size = 0;
+        this.used = 0;
+        this.file = folder.resolve(fileName(generation));
+
+        Files.deleteIfExists(file);
+        this.buffer = map(file, HEADER_SIZE + (long) capacity * SLOT_SIZE);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(CAPACITY, capacity);
+        buffer.put(CLEAN, (byte) 0);
+        writeCounters();
+    }
+
+    private int findSlot(long hash) {
+        int mask = capacity - 1;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        for (int probes = 0; probes < capacity; probes++) {
+            int segment = segmentAt(slot);
+            if (segment == EMPTY) {
+                return -1;
+            }
+            if (segment != DELETED && hashAt(slot) == hash) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void writeCounters() {
+        buffer.putInt(SIZE, size);
+        buffer.putInt(USED, used);
+    }
+
+    private void writeSlot(int slot, long hash, LogLocation location) {
+        int offset = slotOffset(slot);
+        buffer.putLong(offset, hash);
+        buffer.putInt(offset + 12, location.offset());
+        buffer.putInt(offset + 16, location.length());
+        buffer.putInt(offset + 8, location.segment());
+    }
+
+    private LogLocation readLocation(int slot) {
+        int offset = slotOffset(slot);
+        return new LogLocation(buffer.getInt(offset + 8), buffer.getInt(offset + 12), buffer.getInt(offset + 16));
+    }
+
+    private long hashAt(int slot) {
+        return buffer.getLong(slotOffset(slot));
+    }
+
+    private int segmentAt(int slot) {
+        return buffer.getInt(slotOffset(slot) + 8);
+    }
+
+    private static int slotOffset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private void deleteOldGenerations() throws IOException {
+        try (Stream<Path> files = Files.list(folder)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                int current = parseGeneration(path);
+                if (current >= 0 && current != generation) {
+                    deleteQuietly(path);
+                }
+            }
+        }
+    }
+
+    private static MappedByteBuffer map(Path file, long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        }
+    }
+
+    /**
+     * Mapped files can't be removed on some systems until the mapping is collected,
+     * those files are removed by {@link #deleteOldGenerations()} on the next start.
+     */
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) { }
+    }
+
+    private static String fileName(int generation) {
+        return "index-" + generation + ".dat";
+    }
+
+    private static int parseGeneration(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith("index-") || !name.endsWith(".dat")) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(6, name.length() - 4));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @FunctionalInterface
+    interface LocationConsumer {
+        void accept(long hash, LogLocation location);
+    }
+}
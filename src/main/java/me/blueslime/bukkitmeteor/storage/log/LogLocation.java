@@ -0,0 +1,9 @@
+package me.blueslime.bukkitmeteor.storage.log;
+
+/**
+ * Position of a record in the log
+ * @param segment number of the segment file
+ * @param offset of the record in the segment
+ * @param length of the record including its header
+ */
+record LogLocation(int segment, int offset, int length) { }
@@ -0,0 +1,82 @@
+package me.blueslime.bukkitmeteor.storage.log;
+
+/**
+ * Settings of a {@link LogStore}
+ */
+public class LogSettings {
+
+    /**
+     * Offsets in the index are stored as int values.
+     */
+    private static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+    private long segmentSize = 64L * 1024L * 1024L;
+    private double compactionRatio = 0.5D;
+    private long compactionInterval = 60_000L;
+    private boolean syncWrites = false;
+
+    private LogSettings() {
+
+    }
+
+    public static LogSettings create() {
+        return new LogSettings();
+    }
+
+    public long getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * When the active segment reaches this size a new segment is started, max 1 GiB.
+     * @param segmentSize in bytes
+     * @return settings
+     */
+    public LogSettings setSegmentSize(long segmentSize) {
+        this.segmentSize = Math.max(1024L, Math.min(MAX_SEGMENT_SIZE, segmentSize));
+        return this;
+    }
+
+    public double getCompactionRatio() {
+        return compactionRatio;
+    }
+
+    /**
+     * Closed segments with less live data than this ratio are rewritten by the compaction.
+     * @param compactionRatio between 0 and 1
+     * @return settings
+     */
+    public LogSettings setCompactionRatio(double compactionRatio) {
+        this.compactionRatio = Math.max(0D, Math.min(1D, compactionRatio));
+        return this;
+    }
+
+    public long getCompactionInterval() {
+        return compactionInterval;
+    }
+
+    /**
+     * Time between compaction checks, 0 to disable the background compaction.
+     * @param compactionInterval in milliseconds
+     * @return settings
+     */
+    public LogSettings setCompactionInterval(long compactionInterval) {
+        this.compactionInterval = Math.max(0L, compactionInterval);
+        return this;
+    }
+
+    public boolean isSyncWrites() {
+        return syncWrites;
+    }
+
+    /**
+     * Forces every write to the disk before it is completed, slower but a power loss can't lose completed writes.
+     * Without it a crash can only lose the last writes, the recovery removes incomplete records.
+     * @param syncWrites true to force every write
+     * @return settings
+     */
+    public LogSettings setSyncWrites(boolean syncWrites) {
+        this.syncWrites = syncWrites;
+        return this;
+    }
+}
@@ -0,0 +1,790 @@
+package me.blueslime.bukkitmeteor.storage.log;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of the records of a single class.
+ * <p>
+ * Records are appended to the active segment file and the {@link LogIndex} points every identifier
+ * to its newest record, so a save is a sequential append and a load is one positioned read.
+ * Old segments with too many replaced records are rewritten by {@link #compact()}.
+ * <p>
+ * Record format: {@code [int length][int crc32c][byte type][short id length][id][payload]},
+ * the length and the checksum cover the bytes after the header.
+ */
+public class LogStore implements AutoCloseable {
+
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_IDENTIFIER = 0xFFFF;
+    private static final int READ_BUFFER = 64 * 1024;
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+
+    private final ConcurrentSkipListMap<Integer, FileChannel> segments = new ConcurrentSkipListMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, Long> liveBytes = new HashMap<>();
+    private final AtomicInteger scans = new AtomicInteger();
+    private final Object appendLock = new Object();
+
+    private final LogSettings settings;
+    private final Path folder;
+
+    private LogIndex index;
+    private FileChannel active;
+    private int activeSegment;
+    private volatile long activeSize;
+    private boolean dirty = false;
+    private boolean closed = false;
+
+    private long recoveredBytes = 0L;
+    private long skippedBytes = 0L;
+    private int corruptSegments = 0;
+
+    private LogStore(Path folder, LogSettings settings) {
+        this.settings = settings;
+        this.folder = folder;
+    }
+
+    /**
+     * Opens the log of a folder, the index is rebuilt from the segments if the last close was not clean,
+     * an incomplete write at the end of the log is removed and corrupt records inside the segments are skipped.
+     * @param folder of the store
+     * @param settings of the store
+     * @return store
+     * @throws IOException if the files can't be opened
+     */
+    public static LogStore open(Path folder, LogSettings settings) throws IOException {
+        Files.createDirectories(folder);
+        LogStore store = new LogStore(folder, settings == null ? LogSettings.create() : settings);
+        store.load();
+        return store;
+    }
+
+    private void load() throws IOException {
+        try (Stream<Path> files = Files.list(folder)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                int segment = parseSegment(path);
+                if (segment > 0) {
+                    segments.put(segment, FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE));
+                }
+            }
+        }
+
+        if (segments.isEmpty()) {
+            openSegment(1);
+        } else {
+            activeSegment = segments.lastKey();
+            active = segments.get(activeSegment);
+            activeSize = active.size();
+        }
+
+        index = LogIndex.open(folder);
+
+        if (index.isClean() && index.getLastSegment() == activeSegment && index.getLastOffset() == activeSize) {
+            index.forEach((hash, location) -> liveBytes.merge(location.segment(), (long) location.length(), Long::sum));
+            return;
+        }
+
+        index.clear();
+        for (Map.Entry<Integer, FileChannel> entry : segments.entrySet()) {
+            recover(entry.getKey(), entry.getValue());
+        }
+        activeSize = active.size();
+        dirty = true;
+    }
+
+    /**
+     * Replays the valid records of a segment into the index, invalid records are skipped.
+     * Only the active segment is cut, after its last valid record, because only its last write can be incomplete.
+     * Closed segments are never modified, their invalid records are removed when the segment is compacted.
+     */
+    private void recover(int segment, FileChannel channel) throws IOException {
+        long size = channel.size();
+        long position = 0L;
+        long skipped;
+        try (SegmentReader reader = new SegmentReader(channel, size)) {
+            Record record;
+            while ((record = reader.next()) != null) {
+                long hash = LogIndex.hash(record.identifier);
+                LogLocation location = new LogLocation(segment, (int) record.offset, record.length);
+                if (record.type == PUT) {
+                    track(index.put(hash, location), location);
+                } else {
+                    track(index.remove(hash), null);
+                }
+                position = record.offset + record.length;
+            }
+            skipped = reader.getSkipped();
+        }
+
+        if (skipped == 0L) {
+            return;
+        }
+        corruptSegments++;
+
+        if (segment == activeSegment && position < size) {
+            recoveredBytes += size - position;
+            skipped -= size - position;
+            channel.truncate(position);
+            channel.force(true);
+        }
+        skippedBytes += skipped;
+    }
+
+    /**
+     * Reads the newest record of an identifier
+     * @param identifier of the object
+     * @return payload or null if the identifier is not stored
+     * @throws IOException if the record can't be read
+     */
+    public byte[] read(String identifier) throws IOException {
+        long hash = LogIndex.hash(identifier);
+        ByteBuffer buffer;
+
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            LogLocation location = index.get(hash);
+            if (location == null) {
+                return null;
+            }
+            buffer = ByteBuffer.allocate(location.length());
+            readFully(segments.get(location.segment()), buffer, location.offset());
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        buffer.flip();
+        Record record = Record.parse(buffer, 0L);
+        if (record == null) {
+            throw new IOException("Corrupt record of identifier " + identifier + " at " + folder.getFileName());
+        }
+        // Dos identificadores con el mismo hash de 64 bits.
+        if (record.type != PUT || !record.identifier.equals(identifier)) {
+            return null;
+        }
+        return record.payload;
+    }
+
+    /**
+     * Appends new records, the records are written in one write and replace the previous records of their identifiers.
+     * @param records payload by identifier
+     * @throws IOException if the records can't be written
+     */
+    public void write(Map<String, byte[]> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        List<byte[]> encoded = new ArrayList<>(records.size());
+        List<String> identifiers = new ArrayList<>(records.size());
+        for (Map.Entry<String, byte[]> entry : records.entrySet()) {
+            identifiers.add(entry.getKey());
+            encoded.add(Record.encode(PUT, entry.getKey(), entry.getValue()));
+        }
+
+        synchronized (appendLock) {
+            List<LogLocation> locations = append(encoded);
+
+            lock.writeLock().lock();
+            try {
+                for (int i = 0; i < locations.size(); i++) {
+                    LogLocation location = locations.get(i);
+                    track(index.put(LogIndex.hash(identifiers.get(i)), location), location);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Appends a delete record of every stored identifier
+     * @param identifiers to remove
+     * @throws IOException if the records can't be written
+     */
+    public void delete(Collection<String> identifiers) throws IOException {
+        synchronized (appendLock) {
+            List<String> stored = new ArrayList<>();
+            List<byte[]> encoded = new ArrayList<>();
+
+            lock.readLock().lock();
+            try {
+                ensureOpen();
+                for (String identifier : new LinkedHashSet<>(identifiers)) {
+                    if (identifier != null && index.get(LogIndex.hash(identifier)) != null) {
+                        stored.add(identifier);
+                        encoded.add(Record.encode(DELETE, identifier, new byte[0]));
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            if (stored.isEmpty()) {
+                return;
+            }
+            append(encoded);
+
+            lock.writeLock().lock();
+            try {
+                for (String identifier : stored) {
+                    track(index.remove(LogIndex.hash(identifier)), null);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Reads every stored object segment by segment, only the newest record of every identifier is returned.
+     * The compaction is paused until the iterator is finished or closed.
+     * @return iterator, it must be closed if it is not read until the end
+     */
+    public EntryIterator scan() {
+        return new EntryIterator();
+    }
+
+    /**
+     * Rewrites the closed segments with less live data than {@link LogSettings#getCompactionRatio()},
+     * the live records are appended to the active segment and the old segment file is removed.
+     * @return amount of removed segments
+     * @throws IOException if a segment can't be rewritten
+     */
+    public int compact() throws IOException {
+        List<Integer> candidates = new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+            if (closed || scans.get() > 0) {
+                return 0;
+            }
+            for (Map.Entry<Integer, FileChannel> entry : segments.entrySet()) {
+                int segment = entry.getKey();
+                if (segment == activeSegment) {
+                    continue;
+                }
+                long total = entry.getValue().size();
+                long live = liveBytes.getOrDefault(segment, 0L);
+                if (total == 0L || (double) live / total < settings.getCompactionRatio()) {
+                    candidates.add(segment);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        int compacted = 0;
+        for (int segment : candidates) {
+            if (scans.get() > 0) {
+                break;
+            }
+            compactSegment(segment);
+            compacted++;
+        }
+        return compacted;
+    }
+
+    private void compactSegment(int segment) throws IOException {
+        synchronized (appendLock) {
+            FileChannel channel = segments.get(segment);
+            if (channel == null || closed) {
+                return;
+            }
+            boolean keepDeletes = segments.lowerKey(segment) != null;
+
+            List<byte[]> moved = new ArrayList<>();
+            List<String> identifiers = new ArrayList<>();
+
+            try (SegmentReader reader = new SegmentReader(channel, channel.size())) {
+                Record record;
+                while ((record = reader.next()) != null) {
+                    LogLocation current;
+                    lock.readLock().lock();
+                    try {
+                        current = index.get(LogIndex.hash(record.identifier));
+                    } finally {
+                        lock.readLock().unlock();
+                    }
+                    if (record.type == PUT) {
+                        if (current != null && current.segment() == segment && current.offset() == record.offset) {
+                            moved.add(Record.encode(PUT, record.identifier, record.payload));
+                            identifiers.add(record.identifier);
+                        }
+                    } else if (current == null && keepDeletes) {
+                        // Un segmento anterior todavía puede tener el registro borrado.
+                        moved.add(Record.encode(DELETE, record.identifier, new byte[0]));
+                        identifiers.add(null);
+                    }
+                }
+            }
+
+            List<LogLocation> locations = moved.isEmpty() ? Collections.emptyList() : append(moved);
+            if (!locations.isEmpty()) {
+                active.force(false);
+            }
+
+            lock.writeLock().lock();
+            try {
+                for (int i = 0; i < locations.size(); i++) {
+                    String identifier = identifiers.get(i);
+                    if (identifier != null) {
+                        LogLocation location = locations.get(i);
+                        track(index.put(LogIndex.hash(identifier), location), location);
+                    }
+                }
+                segments.remove(segment);
+                liveBytes.remove(segment);
+                channel.close();
+                Files.deleteIfExists(segmentPath(segment));
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * @return amount of stored identifiers
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return bytes removed from the end of the log by the last recovery
+     */
+    public long getRecoveredBytes() {
+        return recoveredBytes;
+    }
+
+    /**
+     * @return bytes of corrupt records skipped inside the segments by the last recovery
+     */
+    public long getSkippedBytes() {
+        return skippedBytes;
+    }
+
+    /**
+     * @return segments with invalid records found by the last recovery
+     */
+    public int getCorruptSegments() {
+        return corruptSegments;
+    }
+
+    /**
+     * Writes the index to the disk and marks it as clean, so the next start don't read the segments.
+     * @throws IOException if the files can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            lock.writeLock().lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                active.force(true);
+                index.markClean(activeSegment, activeSize);
+                for (FileChannel channel : segments.values()) {
+                    channel.close();
+                }
+                segments.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Writes encoded records at the end of the log, starting a new segment when the active one is full.
+     * Must be called with the append lock.
+     */
+    private List<LogLocation> append(List<byte[]> records) throws IOException {
+        ensureOpen();
+        if (!dirty) {
+            index.markDirty();
+            dirty = true;
+        }
+
+        List<LogLocation> locations = new ArrayList<>(records.size());
+        ByteBuffer batch = null;
+        long start = activeSize;
+        long position = activeSize;
+
+        for (byte[] record : records) {
+            if (position > 0 && position + record.length > settings.getSegmentSize()) {
+                if (batch != null) {
+                    batch.flip();
+                    writeFully(active, batch, start);
+                    batch = null;
+                }
+                activeSize = position;
+                active.force(false);
+                openSegment(activeSegment + 1);
+                start = 0L;
+                position = 0L;
+            }
+            if (batch == null) {
+                batch = ByteBuffer.allocate(remainingSize(records, locations.size(), position));
+            }
+            batch.put(record);
+            locations.add(new LogLocation(activeSegment, (int) position, record.length));
+            position += record.length;
+        }
+
+        if (batch != null) {
+            batch.flip();
+            writeFully(active, batch, start);
+        }
+        if (settings.isSyncWrites()) {
+            active.force(false);
+        }
+        activeSize = position;
+        return locations;
+    }
+
+    /**
+     * Size of the records that fit in the active segment starting from a record
+     */
+    private int remainingSize(List<byte[]> records, int from, long position) {
+        long size = 0L;
+        for (int i = from; i < records.size(); i++) {
+            int length = records.get(i).length;
+            if (size > 0 && position + size + length > settings.getSegmentSize()) {
+                break;
+            }
+            size += length;
+        }
+        return (int) size;
+    }
+
+    private void openSegment(int segment) throws IOException {
+        FileChannel channel = FileChannel.open(
+            segmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE
+        );
+        segments.put(segment, channel);
+        activeSegment = segment;
+        active = channel;
+        activeSize = channel.size();
+    }
+
+    /**
+     * Updates the live bytes of the segments, must be called with the write lock.
+     */
+    private void track(LogLocation previous, LogLocation current) {
+        if (previous != null) {
+            liveBytes.merge(previous.segment(), (long) -previous.length(), Long::sum);
+        }
+        if (current != null) {
+            liveBytes.merge(current.segment(), (long) current.length(), Long::sum);
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Log store is closed: " + folder.getFileName());
+        }
+    }
+
+    private Path segmentPath(int segment) {
+        return folder.resolve(String.format(Locale.ENGLISH, "segment-%08d.log", segment));
+    }
+
+    private static int parseSegment(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith("segment-") || !name.endsWith(".log")) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(8, name.length() - 4));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            position += read;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Stored object returned by {@link #scan()}
+     * @param identifier of the object
+     * @param payload of the record
+     */
+    public record Entry(String identifier, byte[] payload) { }
+
+    /**
+     * Reads the live records of every segment, including the segments created while reading.
+     */
+    public class EntryIterator implements Iterator<Entry>, AutoCloseable {
+        private SegmentReader reader;
+        private Integer segment;
+        private Entry next;
+        private boolean finished = false;
+
+        private EntryIterator() {
+            scans.incrementAndGet();
+            segment = segments.isEmpty() ? null : segments.firstKey();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) {
+                return true;
+            }
+            if (finished) {
+                return false;
+            }
+            try {
+                while (segment != null) {
+                    if (reader == null) {
+                        FileChannel channel = segments.get(segment);
+                        if (channel == null) {
+                            segment = segments.higherKey(segment);
+                            continue;
+                        }
+                        reader = new SegmentReader(channel, segment == activeSegment ? activeSize : channel.size());
+                    }
+                    Record record = reader.next();
+                    if (record == null) {
+                        reader.close();
+                        reader = null;
+                        segment = segments.higherKey(segment);
+                        continue;
+                    }
+                    if (record.type == PUT && isCurrent(segment, record)) {
+                        next = new Entry(record.identifier, record.payload);
+                        return true;
+                    }
+                }
+            } catch (IOException e) {
+                close();
+                throw new IllegalStateException("Can't read the log of " + folder.getFileName(), e);
+            }
+            close();
+            return false;
+        }
+
+        @Override
+        public Entry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Entry entry = next;
+            next = null;
+            return entry;
+        }
+
+        private boolean isCurrent(int segment, Record record) {
+            lock.readLock().lock();
+            try {
+                LogLocation current = index.get(LogIndex.hash(record.identifier));
+                return current != null && current.segment() == segment && current.offset() == record.offset;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            if (reader != null) {
+                reader.close();
+                reader = null;
+            }
+            scans.decrementAndGet();
+        }
+    }
+
+    /**
+     * Sequential reader of a segment with positioned reads, so it don't move the position of the channel.
+     * An invalid record is skipped searching the next offset with a valid record.
+     */
+    private static class SegmentReader implements AutoCloseable {
+        private final ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER);
+        private final FileChannel channel;
+        private final long limit;
+
+        private long bufferStart = 0L;
+        private long position = 0L;
+        private long skipped = 0L;
+
+        private SegmentReader(FileChannel channel, long limit) {
+            this.channel = channel;
+            this.limit = limit;
+            buffer.limit(0);
+        }
+
+        /**
+         * @return next valid record or null at the end of the segment
+         */
+        private Record next() throws IOException {
+            while (position + HEADER_SIZE <= limit) {
+                Record record = parse(position);
+                if (record != null) {
+                    position += record.length;
+                    return record;
+                }
+                // La longitud del registro puede ser inválida, se busca el siguiente registro byte a byte
+                position++;
+                skipped++;
+            }
+            skipped += limit - position;
+            position = limit;
+            return null;
+        }
+
+        private Record parse(long from) throws IOException {
+            if (from + HEADER_SIZE + 3 > limit) {
+                return null;
+            }
+            // Se revisa la cabecera antes de leer y comprobar el registro completo
+            ByteBuffer header = read(from, HEADER_SIZE + 3);
+            int length = header.getInt(0);
+            byte type = header.get(HEADER_SIZE);
+            int idLength = header.getShort(HEADER_SIZE + 1) & 0xFFFF;
+            if (length < 3 + idLength || from + HEADER_SIZE + length > limit || (type != PUT && type != DELETE)) {
+                return null;
+            }
+            return Record.parse(read(from, HEADER_SIZE + length), from);
+        }
+
+        /**
+         * @return bytes of invalid records found until now
+         */
+        private long getSkipped() {
+            return skipped;
+        }
+
+        private ByteBuffer read(long from, int length) throws IOException {
+            if (length > buffer.capacity()) {
+                ByteBuffer large = ByteBuffer.allocate(length);
+                readFully(channel, large, from);
+                large.flip();
+                return large;
+            }
+            if (from < bufferStart || from + length > bufferStart + buffer.limit()) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), limit - from));
+                readFully(channel, buffer, from);
+                buffer.flip();
+                bufferStart = from;
+            }
+            ByteBuffer slice = buffer.duplicate();
+            slice.position((int) (from - bufferStart));
+            slice.limit(slice.position() + length);
+            return slice.slice();
+        }
+
+        @Override
+        public void close() {
+            // Los canales pertenecen al store.
+        }
+    }
+
+    private static class Record {
+        private final String identifier;
+        private final byte[] payload;
+        private final long offset;
+        private final int length;
+        private final byte type;
+
+        private Record(byte type, String identifier, byte[] payload, long offset, int length) {
+            this.identifier = identifier;
+            this.payload = payload;
+            this.offset = offset;
+            this.length = length;
+            this.type = type;
+        }
+
+        private static byte[] encode(byte type, String identifier, byte[] payload) {
+            byte[] id = identifier.getBytes(StandardCharsets.UTF_8);
+            if (id.length > MAX_IDENTIFIER) {
+                throw new IllegalArgumentException("Identifier is too long: " + identifier.length());
+            }
+            int length = 3 + id.length + payload.length;
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + length);
+            buffer.putInt(length);
+            buffer.putInt(0);
+            buffer.put(type);
+            buffer.putShort((short) id.length);
+            buffer.put(id);
+            buffer.put(payload);
+
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.array(), HEADER_SIZE, length);
+            buffer.putInt(4, (int) crc.getValue());
+            return buffer.array();
+        }
+
+        /**
+         * @param buffer with a full record from its position
+         * @param offset of the record in the segment
+         * @return record or null if the record is invalid
+         */
+        private static Record parse(ByteBuffer buffer, long offset) {
+            if (buffer.remaining() < HEADER_SIZE + 3) {
+                return null;
+            }
+            int start = buffer.position();
+            int length = buffer.getInt(start);
+            int checksum = buffer.getInt(start + 4);
+            if (length < 3 || buffer.remaining() < HEADER_SIZE + length) {
+                return null;
+            }
+
+            byte[] body = new byte[length];
+            buffer.get(start + HEADER_SIZE, body);
+
+            CRC32C crc = new CRC32C();
+            crc.update(body, 0, length);
+            if ((int) crc.getValue() != checksum) {
+                return null;
+            }
+
+            byte type = body[0];
+            int idLength = ((body[1] & 0xFF) << 8) | (body[2] & 0xFF);
+            if ((type != PUT && type != DELETE) || 3 + idLength > length) {
+                return null;
+            }
+            String identifier = new String(body, 3, idLength, StandardCharsets.UTF_8);
+            byte[] payload = Arrays.copyOfRange(body, 3 + idLength, length);
+            return new Record(type, identifier, payload, offset, HEADER_SIZE + length);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package me.blueslime.bukkitmeteor.storage.migrate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Checkpoint file of a migrated class, it stores the 64-bit hash of every identifier written to the target.
+ * <p>
+ * The identifiers are not stored by position, so a run can be resumed even when the source database
+ * streams its objects in another order. An incomplete hash written by a crash is discarded when the file is opened.
+ */
+final class MigrationCheckpoint implements AutoCloseable {
+
+    private final FileChannel channel;
+    private final long[] completed;
+
+    private MigrationCheckpoint(FileChannel channel, long[] completed) {
+        this.channel = channel;
+        this.completed = completed;
+    }
+
+    /**
+     * Opens a checkpoint file.
+     * @param file of the checkpoint
+     * @param resume false to clear the file
+     * @return checkpoint
+     * @throws IOException if the file can't be read
+     */
+    static MigrationCheckpoint open(Path file, boolean resume) throws IOException {
+        Files.createDirectories(file.getParent());
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = resume ? channel.size() & ~7L : 0L;
+            if (size / Long.BYTES > Integer.MAX_VALUE - 8) {
+                throw new IOException("Checkpoint " + file + " is too big");
+            }
+            long[] completed = new long[(int) (size / Long.BYTES)];
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            long position = 0L;
+            int index = 0;
+            while (position < size) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), size - position));
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, position + buffer.position()) < 0) {
+                        throw new IOException("Unexpected end of " + file);
+                    }
+                }
+                position += buffer.flip().remaining();
+                while (buffer.hasRemaining()) {
+                    completed[index++] = buffer.getLong();
+                }
+            }
+            Arrays.sort(completed);
+            channel.truncate(size);
+            channel.position(size);
+            return new MigrationCheckpoint(channel, completed);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param key hash of an identifier
+     * @return true if a previous run already migrated the identifier
+     */
+    boolean contains(long key) {
+        return completed.length != 0 && Arrays.binarySearch(completed, key) >= 0;
+    }
+
+    /**
+     * @return identifiers migrated by the previous runs
+     */
+    int size() {
+        return completed.length;
+    }
+
+    /**
+     * Appends the identifiers of a written batch.
+     * @param keys hashes of the identifiers
+     * @param amount of keys to append
+     * @throws IOException if the file can't be written
+     */
+    synchronized void append(long[] keys, int amount) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(amount * Long.BYTES);
+        for (int i = 0; i < amount; i++) {
+            buffer.putLong(keys[i]);
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel.isOpen()) {
+            channel.force(false);
+            channel.close();
+        }
+    }
+}
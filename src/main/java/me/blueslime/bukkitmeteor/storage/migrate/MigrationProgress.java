@@ -0,0 +1,196 @@
+package me.blueslime.bukkitmeteor.storage.migrate;
+
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageObject;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Progress of the migration of one class, it is updated while the migration runs.
+ */
+public class MigrationProgress {
+
+    private final LongAdder read = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final Class<? extends StorageObject> type;
+    private final long startedAt = System.currentTimeMillis();
+    private final long total;
+
+    private volatile long finishedAt = 0L;
+    private volatile boolean cancelled = false;
+    private volatile Verification verification = null;
+
+    /**
+     * Crea el progreso de una clase.
+     * @param type de los objetos migrados
+     * @param total de objetos en el origen, -1 si no se contaron
+     */
+    MigrationProgress(Class<? extends StorageObject> type, long total) {
+        this.type = type;
+        this.total = total;
+    }
+
+    public Class<? extends StorageObject> getType() {
+        return type;
+    }
+
+    /**
+     * @return objects in the source database counted before the migration, -1 if they were not counted
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return objects read from the source database
+     */
+    public long getRead() {
+        return read.sum();
+    }
+
+    /**
+     * @return objects skipped because a previous run already migrated them
+     */
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    /**
+     * @return objects written to the target database
+     */
+    public long getWritten() {
+        return written.sum();
+    }
+
+    /**
+     * @return objects that could not be written, the next run will write them again
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public boolean isFinished() {
+        return finishedAt != 0L;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return result of the verify pass or null if it was not executed
+     */
+    public Verification getVerification() {
+        return verification;
+    }
+
+    /**
+     * @return elapsed time in milliseconds
+     */
+    public long getElapsed() {
+        long end = finishedAt == 0L ? System.currentTimeMillis() : finishedAt;
+        return Math.max(1L, end - startedAt);
+    }
+
+    /**
+     * @return objects written per second
+     */
+    public double getRate() {
+        return getWritten() * 1000D / getElapsed();
+    }
+
+    /**
+     * @return estimated milliseconds until the migration finishes, -1 if it is unknown
+     */
+    public long getEta() {
+        if (isFinished()) {
+            return 0L;
+        }
+        double rate = getRate();
+        if (total < 0L || rate <= 0D) {
+            return -1L;
+        }
+        long remaining = Math.max(0L, total - getSkipped() - getWritten() - getFailed());
+        return (long) (remaining * 1000D / rate);
+    }
+
+    void read() {
+        read.increment();
+    }
+
+    void skipped() {
+        skipped.increment();
+    }
+
+    void written(int amount) {
+        written.add(amount);
+    }
+
+    void failed(int amount) {
+        failed.add(amount);
+    }
+
+    void finish(boolean cancelled) {
+        this.cancelled = cancelled;
+        this.finishedAt = System.currentTimeMillis();
+    }
+
+    void verified(Verification verification) {
+        this.verification = verification;
+    }
+
+    @Override
+    public String toString() {
+        long done = getSkipped() + getWritten() + getFailed();
+        StringBuilder builder = new StringBuilder(type.getSimpleName()).append(": ").append(done);
+        if (total >= 0L) {
+            builder.append('/').append(total)
+                .append(String.format(Locale.ENGLISH, " (%.1f%%)", total == 0L ? 100D : done * 100D / total));
+        }
+        builder.append(String.format(Locale.ENGLISH, ", %.0f/s", getRate()));
+        if (getSkipped() > 0L) {
+            builder.append(", ").append(getSkipped()).append(" skipped");
+        }
+        if (getFailed() > 0L) {
+            builder.append(", ").append(getFailed()).append(" failed");
+        }
+        long eta = getEta();
+        if (isFinished()) {
+            builder.append(cancelled ? ", cancelled after " : ", finished in ").append(getElapsed() / 1000L).append('s');
+        } else if (eta >= 0L) {
+            builder.append(", ETA ").append(eta / 1000L).append('s');
+        }
+        if (verification != null) {
+            builder.append(", ").append(verification);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Result of the verify pass, the hashes are independent of the order of the objects.
+     * @param sourceCount objects in the source database
+     * @param targetCount objects in the target database
+     * @param sourceHash of every source object
+     * @param targetHash of every target object
+     */
+    public record Verification(long sourceCount, long targetCount, long sourceHash, long targetHash) {
+
+        public boolean matches() {
+            return sourceCount == targetCount && sourceHash == targetHash;
+        }
+
+        @Override
+        public String toString() {
+            return matches()
+                ? "verified " + sourceCount + " objects"
+                : "verify failed (" + sourceCount + " source objects, " + targetCount + " target objects" +
+                    (sourceHash == targetHash ? ")" : ", different hashes)");
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package me.blueslime.bukkitmeteor.storage.migrate;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.io.File;
+
+/**
+ * Settings of a {@link StorageMigrator}
+ */
+public class MigrationSettings {
+
+    private int workers = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+    private int batchSize = 500;
+    private int maxRetries = 3;
+    private long reportInterval = 5_000L;
+    private File checkpointFolder = null;
+    private boolean countTotal = true;
+    private boolean resume = true;
+    private boolean verify = false;
+
+    private MigrationSettings() {
+
+    }
+
+    public static MigrationSettings create() {
+        return new MigrationSettings();
+    }
+
+    /**
+     * Loads the migration settings from a configuration section, missing values will use the default values.
+     * <p>
+     * Keys: workers, batch-size, max-retries, report-interval (in seconds), checkpoint-folder,
+     * count-total, resume and verify.
+     * @param section to read
+     * @param path of the migration settings, for example "migration"
+     * @return settings
+     */
+    public static MigrationSettings fromSection(ConfigurationSection section, String path) {
+        MigrationSettings settings = create();
+
+        if (section == null) {
+            return settings;
+        }
+
+        path = path.isEmpty() ? "" : path.endsWith(".") ? path : path + ".";
+
+        String folder = section.getString(path + "checkpoint-folder");
+
+        return settings
+            .setWorkers(section.getInt(path + "workers", settings.workers))
+            .setBatchSize(section.getInt(path + "batch-size", settings.batchSize))
+            .setMaxRetries(section.getInt(path + "max-retries", settings.maxRetries))
+            .setReportInterval(section.getLong(path + "report-interval", settings.reportInterval / 1000L) * 1000L)
+            .setCheckpointFolder(folder == null || folder.isEmpty() ? null : new File(folder))
+            .setCountTotal(section.getBoolean(path + "count-total", settings.countTotal))
+            .setResume(section.getBoolean(path + "resume", settings.resume))
+            .setVerify(section.getBoolean(path + "verify", settings.verify));
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Amount of threads writing batches to the target database.
+     * @param workers of the migration
+     * @return settings
+     */
+    public MigrationSettings setWorkers(int workers) {
+        this.workers = Math.max(1, Math.min(64, workers));
+        return this;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Amount of objects written to the target database in one request.
+     * @param batchSize of a request
+     * @return settings
+     */
+    public MigrationSettings setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+        return this;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Times that a failed batch is written again before its objects are written one by one,
+     * objects that still fail are not checkpointed and will be migrated again by the next run.
+     * @param maxRetries of a batch
+     * @return settings
+     */
+    public MigrationSettings setMaxRetries(int maxRetries) {
+        this.maxRetries = Math.max(0, maxRetries);
+        return this;
+    }
+
+    public long getReportInterval() {
+        return reportInterval;
+    }
+
+    /**
+     * Time between the progress messages of the migration.
+     * @param reportInterval in milliseconds
+     * @return settings
+     */
+    public MigrationSettings setReportInterval(long reportInterval) {
+        this.reportInterval = Math.max(250L, reportInterval);
+        return this;
+    }
+
+    public File getCheckpointFolder() {
+        return checkpointFolder;
+    }
+
+    /**
+     * Folder of the checkpoint files, the files are named by the class and the two databases of the migration.
+     * @param checkpointFolder folder, null to use the data/migrations folder of the plugin
+     * @return settings
+     */
+    public MigrationSettings setCheckpointFolder(File checkpointFolder) {
+        this.checkpointFolder = checkpointFolder;
+        return this;
+    }
+
+    public boolean isCountTotal() {
+        return countTotal;
+    }
+
+    /**
+     * If the source objects are counted before the migration, without the count the ETA is not reported.
+     * @param countTotal status
+     * @return settings
+     */
+    public MigrationSettings setCountTotal(boolean countTotal) {
+        this.countTotal = countTotal;
+        return this;
+    }
+
+    public boolean isResume() {
+        return resume;
+    }
+
+    /**
+     * If the objects of the checkpoint files are skipped, disabled the checkpoints are cleared before the migration.
+     * @param resume status
+     * @return settings
+     */
+    public MigrationSettings setResume(boolean resume) {
+        this.resume = resume;
+        return this;
+    }
+
+    public boolean isVerify() {
+        return verify;
+    }
+
+    /**
+     * If the source and target objects are counted and hashed after the migration.
+     * @param verify status
+     * @return settings
+     */
+    public MigrationSettings setVerify(boolean verify) {
+        this.verify = verify;
+        return this;
+    }
+}
@@ -0,0 +1,453 @@
+package me.blueslime.bukkitmeteor.storage.migrate;
+
+import me.blueslime.bukkitmeteor.implementation.module.Service;
+import me.blueslime.bukkitmeteor.logs.MeteorLogger;
+import me.blueslime.bukkitmeteor.storage.StorageDatabase;
+import me.blueslime.bukkitmeteor.storage.StorageSchema;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageObject;
+import me.blueslime.bukkitmeteor.storage.schema.StorageField;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Copies every object of some classes from a database to another one, for example from YAML to MongoDB.
+ * <p>
+ * The source objects are streamed, so the memory used does not depend on the amount of objects, and they are
+ * written in batches with {@link StorageDatabase#saveAllSync(java.util.Collection)} by a pool of workers,
+ * the reader waits when every worker is busy. Written identifiers are appended to a checkpoint file of the class
+ * and of the two databases ({@link StorageDatabase#getStorageIdentity()}),
+ * a migration that is cancelled or fails can be executed again and it only writes the missing objects.
+ * The progress is logged every report interval and the optional verify pass compares the amount of objects
+ * and a hash of every stored field in both databases.
+ * <p>
+ * Saves of the source database made while it is migrated may not be copied, the server should not use it.
+ */
+public class StorageMigrator implements Service {
+
+    private final List<MigrationProgress> progress = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final MigrationSettings settings;
+    private final StorageDatabase source;
+    private final StorageDatabase target;
+
+    private volatile MigrationProgress current = null;
+    private volatile boolean cancelled = false;
+
+    /**
+     * Inicializa la migración con los valores por defecto.
+     * @param source base de datos que se lee
+     * @param target base de datos donde se escriben los objetos
+     */
+    public StorageMigrator(StorageDatabase source, StorageDatabase target) {
+        this(source, target, null);
+    }
+
+    /**
+     * Inicializa la migración, las dos bases de datos deben estar conectadas.
+     * @param source base de datos que se lee
+     * @param target base de datos donde se escriben los objetos
+     * @param settings de la migración, null para usar los valores por defecto
+     */
+    public StorageMigrator(StorageDatabase source, StorageDatabase target, MigrationSettings settings) {
+        if (source == null || target == null) {
+            throw new IllegalArgumentException("Source and target databases are required");
+        }
+        if (source == target) {
+            throw new IllegalArgumentException("Source and target databases must be different");
+        }
+        this.settings = settings == null ? MigrationSettings.create() : settings;
+        this.source = source;
+        this.target = target;
+    }
+
+    /**
+     * Migrates some classes in a new thread.
+     * @param classes to migrate
+     * @return progress of every class when the migration finishes
+     */
+    @SafeVarargs
+    public final CompletableFuture<List<MigrationProgress>> migrateAsync(Class<? extends StorageObject>... classes) {
+        List<Class<? extends StorageObject>> list = List.of(classes);
+        return CompletableFuture.supplyAsync(() -> migrateSync(list), runnable -> {
+            Thread thread = new Thread(runnable, "BukkitMeteor-Migration");
+            thread.setDaemon(true);
+            thread.start();
+        });
+    }
+
+    /**
+     * Migrates some classes, the classes are migrated one after another.
+     * @param classes to migrate
+     * @return progress of every class
+     * @throws IllegalStateException if this migrator is already running
+     */
+    @SafeVarargs
+    public final List<MigrationProgress> migrateSync(Class<? extends StorageObject>... classes) {
+        return migrateSync(List.of(classes));
+    }
+
+    /**
+     * Migrates some classes, the classes are migrated one after another.
+     * @param classes to migrate
+     * @return progress of every class
+     * @throws IllegalStateException if this migrator is already running
+     */
+    public List<MigrationProgress> migrateSync(Collection<Class<? extends StorageObject>> classes) {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("The migration is already running");
+        }
+        cancelled = false;
+        progress.clear();
+
+        ExecutorService workers = Executors.newFixedThreadPool(settings.getWorkers(), runnable -> {
+            Thread thread = new Thread(runnable, "BukkitMeteor-Migrator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "BukkitMeteor-MigratorReport");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = settings.getReportInterval();
+        reporter.scheduleAtFixedRate(() -> {
+            MigrationProgress report = current;
+            if (report != null && !report.isFinished()) {
+                fetch(MeteorLogger.class).info("Migrating " + report);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+
+        try {
+            List<MigrationProgress> result = new ArrayList<>(classes.size());
+            for (Class<? extends StorageObject> clazz : classes) {
+                if (cancelled) {
+                    break;
+                }
+                MigrationProgress migration = migrateClass(clazz, workers);
+                result.add(migration);
+                if (settings.isVerify() && !migration.isCancelled()) {
+                    fetch(MeteorLogger.class).info("Verifying " + clazz.getSimpleName() + " objects");
+                    migration.verified(verify(clazz));
+                }
+                fetch(MeteorLogger.class).info("Migrated " + migration);
+            }
+            return result;
+        } finally {
+            current = null;
+            reporter.shutdownNow();
+            workers.shutdown();
+            running.set(false);
+        }
+    }
+
+    private <T extends StorageObject> MigrationProgress migrateClass(Class<T> clazz, ExecutorService workers) {
+        StorageSchema schema = StorageSchema.of(clazz);
+        if (schema.getIdentifier() == null) {
+            throw new IllegalArgumentException(clazz.getName() + " don't have a @StorageIdentifier");
+        }
+
+        MigrationProgress migration = new MigrationProgress(clazz, settings.isCountTotal() ? source.query(clazz).count() : -1L);
+        progress.add(migration);
+        current = migration;
+
+        int batchSize = settings.getBatchSize();
+        int permits = settings.getWorkers() * 2;
+        Semaphore inFlight = new Semaphore(permits);
+
+        try (MigrationCheckpoint checkpoint = MigrationCheckpoint.open(checkpointOf(clazz).toPath(), settings.isResume())) {
+            if (checkpoint.size() != 0) {
+                fetch(MeteorLogger.class).info("Resuming " + clazz.getSimpleName() + " migration, " + checkpoint.size() + " objects were already migrated");
+            }
+
+            List<StorageObject> batch = new ArrayList<>(batchSize);
+            long[] keys = new long[batchSize];
+
+            try (Stream<T> stream = source.streamAll(clazz)) {
+                Iterator<T> iterator = stream.iterator();
+                while (!cancelled && iterator.hasNext()) {
+                    T object = iterator.next();
+                    migration.read();
+
+                    String identifier = schema.extractIdentifier(object);
+                    if (identifier == null) {
+                        migration.failed(1);
+                        continue;
+                    }
+
+                    long key = hash(identifier);
+                    if (checkpoint.contains(key)) {
+                        migration.skipped();
+                        continue;
+                    }
+
+                    keys[batch.size()] = key;
+                    batch.add(object);
+
+                    if (batch.size() == batchSize) {
+                        submit(workers, inFlight, checkpoint, migration, batch, keys);
+                        batch = new ArrayList<>(batchSize);
+                        keys = new long[batchSize];
+                    }
+                }
+
+                if (!batch.isEmpty() && !cancelled) {
+                    submit(workers, inFlight, checkpoint, migration, batch, keys);
+                }
+            } finally {
+                // Los lotes en curso escriben en el checkpoint, se espera a que terminen antes de cerrarlo
+                inFlight.acquireUninterruptibly(permits);
+            }
+        } catch (IOException e) {
+            fetch(MeteorLogger.class).error(e, "Can't use the checkpoint of " + clazz.getSimpleName() + ", the migration was stopped");
+            migration.finish(true);
+            return migration;
+        } catch (RuntimeException e) {
+            fetch(MeteorLogger.class).error(e, "Can't read the " + clazz.getSimpleName() + " objects of the source database, the migration was stopped");
+            migration.finish(true);
+            return migration;
+        }
+
+        migration.finish(cancelled);
+        return migration;
+    }
+
+    private void submit(ExecutorService workers, Semaphore inFlight, MigrationCheckpoint checkpoint,
+                        MigrationProgress migration, List<StorageObject> batch, long[] keys) {
+        inFlight.acquireUninterruptibly();
+        try {
+            workers.execute(() -> {
+                try {
+                    write(checkpoint, migration, batch, keys);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    private void write(MigrationCheckpoint checkpoint, MigrationProgress migration, List<StorageObject> batch, long[] keys) {
+        RuntimeException failure = null;
+        for (int attempt = 0; attempt <= settings.getMaxRetries() && !cancelled; attempt++) {
+            try {
+                target.saveAllSync(batch);
+                completed(checkpoint, migration, keys, batch.size());
+                return;
+            } catch (RuntimeException e) {
+                failure = e;
+                try {
+                    Thread.sleep(Math.min(5_000L, 100L << attempt));
+                } catch (InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        if (failure != null) {
+            fetch(MeteorLogger.class).error(failure, "Can't write a batch of " + batch.size() + " " + migration.getType().getSimpleName() + " objects, writing them one by one");
+        }
+
+        // Separa los objetos que fallan del resto del lote
+        long[] written = new long[batch.size()];
+        int amount = 0;
+        for (int i = 0; i < batch.size() && !cancelled; i++) {
+            try {
+                // saveOrUpdateSync registra el error sin lanzarlo, saveAllSync lo lanza
+                target.saveAllSync(List.of(batch.get(i)));
+                written[amount++] = keys[i];
+            } catch (RuntimeException e) {
+                migration.failed(1);
+            }
+        }
+        completed(checkpoint, migration, written, amount);
+    }
+
+    private void completed(MigrationCheckpoint checkpoint, MigrationProgress migration, long[] keys, int amount) {
+        migration.written(amount);
+        if (amount == 0) {
+            return;
+        }
+        try {
+            checkpoint.append(keys, amount);
+        } catch (IOException e) {
+            fetch(MeteorLogger.class).error(e, "Can't update the checkpoint of " + migration.getType().getSimpleName() + ", these objects will be written again by the next run");
+        }
+    }
+
+    /**
+     * Compares the amount of objects and the hash of every stored field of a class in both databases.
+     * Both databases are read completely, objects that only exist in the target database fail the verification.
+     * @param clazz to verify
+     * @return verification
+     */
+    public <T extends StorageObject> MigrationProgress.Verification verify(Class<T> clazz) {
+        long[] sourceResult = digest(source, clazz);
+        long[] targetResult = digest(target, clazz);
+        return new MigrationProgress.Verification(sourceResult[0], targetResult[0], sourceResult[1], targetResult[1]);
+    }
+
+    private <T extends StorageObject> long[] digest(StorageDatabase database, Class<T> clazz) {
+        StorageSchema schema = StorageSchema.of(clazz);
+        long count = 0L;
+        long digest = 0L;
+        try (Stream<T> stream = database.streamAll(clazz)) {
+            Iterator<T> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                T object = iterator.next();
+                // La suma no depende del orden en el que cada base de datos devuelve los objetos
+                digest += mix(hash(String.valueOf(schema.extractIdentifier(object))) * 31L + fingerprint(object));
+                count++;
+            }
+        }
+        return new long[] { count, digest };
+    }
+
+    /**
+     * Cancels the running migration, batches that are being written are finished and checkpointed.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Deletes the checkpoint file of a class, the next migration will write every object again.
+     * @param clazz of the checkpoint
+     * @return true if the file existed
+     */
+    public boolean clearCheckpoint(Class<? extends StorageObject> clazz) {
+        if (running.get()) {
+            throw new IllegalStateException("Can't clear a checkpoint while the migration is running");
+        }
+        try {
+            return Files.deleteIfExists(checkpointOf(clazz).toPath());
+        } catch (IOException e) {
+            fetch(MeteorLogger.class).error(e, "Can't delete the checkpoint of " + clazz.getSimpleName());
+            return false;
+        }
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * @return progress of the class that is being migrated, null if the migration is not running
+     */
+    public MigrationProgress getCurrent() {
+        return current;
+    }
+
+    /**
+     * @return progress of every class of the running or last migration
+     */
+    public List<MigrationProgress> getProgress() {
+        return Collections.unmodifiableList(progress);
+    }
+
+    public StorageDatabase getSource() {
+        return source;
+    }
+
+    public StorageDatabase getTarget() {
+        return target;
+    }
+
+    public MigrationSettings getSettings() {
+        return settings;
+    }
+
+    private File checkpointOf(Class<?> clazz) {
+        File folder = settings.getCheckpointFolder();
+        if (folder == null) {
+            folder = new File(new File(getDataFolder(), "data"), "migrations");
+        }
+        // Cada par de bases de datos tiene su propio checkpoint
+        String databases = source.getStorageIdentity() + "->" + target.getStorageIdentity();
+        UUID pair = UUID.nameUUIDFromBytes(databases.getBytes(StandardCharsets.UTF_8));
+        return new File(folder, clazz.getName() + "-" + pair + ".checkpoint");
+    }
+
+    /**
+     * Hash of a stored value, nested objects are hashed by their stored fields and maps and sets
+     * don't depend on the order of their entries.
+     */
+    private static long fingerprint(Object value) {
+        if (value == null) {
+            return 0x9E3779B97F4A7C15L;
+        }
+        if (value instanceof Map<?, ?> map) {
+            long result = 0x6D61704D61704DL;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                result += mix(fingerprint(entry.getKey()) * 31L + fingerprint(entry.getValue()));
+            }
+            return mix(result);
+        }
+        if (value instanceof Set<?> set) {
+            long result = 0x7365745365L;
+            for (Object element : set) {
+                result += mix(fingerprint(element));
+            }
+            return mix(result);
+        }
+        if (value instanceof Iterable<?> iterable) {
+            long result = 0x6C6973744CL;
+            for (Object element : iterable) {
+                result = result * 31L + fingerprint(element);
+            }
+            return mix(result);
+        }
+        if (value.getClass().isArray()) {
+            long result = 0x61727261794CL;
+            for (int i = 0, length = Array.getLength(value); i < length; i++) {
+                result = result * 31L + fingerprint(Array.get(value, i));
+            }
+            return mix(result);
+        }
+        if (value instanceof StorageObject || StorageSchema.isComplex(value.getClass())) {
+            long result = 0x6F626A656374L;
+            for (StorageField field : StorageSchema.of(value.getClass()).getStoredFields()) {
+                result = result * 31L + mix(hash(field.getName()) ^ fingerprint(field.get(value)));
+            }
+            return mix(result);
+        }
+        return hash(value instanceof Enum<?> constant ? constant.name() : value.toString());
+    }
+
+    /**
+     * 64-bit hash, FNV-1a mixed with the murmur finalizer.
+     */
+    private static long hash(String value) {
+        long hash = 0xCBF29CE484222325L;
+        for (byte current : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= current & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,426 @@
+package me.blueslime.bukkitmeteor.storage.player;
+
+import me.blueslime.bukkitmeteor.colors.TextUtilities;
+import me.blueslime.bukkitmeteor.implementation.module.Listener;
+import me.blueslime.bukkitmeteor.logs.MeteorLogger;
+import me.blueslime.bukkitmeteor.storage.StorageDatabase;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageObject;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Data of the online players, stored with the player uuid as identifier.
+ * <p>
+ * The data is loaded in the {@link AsyncPlayerPreLoginEvent}, so the join never waits for the database, and it is
+ * kept in memory while the player is online. When the player quits the data is saved asynchronously and removed
+ * from the memory once the save finishes. A player that joins again before that keeps the data in memory,
+ * it is never loaded again while a save of the player is pending.
+ * <p>
+ * Register it as a module, the listeners are registered in {@link #initialize()} and
+ * the data of every player is saved in {@link #shutdown()}.
+ * @param <T> type of the player data
+ */
+public class PlayerDataService<T extends StorageObject> implements Listener {
+
+    private final Map<UUID, Session> sessions = new ConcurrentHashMap<>();
+    private final PlayerDataSettings settings;
+    private final StorageDatabase database;
+    private final Function<UUID, T> factory;
+    private final Class<T> type;
+
+    private volatile boolean closed = false;
+
+    /**
+     * Inicializa los datos de los jugadores con los valores por defecto.
+     * @param type de los datos
+     * @param database donde se guardan los datos
+     * @param factory crea los datos de un jugador nuevo, null si un jugador nuevo no tiene datos
+     */
+    public PlayerDataService(Class<T> type, StorageDatabase database, Function<UUID, T> factory) {
+        this(type, database, factory, null);
+    }
+
+    /**
+     * Inicializa los datos de los jugadores, los eventos se registran en {@link #initialize()}.
+     * @param type de los datos
+     * @param database donde se guardan los datos
+     * @param factory crea los datos de un jugador nuevo, null si un jugador nuevo no tiene datos
+     * @param settings de los datos, null para usar los valores por defecto
+     */
+    public PlayerDataService(Class<T> type, StorageDatabase database, Function<UUID, T> factory, PlayerDataSettings settings) {
+        this.settings = settings == null ? PlayerDataSettings.create() : settings;
+        this.database = database;
+        this.factory = factory;
+        this.type = type;
+    }
+
+    @Override
+    public void initialize() {
+        registerAll(this);
+
+        // Jugadores conectados antes de registrar el servicio, por ejemplo después de un reload
+        for (Player player : getServer().getOnlinePlayers()) {
+            join(player.getUniqueId());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.HIGH)
+    public void onPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (closed || event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            return;
+        }
+
+        Session session = acquire(event.getUniqueId(), true);
+
+        try {
+            session.loaded.get(settings.getLoadTimeout(), TimeUnit.MILLISECONDS);
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ignored) {
+            // Ya se registró en la carga
+        } catch (TimeoutException e) {
+            fetch(MeteorLogger.class).warn(
+                "Data of " + event.getName() + " was not loaded in " + settings.getLoadTimeout() + "ms" +
+                (settings.isDenyOnTimeout() ? ", the login was denied" : ", it will be available once it is loaded")
+            );
+        }
+
+        if (settings.isDenyOnTimeout()) {
+            // onDeniedPreLogin libera la sesión, otro plugin todavía puede permitir la entrada
+            event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, TextUtilities.colorize(settings.getDenyMessage()));
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onDeniedPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            Session session = sessions.get(event.getUniqueId());
+            if (session != null) {
+                leave(session);
+            }
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onDeniedLogin(PlayerLoginEvent event) {
+        if (event.getResult() != PlayerLoginEvent.Result.ALLOWED) {
+            Session session = sessions.get(event.getPlayer().getUniqueId());
+            if (session != null) {
+                leave(session);
+            }
+        }
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onJoin(PlayerJoinEvent event) {
+        join(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        Session session = sessions.get(event.getPlayer().getUniqueId());
+        if (session == null) {
+            return;
+        }
+        synchronized (session) {
+            session.online = false;
+            flush(session);
+        }
+        evictIfIdle(session);
+    }
+
+    private void join(UUID uuid) {
+        if (closed) {
+            return;
+        }
+        acquire(uuid, false);
+    }
+
+    /**
+     * Finds the session of a player, a new session is loaded if the player don't have one or its load failed.
+     * The login or join is registered before the load starts, so a fast load can't evict the session.
+     */
+    private Session acquire(UUID uuid, boolean login) {
+        Session created = new Session(uuid);
+        Session session = sessions.compute(uuid, (key, current) -> {
+            Session result = current == null || current.failed ? created : current;
+            synchronized (result) {
+                if (login) {
+                    result.logins++;
+                } else {
+                    result.online = true;
+                    result.logins = Math.max(0, result.logins - 1);
+                }
+            }
+            return result;
+        });
+        if (session == created) {
+            load(created);
+        }
+        return session;
+    }
+
+    private void load(Session session) {
+        database.loadByIdAsync(type, session.uuid.toString()).whenComplete((result, error) -> {
+            if (error != null) {
+                session.failed = true;
+                fetch(MeteorLogger.class).error(error, "Can't load the " + type.getSimpleName() + " of " + session.uuid);
+                session.loaded.completeExceptionally(error);
+            } else {
+                try {
+                    session.data = result.orElseGet(() -> factory == null ? null : factory.apply(session.uuid));
+                    session.ready = true;
+                    session.loaded.complete(null);
+                } catch (RuntimeException e) {
+                    session.failed = true;
+                    fetch(MeteorLogger.class).error(e, "Can't create the " + type.getSimpleName() + " of " + session.uuid);
+                    session.loaded.completeExceptionally(e);
+                }
+            }
+            evictIfIdle(session);
+        });
+    }
+
+    /**
+     * Saves the data of a session after the previous save, so the saves of a player are never reordered.
+     * It must be called holding the lock of the session.
+     */
+    private CompletableFuture<Void> flush(Session session) {
+        T data = session.data;
+        if (!session.ready || data == null) {
+            return session.flush;
+        }
+        session.flushes++;
+        session.unsaved = false;
+        session.flush = session.flush
+            .handle((ignored, error) -> null)
+            .thenCompose(ignored -> database.saveOrUpdateAsync(data))
+            // Asíncrono para no tomar el lock del mapa mientras se tiene el de la sesión
+            .whenCompleteAsync((ignored, error) -> {
+                synchronized (session) {
+                    session.flushes--;
+                    if (error != null) {
+                        session.unsaved = true;
+                    }
+                }
+                if (error != null) {
+                    fetch(MeteorLogger.class).error(error, "Can't save the " + type.getSimpleName() + " of " + session.uuid + ", it will be saved again when the player quits or the service is shutdown");
+                } else {
+                    evictIfIdle(session);
+                }
+            });
+        return session.flush;
+    }
+
+    private void leave(Session session) {
+        synchronized (session) {
+            session.logins = Math.max(0, session.logins - 1);
+        }
+        evictIfIdle(session);
+    }
+
+    private void evictIfIdle(Session session) {
+        // Mismo orden de locks que acquire: primero el del mapa y después el de la sesión
+        sessions.computeIfPresent(session.uuid, (key, current) -> {
+            if (current != session) {
+                return current;
+            }
+            synchronized (session) {
+                boolean idle = !session.online && session.logins == 0 && session.flushes == 0 && !session.unsaved && session.loaded.isDone();
+                if (!idle) {
+                    return current;
+                }
+            }
+            // Dentro del compute, así una sesión nueva del jugador se carga después de olvidar el estado
+            database.getChangeTracker().forget(type, session.uuid.toString());
+            return null;
+        });
+    }
+
+    /**
+     * Gets the data of a player, it can be used in the main thread.
+     * @param player owner of the data
+     * @return data or null if it is not loaded
+     */
+    public T get(Player player) {
+        return get(player.getUniqueId());
+    }
+
+    /**
+     * Gets the data of a player, it can be used in the main thread.
+     * @param uuid of the player
+     * @return data or null if it is not loaded
+     */
+    public T get(UUID uuid) {
+        Session session = sessions.get(uuid);
+        return session == null ? null : session.data;
+    }
+
+    /**
+     * Gets the data of a player, it can be used in the main thread.
+     * @param uuid of the player
+     * @return data or empty if it is not loaded
+     */
+    public Optional<T> find(UUID uuid) {
+        return Optional.ofNullable(get(uuid));
+    }
+
+    /**
+     * @param uuid of the player
+     * @return true if the data of the player is in memory
+     */
+    public boolean isLoaded(UUID uuid) {
+        Session session = sessions.get(uuid);
+        return session != null && session.ready;
+    }
+
+    /**
+     * Waits for the data of a player without blocking, useful when the login is not denied on timeout.
+     * @param uuid of the player
+     * @return data once it is loaded, it fails if the player don't have a session or its load failed
+     */
+    public CompletableFuture<T> whenLoaded(UUID uuid) {
+        Session session = sessions.get(uuid);
+        if (session == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Player " + uuid + " don't have a session"));
+        }
+        return session.loaded.thenApply(ignored -> session.data);
+    }
+
+    /**
+     * Replaces the data of a player, it is saved when the player quits.
+     * @param uuid of the player
+     * @param data new data
+     * @throws IllegalStateException if the data of the player is not loaded
+     */
+    public void set(UUID uuid, T data) {
+        update(uuid, current -> data);
+    }
+
+    /**
+     * Replaces the data of a player, useful for immutable data.
+     * @param uuid of the player
+     * @param function that receives the current data and returns the new data
+     * @return new data
+     * @throws IllegalStateException if the data of the player is not loaded
+     */
+    public T update(UUID uuid, UnaryOperator<T> function) {
+        Session session = sessions.get(uuid);
+        if (session == null || !session.ready) {
+            throw new IllegalStateException("Data of " + uuid + " is not loaded");
+        }
+        synchronized (session) {
+            T data = function.apply(session.data);
+            session.data = data;
+            return data;
+        }
+    }
+
+    /**
+     * Saves the data of an online player without removing it from the memory.
+     * @param uuid of the player
+     * @return save, it is completed immediately if the data is not loaded
+     */
+    public CompletableFuture<Void> save(UUID uuid) {
+        Session session = sessions.get(uuid);
+        if (session == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        synchronized (session) {
+            return flush(session);
+        }
+    }
+
+    /**
+     * Saves the data of every player in memory and waits for the pending saves,
+     * after this method the service don't load more data.
+     */
+    @Override
+    public void shutdown() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        unregisterAll(this);
+
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        for (Session session : sessions.values()) {
+            synchronized (session) {
+                if (session.ready && session.data != null && (session.online || session.unsaved || session.flushes == 0)) {
+                    pending.add(flush(session));
+                } else {
+                    pending.add(session.flush);
+                }
+            }
+        }
+
+        try {
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture[0]))
+                .get(settings.getShutdownTimeout(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ignored) {
+            // Ya se registró en cada guardado
+        } catch (TimeoutException e) {
+            fetch(MeteorLogger.class).warn("Player data saves timed out, some " + type.getSimpleName() + " may not be saved");
+        }
+        for (UUID uuid : sessions.keySet()) {
+            database.getChangeTracker().forget(type, uuid.toString());
+        }
+        sessions.clear();
+    }
+
+    /**
+     * @return amount of players with data in memory, including the players whose quit save is pending
+     */
+    public int getSessions() {
+        return sessions.size();
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    public StorageDatabase getDatabase() {
+        return database;
+    }
+
+    public PlayerDataSettings getSettings() {
+        return settings;
+    }
+
+    private final class Session {
+        private final CompletableFuture<Void> loaded = new CompletableFuture<>();
+        private final UUID uuid;
+
+        private volatile T data = null;
+        private volatile boolean ready = false;
+        private volatile boolean failed = false;
+
+        // Protegidos por el lock de la sesión
+        private CompletableFuture<Void> flush = CompletableFuture.completedFuture(null);
+        private boolean online = false;
+        private boolean unsaved = false;
+        private int flushes = 0;
+        private int logins = 0;
+
+        private Session(UUID uuid) {
+            this.uuid = uuid;
+        }
+    }
+}
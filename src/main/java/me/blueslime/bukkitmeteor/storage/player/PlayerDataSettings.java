@@ -0,0 +1,103 @@
+package me.blueslime.bukkitmeteor.storage.player;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+/**
+ * Settings of a {@link PlayerDataService}
+ */
+public class PlayerDataSettings {
+
+    private long loadTimeout = 5_000L;
+    private boolean denyOnTimeout = true;
+    private String denyMessage = "&cYour data could not be loaded, please try again.";
+    private long shutdownTimeout = 10_000L;
+
+    private PlayerDataSettings() {
+
+    }
+
+    public static PlayerDataSettings create() {
+        return new PlayerDataSettings();
+    }
+
+    /**
+     * Loads the player data settings from a configuration section, missing values will use the default values.
+     * <p>
+     * Keys: load-timeout (in milliseconds), deny-on-timeout, deny-message and shutdown-timeout (in seconds).
+     * @param section to read
+     * @param path of the player data settings, for example "player-data"
+     * @return settings
+     */
+    public static PlayerDataSettings fromSection(ConfigurationSection section, String path) {
+        PlayerDataSettings settings = create();
+
+        if (section == null) {
+            return settings;
+        }
+
+        path = path.isEmpty() ? "" : path.endsWith(".") ? path : path + ".";
+
+        return settings
+            .setLoadTimeout(section.getLong(path + "load-timeout", settings.loadTimeout))
+            .setDenyOnTimeout(section.getBoolean(path + "deny-on-timeout", settings.denyOnTimeout))
+            .setDenyMessage(section.getString(path + "deny-message", settings.denyMessage))
+            .setShutdownTimeout(section.getLong(path + "shutdown-timeout", settings.shutdownTimeout / 1000L) * 1000L);
+    }
+
+    public long getLoadTimeout() {
+        return loadTimeout;
+    }
+
+    /**
+     * Max time that the login of a player waits for its data.
+     * @param loadTimeout in milliseconds
+     * @return settings
+     */
+    public PlayerDataSettings setLoadTimeout(long loadTimeout) {
+        this.loadTimeout = Math.max(100L, loadTimeout);
+        return this;
+    }
+
+    public boolean isDenyOnTimeout() {
+        return denyOnTimeout;
+    }
+
+    /**
+     * If the login is denied when the data of the player is not loaded in time or can't be loaded,
+     * disabled the player joins and the data is available once the load finishes.
+     * @param denyOnTimeout status
+     * @return settings
+     */
+    public PlayerDataSettings setDenyOnTimeout(boolean denyOnTimeout) {
+        this.denyOnTimeout = denyOnTimeout;
+        return this;
+    }
+
+    public String getDenyMessage() {
+        return denyMessage;
+    }
+
+    /**
+     * Message of a denied login, it supports color codes.
+     * @param denyMessage of the login
+     * @return settings
+     */
+    public PlayerDataSettings setDenyMessage(String denyMessage) {
+        this.denyMessage = denyMessage == null ? "" : denyMessage;
+        return this;
+    }
+
+    public long getShutdownTimeout() {
+        return shutdownTimeout;
+    }
+
+    /**
+     * Max time waiting for the pending flushes when the service is shutdown.
+     * @param shutdownTimeout in milliseconds
+     * @return settings
+     */
+    public PlayerDataSettings setShutdownTimeout(long shutdownTimeout) {
+        this.shutdownTimeout = Math.max(0L, shutdownTimeout);
+        return this;
+    }
+}
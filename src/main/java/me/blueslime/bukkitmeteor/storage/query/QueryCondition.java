@@ -0,0 +1,68 @@
+package me.blueslime.bukkitmeteor.storage.query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Condition of a {@link StorageQuery}, values are normalized like the databases store them,
+ * so enums are compared by name.
+ */
+public class QueryCondition {
+
+    private final QueryOperator operator;
+    private final List<Object> values;
+    private final String field;
+    private final Object value;
+
+    public QueryCondition(String field, QueryOperator operator, Object value) {
+        this.operator = operator;
+        this.field = field;
+        this.value = normalize(value);
+        this.values = Collections.emptyList();
+    }
+
+    public QueryCondition(String field, Collection<?> values) {
+        List<Object> list = new ArrayList<>(values.size());
+        for (Object value : values) {
+            list.add(normalize(value));
+        }
+        this.operator = QueryOperator.IN;
+        this.field = field;
+        this.value = null;
+        this.values = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * @return storage name of the field
+     */
+    public String getField() {
+        return field;
+    }
+
+    public QueryOperator getOperator() {
+        return operator;
+    }
+
+    /**
+     * @return compared value, for {@link QueryOperator#EXISTS} it is a Boolean
+     */
+    public Object getValue() {
+        return value;
+    }
+
+    /**
+     * @return values of a {@link QueryOperator#IN} condition
+     */
+    public List<Object> getValues() {
+        return values;
+    }
+
+    static Object normalize(Object value) {
+        if (value instanceof Enum<?> constant) {
+            return constant.name();
+        }
+        return value;
+    }
+}
@@ -0,0 +1,164 @@
+package me.blueslime.bukkitmeteor.storage.query;
+
+import me.blueslime.bukkitmeteor.storage.StorageSchema;
+import me.blueslime.bukkitmeteor.storage.schema.StorageField;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * In-memory evaluation of a {@link StorageQuery}, used by databases that can't translate a query natively.
+ * <p>
+ * Values are read with a function from storage name to value, so conditions can be checked over
+ * raw records (a YAML section or a JSON map) before the object is instantiated.
+ */
+public final class QueryMatcher {
+
+    private QueryMatcher() {
+
+    }
+
+    /**
+     * Reads the stored fields of an object by their storage name
+     * @param instance to read
+     * @return reader
+     */
+    public static Function<String, Object> reader(Object instance) {
+        StorageSchema schema = StorageSchema.of(instance.getClass());
+        return name -> {
+            StorageField field = schema.getStoredField(name);
+            if (field == null) {
+                return null;
+            }
+            Object value = field.get(instance);
+            if (field.isIdentifier() && value != null) {
+                return value.toString();
+            }
+            return QueryCondition.normalize(value);
+        };
+    }
+
+    /**
+     * Creates a predicate with the conditions and the keyset of a query
+     * @param query to check
+     * @return predicate over the record readers
+     */
+    public static Predicate<Function<String, Object>> matcher(StorageQuery<?> query) {
+        List<QueryCondition> conditions = query.getConditions();
+        List<QuerySort> order = query.getOrder();
+        Object[] after = query.getAfterValues();
+
+        return reader -> {
+            for (QueryCondition condition : conditions) {
+                if (!matches(condition, reader.apply(condition.getField()))) {
+                    return false;
+                }
+            }
+            if (after == null) {
+                return true;
+            }
+            for (int i = 0; i < order.size(); i++) {
+                QuerySort sort = order.get(i);
+                int result = compare(reader.apply(sort.getField()), after[i]);
+                if (result != 0) {
+                    return sort.isDescending() ? result < 0 : result > 0;
+                }
+            }
+            return false;
+        };
+    }
+
+    /**
+     * Sorts and limits a stream of results like the query requests
+     * @param query with the order and limit
+     * @param stream of matching objects
+     * @return ordered stream
+     */
+    public static <T> Stream<T> order(StorageQuery<?> query, Stream<T> stream) {
+        List<QuerySort> order = query.getOrder();
+        if (!order.isEmpty()) {
+            Comparator<T> comparator = (first, second) -> {
+                Function<String, Object> firstReader = reader(first);
+                Function<String, Object> secondReader = reader(second);
+                for (QuerySort sort : order) {
+                    int result = compare(firstReader.apply(sort.getField()), secondReader.apply(sort.getField()));
+                    if (result != 0) {
+                        return sort.isDescending() ? -result : result;
+                    }
+                }
+                return 0;
+            };
+            stream = stream.sorted(comparator);
+        }
+        if (query.hasLimit()) {
+            stream = stream.limit(query.getLimit());
+        }
+        return stream;
+    }
+
+    private static boolean matches(QueryCondition condition, Object raw) {
+        Object value = QueryCondition.normalize(raw);
+        return switch (condition.getOperator()) {
+            case EQUALS -> equals(value, condition.getValue());
+            case NOT_EQUALS -> !equals(value, condition.getValue());
+            case GREATER_THAN -> value != null && condition.getValue() != null && compare(value, condition.getValue()) > 0;
+            case LESS_THAN -> value != null && condition.getValue() != null && compare(value, condition.getValue()) < 0;
+            case IN -> condition.getValues().stream().anyMatch(expected -> equals(value, expected));
+            case EXISTS -> (value != null) == Boolean.TRUE.equals(condition.getValue());
+        };
+    }
+
+    private static boolean equals(Object value, Object expected) {
+        if (value == null || expected == null) {
+            return value == expected;
+        }
+        return compare(value, expected) == 0;
+    }
+
+    /**
+     * Compares two stored values, numbers are compared by value whatever their type,
+     * null values are sorted first.
+     * @param first value
+     * @param second value
+     * @return comparison result
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static int compare(Object first, Object second) {
+        first = QueryCondition.normalize(first);
+        second = QueryCondition.normalize(second);
+
+        if (first == null || second == null) {
+            return first == null ? (second == null ? 0 : -1) : 1;
+        }
+        if (first instanceof Number a && second instanceof Number b) {
+            return compareNumbers(a, b);
+        }
+        if (first instanceof Comparable comparable && first.getClass() == second.getClass()) {
+            return comparable.compareTo(second);
+        }
+        if (first instanceof Boolean || second instanceof Boolean) {
+            return Boolean.compare(Boolean.parseBoolean(first.toString()), Boolean.parseBoolean(second.toString()));
+        }
+        return Objects.toString(first).compareTo(Objects.toString(second));
+    }
+
+    private static int compareNumbers(Number first, Number second) {
+        if (isDecimal(first) || isDecimal(second)) {
+            double a = first.doubleValue();
+            double b = second.doubleValue();
+            if (Double.isNaN(a) || Double.isNaN(b) || Double.isInfinite(a) || Double.isInfinite(b)) {
+                return Double.compare(a, b);
+            }
+        }
+        return new BigDecimal(first.toString()).compareTo(new BigDecimal(second.toString()));
+    }
+
+    private static boolean isDecimal(Number number) {
+        return number instanceof Double || number instanceof Float;
+    }
+}
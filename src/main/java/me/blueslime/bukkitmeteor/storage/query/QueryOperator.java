@@ -0,0 +1,13 @@
+package me.blueslime.bukkitmeteor.storage.query;
+
+/**
+ * Operators supported by a {@link StorageQuery} condition.
+ */
+public enum QueryOperator {
+    EQUALS,
+    NOT_EQUALS,
+    GREATER_THAN,
+    LESS_THAN,
+    IN,
+    EXISTS
+}
@@ -0,0 +1,26 @@
+package me.blueslime.bukkitmeteor.storage.query;
+
+/**
+ * Sort key of a {@link StorageQuery}.
+ */
+public class QuerySort {
+
+    private final String field;
+    private final boolean descending;
+
+    public QuerySort(String field, boolean descending) {
+        this.field = field;
+        this.descending = descending;
+    }
+
+    /**
+     * @return storage name of the field
+     */
+    public String getField() {
+        return field;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+}
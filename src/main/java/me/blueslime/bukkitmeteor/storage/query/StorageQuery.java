@@ -0,0 +1,280 @@
+package me.blueslime.bukkitmeteor.storage.query;
+
+import me.blueslime.bukkitmeteor.storage.StorageDatabase;
+import me.blueslime.bukkitmeteor.storage.StorageSchema;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageObject;
+import me.blueslime.bukkitmeteor.storage.schema.StorageField;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Query over the objects of a class, created with {@link StorageDatabase#query(Class)}.
+ * <p>
+ * Fields are referenced by their storage name ({@link me.blueslime.bukkitmeteor.storage.interfaces.StorageKey#key()}
+ * or the java name). Every database translates the query natively when possible, for example:
+ * <pre>{@code
+ * List<Guild> top = database.query(Guild.class)
+ *     .gt("level", 10)
+ *     .descending("level")
+ *     .limit(10)
+ *     .toList();
+ *
+ * List<Guild> next = database.query(Guild.class)
+ *     .gt("level", 10)
+ *     .descending("level")
+ *     .after(top.get(top.size() - 1))
+ *     .limit(10)
+ *     .toList();
+ * }</pre>
+ * Objects waiting in the write-behind queue are not visible until they are written.
+ */
+public class StorageQuery<T extends StorageObject> {
+
+    private final List<QueryCondition> conditions = new ArrayList<>();
+    private final List<QuerySort> sorts = new ArrayList<>();
+
+    private final StorageDatabase database;
+    private final StorageSchema schema;
+    private final Class<T> type;
+
+    private T after = null;
+    private int limit = -1;
+
+    public StorageQuery(StorageDatabase database, Class<T> type) {
+        this.schema = StorageSchema.of(type);
+        this.database = database;
+        this.type = type;
+    }
+
+    public StorageQuery<T> eq(String field, Object value) {
+        return where(field, QueryOperator.EQUALS, value);
+    }
+
+    public StorageQuery<T> ne(String field, Object value) {
+        return where(field, QueryOperator.NOT_EQUALS, value);
+    }
+
+    public StorageQuery<T> gt(String field, Object value) {
+        return where(field, QueryOperator.GREATER_THAN, value);
+    }
+
+    public StorageQuery<T> lt(String field, Object value) {
+        return where(field, QueryOperator.LESS_THAN, value);
+    }
+
+    public StorageQuery<T> in(String field, Object... values) {
+        return in(field, Arrays.asList(values));
+    }
+
+    public StorageQuery<T> in(String field, Collection<?> values) {
+        validate(field);
+        conditions.add(new QueryCondition(field, values));
+        return this;
+    }
+
+    /**
+     * Only objects with a non-null value in this field
+     * @param field storage name
+     * @return query
+     */
+    public StorageQuery<T> exists(String field) {
+        return exists(field, true);
+    }
+
+    /**
+     * @param field storage name
+     * @param exists true to match non-null values, false to match null or missing values
+     * @return query
+     */
+    public StorageQuery<T> exists(String field, boolean exists) {
+        return where(field, QueryOperator.EXISTS, exists);
+    }
+
+    public StorageQuery<T> ascending(String field) {
+        validate(field);
+        sorts.add(new QuerySort(field, false));
+        return this;
+    }
+
+    public StorageQuery<T> descending(String field) {
+        validate(field);
+        sorts.add(new QuerySort(field, true));
+        return this;
+    }
+
+    /**
+     * Max amount of results
+     * @param limit of results, negative for no limit
+     * @return query
+     */
+    public StorageQuery<T> limit(int limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Keyset pagination, only the objects sorted after this object are returned.
+     * The identifier is always used as the last sort key, so pages never repeat or skip objects.
+     * @param last object of the previous page
+     * @return query
+     */
+    public StorageQuery<T> after(T last) {
+        if (schema.getIdentifier() == null) {
+            throw new IllegalStateException("Keyset pagination requires a @StorageIdentifier at class: " + type.getSimpleName());
+        }
+        this.after = last;
+        return this;
+    }
+
+    public List<T> toList() {
+        try (Stream<T> stream = stream()) {
+            return stream.collect(Collectors.toList());
+        }
+    }
+
+    public Optional<T> first() {
+        int previous = limit;
+        limit = 1;
+        try (Stream<T> stream = stream()) {
+            return stream.findFirst();
+        } finally {
+            limit = previous;
+        }
+    }
+
+    /**
+     * Results of this query, the stream must be closed.
+     * @return stream
+     */
+    public Stream<T> stream() {
+        return database.streamQuery(this);
+    }
+
+    public long count() {
+        return database.countQuery(this);
+    }
+
+    public CompletableFuture<List<T>> toListAsync() {
+        return CompletableFuture.supplyAsync(this::toList);
+    }
+
+    public CompletableFuture<Long> countAsync() {
+        return CompletableFuture.supplyAsync(this::count);
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    public StorageSchema getSchema() {
+        return schema;
+    }
+
+    public List<QueryCondition> getConditions() {
+        return Collections.unmodifiableList(conditions);
+    }
+
+    /**
+     * @return explicit sort keys
+     */
+    public List<QuerySort> getSorts() {
+        return Collections.unmodifiableList(sorts);
+    }
+
+    /**
+     * Full order of the results, the explicit sort keys followed by the identifier,
+     * empty if this query is not sorted and don't use pagination.
+     * @return order keys
+     */
+    public List<QuerySort> getOrder() {
+        if (sorts.isEmpty() && after == null) {
+            return Collections.emptyList();
+        }
+        StorageField identifier = schema.getIdentifier();
+        if (identifier == null || sorts.stream().anyMatch(sort -> sort.getField().equals(identifier.getName()))) {
+            return getSorts();
+        }
+        List<QuerySort> order = new ArrayList<>(sorts);
+        order.add(new QuerySort(identifier.getName(), false));
+        return order;
+    }
+
+    public boolean hasLimit() {
+        return limit >= 0;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public boolean hasAfter() {
+        return after != null;
+    }
+
+    /**
+     * Values of {@link #getOrder()} read from the {@link #after(StorageObject)} object.
+     * @return keyset values or null if this query don't use pagination
+     */
+    public Object[] getAfterValues() {
+        if (after == null) {
+            return null;
+        }
+        List<QuerySort> order = getOrder();
+        Object[] values = new Object[order.size()];
+        for (int i = 0; i < values.length; i++) {
+            StorageField field = schema.getStoredField(order.get(i).getField());
+            Object value = field.get(after);
+            if (field.isIdentifier() && value != null) {
+                value = value.toString();
+            }
+            values[i] = QueryCondition.normalize(value);
+        }
+        return values;
+    }
+
+    /**
+     * Identifiers that can match this query, used by databases that can load objects directly by identifier.
+     * @return identifiers or null if the query don't filter by identifier
+     */
+    public Set<String> getIdentifierCandidates() {
+        StorageField identifier = schema.getIdentifier();
+        if (identifier == null) {
+            return null;
+        }
+        Set<String> candidates = null;
+        for (QueryCondition condition : conditions) {
+            if (!condition.getField().equals(identifier.getName())) {
+                continue;
+            }
+            Set<String> values = new LinkedHashSet<>();
+            if (condition.getOperator() == QueryOperator.EQUALS && condition.getValue() != null) {
+                values.add(condition.getValue().toString());
+            } else if (condition.getOperator() == QueryOperator.IN) {
+                condition.getValues().stream().filter(Objects::nonNull).forEach(value -> values.add(value.toString()));
+            } else {
+                continue;
+            }
+            if (candidates == null) {
+                candidates = values;
+            } else {
+                candidates.retainAll(values);
+            }
+        }
+        return candidates;
+    }
+
+    private StorageQuery<T> where(String field, QueryOperator operator, Object value) {
+        validate(field);
+        conditions.add(new QueryCondition(field, operator, value));
+        return this;
+    }
+
+    private void validate(String field) {
+        if (schema.getStoredField(field) == null) {
+            throw new IllegalArgumentException("Can't find stored field '" + field + "' at class: " + type.getSimpleName());
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package me.blueslime.bukkitmeteor.storage.save;
+
+import me.blueslime.bukkitmeteor.implementation.module.Service;
+import me.blueslime.bukkitmeteor.logs.MeteorLogger;
+import me.blueslime.bukkitmeteor.storage.StorageDatabase;
+import me.blueslime.bukkitmeteor.storage.StorageSchema;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageObject;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Periodic saves of the registered objects.
+ * <p>
+ * The objects are split in groups by identifier and one group is checked every interval / batches,
+ * so the writes are spread across the interval. Only dirty objects are written: objects marked with
+ * {@link #markDirty(StorageObject)} or {@link me.blueslime.bukkitmeteor.storage.interfaces.StorageTracked}
+ * objects that changed since they were loaded or saved.
+ */
+public class AutoSaveService implements Service {
+
+    private final Map<Object, AutoSaveEntry> entries = new ConcurrentHashMap<>();
+    private final Queue<QueuedSave> backlog = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger backlogSize = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final Object stateLock = new Object();
+
+    private final AutoSaveSettings settings;
+    private final Semaphore permits;
+
+    private ScheduledExecutorService executor;
+    private volatile boolean closed = false;
+    private long ticks = 0L;
+
+    private volatile long lastFlushDuration = 0L;
+    private volatile long lastFlushWritten = 0L;
+    private volatile long lastFlushTime = 0L;
+
+    /**
+     * Inicializa el guardado automático con los valores por defecto.
+     */
+    public AutoSaveService() {
+        this(null);
+    }
+
+    /**
+     * Inicializa el guardado automático, la tarea empieza cuando se registra el primer objeto.
+     * @param settings del guardado, null para usar los valores por defecto
+     */
+    public AutoSaveService(AutoSaveSettings settings) {
+        this.settings = settings == null ? AutoSaveSettings.create() : settings;
+        this.permits = new Semaphore(this.settings.getMaxInFlight());
+    }
+
+    /**
+     * Registers an object to be saved in a database, an object with the same class and identifier is replaced.
+     * @param obj to save
+     * @param database where the object is saved
+     */
+    public void register(StorageObject obj, StorageDatabase database) {
+        synchronized (stateLock) {
+            if (closed) {
+                fetch(MeteorLogger.class).warn("Can't register " + obj.getClass().getSimpleName() + " in the auto-save, the service is shutdown");
+                return;
+            }
+            start();
+        }
+
+        entries.compute(keyOf(obj), (key, current) -> {
+            if (current != null && current.database == database) {
+                current.object = obj;
+                return current;
+            }
+            if (current != null) {
+                current.removed = true;
+            }
+            return new AutoSaveEntry(obj, database, Math.floorMod(key.hashCode(), settings.getBatches()));
+        });
+    }
+
+    /**
+     * Removes an object from the auto-save.
+     * @param obj to remove
+     * @param save true to save the object if it is dirty
+     * @return future completed when the object is saved
+     */
+    public CompletableFuture<Void> unregister(StorageObject obj, boolean save) {
+        AutoSaveEntry entry = entries.remove(keyOf(obj));
+        if (entry == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        entry.removed = true;
+
+        // Los objetos con seguimiento se envían siempre, la base de datos omite los que no cambiaron
+        if (save && (entry.dirty.getAndSet(false) || StorageSchema.of(obj.getClass()).isTracked())) {
+            return entry.database.saveOrUpdateAsync(obj);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Marks an object to be written in its next auto-save.
+     * @param obj changed
+     * @return false if the object is not registered
+     */
+    public boolean markDirty(StorageObject obj) {
+        AutoSaveEntry entry = entries.get(keyOf(obj));
+        if (entry == null) {
+            return false;
+        }
+        entry.dirty.set(true);
+        return true;
+    }
+
+    public boolean isRegistered(StorageObject obj) {
+        return entries.containsKey(keyOf(obj));
+    }
+
+    /**
+     * Writes every dirty object without waiting for its group, the saves still respect the max in-flight limit.
+     */
+    public void flush() {
+        synchronized (stateLock) {
+            if (closed || executor == null) {
+                return;
+            }
+            executor.execute(() -> enqueue(new ArrayList<>(entries.values())));
+        }
+    }
+
+    /**
+     * Stops the periodic task and writes every dirty object, waiting up to the drain timeout.
+     */
+    @Override
+    public void shutdown() {
+        ScheduledExecutorService current;
+        synchronized (stateLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            current = executor;
+        }
+
+        long deadline = System.currentTimeMillis() + settings.getDrainTimeout();
+
+        try {
+            if (current != null) {
+                current.shutdown();
+                current.awaitTermination(settings.getDrainTimeout(), TimeUnit.MILLISECONDS);
+            }
+
+            enqueue(new ArrayList<>(entries.values()));
+
+            int max = settings.getMaxInFlight();
+            long remaining;
+            while ((remaining = deadline - System.currentTimeMillis()) > 0L) {
+                if (permits.tryAcquire(max, remaining, TimeUnit.MILLISECONDS)) {
+                    boolean empty = backlog.isEmpty();
+                    permits.release(max);
+                    if (empty) {
+                        break;
+                    }
+                    dispatch();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (!backlog.isEmpty() || inFlight.get() > 0) {
+            fetch(MeteorLogger.class).warn(
+                "Auto-save drain timed out, " + backlogSize.get() + " objects were not saved and " + inFlight.get() + " saves are still running"
+            );
+        }
+    }
+
+    public AutoSaveSettings getSettings() {
+        return settings;
+    }
+
+    public int getRegistered() {
+        return entries.size();
+    }
+
+    /**
+     * @return dirty objects waiting for a free save, see {@link AutoSaveSettings#setMaxInFlight(int)}
+     */
+    public int getBacklog() {
+        return backlogSize.get();
+    }
+
+    /**
+     * @return saves running now
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getWritten() {
+        return written.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * @return time between the check of the last flushed group and the end of its last save, in milliseconds
+     */
+    public long getLastFlushDuration() {
+        return lastFlushDuration;
+    }
+
+    /**
+     * @return objects written by the last flushed group
+     */
+    public long getLastFlushWritten() {
+        return lastFlushWritten;
+    }
+
+    /**
+     * @return end time of the last flushed group, or 0 if nothing was flushed yet
+     */
+    public long getLastFlushTime() {
+        return lastFlushTime;
+    }
+
+    private void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "BukkitMeteor-AutoSave");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(50L, settings.getInterval() / settings.getBatches());
+        executor.scheduleAtFixedRate(this::tick, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private void tick() {
+        try {
+            int slot = (int) (ticks++ % settings.getBatches());
+            List<AutoSaveEntry> group = new ArrayList<>();
+            for (AutoSaveEntry entry : entries.values()) {
+                if (entry.slot == slot) {
+                    group.add(entry);
+                }
+            }
+            enqueue(group);
+        } catch (RuntimeException e) {
+            fetch(MeteorLogger.class).error(e, "Can't run the auto-save");
+        }
+    }
+
+    private void enqueue(List<AutoSaveEntry> group) {
+        FlushRound round = new FlushRound();
+        for (AutoSaveEntry entry : group) {
+            if (entry.removed || entry.queued.get() || !isDirty(entry)) {
+                continue;
+            }
+            if (entry.queued.compareAndSet(false, true)) {
+                round.add();
+                backlogSize.incrementAndGet();
+                backlog.add(new QueuedSave(entry, round));
+            }
+        }
+        // Libera el objeto inicial de la ronda
+        round.finish(false);
+        dispatch();
+    }
+
+    private boolean isDirty(AutoSaveEntry entry) {
+        if (entry.dirty.get()) {
+            return true;
+        }
+        StorageObject obj = entry.object;
+        if (!StorageSchema.of(obj.getClass()).isTracked()) {
+            return false;
+        }
+        try {
+            return entry.database.hasChanges(obj);
+        } catch (RuntimeException e) {
+            fetch(MeteorLogger.class).error(e, "Can't check the changes of " + obj.getClass().getSimpleName());
+            return false;
+        }
+    }
+
+    private void dispatch() {
+        while (!backlog.isEmpty() && permits.tryAcquire()) {
+            List<QueuedSave> batch = new ArrayList<>(settings.getMaxBatchSize());
+            QueuedSave save;
+            while (batch.size() < settings.getMaxBatchSize() && (save = backlog.poll()) != null) {
+                backlogSize.decrementAndGet();
+                save.entry.queued.set(false);
+                if (save.entry.removed) {
+                    save.round.finish(false);
+                } else {
+                    batch.add(save);
+                }
+            }
+            if (batch.isEmpty()) {
+                permits.release();
+                continue;
+            }
+            write(batch);
+        }
+    }
+
+    private void write(List<QueuedSave> batch) {
+        Map<StorageDatabase, List<QueuedSave>> groups = new IdentityHashMap<>();
+        for (QueuedSave save : batch) {
+            // Los cambios hechos durante el guardado vuelven a marcar el objeto
+            save.entry.dirty.set(false);
+            groups.computeIfAbsent(save.entry.database, k -> new ArrayList<>()).add(save);
+        }
+
+        inFlight.incrementAndGet();
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>(groups.size());
+        for (Map.Entry<StorageDatabase, List<QueuedSave>> group : groups.entrySet()) {
+            List<StorageObject> objects = new ArrayList<>(group.getValue().size());
+            for (QueuedSave save : group.getValue()) {
+                objects.add(save.entry.object);
+            }
+
+            CompletableFuture<Void> future;
+            try {
+                future = group.getKey().saveAllAsync(objects);
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            futures.add(future.whenComplete((ignored, e) -> complete(group.getValue(), e)));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).whenComplete((ignored, e) -> {
+            inFlight.decrementAndGet();
+            permits.release();
+            dispatch();
+        });
+    }
+
+    private void complete(List<QueuedSave> group, Throwable e) {
+        if (e != null) {
+            failed.add(group.size());
+            fetch(MeteorLogger.class).error(e, "Can't auto-save " + group.size() + " objects, they will be saved in the next interval");
+        } else {
+            written.add(group.size());
+        }
+        for (QueuedSave save : group) {
+            if (e != null && !save.entry.removed) {
+                save.entry.dirty.set(true);
+            }
+            save.round.finish(e == null);
+        }
+    }
+
+    private Object keyOf(StorageObject obj) {
+        String identifier = StorageSchema.of(obj.getClass()).extractIdentifier(obj);
+        return identifier == null ? obj : new EntryKey(obj.getClass(), identifier);
+    }
+
+    private record EntryKey(Class<?> clazz, String identifier) {
+
+    }
+
+    private record QueuedSave(AutoSaveEntry entry, FlushRound round) {
+
+    }
+
+    private static class AutoSaveEntry {
+        private final AtomicBoolean dirty = new AtomicBoolean(false);
+        private final AtomicBoolean queued = new AtomicBoolean(false);
+        private final StorageDatabase database;
+        private final int slot;
+
+        private volatile StorageObject object;
+        private volatile boolean removed = false;
+
+        private AutoSaveEntry(StorageObject object, StorageDatabase database, int slot) {
+            this.object = object;
+            this.database = database;
+            this.slot = slot;
+        }
+    }
+
+    /**
+     * Objects queued by the same check, the flush metrics are updated when the last one is saved.
+     */
+    private class FlushRound {
+        private final long start = System.nanoTime();
+        // Empieza en 1 para que no termine mientras se agregan los objetos
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private final AtomicInteger total = new AtomicInteger();
+        private final AtomicInteger saved = new AtomicInteger();
+
+        private void add() {
+            pending.incrementAndGet();
+            total.incrementAndGet();
+        }
+
+        private void finish(boolean success) {
+            if (success) {
+                saved.incrementAndGet();
+            }
+            if (pending.decrementAndGet() == 0 && total.get() > 0) {
+                lastFlushDuration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                lastFlushWritten = saved.get();
+                lastFlushTime = System.currentTimeMillis();
+            }
+        }
+    }
+}
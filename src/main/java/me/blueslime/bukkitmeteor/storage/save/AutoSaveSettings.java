@@ -0,0 +1,119 @@
+package me.blueslime.bukkitmeteor.storage.save;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+/**
+ * Settings of an {@link AutoSaveService}
+ */
+public class AutoSaveSettings {
+
+    private long interval = 300_000L;
+    private int batches = 60;
+    private int maxBatchSize = 100;
+    private int maxInFlight = 4;
+    private long drainTimeout = 30_000L;
+
+    private AutoSaveSettings() {
+
+    }
+
+    public static AutoSaveSettings create() {
+        return new AutoSaveSettings();
+    }
+
+    /**
+     * Loads the auto-save settings from a configuration section, missing values will use the default values.
+     * <p>
+     * Keys: interval and drain-timeout (in seconds), batches, max-batch-size and max-in-flight.
+     * @param section to read
+     * @param path of the auto-save settings, for example "auto-save"
+     * @return settings
+     */
+    public static AutoSaveSettings fromSection(ConfigurationSection section, String path) {
+        AutoSaveSettings settings = create();
+
+        if (section == null) {
+            return settings;
+        }
+
+        path = path.isEmpty() ? "" : path.endsWith(".") ? path : path + ".";
+
+        return settings
+            .setInterval(section.getLong(path + "interval", settings.interval / 1000L) * 1000L)
+            .setBatches(section.getInt(path + "batches", settings.batches))
+            .setMaxBatchSize(section.getInt(path + "max-batch-size", settings.maxBatchSize))
+            .setMaxInFlight(section.getInt(path + "max-in-flight", settings.maxInFlight))
+            .setDrainTimeout(section.getLong(path + "drain-timeout", settings.drainTimeout / 1000L) * 1000L);
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+
+    /**
+     * Time between two saves of the same object, when the object is dirty.
+     * @param interval in milliseconds
+     * @return settings
+     */
+    public AutoSaveSettings setInterval(long interval) {
+        this.interval = Math.max(1_000L, interval);
+        return this;
+    }
+
+    public int getBatches() {
+        return batches;
+    }
+
+    /**
+     * Amount of groups in which the registered objects are split, one group is saved every
+     * interval / batches, so the writes are spread across the interval instead of all at once.
+     * @param batches per interval, between 1 and 1200
+     * @return settings
+     */
+    public AutoSaveSettings setBatches(int batches) {
+        this.batches = Math.max(1, Math.min(1200, batches));
+        return this;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Max amount of objects sent to the database in one save.
+     * @param maxBatchSize of a save
+     * @return settings
+     */
+    public AutoSaveSettings setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        return this;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Max amount of saves running at the same time, the other dirty objects wait in the backlog.
+     * @param maxInFlight saves
+     * @return settings
+     */
+    public AutoSaveSettings setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+        return this;
+    }
+
+    public long getDrainTimeout() {
+        return drainTimeout;
+    }
+
+    /**
+     * Max time writing the dirty objects when the service is shutdown.
+     * @param drainTimeout in milliseconds
+     * @return settings
+     */
+    public AutoSaveSettings setDrainTimeout(long drainTimeout) {
+        this.drainTimeout = Math.max(0L, drainTimeout);
+        return this;
+    }
+}
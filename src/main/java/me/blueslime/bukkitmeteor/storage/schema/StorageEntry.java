@@ -0,0 +1,142 @@
+package me.blueslime.bukkitmeteor.storage.schema;
+
+import me.blueslime.bukkitmeteor.storage.StorageSchema;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageIdentifier;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageKey;
+
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Shared data between a stored field and a constructor parameter,
+ * everything here is resolved only once when the {@link StorageSchema} is built.
+ */
+public abstract class StorageEntry {
+
+    private final String name;
+    private final Class<?> type;
+    private final String defaultValue;
+    private final boolean identifier;
+    private final boolean keyed;
+    private final boolean complex;
+    private final boolean immutable;
+    private final Class<?> keyType;
+    private final Class<?> elementType;
+
+    protected StorageEntry(AnnotatedElement element, String fallbackName, Class<?> type, Type genericType) {
+        StorageKey key = element.getAnnotation(StorageKey.class);
+
+        this.type = type;
+        this.keyed = key != null;
+        this.name = key != null && !key.key().isEmpty() ? key.key() : fallbackName;
+        this.defaultValue = key != null && !key.defaultValue().isEmpty() ? key.defaultValue() : null;
+        this.identifier = element.isAnnotationPresent(StorageIdentifier.class);
+        this.complex = StorageSchema.isComplex(type);
+        this.immutable = isImmutable(type);
+
+        Class<?> keyType = Object.class;
+        Class<?> elementType = Object.class;
+
+        if (type.isArray()) {
+            elementType = type.getComponentType();
+        } else if (genericType instanceof ParameterizedType parameterized) {
+            Type[] arguments = parameterized.getActualTypeArguments();
+            if (Map.class.isAssignableFrom(type) && arguments.length == 2) {
+                if (arguments[0] instanceof Class<?> argument) {
+                    keyType = argument;
+                }
+                if (arguments[1] instanceof Class<?> argument) {
+                    elementType = argument;
+                }
+            } else if (Collection.class.isAssignableFrom(type) && arguments.length > 0) {
+                if (arguments[0] instanceof Class<?> argument) {
+                    elementType = argument;
+                }
+            }
+        }
+
+        this.keyType = keyType;
+        this.elementType = elementType;
+    }
+
+    /**
+     * Storage name of this entry, the {@link StorageKey#key()} if present or the java name.
+     * @return storage name
+     */
+    public String getName() {
+        return name;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * @return raw {@link StorageKey#defaultValue()} or null if this entry don't have a default value
+     */
+    public String getDefaultValue() {
+        return defaultValue;
+    }
+
+    public boolean hasDefaultValue() {
+        return defaultValue != null;
+    }
+
+    public boolean isIdentifier() {
+        return identifier;
+    }
+
+    public boolean isKeyed() {
+        return keyed;
+    }
+
+    public boolean isComplex() {
+        return complex;
+    }
+
+    /**
+     * When true the converted default value can be cached and shared between objects.
+     * @return immutable result
+     */
+    public boolean isImmutable() {
+        return immutable;
+    }
+
+    /**
+     * Key type of a {@link Map} entry, {@link Object} if it can't be resolved.
+     * @return key type
+     */
+    public Class<?> getKeyType() {
+        return keyType;
+    }
+
+    /**
+     * Element type of an array or {@link Collection}, or value type of a {@link Map},
+     * {@link Object} if it can't be resolved.
+     * @return element type
+     */
+    public Class<?> getElementType() {
+        return elementType;
+    }
+
+    private static boolean isImmutable(Class<?> type) {
+        return type.isPrimitive() ||
+                type.isEnum() ||
+                type.equals(String.class) ||
+                type.equals(Boolean.class) ||
+                type.equals(Integer.class) ||
+                type.equals(Character.class) ||
+                type.equals(Byte.class) ||
+                type.equals(Short.class) ||
+                type.equals(Double.class) ||
+                type.equals(Long.class) ||
+                type.equals(Float.class) ||
+                type.equals(BigInteger.class) ||
+                type.equals(BigDecimal.class);
+    }
+}
@@ -0,0 +1,88 @@
+package me.blueslime.bukkitmeteor.storage.schema;
+
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageIgnore;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageIndex;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+/**
+ * Cached accessor of a declared field.
+ */
+public final class StorageField extends StorageEntry {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private final Field field;
+    private final StorageIndex index;
+    private final boolean ignored;
+    private final MethodHandle getter;
+
+    private StorageField(Field field, MethodHandle getter) {
+        super(field, field.getName(), field.getType(), field.getGenericType());
+        this.field = field;
+        this.ignored = field.isAnnotationPresent(StorageIgnore.class);
+        this.index = field.getAnnotation(StorageIndex.class);
+        this.getter = getter;
+    }
+
+    /**
+     * Creates the accessor of a field
+     * @param field to access
+     * @return accessor or null if the field can't be accessed, for example fields from java modules.
+     */
+    public static StorageField of(Field field) {
+        try {
+            field.setAccessible(true);
+            MethodHandle getter = MethodHandles.lookup()
+                    .unreflectGetter(field)
+                    .asType(GETTER_TYPE);
+            return new StorageField(field, getter);
+        } catch (IllegalAccessException | RuntimeException ignored) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads this field from an instance
+     * @param instance to read
+     * @return field value
+     */
+    public Object get(Object instance) {
+        try {
+            return (Object) getter.invokeExact(instance);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable throwable) {
+            throw new IllegalStateException("Can't read field: " + field.getName(), throwable);
+        }
+    }
+
+    /**
+     * @return java name of this field
+     */
+    public String getFieldName() {
+        return field.getName();
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    public boolean isIgnored() {
+        return ignored;
+    }
+
+    /**
+     * @return true if this field has a {@link StorageIndex}
+     */
+    public boolean isIndexed() {
+        return index != null;
+    }
+
+    public boolean isUniqueIndex() {
+        return index != null && index.unique();
+    }
+}
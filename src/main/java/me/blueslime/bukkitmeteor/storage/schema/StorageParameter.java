@@ -0,0 +1,23 @@
+package me.blueslime.bukkitmeteor.storage.schema;
+
+import java.lang.reflect.Parameter;
+
+/**
+ * Cached parameter of a {@link me.blueslime.bukkitmeteor.storage.interfaces.StorageConstructor}
+ */
+public final class StorageParameter extends StorageEntry {
+
+    private final int index;
+
+    public StorageParameter(Parameter parameter, int index) {
+        super(parameter, parameter.getName(), parameter.getType(), parameter.getParameterizedType());
+        this.index = index;
+    }
+
+    /**
+     * @return position of this parameter in the constructor
+     */
+    public int getIndex() {
+        return index;
+    }
+}
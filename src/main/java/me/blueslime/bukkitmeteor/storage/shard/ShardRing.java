@@ -0,0 +1,91 @@
+package me.blueslime.bukkitmeteor.storage.shard;
+
+import me.blueslime.bukkitmeteor.storage.StorageDatabase;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Consistent hash ring of the shards of a {@link ShardedStorageDatabase}.
+ * <p>
+ * Every shard is placed in the ring at {@code virtualNodes * weight} positions hashed from its name,
+ * an identifier belongs to the first shard position after the hash of the identifier.
+ * Adding or removing a shard only moves the identifiers of the ring ranges that change.
+ */
+public class ShardRing {
+
+    private final NavigableMap<Long, StorageShard> positions = new TreeMap<>();
+    private final List<StorageShard> shards;
+
+    /**
+     * @param shards of the ring, the names must be unique
+     * @param virtualNodes positions of a shard with weight 1
+     * @throws IllegalArgumentException if the ring don't have shards or two shards use the same name
+     */
+    public ShardRing(Collection<StorageShard> shards, int virtualNodes) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("A shard ring needs at least one shard");
+        }
+        this.shards = List.copyOf(shards);
+
+        Set<String> names = new HashSet<>();
+        for (StorageShard shard : shards) {
+            if (!names.add(shard.name())) {
+                throw new IllegalArgumentException("Duplicated shard name: " + shard.name());
+            }
+            int nodes = Math.max(1, virtualNodes) * shard.weight();
+            for (int node = 0; node < nodes; node++) {
+                // En una colisión gana el nombre menor, así el anillo no depende del orden de los shards
+                positions.merge(hash(shard.name() + "#" + node), shard, (first, second) -> first.name().compareTo(second.name()) <= 0 ? first : second);
+            }
+        }
+    }
+
+    /**
+     * @param identifier of the object
+     * @return shard that owns the identifier
+     */
+    public StorageShard owner(String identifier) {
+        Map.Entry<Long, StorageShard> entry = positions.ceilingEntry(hash(identifier));
+        return entry == null ? positions.firstEntry().getValue() : entry.getValue();
+    }
+
+    /**
+     * @param identifier of the object
+     * @return database that owns the identifier
+     */
+    public StorageDatabase database(String identifier) {
+        return owner(identifier).database();
+    }
+
+    public List<StorageShard> getShards() {
+        return shards;
+    }
+
+    /**
+     * @param name of the shard
+     * @return true if this ring has a shard with this name
+     */
+    public boolean contains(String name) {
+        return shards.stream().anyMatch(shard -> shard.name().equals(name));
+    }
+
+    /**
+     * 64-bit hash, FNV-1a mixed with the murmur finalizer.
+     * @param value to hash
+     * @return hash
+     */
+    static long hash(String value) {
+        long hash = 0xCBF29CE484222325L;
+        for (byte current : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= current & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,910 @@
+package me.blueslime.bukkitmeteor.storage.shard;
+
+import me.blueslime.bukkitmeteor.logs.MeteorLogger;
+import me.blueslime.bukkitmeteor.storage.StorageDatabase;
+import me.blueslime.bukkitmeteor.storage.StorageSchema;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageObject;
+import me.blueslime.bukkitmeteor.storage.query.QueryMatcher;
+import me.blueslime.bukkitmeteor.storage.query.StorageQuery;
+import me.blueslime.bukkitmeteor.storage.type.DatabaseType;
+import me.blueslime.bukkitmeteor.storage.type.RegistrationType;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Composite database that splits the objects between shards, every shard can be any {@link StorageDatabase}.
+ * <p>
+ * Identifiers are routed with a consistent hash {@link ShardRing}. Loads of every object and queries are sent
+ * to the shards in parallel and their results are merged, queries that filter by identifier only use the owner shards.
+ * <p>
+ * Resharding is done online: {@link #startResharding(List)} replaces the ring and keeps the old ring as the previous ring.
+ * While resharding, loads that miss in the new owner read the previous owner (dual reads), writes go to the new owner,
+ * deletes remove both copies and {@link #migrateSync(Class)} moves the objects that changed of shard.
+ * Once every class is migrated {@link #finishResharding()} drops the previous ring.
+ */
+@SuppressWarnings("unused")
+public class ShardedStorageDatabase extends StorageDatabase {
+
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private static final int MIGRATION_BATCH_SIZE = 100;
+    private static final int LOCK_STRIPES = 64;
+
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private final LongAdder migrated = new LongAdder();
+    private final Object ringLock = new Object();
+    private final int virtualNodes;
+
+    private volatile Rings rings;
+
+    /**
+     * Crea la base de datos con sus shards.
+     * @param shards de la base de datos.
+     * @param register para Implements.
+     */
+    public ShardedStorageDatabase(List<StorageShard> shards, RegistrationType register) {
+        this(shards, null, DEFAULT_VIRTUAL_NODES, register, null);
+    }
+
+    /**
+     * Crea la base de datos con sus shards.
+     * @param shards de la base de datos.
+     * @param register para Implements.
+     * @param identifier para Implements.
+     */
+    public ShardedStorageDatabase(List<StorageShard> shards, RegistrationType register, String identifier) {
+        this(shards, null, DEFAULT_VIRTUAL_NODES, register, identifier);
+    }
+
+    /**
+     * Crea la base de datos con sus shards, con un anillo anterior si un resharding no ha terminado.
+     * @param shards del anillo actual.
+     * @param previousShards del anillo anterior, null si no hay un resharding.
+     * @param virtualNodes posiciones de cada shard en el anillo.
+     * @param register para Implements.
+     * @param identifier para Implements.
+     */
+    public ShardedStorageDatabase(List<StorageShard> shards, List<StorageShard> previousShards, int virtualNodes, RegistrationType register, String identifier) {
+        this.virtualNodes = Math.max(1, virtualNodes);
+        this.rings = new Rings(
+            new ShardRing(shards, this.virtualNodes),
+            previousShards == null || previousShards.isEmpty() ? null : new ShardRing(previousShards, this.virtualNodes)
+        );
+
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+
+        if (register == null) {
+            register = RegistrationType.DONT_REGISTER;
+        }
+
+        if (register.isDouble() || register.isOnlyThis()) {
+            registerImpl(ShardedStorageDatabase.class, identifier, this, true);
+        }
+
+        if (register.isDouble()) {
+            registerImpl(StorageDatabase.class, identifier, this, true);
+        }
+    }
+
+    /**
+     * Creates the shards from a configuration section, every shard uses the same keys as a single database.
+     * <pre>{@code
+     * database: sharded
+     * sharded:
+     *   virtual-nodes: 128
+     *   ring: [a, b]          # optional, every shard by default
+     *   previous-ring: [a]    # only while resharding
+     *   shards:
+     *     a:
+     *       database: mariadb
+     *       weight: 1
+     *       mariadb:
+     *         url: ...
+     *     b:
+     *       database: mongodb
+     *       mongodb:
+     *         uri: ...
+     * }</pre>
+     * @param section to read
+     * @param path of the sharded settings, for example "database.sharded"
+     * @param factory creates the database of a shard path, the database must not be connected or registered
+     * @param register for the implements
+     * @param identifier for the implements
+     * @return database
+     * @throws IllegalArgumentException if the shards are not valid
+     */
+    public static ShardedStorageDatabase fromSection(ConfigurationSection section, String path, Function<String, StorageDatabase> factory, RegistrationType register, String identifier) {
+        path = path.isEmpty() ? "" : path.endsWith(".") ? path : path + ".";
+
+        ConfigurationSection definitions = section.getConfigurationSection(path + "shards");
+        if (definitions == null || definitions.getKeys(false).isEmpty()) {
+            throw new IllegalArgumentException("No shards defined at: " + path + "shards");
+        }
+
+        List<String> ringNames = section.getStringList(path + "ring");
+        List<String> previousNames = section.getStringList(path + "previous-ring");
+        if (ringNames.isEmpty()) {
+            ringNames = new ArrayList<>(definitions.getKeys(false));
+        }
+
+        Map<String, StorageShard> created = new LinkedHashMap<>();
+        for (String name : ringNames) {
+            created.put(name, createShard(section, path, name, factory));
+        }
+        for (String name : previousNames) {
+            if (!created.containsKey(name)) {
+                created.put(name, createShard(section, path, name, factory));
+            }
+        }
+
+        return new ShardedStorageDatabase(
+            ringNames.stream().map(created::get).collect(Collectors.toList()),
+            previousNames.stream().map(created::get).collect(Collectors.toList()),
+            section.getInt(path + "virtual-nodes", DEFAULT_VIRTUAL_NODES),
+            register,
+            identifier
+        );
+    }
+
+    private static StorageShard createShard(ConfigurationSection section, String path, String name, Function<String, StorageDatabase> factory) {
+        String shardPath = path + "shards." + name;
+        if (!section.isConfigurationSection(shardPath)) {
+            throw new IllegalArgumentException("Shard " + name + " is not defined at: " + path + "shards");
+        }
+        String type = section.getString(shardPath + ".database");
+        if (type != null && DatabaseType.fromString(type) == DatabaseType.SHARDED) {
+            throw new IllegalArgumentException("Shard " + name + " can't be a sharded database");
+        }
+        return new StorageShard(name, factory.apply(shardPath), section.getInt(shardPath + ".weight", 1));
+    }
+
+    public ShardRing getRing() {
+        return rings.current();
+    }
+
+    /**
+     * @return ring before the resharding or null if there is no resharding
+     */
+    public ShardRing getPreviousRing() {
+        return rings.previous();
+    }
+
+    public boolean isResharding() {
+        return rings.previous() != null;
+    }
+
+    /**
+     * @return objects moved by the migrations
+     */
+    public long getMigrated() {
+        return migrated.sum();
+    }
+
+    /**
+     * @param identifier of the object
+     * @return shard that owns the identifier
+     */
+    public StorageShard ownerOf(String identifier) {
+        return rings.current().owner(identifier);
+    }
+
+    /**
+     * Replaces the ring, the current ring is kept as the previous ring until {@link #finishResharding()}.
+     * New shards are connected.
+     * @param shards of the new ring
+     * @throws IllegalStateException if a resharding is not finished
+     */
+    public void startResharding(List<StorageShard> shards) {
+        synchronized (ringLock) {
+            Rings current = rings;
+            if (current.previous() != null) {
+                throw new IllegalStateException("The previous resharding is not finished");
+            }
+            ShardRing next = new ShardRing(shards, virtualNodes);
+            Set<StorageDatabase> known = databasesOf(current.current());
+            for (StorageShard shard : shards) {
+                if (!known.contains(shard.database())) {
+                    shard.database().connect();
+                }
+            }
+            rings = new Rings(next, current.current());
+        }
+        fetch(MeteorLogger.class).info("Started resharding to " + shards.size() + " shards");
+    }
+
+    /**
+     * Drops the previous ring, shards that are not in the current ring are closed.
+     * Call it once {@link #migrateSync(Class)} was done for every class.
+     */
+    public void finishResharding() {
+        Rings finished;
+        synchronized (ringLock) {
+            finished = rings;
+            rings = new Rings(finished.current(), null);
+        }
+        ShardRing old = finished.previous();
+        if (old == null) {
+            return;
+        }
+        Set<StorageDatabase> current = databasesOf(finished.current());
+        for (StorageDatabase database : databasesOf(old)) {
+            if (!current.contains(database)) {
+                database.closeConnection();
+            }
+        }
+        fetch(MeteorLogger.class).info("Finished resharding, " + migrated.sum() + " objects were migrated");
+    }
+
+    /**
+     * Asynchronously moves the objects of a class that changed of shard, see {@link #migrateSync(Class)}
+     * @param clazz of the objects
+     * @return future with the amount of moved objects
+     */
+    public <T extends StorageObject> CompletableFuture<Long> migrateAsync(Class<T> clazz) {
+        return CompletableFuture.supplyAsync(() -> migrateSync(clazz));
+    }
+
+    /**
+     * Moves the objects of a class from their previous shard to their new shard.
+     * A copy written in the new shard while resharding is newer, so it is kept and only the old copy is removed.
+     * @param clazz of the objects
+     * @return amount of moved objects
+     */
+    public <T extends StorageObject> long migrateSync(Class<T> clazz) {
+        Rings rings = this.rings;
+        ShardRing ring = rings.current();
+        ShardRing old = rings.previous();
+        if (old == null) {
+            return 0L;
+        }
+
+        StorageSchema schema = StorageSchema.of(clazz);
+        long moved = 0L;
+        for (StorageDatabase source : databasesOf(old)) {
+            // Primero los identificadores, así el cursor del shard no se lee mientras se borra
+            List<String> identifiers = new ArrayList<>();
+            try (Stream<T> stream = source.streamAll(clazz)) {
+                stream.forEach(object -> {
+                    String identifier = schema.extractIdentifier(object);
+                    if (identifier != null && ring.database(identifier) != source) {
+                        identifiers.add(identifier);
+                    }
+                });
+            }
+            for (int from = 0; from < identifiers.size(); from += MIGRATION_BATCH_SIZE) {
+                moved += move(ring, clazz, source, identifiers.subList(from, Math.min(identifiers.size(), from + MIGRATION_BATCH_SIZE)));
+            }
+        }
+
+        migrated.add(moved);
+        fetch(MeteorLogger.class).info("Migrated " + moved + " objects of " + clazz.getSimpleName() + " to their new shards");
+        return moved;
+    }
+
+    /**
+     * Moves a group of objects of the same source shard, the writes of these identifiers wait until the move ends.
+     */
+    private <T extends StorageObject> long move(ShardRing ring, Class<T> clazz, StorageDatabase source, Collection<String> identifiers) {
+        List<ReentrantLock> locked = lockAll(clazz, identifiers);
+        try {
+            Map<String, T> objects = source.loadByIdsSync(clazz, identifiers);
+            if (objects.isEmpty()) {
+                return 0L;
+            }
+
+            long moved = 0L;
+            for (Map.Entry<StorageDatabase, List<String>> group : groupBy(objects.keySet(), ring::database).entrySet()) {
+                StorageDatabase target = group.getKey();
+                Map<String, T> existing = target.loadByIdsSync(clazz, group.getValue());
+                List<T> copies = new ArrayList<>();
+                for (String identifier : group.getValue()) {
+                    if (!existing.containsKey(identifier)) {
+                        copies.add(objects.get(identifier));
+                    }
+                }
+                if (!copies.isEmpty()) {
+                    target.saveAllSync(copies);
+                    moved += copies.size();
+                }
+            }
+            source.deleteByIdsSync(clazz, objects.keySet());
+            return moved;
+        } finally {
+            unlockAll(locked);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void connect() {
+        for (StorageDatabase database : databases()) {
+            database.connect();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void closeConnection() {
+        shutdownWriteBehind();
+        for (StorageDatabase database : databases()) {
+            database.closeConnection();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> saveOrUpdateAsync(StorageObject obj) {
+        return submitSave(obj, () -> saveOrUpdateSync(obj));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void saveOrUpdateSync(StorageObject obj) {
+        saveAllSync(Collections.singletonList(obj));
+    }
+
+    /**
+     * Objects are grouped by shard and every shard is written in parallel.
+     */
+    @Override
+    public void saveAllSync(Collection<? extends StorageObject> objects) {
+        if (objects.isEmpty()) {
+            return;
+        }
+
+        Rings rings = this.rings;
+        ShardRing ring = rings.current();
+        ShardRing old = rings.previous();
+        Map<StorageDatabase, List<StorageObject>> groups = new LinkedHashMap<>();
+        Map<Class<?>, List<String>> moving = new HashMap<>();
+        for (StorageObject object : objects) {
+            String identifier = StorageSchema.of(object.getClass()).extractIdentifier(object);
+            // El shard depende del identificador, un identificador generado por el shard no se podría encontrar después
+            if (identifier == null) {
+                throw new IllegalArgumentException("Object from class " + object.getClass().getSimpleName() + " don't have @StorageIdentifier or it is null.");
+            }
+            groups.computeIfAbsent(ring.database(identifier), key -> new ArrayList<>()).add(object);
+            if (isMoving(ring, old, identifier)) {
+                moving.computeIfAbsent(object.getClass(), key -> new ArrayList<>()).add(identifier);
+            }
+        }
+
+        List<ReentrantLock> locked = lockAll(moving);
+        try {
+            fanOut(groups.keySet(), database -> {
+                database.saveAllSync(groups.get(database));
+                return null;
+            });
+        } finally {
+            unlockAll(locked);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> CompletableFuture<Optional<T>> loadByIdAsync(Class<T> clazz, String identifier) {
+        T pending = findPendingWrite(clazz, identifier);
+        if (pending != null) {
+            return CompletableFuture.completedFuture(Optional.of(pending));
+        }
+        if (identifier == null) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        Rings rings = this.rings;
+        if (isMoving(rings.current(), rings.previous(), identifier)) {
+            return CompletableFuture.supplyAsync(() -> loadByIdSync(clazz, identifier));
+        }
+        return rings.current().database(identifier).loadByIdAsync(clazz, identifier);
+    }
+
+    /**
+     * While resharding, an object that is not in its new shard is read from its previous shard.
+     */
+    @Override
+    public <T extends StorageObject> Optional<T> loadByIdSync(Class<T> clazz, String identifier) {
+        T pending = findPendingWrite(clazz, identifier);
+        if (pending != null) {
+            return Optional.of(pending);
+        }
+        if (identifier == null) {
+            return Optional.empty();
+        }
+
+        Rings rings = this.rings;
+        ShardRing ring = rings.current();
+        ShardRing old = rings.previous();
+        StorageDatabase owner = ring.database(identifier);
+        if (!isMoving(ring, old, identifier)) {
+            return owner.loadByIdSync(clazz, identifier);
+        }
+
+        List<ReentrantLock> locked = lockAll(clazz, Collections.singletonList(identifier));
+        try {
+            Optional<T> result = owner.loadByIdSync(clazz, identifier);
+            return result.isPresent() ? result : old.database(identifier).loadByIdSync(clazz, identifier);
+        } finally {
+            unlockAll(locked);
+        }
+    }
+
+    /**
+     * Identifiers are grouped by shard and every shard is loaded in parallel.
+     */
+    @Override
+    public <T extends StorageObject> Map<String, T> loadByIdsSync(Class<T> clazz, Collection<String> identifiers) {
+        Map<String, T> results = new HashMap<>();
+        List<String> missing = resolvePendingWrites(clazz, identifiers, results);
+        if (missing.isEmpty()) {
+            return results;
+        }
+
+        Rings rings = this.rings;
+        ShardRing ring = rings.current();
+        ShardRing old = rings.previous();
+        Map<StorageDatabase, List<String>> groups = groupBy(missing, ring::database);
+        fanOut(groups.keySet(), database -> database.loadByIdsSync(clazz, groups.get(database))).forEach(results::putAll);
+
+        if (old == null) {
+            return results;
+        }
+
+        List<String> moving = new ArrayList<>();
+        for (String identifier : missing) {
+            if (!results.containsKey(identifier) && isMoving(ring, old, identifier)) {
+                moving.add(identifier);
+            }
+        }
+        if (moving.isEmpty()) {
+            return results;
+        }
+
+        // Los objetos que faltan se leen otra vez con el lock, una migración puede moverlos entre las dos lecturas
+        List<ReentrantLock> locked = lockAll(clazz, moving);
+        try {
+            Map<StorageDatabase, List<String>> owners = groupBy(moving, ring::database);
+            fanOut(owners.keySet(), database -> database.loadByIdsSync(clazz, owners.get(database))).forEach(results::putAll);
+
+            List<String> remaining = moving.stream().filter(identifier -> !results.containsKey(identifier)).collect(Collectors.toList());
+            Map<StorageDatabase, List<String>> sources = groupBy(remaining, old::database);
+            fanOut(sources.keySet(), database -> database.loadByIdsSync(clazz, sources.get(database))).forEach(results::putAll);
+        } finally {
+            unlockAll(locked);
+        }
+        return results;
+    }
+
+    /**
+     * While resharding, an object that is not in its new shard is read from its previous shard.
+     */
+    @Override
+    public <T extends StorageObject> Optional<Map<String, Object>> loadFieldsByIdSync(Class<T> clazz, String identifier, String... keys) {
+        T pending = findPendingWrite(clazz, identifier);
+        if (pending != null) {
+            return Optional.of(extractFields(pending, keys));
+        }
+        if (identifier == null) {
+            return Optional.empty();
+        }
+
+        Rings rings = this.rings;
+        ShardRing ring = rings.current();
+        ShardRing old = rings.previous();
+        StorageDatabase owner = ring.database(identifier);
+        if (!isMoving(ring, old, identifier)) {
+            return owner.loadFieldsByIdSync(clazz, identifier, keys);
+        }
+
+        List<ReentrantLock> locked = lockAll(clazz, Collections.singletonList(identifier));
+        try {
+            Optional<Map<String, Object>> result = owner.loadFieldsByIdSync(clazz, identifier, keys);
+            return result.isPresent() ? result : old.database(identifier).loadFieldsByIdSync(clazz, identifier, keys);
+        } finally {
+            unlockAll(locked);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> CompletableFuture<Void> deleteByIdAsync(Class<T> clazz, String identifier) {
+        return CompletableFuture.runAsync(() -> deleteByIdSync(clazz, identifier));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> void deleteByIdSync(Class<T> clazz, String identifier) {
+        deleteByIdsSync(clazz, Collections.singletonList(identifier));
+    }
+
+    /**
+     * Identifiers are grouped by shard, while resharding the copy of the previous shard is also deleted.
+     */
+    @Override
+    public <T extends StorageObject> void deleteByIdsSync(Class<T> clazz, Collection<String> identifiers) {
+        Rings rings = this.rings;
+        ShardRing ring = rings.current();
+        ShardRing old = rings.previous();
+        Map<StorageDatabase, Set<String>> groups = new LinkedHashMap<>();
+        List<String> moving = new ArrayList<>();
+        for (String identifier : new LinkedHashSet<>(identifiers)) {
+            if (identifier == null) {
+                continue;
+            }
+            cancelPendingWrite(clazz, identifier);
+            groups.computeIfAbsent(ring.database(identifier), key -> new LinkedHashSet<>()).add(identifier);
+            if (isMoving(ring, old, identifier)) {
+                groups.computeIfAbsent(old.database(identifier), key -> new LinkedHashSet<>()).add(identifier);
+                moving.add(identifier);
+            }
+        }
+        if (groups.isEmpty()) {
+            return;
+        }
+
+        List<ReentrantLock> locked = lockAll(clazz, moving);
+        try {
+            fanOut(groups.keySet(), database -> {
+                database.deleteByIdsSync(clazz, groups.get(database));
+                return null;
+            });
+        } finally {
+            unlockAll(locked);
+        }
+    }
+
+    /**
+     * Deltas are grouped by shard, while resharding an object that is only in its previous shard is moved first.
+     */
+    @Override
+    public <T extends StorageObject> void incrementSync(Class<T> clazz, Map<String, Map<String, Long>> deltas) {
+        Rings rings = this.rings;
+        ShardRing ring = rings.current();
+        ShardRing old = rings.previous();
+        Map<StorageDatabase, Map<String, Map<String, Long>>> groups = new LinkedHashMap<>();
+        Map<StorageDatabase, List<String>> moving = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<String, Long>> entry : deltas.entrySet()) {
+            String identifier = entry.getKey();
+            if (identifier == null) {
+                continue;
+            }
+            groups.computeIfAbsent(ring.database(identifier), key -> new LinkedHashMap<>()).put(identifier, entry.getValue());
+            if (isMoving(ring, old, identifier)) {
+                moving.computeIfAbsent(old.database(identifier), key -> new ArrayList<>()).add(identifier);
+            }
+        }
+
+        for (Map.Entry<StorageDatabase, List<String>> entry : moving.entrySet()) {
+            move(ring, clazz, entry.getKey(), entry.getValue());
+        }
+
+        fanOut(groups.keySet(), database -> {
+            database.incrementSync(clazz, groups.get(database));
+            return null;
+        });
+    }
+
+    /**
+     * Every shard is loaded in parallel.
+     */
+    @Override
+    public <T extends StorageObject> CompletableFuture<Set<T>> loadAllAsync(Class<T> clazz) {
+        return CompletableFuture.supplyAsync(() -> loadAllSync(clazz));
+    }
+
+    /**
+     * Every shard is loaded in parallel.
+     */
+    @Override
+    public <T extends StorageObject> Set<T> loadAllSync(Class<T> clazz) {
+        Rings rings = this.rings;
+        List<StorageDatabase> databases = databases(rings);
+        List<Set<T>> results = fanOut(databases, database -> database.loadAllSync(clazz));
+
+        Map<StorageDatabase, Collection<T>> found = new LinkedHashMap<>();
+        for (int i = 0; i < databases.size(); i++) {
+            found.put(databases.get(i), results.get(i));
+        }
+        return new HashSet<>(resolveCopies(rings.current(), clazz, found, true));
+    }
+
+    /**
+     * The shards are streamed one after another, while resharding every shard is loaded to remove the moved copies.
+     */
+    @Override
+    public <T extends StorageObject> Stream<T> streamAll(Class<T> clazz, boolean parallel) {
+        Rings rings = this.rings;
+        if (rings.previous() != null) {
+            Stream<T> stream = loadAllSync(clazz).stream();
+            return parallel ? stream.parallel() : stream;
+        }
+        return databases(rings).stream().flatMap(database -> database.streamAll(clazz, parallel));
+    }
+
+    /**
+     * The query is executed by the shards in parallel, the results are merged, sorted and limited again.
+     * Queries that filter by identifier only use the owner shards.
+     */
+    @Override
+    public <T extends StorageObject> Stream<T> streamQuery(StorageQuery<T> query) {
+        Rings rings = this.rings;
+        List<StorageDatabase> databases = databasesOf(rings, query);
+        if (databases.size() == 1 && rings.previous() == null) {
+            return databases.get(0).streamQuery(query);
+        }
+
+        List<List<T>> results = fanOut(databases, database -> {
+            try (Stream<T> stream = database.streamQuery(query)) {
+                return stream.collect(Collectors.toList());
+            }
+        });
+
+        Map<StorageDatabase, Collection<T>> found = new LinkedHashMap<>();
+        for (int i = 0; i < databases.size(); i++) {
+            found.put(databases.get(i), results.get(i));
+        }
+        return QueryMatcher.order(query, resolveCopies(rings.current(), query.getType(), found, false).stream());
+    }
+
+    /**
+     * The shards are counted in parallel, while resharding the results are merged to remove the moved copies.
+     */
+    @Override
+    public <T extends StorageObject> long countQuery(StorageQuery<T> query) {
+        Rings rings = this.rings;
+        if (rings.previous() != null || query.hasLimit()) {
+            try (Stream<T> stream = streamQuery(query)) {
+                return stream.count();
+            }
+        }
+        List<StorageDatabase> databases = databasesOf(rings, query);
+        return fanOut(databases, database -> database.countQuery(query)).stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * Identity of the shards of the current ring.
+     */
+    @Override
+    public String getStorageIdentity() {
+        return databasesOf(rings.current()).stream()
+            .map(StorageDatabase::getStorageIdentity)
+            .sorted()
+            .collect(Collectors.joining(",", getClass().getName() + ":[", "]"));
+    }
+
+    /**
+     * The owner shard tracks the changes of its objects.
+     */
+    @Override
+    public boolean hasChanges(StorageObject obj) {
+        String identifier = StorageSchema.of(obj.getClass()).extractIdentifier(obj);
+        return identifier == null || rings.current().database(identifier).hasChanges(obj);
+    }
+
+    @Override
+    public void registerDefaultValueConverter(Class<?> key, Function<String, ?> converter) {
+        super.registerDefaultValueConverter(key, converter);
+        for (StorageDatabase database : databases()) {
+            database.registerDefaultValueConverter(key, converter);
+        }
+    }
+
+    @Override
+    public void registerCollectionConverter(Class<? extends Collection<?>> key, Function<Collection<?>, ?> converter) {
+        super.registerCollectionConverter(key, converter);
+        for (StorageDatabase database : databases()) {
+            database.registerCollectionConverter(key, converter);
+        }
+    }
+
+    @Override
+    public void unregisterDefaultValueConverter(Class<?> clazz) {
+        super.unregisterDefaultValueConverter(clazz);
+        for (StorageDatabase database : databases()) {
+            database.unregisterDefaultValueConverter(clazz);
+        }
+    }
+
+    @Override
+    public void unregisterCollectionConverter(Class<? extends Collection<?>> clazz) {
+        super.unregisterCollectionConverter(clazz);
+        for (StorageDatabase database : databases()) {
+            database.unregisterCollectionConverter(clazz);
+        }
+    }
+
+    /**
+     * Removes the copies found in a shard that don't own them, a copy is only kept if the owner shard
+     * don't have the object yet, so objects that are not migrated are still found.
+     * @param found objects by shard
+     * @param complete true if the results have every object of the owner shards
+     * @return objects without duplicates
+     */
+    private <T extends StorageObject> List<T> resolveCopies(ShardRing ring, Class<T> clazz, Map<StorageDatabase, Collection<T>> found, boolean complete) {
+        StorageSchema schema = StorageSchema.of(clazz);
+        List<T> resolved = new ArrayList<>();
+        Set<String> owned = new HashSet<>();
+        Map<StorageDatabase, Map<String, T>> copies = new LinkedHashMap<>();
+
+        for (Map.Entry<StorageDatabase, Collection<T>> entry : found.entrySet()) {
+            for (T object : entry.getValue()) {
+                String identifier = schema.extractIdentifier(object);
+                StorageDatabase owner = identifier == null ? null : ring.database(identifier);
+                if (owner == null || owner == entry.getKey()) {
+                    resolved.add(object);
+                    if (identifier != null) {
+                        owned.add(identifier);
+                    }
+                } else {
+                    copies.computeIfAbsent(owner, key -> new LinkedHashMap<>()).putIfAbsent(identifier, object);
+                }
+            }
+        }
+
+        for (Map.Entry<StorageDatabase, Map<String, T>> entry : copies.entrySet()) {
+            Map<String, T> objects = entry.getValue();
+            Set<String> stored = complete ? owned : entry.getKey().loadByIdsSync(clazz, objects.keySet()).keySet();
+            objects.forEach((identifier, object) -> {
+                if (!stored.contains(identifier)) {
+                    resolved.add(object);
+                }
+            });
+        }
+        return resolved;
+    }
+
+    /**
+     * Runs a call in every database in parallel
+     * @return results in the order of the databases
+     */
+    private <R> List<R> fanOut(Collection<StorageDatabase> databases, Function<StorageDatabase, R> call) {
+        if (databases.size() == 1) {
+            return Collections.singletonList(call.apply(databases.iterator().next()));
+        }
+
+        List<CompletableFuture<R>> futures = new ArrayList<>(databases.size());
+        for (StorageDatabase database : databases) {
+            futures.add(CompletableFuture.supplyAsync(() -> call.apply(database)));
+        }
+
+        List<R> results = new ArrayList<>(futures.size());
+        RuntimeException failure = null;
+        for (CompletableFuture<R> future : futures) {
+            try {
+                results.add(future.join());
+            } catch (CompletionException e) {
+                RuntimeException cause = e.getCause() instanceof RuntimeException exception ? exception : new IllegalStateException(e.getCause());
+                if (failure == null) {
+                    failure = cause;
+                } else {
+                    failure.addSuppressed(cause);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    /**
+     * @return shards that can have results of the query
+     */
+    private List<StorageDatabase> databasesOf(Rings rings, StorageQuery<?> query) {
+        Set<String> candidates = query.getIdentifierCandidates();
+        if (candidates == null) {
+            return databases(rings);
+        }
+        ShardRing ring = rings.current();
+        ShardRing old = rings.previous();
+        Set<StorageDatabase> databases = new LinkedHashSet<>();
+        for (String candidate : candidates) {
+            databases.add(ring.database(candidate));
+            if (old != null) {
+                databases.add(old.database(candidate));
+            }
+        }
+        if (databases.isEmpty()) {
+            databases.add(ring.getShards().get(0).database());
+        }
+        return new ArrayList<>(databases);
+    }
+
+    /**
+     * @return databases of the current and the previous ring
+     */
+    private List<StorageDatabase> databases() {
+        return databases(rings);
+    }
+
+    private static List<StorageDatabase> databases(Rings rings) {
+        Set<StorageDatabase> databases = databasesOf(rings.current());
+        ShardRing old = rings.previous();
+        if (old != null) {
+            databases.addAll(databasesOf(old));
+        }
+        return new ArrayList<>(databases);
+    }
+
+    private static Set<StorageDatabase> databasesOf(ShardRing ring) {
+        Set<StorageDatabase> databases = new LinkedHashSet<>();
+        for (StorageShard shard : ring.getShards()) {
+            databases.add(shard.database());
+        }
+        return databases;
+    }
+
+    private static boolean isMoving(ShardRing ring, ShardRing old, String identifier) {
+        return old != null && old.database(identifier) != ring.database(identifier);
+    }
+
+    private static Map<StorageDatabase, List<String>> groupBy(Collection<String> identifiers, Function<String, StorageDatabase> router) {
+        Map<StorageDatabase, List<String>> groups = new LinkedHashMap<>();
+        for (String identifier : identifiers) {
+            groups.computeIfAbsent(router.apply(identifier), key -> new ArrayList<>()).add(identifier);
+        }
+        return groups;
+    }
+
+    private List<ReentrantLock> lockAll(Class<?> clazz, Collection<String> identifiers) {
+        return lockAll(identifiers.isEmpty() ? Collections.emptyMap() : Collections.singletonMap(clazz, new ArrayList<>(identifiers)));
+    }
+
+    /**
+     * Locks the stripes of the identifiers in ascending order, so two groups of identifiers never wait for each other
+     */
+    private List<ReentrantLock> lockAll(Map<Class<?>, List<String>> identifiers) {
+        if (identifiers.isEmpty()) {
+            return Collections.emptyList();
+        }
+        TreeSet<Integer> stripes = new TreeSet<>();
+        identifiers.forEach((clazz, values) -> {
+            for (String identifier : values) {
+                int hash = clazz.getName().hashCode() * 31 + identifier.hashCode();
+                hash ^= hash >>> 16;
+                stripes.add(hash & (locks.length - 1));
+            }
+        });
+        List<ReentrantLock> locked = new ArrayList<>(stripes.size());
+        for (int stripe : stripes) {
+            locks[stripe].lock();
+            locked.add(locks[stripe]);
+        }
+        return locked;
+    }
+
+    private static void unlockAll(List<ReentrantLock> locked) {
+        for (int i = locked.size() - 1; i >= 0; i--) {
+            locked.get(i).unlock();
+        }
+    }
+
+    /**
+     * Current and previous ring, replaced together so an operation never mixes the rings of two reshardings.
+     * @param current ring of the owners
+     * @param previous ring before the resharding, null if there is no resharding
+     */
+    private record Rings(ShardRing current, ShardRing previous) { }
+}
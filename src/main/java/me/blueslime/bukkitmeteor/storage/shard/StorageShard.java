@@ -0,0 +1,26 @@
+package me.blueslime.bukkitmeteor.storage.shard;
+
+import me.blueslime.bukkitmeteor.storage.StorageDatabase;
+
+/**
+ * Database of a {@link ShardedStorageDatabase}
+ * @param name of the shard, the ring positions of the shard depend only on this name
+ * @param database of the shard
+ * @param weight of the shard, a shard with weight 2 owns twice the identifiers of a shard with weight 1
+ */
+public record StorageShard(String name, StorageDatabase database, int weight) {
+
+    public StorageShard {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("Shard name can't be empty");
+        }
+        if (database == null) {
+            throw new IllegalArgumentException("Shard " + name + " don't have a database");
+        }
+        weight = Math.max(1, weight);
+    }
+
+    public StorageShard(String name, StorageDatabase database) {
+        this(name, database, 1);
+    }
+}
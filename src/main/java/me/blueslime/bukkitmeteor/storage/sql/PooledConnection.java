@@ -0,0 +1,138 @@
+package me.blueslime.bukkitmeteor.storage.sql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Connection borrowed from a {@link SqlConnectionPool}.
+ * <p>
+ * Closing this connection returns it to the pool. Statements created with
+ * {@link #prepareStatement(String)} are owned by this connection, so they must not be closed by the caller.
+ */
+public class PooledConnection implements AutoCloseable {
+
+    private final SqlConnectionPool pool;
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements;
+    private final List<PreparedStatement> uncached = new ArrayList<>();
+    private final int statementCacheSize;
+    private final long createdAt;
+
+    private volatile long lastUsedAt;
+    private volatile boolean broken = false;
+    private volatile boolean borrowed = false;
+
+    PooledConnection(SqlConnectionPool pool, Connection connection, int statementCacheSize) {
+        this.pool = pool;
+        this.connection = connection;
+        this.statementCacheSize = statementCacheSize;
+        this.createdAt = System.currentTimeMillis();
+        this.lastUsedAt = createdAt;
+        this.statements = new LinkedHashMap<>(16, 0.75F, true);
+    }
+
+    /**
+     * Gets a prepared statement for this sql, reusing the cached statement if it was prepared before.
+     * @param sql to prepare
+     * @return statement with cleared parameters
+     * @throws SQLException if the statement can't be prepared
+     */
+    public PreparedStatement prepareStatement(String sql) throws SQLException {
+        if (statementCacheSize <= 0) {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            uncached.add(statement);
+            return statement;
+        }
+
+        PreparedStatement statement = statements.get(sql);
+        if (statement != null && !statement.isClosed()) {
+            statement.clearParameters();
+            return statement;
+        }
+
+        statement = connection.prepareStatement(sql);
+        statements.put(sql, statement);
+
+        if (statements.size() > statementCacheSize) {
+            Iterator<PreparedStatement> iterator = statements.values().iterator();
+            PreparedStatement eldest = iterator.next();
+            iterator.remove();
+            closeQuietly(eldest);
+        }
+        return statement;
+    }
+
+    /**
+     * Raw connection, used for transactions and batches.
+     * @return connection
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Marks this connection as broken, it will be closed instead of being returned to the pool.
+     */
+    public void invalidate() {
+        broken = true;
+    }
+
+    public boolean isBroken() {
+        return broken;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public long getLastUsedAt() {
+        return lastUsedAt;
+    }
+
+    boolean isBorrowed() {
+        return borrowed;
+    }
+
+    void setBorrowed(boolean borrowed) {
+        this.borrowed = borrowed;
+        this.lastUsedAt = System.currentTimeMillis();
+    }
+
+    void releaseStatements() {
+        for (PreparedStatement statement : uncached) {
+            closeQuietly(statement);
+        }
+        uncached.clear();
+    }
+
+    void closePhysical() {
+        releaseStatements();
+        for (PreparedStatement statement : statements.values()) {
+            closeQuietly(statement);
+        }
+        statements.clear();
+        try {
+            connection.close();
+        } catch (SQLException ignored) { }
+    }
+
+    /**
+     * Returns this connection to the pool.
+     */
+    @Override
+    public void close() {
+        pool.release(this);
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) { }
+    }
+}
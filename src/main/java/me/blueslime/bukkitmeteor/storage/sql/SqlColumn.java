@@ -0,0 +1,16 @@
+package me.blueslime.bukkitmeteor.storage.sql;
+
+import me.blueslime.bukkitmeteor.storage.schema.StorageField;
+
+/**
+ * Column of a {@link SqlTable}
+ * @param name of the column
+ * @param type of the column
+ * @param field stored in this column, null for the {@link SqlTable#ID_COLUMN}
+ */
+public record SqlColumn(String name, SqlColumnType type, StorageField field) {
+
+    public boolean isIdentifier() {
+        return field == null;
+    }
+}
@@ -0,0 +1,71 @@
+package me.blueslime.bukkitmeteor.storage.sql;
+
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageIndex;
+import me.blueslime.bukkitmeteor.storage.schema.StorageEntry;
+import me.blueslime.bukkitmeteor.storage.schema.StorageField;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Generic column types, every {@link SqlDialect} translates them to its own SQL types.
+ */
+public enum SqlColumnType {
+    /**
+     * Primary key with the identifier of the object.
+     */
+    IDENTIFIER,
+    /**
+     * Primary key of classes with a {@link java.util.UUID} identifier field, stored as 16 bytes or a native UUID.
+     */
+    UUID_IDENTIFIER,
+    INTEGER,
+    BIGINT,
+    DOUBLE,
+    BOOLEAN,
+    /**
+     * Short text that can be indexed, used for identifiers and {@link StorageIndex} fields.
+     */
+    VARCHAR,
+    TEXT,
+    /**
+     * Nested objects, collections, arrays and maps stored as a JSON document.
+     */
+    JSON;
+
+    /**
+     * Resolves the column type of a stored field
+     * @param entry to store
+     * @return column type
+     */
+    public static SqlColumnType of(StorageEntry entry) {
+        Class<?> type = entry.getType();
+
+        if (entry.isComplex() || type.isArray() || Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type)) {
+            return JSON;
+        }
+        if (type == int.class || type == Integer.class || type == short.class || type == Short.class || type == byte.class || type == Byte.class) {
+            return INTEGER;
+        }
+        if (type == long.class || type == Long.class) {
+            return BIGINT;
+        }
+        if (type == double.class || type == Double.class || type == float.class || type == Float.class) {
+            return DOUBLE;
+        }
+        if (type == boolean.class || type == Boolean.class) {
+            return BOOLEAN;
+        }
+        if (entry.isIdentifier() || (entry instanceof StorageField field && field.isIndexed())) {
+            return VARCHAR;
+        }
+        return TEXT;
+    }
+
+    /**
+     * @return true if values of this type are written as text
+     */
+    public boolean isText() {
+        return this == IDENTIFIER || this == VARCHAR || this == TEXT;
+    }
+}
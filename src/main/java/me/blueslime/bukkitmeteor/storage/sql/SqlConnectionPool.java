@@ -0,0 +1,264 @@
+package me.blueslime.bukkitmeteor.storage.sql;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded JDBC connection pool.
+ * <p>
+ * Idle connections are reused in LIFO order, validated when they were idle for too long,
+ * replaced after their max lifetime and closed when they are idle over the minimum size.
+ */
+public class SqlConnectionPool {
+
+    private static final long HOUSEKEEPING_PERIOD = 30_000L;
+
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    private final SqlPoolSettings settings;
+    private final Semaphore permits;
+    private final String password;
+    private final String user;
+    private final String url;
+
+    private ScheduledExecutorService housekeeper;
+    private volatile boolean closed = false;
+
+    public SqlConnectionPool(String url, String user, String password, SqlPoolSettings settings) {
+        this.settings = settings == null ? SqlPoolSettings.create() : settings;
+        this.permits = new Semaphore(this.settings.getMaximumSize(), true);
+        this.password = password;
+        this.user = user;
+        this.url = url;
+    }
+
+    /**
+     * Opens the minimum connections and starts the housekeeping task.
+     * @throws SQLException if the first connections can't be created
+     */
+    public void start() throws SQLException {
+        closed = false;
+
+        fill();
+
+        housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "BukkitMeteor-SqlPool");
+            thread.setDaemon(true);
+            return thread;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeeping, HOUSEKEEPING_PERIOD, HOUSEKEEPING_PERIOD, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection, waiting up to {@link SqlPoolSettings#getAcquireTimeout()}.
+     * The connection must be closed to return it to the pool.
+     * @return connection
+     * @throws SQLException if the pool is closed, the timeout is reached or a new connection can't be created
+     */
+    public PooledConnection acquire() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed.");
+        }
+
+        long start = System.nanoTime();
+        boolean permit;
+
+        waiting.incrementAndGet();
+        try {
+            permit = permits.tryAcquire(settings.getAcquireTimeout(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection.", e);
+        } finally {
+            waiting.decrementAndGet();
+        }
+
+        long waited = System.nanoTime() - start;
+        waitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+
+        if (!permit) {
+            timeouts.increment();
+            throw new SQLTimeoutException(
+                "Can't acquire a connection in " + settings.getAcquireTimeout() + "ms (active: " + active.get() + ", max: " + settings.getMaximumSize() + ")"
+            );
+        }
+
+        try {
+            PooledConnection connection;
+            while ((connection = idle.pollFirst()) != null) {
+                if (isUsable(connection)) {
+                    break;
+                }
+                destroy(connection);
+            }
+            if (connection == null) {
+                connection = create();
+            }
+            connection.setBorrowed(true);
+            active.incrementAndGet();
+            acquisitions.increment();
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    void release(PooledConnection connection) {
+        if (!connection.isBorrowed()) {
+            return;
+        }
+        connection.setBorrowed(false);
+        active.decrementAndGet();
+
+        try {
+            connection.releaseStatements();
+
+            if (closed || connection.isBroken() || isExpired(connection) || connection.getConnection().isClosed()) {
+                destroy(connection);
+                return;
+            }
+
+            Connection raw = connection.getConnection();
+            if (!raw.getAutoCommit()) {
+                raw.rollback();
+                raw.setAutoCommit(true);
+            }
+            idle.offerFirst(connection);
+        } catch (SQLException e) {
+            destroy(connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Closes all idle connections, borrowed connections are closed when they are released.
+     */
+    public void close() {
+        closed = true;
+
+        if (housekeeper != null) {
+            housekeeper.shutdownNow();
+            housekeeper = null;
+        }
+
+        PooledConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            destroy(connection);
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public SqlPoolSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * @return current usage and wait time of this pool
+     */
+    public SqlPoolMetrics getMetrics() {
+        long count = acquisitions.sum() + timeouts.sum();
+        long average = count == 0 ? 0L : waitNanos.sum() / count;
+        return new SqlPoolMetrics(
+            active.get(),
+            idle.size(),
+            total.get(),
+            waiting.get(),
+            acquisitions.sum(),
+            timeouts.sum(),
+            TimeUnit.NANOSECONDS.toMicros(average),
+            TimeUnit.NANOSECONDS.toMicros(maxWaitNanos.get())
+        );
+    }
+
+    private PooledConnection create() throws SQLException {
+        Connection connection = user == null && password == null ?
+            DriverManager.getConnection(url) :
+            DriverManager.getConnection(url, user, password);
+        total.incrementAndGet();
+        return new PooledConnection(this, connection, settings.getStatementCacheSize());
+    }
+
+    private void destroy(PooledConnection connection) {
+        connection.closePhysical();
+        total.decrementAndGet();
+    }
+
+    private boolean isExpired(PooledConnection connection) {
+        long lifetime = settings.getMaxLifetime();
+        return lifetime > 0 && System.currentTimeMillis() - connection.getCreatedAt() > lifetime;
+    }
+
+    private boolean isUsable(PooledConnection connection) {
+        if (isExpired(connection)) {
+            return false;
+        }
+        try {
+            if (System.currentTimeMillis() - connection.getLastUsedAt() > settings.getValidationInterval()) {
+                return connection.getConnection().isValid(settings.getValidationTimeout());
+            }
+            return !connection.getConnection().isClosed();
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void fill() throws SQLException {
+        while (!closed && total.get() < settings.getMinimumSize() && permits.tryAcquire()) {
+            try {
+                idle.offerLast(create());
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    private void housekeeping() {
+        long now = System.currentTimeMillis();
+        List<PooledConnection> evicted = new ArrayList<>();
+
+        for (PooledConnection connection : idle) {
+            boolean idleTooLong = now - connection.getLastUsedAt() > settings.getIdleTimeout()
+                && total.get() - evicted.size() > settings.getMinimumSize();
+
+            if ((idleTooLong || isExpired(connection)) && idle.remove(connection)) {
+                evicted.add(connection);
+            }
+        }
+
+        for (PooledConnection connection : evicted) {
+            destroy(connection);
+        }
+
+        try {
+            fill();
+        } catch (SQLException ignored) {
+            // The next acquire will report the connection error
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package me.blueslime.bukkitmeteor.storage.sql;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * SQL differences between the supported databases.
+ */
+public interface SqlDialect {
+
+    /**
+     * @param type generic column type
+     * @return SQL type of the column
+     */
+    String getColumnType(SqlColumnType type);
+
+    /**
+     * Placeholder of a value in an INSERT statement, for example a cast for JSON columns.
+     * @param type of the column
+     * @return placeholder
+     */
+    default String getParameter(SqlColumnType type) {
+        return "?";
+    }
+
+    /**
+     * Creates the clause appended to an INSERT statement to update the row when the identifier already exists.
+     * @param columns of the INSERT statement
+     * @return upsert clause
+     */
+    String createUpsertClause(List<String> columns);
+
+    /**
+     * Value bound to the identifier column, {@link SqlColumnType#UUID_IDENTIFIER} columns use the 16 bytes of the UUID.
+     * @param type of the identifier column
+     * @param identifier of the object
+     * @return parameter value
+     * @throws IllegalArgumentException if the identifier is not a valid UUID
+     */
+    default Object encodeIdentifier(SqlColumnType type, String identifier) {
+        if (type != SqlColumnType.UUID_IDENTIFIER || identifier == null) {
+            return identifier;
+        }
+        return toBytes(UUID.fromString(identifier));
+    }
+
+    /**
+     * @param value read from the identifier column
+     * @return identifier of the object
+     */
+    default String decodeIdentifier(Object value) {
+        if (value instanceof byte[] bytes && bytes.length == 16) {
+            return fromBytes(bytes).toString();
+        }
+        return value == null ? null : value.toString();
+    }
+
+    static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+            .putLong(uuid.getMostSignificantBits())
+            .putLong(uuid.getLeastSignificantBits())
+            .array();
+    }
+
+    static UUID fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+}
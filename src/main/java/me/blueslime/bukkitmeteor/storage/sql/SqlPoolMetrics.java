@@ -0,0 +1,86 @@
+package me.blueslime.bukkitmeteor.storage.sql;
+
+/**
+ * Snapshot of a {@link SqlConnectionPool} usage.
+ */
+public class SqlPoolMetrics {
+
+    private final int active;
+    private final int idle;
+    private final int total;
+    private final int waiting;
+    private final long acquisitions;
+    private final long timeouts;
+    private final long averageWaitMicros;
+    private final long maxWaitMicros;
+
+    public SqlPoolMetrics(int active, int idle, int total, int waiting, long acquisitions, long timeouts, long averageWaitMicros, long maxWaitMicros) {
+        this.active = active;
+        this.idle = idle;
+        this.total = total;
+        this.waiting = waiting;
+        this.acquisitions = acquisitions;
+        this.timeouts = timeouts;
+        this.averageWaitMicros = averageWaitMicros;
+        this.maxWaitMicros = maxWaitMicros;
+    }
+
+    /**
+     * @return connections borrowed right now
+     */
+    public int getActive() {
+        return active;
+    }
+
+    /**
+     * @return open connections waiting to be borrowed
+     */
+    public int getIdle() {
+        return idle;
+    }
+
+    /**
+     * @return open connections
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * @return threads waiting for a connection right now
+     */
+    public int getWaiting() {
+        return waiting;
+    }
+
+    public long getAcquisitions() {
+        return acquisitions;
+    }
+
+    /**
+     * @return acquisitions that failed because the pool was exhausted
+     */
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    public long getAverageWaitMicros() {
+        return averageWaitMicros;
+    }
+
+    public long getMaxWaitMicros() {
+        return maxWaitMicros;
+    }
+
+    @Override
+    public String toString() {
+        return "active=" + active +
+            ", idle=" + idle +
+            ", total=" + total +
+            ", waiting=" + waiting +
+            ", acquisitions=" + acquisitions +
+            ", timeouts=" + timeouts +
+            ", avgWait=" + averageWaitMicros + "us" +
+            ", maxWait=" + maxWaitMicros + "us";
+    }
+}
@@ -0,0 +1,166 @@
+package me.blueslime.bukkitmeteor.storage.sql;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+/**
+ * Settings of a {@link SqlConnectionPool}, all times are in milliseconds.
+ */
+public class SqlPoolSettings {
+
+    private int minimumSize = 2;
+    private int maximumSize = 10;
+    private long acquireTimeout = 10_000L;
+    private long idleTimeout = 600_000L;
+    private long maxLifetime = 1_800_000L;
+    private long validationInterval = 30_000L;
+    private int validationTimeout = 5;
+    private int statementCacheSize = 64;
+
+    private SqlPoolSettings() {
+
+    }
+
+    public static SqlPoolSettings create() {
+        return new SqlPoolSettings();
+    }
+
+    /**
+     * Loads the pool settings from a configuration section, missing values will use the default values.
+     * <p>
+     * Keys: min-size, max-size, acquire-timeout, idle-timeout, max-lifetime,
+     * validation-interval, validation-timeout (seconds) and statement-cache-size.
+     * @param section to read
+     * @param path of the pool settings, for example "mariadb.pool"
+     * @return settings
+     */
+    public static SqlPoolSettings fromSection(ConfigurationSection section, String path) {
+        SqlPoolSettings settings = create();
+
+        if (section == null) {
+            return settings;
+        }
+
+        path = path.isEmpty() ? "" : path.endsWith(".") ? path : path + ".";
+
+        return settings
+            .setMinimumSize(section.getInt(path + "min-size", settings.minimumSize))
+            .setMaximumSize(section.getInt(path + "max-size", settings.maximumSize))
+            .setAcquireTimeout(section.getLong(path + "acquire-timeout", settings.acquireTimeout))
+            .setIdleTimeout(section.getLong(path + "idle-timeout", settings.idleTimeout))
+            .setMaxLifetime(section.getLong(path + "max-lifetime", settings.maxLifetime))
+            .setValidationInterval(section.getLong(path + "validation-interval", settings.validationInterval))
+            .setValidationTimeout(section.getInt(path + "validation-timeout", settings.validationTimeout))
+            .setStatementCacheSize(section.getInt(path + "statement-cache-size", settings.statementCacheSize));
+    }
+
+    public int getMinimumSize() {
+        return minimumSize;
+    }
+
+    /**
+     * Connections that are kept open even when they are idle.
+     * @param minimumSize of the pool
+     * @return settings
+     */
+    public SqlPoolSettings setMinimumSize(int minimumSize) {
+        this.minimumSize = Math.max(0, minimumSize);
+        return this;
+    }
+
+    public int getMaximumSize() {
+        return Math.max(1, Math.max(minimumSize, maximumSize));
+    }
+
+    /**
+     * Max connections open at the same time.
+     * @param maximumSize of the pool
+     * @return settings
+     */
+    public SqlPoolSettings setMaximumSize(int maximumSize) {
+        this.maximumSize = maximumSize;
+        return this;
+    }
+
+    public long getAcquireTimeout() {
+        return acquireTimeout;
+    }
+
+    /**
+     * Max time waiting for a free connection before failing.
+     * @param acquireTimeout in milliseconds
+     * @return settings
+     */
+    public SqlPoolSettings setAcquireTimeout(long acquireTimeout) {
+        this.acquireTimeout = acquireTimeout;
+        return this;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * Time before an idle connection over the minimum size is closed.
+     * @param idleTimeout in milliseconds
+     * @return settings
+     */
+    public SqlPoolSettings setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+        return this;
+    }
+
+    public long getMaxLifetime() {
+        return maxLifetime;
+    }
+
+    /**
+     * Max time a connection is used before being replaced, 0 to disable.
+     * @param maxLifetime in milliseconds
+     * @return settings
+     */
+    public SqlPoolSettings setMaxLifetime(long maxLifetime) {
+        this.maxLifetime = maxLifetime;
+        return this;
+    }
+
+    public long getValidationInterval() {
+        return validationInterval;
+    }
+
+    /**
+     * Idle connections older than this interval are validated before being used.
+     * @param validationInterval in milliseconds
+     * @return settings
+     */
+    public SqlPoolSettings setValidationInterval(long validationInterval) {
+        this.validationInterval = validationInterval;
+        return this;
+    }
+
+    public int getValidationTimeout() {
+        return validationTimeout;
+    }
+
+    /**
+     * @param validationTimeout in seconds for {@link java.sql.Connection#isValid(int)}
+     * @return settings
+     */
+    public SqlPoolSettings setValidationTimeout(int validationTimeout) {
+        this.validationTimeout = validationTimeout;
+        return this;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /**
+     * Prepared statements cached per connection, 0 to disable.
+     * @param statementCacheSize per connection
+     * @return settings
+     */
+    public SqlPoolSettings setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = Math.max(0, statementCacheSize);
+        return this;
+    }
+}
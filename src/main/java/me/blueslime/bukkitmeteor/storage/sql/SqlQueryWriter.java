@@ -0,0 +1,152 @@
+package me.blueslime.bukkitmeteor.storage.sql;
+
+import me.blueslime.bukkitmeteor.storage.query.QueryCondition;
+import me.blueslime.bukkitmeteor.storage.query.QuerySort;
+import me.blueslime.bukkitmeteor.storage.query.StorageQuery;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Translates a {@link StorageQuery} to a parameterized SQL statement.
+ * <p>
+ * Column names come from the validated storage names of the query, values are always bound as parameters.
+ */
+public class SqlQueryWriter {
+
+    private final List<Object> parameters = new ArrayList<>();
+    private final StringBuilder sql = new StringBuilder();
+    private final StorageQuery<?> query;
+
+    private SqlQueryWriter(StorageQuery<?> query) {
+        this.query = query;
+    }
+
+    /**
+     * SELECT * statement with the conditions, order and limit of the query
+     * @param query to translate
+     * @param table name
+     * @return writer with the sql and parameters
+     */
+    public static SqlQueryWriter select(StorageQuery<?> query, String table) {
+        SqlQueryWriter writer = new SqlQueryWriter(query);
+        writer.sql.append("SELECT * FROM ").append(table);
+        writer.appendWhere();
+        writer.appendOrder();
+        if (query.hasLimit()) {
+            writer.sql.append(" LIMIT ?");
+            writer.parameters.add(query.getLimit());
+        }
+        return writer;
+    }
+
+    /**
+     * SELECT COUNT(*) statement with the conditions of the query
+     * @param query to translate
+     * @param table name
+     * @return writer with the sql and parameters
+     */
+    public static SqlQueryWriter count(StorageQuery<?> query, String table) {
+        SqlQueryWriter writer = new SqlQueryWriter(query);
+        writer.sql.append("SELECT COUNT(*) FROM ").append(table);
+        writer.appendWhere();
+        return writer;
+    }
+
+    public String getSql() {
+        return sql.toString();
+    }
+
+    public List<Object> getParameters() {
+        return parameters;
+    }
+
+    private void appendWhere() {
+        List<String> clauses = new ArrayList<>();
+        for (QueryCondition condition : query.getConditions()) {
+            clauses.add(writeCondition(condition));
+        }
+
+        Object[] after = query.getAfterValues();
+        if (after != null) {
+            clauses.add(writeKeyset(query.getOrder(), after));
+        }
+
+        if (!clauses.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", clauses));
+        }
+    }
+
+    private String writeCondition(QueryCondition condition) {
+        String column = condition.getField();
+        Object value = condition.getValue();
+
+        switch (condition.getOperator()) {
+            case EQUALS -> {
+                if (value == null) {
+                    return column + " IS NULL";
+                }
+                parameters.add(value);
+                return column + " = ?";
+            }
+            case NOT_EQUALS -> {
+                if (value == null) {
+                    return column + " IS NOT NULL";
+                }
+                parameters.add(value);
+                return "(" + column + " <> ? OR " + column + " IS NULL)";
+            }
+            case GREATER_THAN -> {
+                parameters.add(value);
+                return column + " > ?";
+            }
+            case LESS_THAN -> {
+                parameters.add(value);
+                return column + " < ?";
+            }
+            case IN -> {
+                if (condition.getValues().isEmpty()) {
+                    return "1 = 0";
+                }
+                parameters.addAll(condition.getValues());
+                return column + " IN (" + String.join(", ", Collections.nCopies(condition.getValues().size(), "?")) + ")";
+            }
+            case EXISTS -> {
+                return column + (Boolean.TRUE.equals(value) ? " IS NOT NULL" : " IS NULL");
+            }
+        }
+        throw new IllegalArgumentException("Unsupported operator: " + condition.getOperator());
+    }
+
+    /**
+     * (a > ?) OR (a = ? AND b > ?) OR ... using {@code <} for descending keys
+     */
+    private String writeKeyset(List<QuerySort> order, Object[] after) {
+        List<String> groups = new ArrayList<>();
+        for (int i = 0; i < order.size(); i++) {
+            List<String> parts = new ArrayList<>();
+            for (int j = 0; j < i; j++) {
+                parts.add(order.get(j).getField() + " = ?");
+                parameters.add(after[j]);
+            }
+            QuerySort sort = order.get(i);
+            parts.add(sort.getField() + (sort.isDescending() ? " < ?" : " > ?"));
+            parameters.add(after[i]);
+            groups.add("(" + String.join(" AND ", parts) + ")");
+        }
+        return "(" + String.join(" OR ", groups) + ")";
+    }
+
+    private void appendOrder() {
+        List<QuerySort> order = query.getOrder();
+        if (order.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(order.size());
+        for (QuerySort sort : order) {
+            keys.add(sort.getField() + (sort.isDescending() ? " DESC" : " ASC"));
+        }
+        sql.append(" ORDER BY ").append(String.join(", ", keys));
+    }
+}
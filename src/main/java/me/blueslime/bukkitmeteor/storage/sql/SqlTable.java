@@ -0,0 +1,338 @@
+package me.blueslime.bukkitmeteor.storage.sql;
+
+import me.blueslime.bukkitmeteor.storage.StorageSchema;
+import me.blueslime.bukkitmeteor.storage.schema.StorageField;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Table of a {@link me.blueslime.bukkitmeteor.storage.interfaces.StorageObject} class.
+ * <p>
+ * Columns are generated once from the {@link StorageSchema}, the first column is always the
+ * {@link #ID_COLUMN} primary key followed by the stored fields. The generated statements are cached,
+ * so every save or load of this class reuses the same SQL and the same pooled prepared statement.
+ */
+public final class SqlTable {
+
+    public static final String ID_COLUMN = "_id";
+
+    /**
+     * Max length of an index name in MariaDB and PostgreSQL is 64 and 63 characters.
+     */
+    private static final int MAX_INDEX_NAME = 60;
+
+    /**
+     * Max amount of cached partial update and select statements, other column groups are generated in every call.
+     */
+    private static final int MAX_CACHED_UPDATES = 256;
+
+    private final Map<Integer, String> inserts = new ConcurrentHashMap<>();
+    private final Map<String, String> updates = new ConcurrentHashMap<>();
+    private final Map<String, String> selects = new ConcurrentHashMap<>();
+    private final Map<String, SqlColumn> columnsByName;
+    private final List<String> columnNames;
+    private final List<SqlColumn> columns;
+    private final SqlDialect dialect;
+    private final String name;
+
+    private final String upsertClause;
+    private final String insertRow;
+    private final String selectById;
+    private final String deleteById;
+    private final String selectAll;
+
+    private SqlTable(Class<?> clazz, SqlDialect dialect) {
+        this.name = clazz.getSimpleName();
+        this.dialect = dialect;
+
+        StorageSchema schema = StorageSchema.of(clazz);
+        List<SqlColumn> columns = new ArrayList<>();
+        columns.add(new SqlColumn(ID_COLUMN, schema.hasUuidIdentifier() ? SqlColumnType.UUID_IDENTIFIER : SqlColumnType.IDENTIFIER, null));
+        for (StorageField field : schema.getStoredFields()) {
+            if (field.getName().equalsIgnoreCase(ID_COLUMN)) {
+                continue;
+            }
+            columns.add(new SqlColumn(field.getName(), SqlColumnType.of(field), field));
+        }
+        this.columns = Collections.unmodifiableList(columns);
+
+        Map<String, SqlColumn> columnsByName = new HashMap<>();
+        for (SqlColumn column : columns) {
+            columnsByName.put(column.name(), column);
+        }
+        this.columnsByName = Collections.unmodifiableMap(columnsByName);
+
+        List<String> names = new ArrayList<>(columns.size());
+        List<String> parameters = new ArrayList<>(columns.size());
+        for (SqlColumn column : columns) {
+            names.add(column.name());
+            parameters.add(dialect.getParameter(column.type()));
+        }
+        this.columnNames = Collections.unmodifiableList(names);
+
+        this.insertRow = "(" + String.join(", ", parameters) + ")";
+        this.upsertClause = dialect.createUpsertClause(columnNames);
+        this.selectById = "SELECT * FROM " + name + " WHERE " + ID_COLUMN + " = ?";
+        this.deleteById = "DELETE FROM " + name + " WHERE " + ID_COLUMN + " = ?";
+        this.selectAll = "SELECT * FROM " + name;
+    }
+
+    /**
+     * Creates the table definition of a class
+     * @param clazz of the stored objects
+     * @param dialect of the database
+     * @return table
+     */
+    public static SqlTable of(Class<?> clazz, SqlDialect dialect) {
+        return new SqlTable(clazz, dialect);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return identifier column followed by the stored field columns
+     */
+    public List<SqlColumn> getColumns() {
+        return columns;
+    }
+
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    /**
+     * @return type of the {@link #ID_COLUMN}
+     */
+    public SqlColumnType getIdentifierType() {
+        return columns.get(0).type();
+    }
+
+    /**
+     * @param identifier of an object
+     * @return value bound to the {@link #ID_COLUMN}
+     * @throws IllegalArgumentException if this table uses UUID identifiers and the identifier is not a valid UUID
+     */
+    public Object encodeIdentifier(String identifier) {
+        return dialect.encodeIdentifier(getIdentifierType(), identifier);
+    }
+
+    /**
+     * @param value read from the {@link #ID_COLUMN}
+     * @return identifier of the object
+     */
+    public String decodeIdentifier(Object value) {
+        return dialect.decodeIdentifier(value);
+    }
+
+    /**
+     * @param name of the column, the storage name of the field
+     * @return column or null if this table don't have a column with this name
+     */
+    public SqlColumn getColumn(String name) {
+        return columnsByName.get(name);
+    }
+
+    /**
+     * Update of some columns of a row, the parameters are the column values followed by the identifier
+     * @param changed columns, without the identifier column
+     * @return sql
+     */
+    public String getUpdateSql(List<SqlColumn> changed) {
+        StringBuilder key = new StringBuilder();
+        for (SqlColumn column : changed) {
+            key.append(column.name()).append(',');
+        }
+
+        String cached = updates.get(key.toString());
+        if (cached != null) {
+            return cached;
+        }
+
+        List<String> assignments = new ArrayList<>(changed.size());
+        for (SqlColumn column : changed) {
+            assignments.add(column.name() + " = " + dialect.getParameter(column.type()));
+        }
+        String sql = "UPDATE " + name + " SET " + String.join(", ", assignments) + " WHERE " + ID_COLUMN + " = ?";
+
+        if (updates.size() < MAX_CACHED_UPDATES) {
+            updates.put(key.toString(), sql);
+        }
+        return sql;
+    }
+
+    /**
+     * Atomic increment of some numeric columns of a row, the parameters are the deltas followed by the identifier
+     * @param incremented columns, without the identifier column
+     * @return sql
+     */
+    public String getIncrementSql(List<SqlColumn> incremented) {
+        StringBuilder key = new StringBuilder("+");
+        for (SqlColumn column : incremented) {
+            key.append(column.name()).append(',');
+        }
+
+        String cached = updates.get(key.toString());
+        if (cached != null) {
+            return cached;
+        }
+
+        List<String> assignments = new ArrayList<>(incremented.size());
+        for (SqlColumn column : incremented) {
+            assignments.add(column.name() + " = COALESCE(" + column.name() + ", 0) + ?");
+        }
+        String sql = "UPDATE " + name + " SET " + String.join(", ", assignments) + " WHERE " + ID_COLUMN + " = ?";
+
+        if (updates.size() < MAX_CACHED_UPDATES) {
+            updates.put(key.toString(), sql);
+        }
+        return sql;
+    }
+
+    /**
+     * Multi-row upsert statement, cached by amount of rows
+     * @param rows amount of rows
+     * @return sql
+     */
+    public String getInsertSql(int rows) {
+        return inserts.computeIfAbsent(rows, amount -> "INSERT INTO " + name + " (" + String.join(", ", columnNames) + ") VALUES " +
+            String.join(", ", Collections.nCopies(amount, insertRow)) + " " + upsertClause
+        );
+    }
+
+    public String getSelectByIdSql() {
+        return selectById;
+    }
+
+    /**
+     * Select of some columns of a row, the identifier column is always the first column
+     * @param selected columns, without the identifier column
+     * @return sql with the identifier as parameter
+     */
+    public String getSelectColumnsByIdSql(List<SqlColumn> selected) {
+        StringBuilder key = new StringBuilder();
+        for (SqlColumn column : selected) {
+            key.append(column.name()).append(',');
+        }
+
+        String cached = selects.get(key.toString());
+        if (cached != null) {
+            return cached;
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT ").append(ID_COLUMN);
+        for (SqlColumn column : selected) {
+            sql.append(", ").append(column.name());
+        }
+        sql.append(" FROM ").append(name).append(" WHERE ").append(ID_COLUMN).append(" = ?");
+
+        if (selects.size() < MAX_CACHED_UPDATES) {
+            selects.put(key.toString(), sql.toString());
+        }
+        return sql.toString();
+    }
+
+    public String getDeleteByIdSql() {
+        return deleteById;
+    }
+
+    public String getSelectAllSql() {
+        return selectAll;
+    }
+
+    public String getSelectByIdsSql(int amount) {
+        return selectAll + " WHERE " + ID_COLUMN + " IN (" + String.join(", ", Collections.nCopies(amount, "?")) + ")";
+    }
+
+    public String getDeleteByIdsSql(int amount) {
+        return "DELETE FROM " + name + " WHERE " + ID_COLUMN + " IN (" + String.join(", ", Collections.nCopies(amount, "?")) + ")";
+    }
+
+    public String getCreateSql() {
+        List<String> definitions = new ArrayList<>(columns.size());
+        for (SqlColumn column : columns) {
+            String definition = column.name() + " " + dialect.getColumnType(column.type());
+            if (column.isIdentifier()) {
+                definition += " NOT NULL PRIMARY KEY";
+            }
+            definitions.add(definition);
+        }
+        return "CREATE TABLE IF NOT EXISTS " + name + " (" + String.join(", ", definitions) + ")";
+    }
+
+    /**
+     * Columns added to the class after the table was created
+     * @param existing column names of the table, case-insensitive
+     * @return missing columns
+     */
+    public List<SqlColumn> getMissingColumns(Set<String> existing) {
+        List<SqlColumn> missing = new ArrayList<>();
+        for (SqlColumn column : columns) {
+            if (!existing.contains(column.name())) {
+                missing.add(column);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Columns are added as nullable, so the statement works with existing rows.
+     * A missing UUID identifier column is added as text, it is filled and then migrated to the binary type.
+     * @param column to add
+     * @return sql
+     */
+    public String getAddColumnSql(SqlColumn column) {
+        SqlColumnType type = column.type() == SqlColumnType.UUID_IDENTIFIER ? SqlColumnType.IDENTIFIER : column.type();
+        return "ALTER TABLE " + name + " ADD COLUMN " + column.name() + " " + dialect.getColumnType(type);
+    }
+
+    /**
+     * Tables created before the identifier column existed are filled with the identifier field
+     * @return sql or null if this class don't have an identifier field
+     */
+    public String getFillIdentifierSql() {
+        for (SqlColumn column : columns) {
+            if (column.field() != null && column.field().isIdentifier()) {
+                return "UPDATE " + name + " SET " + ID_COLUMN + " = " + column.name() + " WHERE " + ID_COLUMN + " IS NULL";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Unique index of the identifier column for tables migrated with {@link #getAddColumnSql(SqlColumn)}
+     * @return sql
+     */
+    public String getIdentifierIndexSql() {
+        return "CREATE UNIQUE INDEX IF NOT EXISTS " + indexName(ID_COLUMN) + " ON " + name + " (" + ID_COLUMN + ")";
+    }
+
+    /**
+     * @return statements of the {@link me.blueslime.bukkitmeteor.storage.interfaces.StorageIndex} fields
+     */
+    public List<String> getIndexSql() {
+        List<String> indexes = new ArrayList<>();
+        for (SqlColumn column : columns) {
+            StorageField field = column.field();
+            if (field == null || !field.isIndexed()) {
+                continue;
+            }
+            indexes.add(
+                "CREATE " + (field.isUniqueIndex() ? "UNIQUE " : "") + "INDEX IF NOT EXISTS " +
+                indexName(column.name()) + " ON " + name + " (" + column.name() + ")"
+            );
+        }
+        return indexes;
+    }
+
+    private String indexName(String column) {
+        String index = "idx_" + name + "_" + column;
+        if (index.length() <= MAX_INDEX_NAME) {
+            return index;
+        }
+        String hash = Integer.toHexString(index.hashCode());
+        return index.substring(0, MAX_INDEX_NAME - hash.length() - 1) + "_" + hash;
+    }
+}
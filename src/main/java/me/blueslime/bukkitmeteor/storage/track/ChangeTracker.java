@@ -0,0 +1,94 @@
+package me.blueslime.bukkitmeteor.storage.track;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Last persisted state of the tracked objects of a database, by class and identifier.
+ * <p>
+ * States are documents with the stored fields by storage name, the changed fields of an object
+ * are the fields with a different value than the last loaded or saved state.
+ */
+public class ChangeTracker {
+
+    private final Map<Class<?>, Map<String, Map<String, Object>>> states = new ConcurrentHashMap<>();
+
+    /**
+     * Saves the persisted state of an object
+     * @param clazz of the object
+     * @param identifier of the object
+     * @param document loaded or written
+     */
+    public void remember(Class<?> clazz, String identifier, Map<String, Object> document) {
+        states.computeIfAbsent(clazz, k -> new ConcurrentHashMap<>()).put(identifier, document);
+    }
+
+    /**
+     * Gets the changed fields of an object
+     * @param clazz of the object
+     * @param identifier of the object
+     * @param document current state
+     * @return changed storage names, empty if nothing changed or null if the persisted state is unknown
+     */
+    public Set<String> getChanges(Class<?> clazz, String identifier, Map<String, Object> document) {
+        Map<String, Map<String, Object>> known = states.get(clazz);
+        Map<String, Object> previous = known == null ? null : known.get(identifier);
+        if (previous == null) {
+            return null;
+        }
+
+        Set<String> changes = new LinkedHashSet<>();
+        for (Map.Entry<String, Object> entry : document.entrySet()) {
+            String name = entry.getKey();
+            if (!previous.containsKey(name) || !Objects.equals(previous.get(name), entry.getValue())) {
+                changes.add(name);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * @param clazz of the object
+     * @param identifier of the object
+     * @return true if the persisted state of the object is known
+     */
+    public boolean isTracked(Class<?> clazz, String identifier) {
+        Map<String, Map<String, Object>> known = states.get(clazz);
+        return known != null && known.containsKey(identifier);
+    }
+
+    /**
+     * Forgets an object, the next save writes the whole object
+     * @param clazz of the object
+     * @param identifier of the object
+     */
+    public void forget(Class<?> clazz, String identifier) {
+        Map<String, Map<String, Object>> known = states.get(clazz);
+        if (known != null) {
+            known.remove(identifier);
+        }
+    }
+
+    /**
+     * Forgets every object of a class
+     * @param clazz of the objects
+     */
+    public void forget(Class<?> clazz) {
+        states.remove(clazz);
+    }
+
+    public void clear() {
+        states.clear();
+    }
+
+    /**
+     * @return amount of tracked objects
+     */
+    public long size() {
+        long size = 0L;
+        for (Map<String, Map<String, Object>> known : states.values()) {
+            size += known.size();
+        }
+        return size;
+    }
+}
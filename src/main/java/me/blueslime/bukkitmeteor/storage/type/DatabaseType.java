@@ -6,7 +6,11 @@ public enum DatabaseType {
     POSTGRE,
     MARIADB,
     MONGODB,
+    REACTIVE_MONGODB,
     JSON,
+    SQLITE,
+    LOG,
+    SHARDED,
     YAML;
 
     public static DatabaseType fromString(String string) {
@@ -20,9 +24,21 @@ public enum DatabaseType {
             case "mongodb", "mongo" -> {
                 return MONGODB;
             }
+            case "reactive-mongodb", "reactive-mongo" -> {
+                return REACTIVE_MONGODB;
+            }
             case "json" -> {
                 return JSON;
             }
+            case "sqlite", "embedded" -> {
+                return SQLITE;
+            }
+            case "log", "binary" -> {
+                return LOG;
+            }
+            case "sharded", "shards" -> {
+                return SHARDED;
+            }
             default -> {
                 return YAML;
             }
@@ -0,0 +1,682 @@
+package me.blueslime.bukkitmeteor.storage.type;
+
+import me.blueslime.bukkitmeteor.logs.MeteorLogger;
+import me.blueslime.bukkitmeteor.storage.StorageDatabase;
+import me.blueslime.bukkitmeteor.storage.StorageSchema;
+import me.blueslime.bukkitmeteor.storage.file.DocumentCodec;
+import me.blueslime.bukkitmeteor.storage.file.FileStorageSettings;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageObject;
+import me.blueslime.bukkitmeteor.storage.query.QueryMatcher;
+import me.blueslime.bukkitmeteor.storage.query.StorageQuery;
+import me.blueslime.bukkitmeteor.storage.schema.StorageField;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Database that stores every object in its own file, a folder for each class and a file for each identifier.
+ * <p>
+ * The format of the files is defined by a {@link DocumentCodec}, documents are encoded in a buffer
+ * reused by the thread and written to a temporary file that replaces the old file with an atomic move,
+ * so reads and crashes never see a partial file. Saves and deletes of the same identifier
+ * are serialized with a striped lock table.
+ * <p>
+ * The identifiers of every class are listed once and kept in memory, existence checks and full loads
+ * don't read the folders again. Files changed by other programs are seen after {@link #reloadIdentifiers(Class)}.
+ */
+@SuppressWarnings({"unused", "ResultOfMethodCallIgnored"})
+public abstract class FileDatabaseService extends StorageDatabase {
+
+    /**
+     * Bigger buffers are not kept by the threads after the write.
+     */
+    private static final int MAX_BUFFER_SIZE = 1024 * 1024;
+
+    private static final ThreadLocal<DocumentBuffer> BUFFERS = ThreadLocal.withInitial(DocumentBuffer::new);
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * Class folder, three bucket levels and the file.
+     */
+    private static final int MAX_DEPTH = 5;
+
+    private static final String[] HEX = new String[256];
+
+    /**
+     * Stored names with dots of every class, read by path when the codec writes them as nested maps.
+     */
+    private static final ClassValue<String[]> PATH_NAMES = new ClassValue<>() {
+        @Override
+        protected String[] computeValue(Class<?> type) {
+            return StorageSchema.of(type).getStoredFields().stream()
+                .map(StorageField::getName)
+                .filter(name -> name.indexOf('.') >= 0)
+                .toArray(String[]::new);
+        }
+    };
+
+    static {
+        for (int i = 0; i < HEX.length; i++) {
+            HEX[i] = String.format("%02x", i);
+        }
+    }
+
+    private final FileStorageSettings settings;
+    private final DocumentCodec codec;
+    private final File dataFolder;
+    private final String extension;
+    private final ReentrantLock[] locks;
+
+    private final Map<Class<?>, Set<String>> identifiers = new ConcurrentHashMap<>();
+
+    /**
+     * Crea la base de datos en una carpeta.
+     * @param dataFolder con una carpeta por clase.
+     * @param settings de los archivos.
+     * @param codec formato de los archivos.
+     */
+    protected FileDatabaseService(File dataFolder, FileStorageSettings settings, DocumentCodec codec) {
+        this.settings = settings == null ? FileStorageSettings.create() : settings;
+        this.dataFolder = dataFolder;
+        this.codec = codec;
+        this.extension = "." + codec.getExtension();
+        this.locks = new ReentrantLock[this.settings.getLockStripes()];
+
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+
+        if (!dataFolder.exists()) {
+            dataFolder.mkdirs();
+        }
+    }
+
+    public FileStorageSettings getSettings() {
+        return settings;
+    }
+
+    public DocumentCodec getCodec() {
+        return codec;
+    }
+
+    public File getDataFolder() {
+        return dataFolder;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> saveOrUpdateAsync(StorageObject obj) {
+        return submitSave(obj, () -> save(obj));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void saveOrUpdateSync(StorageObject obj) {
+        save(obj);
+    }
+
+    /**
+     * No se requiere conexión con archivos, solo se eliminan los archivos temporales de escrituras interrumpidas.
+     */
+    @Override
+    public void connect() {
+        if (!dataFolder.isDirectory()) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(dataFolder.toPath(), MAX_DEPTH)) {
+            files.filter(file -> file.getFileName().toString().endsWith(TEMP_SUFFIX)).forEach(file -> {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    logError("Can't remove temporary file: " + file.getFileName(), e);
+                }
+            });
+        } catch (IOException | UncheckedIOException e) {
+            logError("Can't read folder: " + dataFolder, e);
+        }
+    }
+
+    protected void save(StorageObject obj) {
+        Class<?> clazz = obj.getClass();
+        String identifier = StorageSchema.of(clazz).extractIdentifier(obj);
+
+        if (identifier == null) {
+            throw new IllegalArgumentException("Object from class " + clazz.getSimpleName() + " don't have @StorageIdentifier or it is null.");
+        }
+
+        Map<String, Object> document = createDocument(obj);
+        Set<String> changes = findChanges(obj, identifier, document);
+        if (changes != null && changes.isEmpty()) {
+            return;
+        }
+
+        Set<String> known = listing(clazz);
+        Path file = getFile(clazz, identifier);
+
+        ReentrantLock lock = lockOf(clazz, identifier);
+        lock.lock();
+        try {
+            if (!writeDocument(file, document)) {
+                throw new IllegalStateException("Can't save " + clazz.getSimpleName() + " id: " + identifier);
+            }
+            known.add(identifier);
+            markPersisted(obj, identifier, document);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Encodes the document in the buffer of this thread and replaces the file with an atomic move.
+     * The caller must hold the lock of the identifier.
+     * @param file to write
+     * @param document to encode
+     * @return true if the file was written
+     */
+    protected boolean writeDocument(Path file, Map<String, Object> document) {
+        DocumentBuffer buffer = BUFFERS.get();
+        boolean encoded = false;
+        try {
+            buffer.reset();
+            codec.encode(document, buffer.writer);
+            buffer.writer.flush();
+            encoded = true;
+
+            replaceFile(file, buffer);
+            return true;
+        } catch (IOException e) {
+            logError("Can't save file: " + file.getFileName(), e);
+            return false;
+        } finally {
+            // Un encode fallido puede dejar texto en el writer, el buffer no se reutiliza.
+            if (!encoded || buffer.capacity() > MAX_BUFFER_SIZE) {
+                BUFFERS.remove();
+            }
+        }
+    }
+
+    private void replaceFile(Path file, DocumentBuffer buffer) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + "." + Thread.currentThread().getId() + TEMP_SUFFIX);
+        boolean moved = false;
+        try {
+            try (FileChannel channel = openTemp(temp)) {
+                buffer.writeTo(Channels.newOutputStream(channel));
+                if (settings.isSyncWrites()) {
+                    channel.force(true);
+                }
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            moved = true;
+        } finally {
+            if (!moved) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * The folders are only created when the file can't be opened, saves of existing folders don't check them.
+     */
+    private static FileChannel openTemp(Path temp) throws IOException {
+        try {
+            return FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        } catch (NoSuchFileException e) {
+            Files.createDirectories(temp.getParent());
+            return FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        }
+    }
+
+    /**
+     * @param clazz of the object
+     * @param file to read
+     * @return document or null if the file doesn't exist or can't be read
+     */
+    protected Map<String, Object> readDocument(Class<?> clazz, Path file) {
+        return readDocument(clazz, file, null);
+    }
+
+    /**
+     * Names with dots are read by path when the codec nests them, documents written with the flat key are still read.
+     * @param clazz of the object
+     * @param file to read
+     * @param keys to read, null to read the whole document
+     * @return document or null if the file doesn't exist or can't be read
+     */
+    protected Map<String, Object> readDocument(Class<?> clazz, Path file, Set<String> keys) {
+        String[] paths = codec.isPathKeys() ? PATH_NAMES.get(clazz) : new String[0];
+        if (keys != null && paths.length > 0) {
+            keys = new HashSet<>(keys);
+            for (String path : paths) {
+                if (keys.contains(path)) {
+                    keys.add(path.substring(0, path.indexOf('.')));
+                }
+            }
+        }
+
+        Map<String, Object> document;
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            document = keys == null ? codec.decode(reader) : codec.decode(reader, keys);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            logError("Can't load file: " + file.getFileName(), e);
+            return null;
+        }
+
+        for (String path : paths) {
+            Object value = valueAt(document, path);
+            if (value != null) {
+                document.put(path, value);
+            }
+        }
+        return document;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> CompletableFuture<Optional<T>> loadByIdAsync(Class<T> clazz, String identifier) {
+        return CompletableFuture.supplyAsync(() -> loadByIdSync(clazz, identifier));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> Optional<T> loadByIdSync(Class<T> clazz, String identifier) {
+        T pending = findPendingWrite(clazz, identifier);
+        if (pending != null) {
+            return Optional.of(pending);
+        }
+
+        if (identifier == null || !listing(clazz).contains(identifier)) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(trackLoaded(loadFile(clazz, getFile(clazz, identifier))));
+    }
+
+    /**
+     * The file is read until every requested key was found, the rest of the file is not parsed.
+     */
+    @Override
+    protected <T extends StorageObject> Optional<Map<String, Object>> loadFields(Class<T> clazz, String identifier, List<StorageField> fields) {
+        if (identifier == null || !listing(clazz).contains(identifier)) {
+            return Optional.empty();
+        }
+        Map<String, Object> document = readDocument(clazz, getFile(clazz, identifier), namesOf(fields));
+        return document == null ? Optional.empty() : Optional.of(decodeFields(fields, document, identifier));
+    }
+
+    /**
+     * Loads the files of every identifier in parallel.
+     */
+    @Override
+    public <T extends StorageObject> Map<String, T> loadByIdsSync(Class<T> clazz, Collection<String> identifiers) {
+        Map<String, T> results = new ConcurrentHashMap<>();
+        List<String> missing = resolvePendingWrites(clazz, identifiers, results);
+        missing.parallelStream().forEach(
+            identifier -> loadByIdSync(clazz, identifier).ifPresent(object -> results.put(identifier, object))
+        );
+        return results;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> CompletableFuture<Void> deleteByIdAsync(Class<T> clazz, String identifier) {
+        return CompletableFuture.runAsync(() -> delete(clazz, identifier));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> void deleteByIdSync(Class<T> clazz, String identifier) {
+        delete(clazz, identifier);
+    }
+
+    public <T extends StorageObject> void delete(Class<T> clazz, String identifier) {
+        if (identifier == null) {
+            return;
+        }
+        cancelPendingWrite(clazz, identifier);
+        Set<String> known = listing(clazz);
+
+        ReentrantLock lock = lockOf(clazz, identifier);
+        lock.lock();
+        try {
+            Files.deleteIfExists(getFile(clazz, identifier));
+            known.remove(identifier);
+        } catch (IOException e) {
+            logError("Can't delete file of " + clazz.getSimpleName() + " id: " + identifier, e);
+            throw new IllegalStateException("Can't delete " + clazz.getSimpleName() + " id: " + identifier, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> CompletableFuture<Set<T>> loadAllAsync(Class<T> clazz) {
+        return CompletableFuture.supplyAsync(() -> loadAll(clazz));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> Set<T> loadAllSync(Class<T> clazz) {
+        return loadAll(clazz);
+    }
+
+    private <T extends StorageObject> Set<T> loadAll(Class<T> clazz) {
+        try (Stream<T> stream = streamAll(clazz)) {
+            return stream.collect(Collectors.toCollection(HashSet::new));
+        }
+    }
+
+    /**
+     * Walks the known identifiers, every file is read when the stream consumes it.
+     */
+    @Override
+    public <T extends StorageObject> Stream<T> streamAll(Class<T> clazz, boolean parallel) {
+        return openFiles(clazz, parallel).map(file -> loadFile(clazz, file)).filter(Objects::nonNull);
+    }
+
+    /**
+     * @param clazz of the objects
+     * @return identifiers of the stored objects of a class, updated by saves and deletes
+     */
+    public Set<String> getIdentifiers(Class<?> clazz) {
+        return Collections.unmodifiableSet(listing(clazz));
+    }
+
+    /**
+     * @param clazz of the object
+     * @param identifier of the object
+     * @return true if the object is stored or waiting in the write-behind queue
+     */
+    public boolean exists(Class<? extends StorageObject> clazz, String identifier) {
+        return identifier != null && (findPendingWrite(clazz, identifier) != null || listing(clazz).contains(identifier));
+    }
+
+    /**
+     * Reads the folder of a class again, used when other programs add or remove files.
+     * @param clazz of the objects
+     */
+    public void reloadIdentifiers(Class<?> clazz) {
+        identifiers.remove(clazz);
+        listing(clazz);
+    }
+
+    /**
+     * Conditions are checked over the document before the object is created,
+     * and queries by identifier only read the files of those identifiers.
+     */
+    @Override
+    public <T extends StorageObject> Stream<T> streamQuery(StorageQuery<T> query) {
+        Class<T> clazz = query.getType();
+        Predicate<Function<String, Object>> matcher = QueryMatcher.matcher(query);
+
+        Stream<T> stream = queryFiles(query).<T>map(file -> {
+            Map<String, Object> document = readDocument(clazz, file);
+            if (document == null || !matcher.test(reader(document))) {
+                return null;
+            }
+            return instantiateDocument(clazz, document, identifierOf(file));
+        }).filter(Objects::nonNull);
+
+        return QueryMatcher.order(query, stream);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> long countQuery(StorageQuery<T> query) {
+        Predicate<Function<String, Object>> matcher = QueryMatcher.matcher(query);
+        try (Stream<Path> files = queryFiles(query)) {
+            Stream<Path> matches = files.filter(file -> {
+                Map<String, Object> document = readDocument(query.getType(), file);
+                return document != null && matcher.test(reader(document));
+            });
+            return query.hasLimit() ? matches.limit(query.getLimit()).count() : matches.count();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void closeConnection() {
+        // Solo se escriben los guardados pendientes, no hay conexión con archivos.
+        shutdownWriteBehind();
+    }
+
+    @Override
+    public String getStorageIdentity() {
+        return getClass().getName() + ":" + dataFolder.getAbsolutePath();
+    }
+
+    protected File getClassFolder(Class<?> clazz) {
+        return new File(dataFolder, clazz.getSimpleName());
+    }
+
+    protected Path getFile(Class<?> clazz, String identifier) {
+        Path folder = getClassFolder(clazz).toPath();
+        int levels = settings.getFanOutLevels();
+        if (levels > 0) {
+            int hash = bucketHash(identifier);
+            for (int level = 0; level < levels; level++) {
+                folder = folder.resolve(HEX[(hash >>> (level * 8)) & 0xFF]);
+            }
+        }
+        return folder.resolve(identifier + extension);
+    }
+
+    /**
+     * @return lock shared by the identifiers of the same stripe
+     */
+    protected ReentrantLock lockOf(Class<?> clazz, String identifier) {
+        int hash = clazz.getName().hashCode() * 31 + identifier.hashCode();
+        hash ^= hash >>> 16;
+        return locks[hash & (locks.length - 1)];
+    }
+
+    private <T extends StorageObject> T loadFile(Class<T> clazz, Path file) {
+        Map<String, Object> document = readDocument(clazz, file);
+        return document == null ? null : instantiateDocument(clazz, document, identifierOf(file));
+    }
+
+    private Stream<Path> queryFiles(StorageQuery<?> query) {
+        Set<String> identifiers = query.getIdentifierCandidates();
+        if (identifiers == null) {
+            return openFiles(query.getType(), false);
+        }
+        Set<String> known = listing(query.getType());
+        return identifiers.stream()
+            .filter(known::contains)
+            .map(identifier -> getFile(query.getType(), identifier));
+    }
+
+    private Stream<Path> openFiles(Class<?> clazz, boolean parallel) {
+        return createStream(
+            listing(clazz).iterator(),
+            identifier -> getFile(clazz, identifier),
+            parallel,
+            () -> { }
+        );
+    }
+
+    private Set<String> listing(Class<?> clazz) {
+        return identifiers.computeIfAbsent(clazz, this::scanFolder);
+    }
+
+    /**
+     * Lists the files of a class once, files that are not in the folder of the current
+     * fan-out layout are moved to it.
+     */
+    private Set<String> scanFolder(Class<?> clazz) {
+        Set<String> known = ConcurrentHashMap.newKeySet();
+        Path classFolder = getClassFolder(clazz).toPath();
+        if (!Files.isDirectory(classFolder)) {
+            return known;
+        }
+
+        List<Path> misplaced = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(classFolder, MAX_DEPTH)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (!file.getFileName().toString().endsWith(extension) || !Files.isRegularFile(file)) {
+                    continue;
+                }
+                String identifier = identifierOf(file);
+                known.add(identifier);
+                if (!file.equals(getFile(clazz, identifier))) {
+                    misplaced.add(file);
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            logError("Can't read folder: " + classFolder, e);
+        }
+
+        if (!misplaced.isEmpty()) {
+            migrate(clazz, misplaced);
+        }
+        return known;
+    }
+
+    private void migrate(Class<?> clazz, List<Path> files) {
+        int moved = 0;
+        for (Path file : files) {
+            String identifier = identifierOf(file);
+            Path target = getFile(clazz, identifier);
+
+            ReentrantLock lock = lockOf(clazz, identifier);
+            lock.lock();
+            try {
+                // Si el archivo existe en los dos lugares se mantiene el más reciente.
+                if (Files.exists(target) && Files.getLastModifiedTime(target).compareTo(Files.getLastModifiedTime(file)) >= 0) {
+                    Files.delete(file);
+                } else {
+                    Files.createDirectories(target.getParent());
+                    Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+                moved++;
+            } catch (IOException e) {
+                logError("Can't move file " + file.getFileName() + " of " + clazz.getSimpleName(), e);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        removeEmptyFolders(getClassFolder(clazz).toPath());
+
+        fetch(MeteorLogger.class).info(
+            "Moved " + moved + " files of " + clazz.getSimpleName() + " to the layout with " + settings.getFanOutLevels() + " fan-out levels"
+        );
+    }
+
+    private void removeEmptyFolders(Path classFolder) {
+        try (Stream<Path> folders = Files.walk(classFolder, MAX_DEPTH)) {
+            List<Path> empty = folders
+                .filter(folder -> !folder.equals(classFolder) && Files.isDirectory(folder))
+                .sorted(Comparator.reverseOrder())
+                .collect(Collectors.toList());
+            for (Path folder : empty) {
+                try (DirectoryStream<Path> content = Files.newDirectoryStream(folder)) {
+                    if (!content.iterator().hasNext()) {
+                        Files.delete(folder);
+                    }
+                } catch (IOException ignored) { }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            logError("Can't read folder: " + classFolder, e);
+        }
+    }
+
+    private String identifierOf(Path file) {
+        // El nombre del archivo (sin extensión) es el identificador
+        String fileName = file.getFileName().toString();
+        return fileName.substring(0, fileName.length() - extension.length());
+    }
+
+    /**
+     * Stable hash of an identifier, {@link String#hashCode()} mixed so every byte changes with the identifier.
+     */
+    private static int bucketHash(String identifier) {
+        int hash = identifier.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    /**
+     * Reads the values of a document, names with dots read nested maps like the Bukkit configuration paths.
+     */
+    private static Function<String, Object> reader(Map<String, Object> document) {
+        return name -> {
+            Object value = document.get(name);
+            if (value != null || name.indexOf('.') < 0) {
+                return value;
+            }
+            return valueAt(document, name);
+        };
+    }
+
+    /**
+     * @return value of a path with dots in the nested maps of a document, null if a part is missing
+     */
+    private static Object valueAt(Map<String, Object> document, String path) {
+        Object current = document;
+        for (String part : path.split("\\.")) {
+            if (!(current instanceof Map<?, ?> map)) {
+                return null;
+            }
+            current = map.get(part);
+        }
+        return current;
+    }
+
+    /**
+     * Encode buffer of a thread, the writer keeps its encoder between writes.
+     */
+    private static class DocumentBuffer extends ByteArrayOutputStream {
+
+        private final Writer writer = new BufferedWriter(new OutputStreamWriter(this, StandardCharsets.UTF_8));
+
+        private DocumentBuffer() {
+            super(4096);
+        }
+
+        private int capacity() {
+            return buf.length;
+        }
+    }
+}
@@ -288,6 +288,11 @@ public class LegacyMongoDatabaseService extends StorageDatabase {
         disconnect();
     }
 
+    @Override
+    public String getStorageIdentity() {
+        return getClass().getName() + ":" + uri + "/" + databaseName;
+    }
+
     @SuppressWarnings("unchecked")
     private <T extends StorageObject> T instantiateObject(Class<?> clazz, Document doc, String identifier) {
         for (Constructor<?> constructor : clazz.getConstructors()) {
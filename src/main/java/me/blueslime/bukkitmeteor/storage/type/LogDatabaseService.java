@@ -0,0 +1,394 @@
+package me.blueslime.bukkitmeteor.storage.type;
+
+import me.blueslime.bukkitmeteor.implementation.Implements;
+import me.blueslime.bukkitmeteor.logs.MeteorLogger;
+import me.blueslime.bukkitmeteor.storage.StorageDatabase;
+import me.blueslime.bukkitmeteor.storage.StorageSchema;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageObject;
+import me.blueslime.bukkitmeteor.storage.log.LogCodec;
+import me.blueslime.bukkitmeteor.storage.log.LogSettings;
+import me.blueslime.bukkitmeteor.storage.log.LogStore;
+import me.blueslime.bukkitmeteor.storage.query.QueryMatcher;
+import me.blueslime.bukkitmeteor.storage.query.StorageQuery;
+import me.blueslime.bukkitmeteor.storage.schema.StorageField;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Local database made of append-only logs, one {@link LogStore} per class under data/log/Class.
+ * <p>
+ * Objects are encoded with the compact {@link LogCodec}, a save appends the object to the log
+ * and a load reads it with one positioned read, replaced objects are removed by the background compaction.
+ */
+@SuppressWarnings("unused")
+public class LogDatabaseService extends StorageDatabase {
+
+    private final Map<Class<?>, LogStore> stores = new ConcurrentHashMap<>();
+    private final LogSettings settings;
+    private final File folder;
+
+    private ScheduledExecutorService compaction;
+
+    /**
+     * Crea la base de datos en la carpeta data/log del plugin.
+     * @param register para Implements.
+     */
+    public LogDatabaseService(RegistrationType register) {
+        this(register, null);
+    }
+
+    /**
+     * Crea la base de datos en la carpeta data/log del plugin.
+     * @param register para Implements.
+     * @param identifier para Implements.
+     */
+    public LogDatabaseService(RegistrationType register, String identifier) {
+        this(new File(new File(Implements.fetch(File.class, "folder"), "data"), "log"), LogSettings.create(), register, identifier);
+    }
+
+    /**
+     * Crea la base de datos en una carpeta.
+     * @param folder de los logs.
+     * @param settings de los logs.
+     * @param register para Implements.
+     * @param identifier para Implements.
+     */
+    public LogDatabaseService(File folder, LogSettings settings, RegistrationType register, String identifier) {
+        this.settings = settings == null ? LogSettings.create() : settings;
+        this.folder = folder;
+
+        if (register == null) {
+            register = RegistrationType.DONT_REGISTER;
+        }
+
+        if (register.isDouble() || register.isOnlyThis()) {
+            registerImpl(LogDatabaseService.class, identifier, this, true);
+        }
+
+        if (register.isDouble()) {
+            registerImpl(StorageDatabase.class, identifier, this, true);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void connect() {
+        if (settings.getCompactionInterval() <= 0 || compaction != null) {
+            return;
+        }
+        compaction = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "BukkitMeteor-LogCompaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compaction.scheduleWithFixedDelay(
+            this::compact, settings.getCompactionInterval(), settings.getCompactionInterval(), TimeUnit.MILLISECONDS
+        );
+    }
+
+    /**
+     * Rewrites the segments with too many replaced objects of every class
+     */
+    public void compact() {
+        for (Map.Entry<Class<?>, LogStore> entry : stores.entrySet()) {
+            try {
+                entry.getValue().compact();
+            } catch (IOException | RuntimeException e) {
+                logError("Can't compact the log of " + entry.getKey().getSimpleName(), e);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> saveOrUpdateAsync(StorageObject obj) {
+        return submitSave(obj, () -> saveOrUpdateSync(obj));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void saveOrUpdateSync(StorageObject obj) {
+        saveAllSync(Collections.singletonList(obj));
+    }
+
+    /**
+     * Objects of the same class are appended with one write.
+     */
+    @Override
+    public void saveAllSync(Collection<? extends StorageObject> objects) {
+        Map<Class<?>, Map<String, byte[]>> records = new LinkedHashMap<>();
+        List<Runnable> written = new ArrayList<>();
+        for (StorageObject obj : objects) {
+            Class<?> clazz = obj.getClass();
+            String identifier = StorageSchema.of(clazz).extractIdentifier(obj);
+            if (identifier == null) {
+                throw new IllegalArgumentException("Object from class " + clazz.getSimpleName() + " don't have @StorageIdentifier.");
+            }
+            Map<String, Object> document = createDocument(obj);
+            Set<String> changes = findChanges(obj, identifier, document);
+            if (changes != null && changes.isEmpty()) {
+                continue;
+            }
+            records.computeIfAbsent(clazz, k -> new LinkedHashMap<>()).put(identifier, LogCodec.encode(document));
+            written.add(() -> markPersisted(obj, identifier, document));
+        }
+
+        for (Map.Entry<Class<?>, Map<String, byte[]>> entry : records.entrySet()) {
+            try {
+                storeOf(entry.getKey()).write(entry.getValue());
+            } catch (IOException e) {
+                logError("Can't save " + entry.getValue().size() + " objects of " + entry.getKey().getSimpleName(), e);
+                throw new IllegalStateException(e);
+            }
+        }
+
+        written.forEach(Runnable::run);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> CompletableFuture<Optional<T>> loadByIdAsync(Class<T> clazz, String identifier) {
+        return CompletableFuture.supplyAsync(() -> loadByIdSync(clazz, identifier));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> Optional<T> loadByIdSync(Class<T> clazz, String identifier) {
+        T pending = findPendingWrite(clazz, identifier);
+        if (pending != null) {
+            return Optional.of(pending);
+        }
+        if (identifier == null) {
+            return Optional.empty();
+        }
+        try {
+            byte[] payload = storeOf(clazz).read(identifier);
+            return payload == null ? Optional.empty() : Optional.ofNullable(trackLoaded(decode(clazz, identifier, payload)));
+        } catch (IOException | RuntimeException e) {
+            logError("Can't load object id: " + identifier + " of " + clazz.getSimpleName(), e);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Only the requested keys are decoded, the other values of the record are skipped.
+     */
+    @Override
+    protected <T extends StorageObject> Optional<Map<String, Object>> loadFields(Class<T> clazz, String identifier, List<StorageField> fields) {
+        try {
+            byte[] payload = storeOf(clazz).read(identifier);
+            return payload == null ? Optional.empty() : Optional.of(decodeFields(fields, LogCodec.decode(payload, namesOf(fields)), identifier));
+        } catch (IOException | RuntimeException e) {
+            logError("Can't load fields of object id: " + identifier + " of " + clazz.getSimpleName(), e);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> Map<String, T> loadByIdsSync(Class<T> clazz, Collection<String> identifiers) {
+        Map<String, T> results = new HashMap<>();
+        for (String identifier : resolvePendingWrites(clazz, identifiers, results)) {
+            loadByIdSync(clazz, identifier).ifPresent(value -> results.put(identifier, value));
+        }
+        return results;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> CompletableFuture<Void> deleteByIdAsync(Class<T> clazz, String identifier) {
+        return CompletableFuture.runAsync(() -> deleteByIdSync(clazz, identifier));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> void deleteByIdSync(Class<T> clazz, String identifier) {
+        deleteByIdsSync(clazz, Collections.singletonList(identifier));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> void deleteByIdsSync(Class<T> clazz, Collection<String> identifiers) {
+        for (String identifier : identifiers) {
+            cancelPendingWrite(clazz, identifier);
+        }
+        try {
+            storeOf(clazz).delete(identifiers);
+        } catch (IOException e) {
+            logError("Can't remove " + identifiers.size() + " objects of " + clazz.getSimpleName(), e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> CompletableFuture<Set<T>> loadAllAsync(Class<T> clazz) {
+        return CompletableFuture.supplyAsync(() -> loadAllSync(clazz));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> Set<T> loadAllSync(Class<T> clazz) {
+        try (Stream<T> stream = streamAll(clazz)) {
+            return stream.collect(Collectors.toCollection(HashSet::new));
+        }
+    }
+
+    /**
+     * Reads the segments sequentially, the compaction of this class waits until the stream is closed.
+     */
+    @Override
+    public <T extends StorageObject> Stream<T> streamAll(Class<T> clazz, boolean parallel) {
+        LogStore.EntryIterator iterator = storeOf(clazz).scan();
+        return createStream(iterator, entry -> decode(clazz, entry.identifier(), entry.payload()), parallel, iterator::close);
+    }
+
+    /**
+     * Conditions are checked over the decoded records, only the matching objects are instantiated.
+     */
+    @Override
+    public <T extends StorageObject> Stream<T> streamQuery(StorageQuery<T> query) {
+        Class<T> clazz = query.getType();
+        Predicate<Function<String, Object>> matcher = QueryMatcher.matcher(query);
+
+        Stream<T> stream = queryRecords(query).<T>map(entry -> {
+            Map<String, Object> document = readDocument(entry.payload());
+            if (document == null || !matcher.test(document::get)) {
+                return null;
+            }
+            return instantiateDocument(clazz, document, entry.identifier());
+        }).filter(Objects::nonNull);
+
+        return QueryMatcher.order(query, stream);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> long countQuery(StorageQuery<T> query) {
+        Predicate<Function<String, Object>> matcher = QueryMatcher.matcher(query);
+        try (Stream<LogStore.Entry> records = queryRecords(query)) {
+            Stream<LogStore.Entry> matches = records.filter(entry -> {
+                Map<String, Object> document = readDocument(entry.payload());
+                return document != null && matcher.test(document::get);
+            });
+            return query.hasLimit() ? matches.limit(query.getLimit()).count() : matches.count();
+        }
+    }
+
+    private Stream<LogStore.Entry> queryRecords(StorageQuery<?> query) {
+        LogStore store = storeOf(query.getType());
+        Set<String> identifiers = query.getIdentifierCandidates();
+        if (identifiers == null) {
+            LogStore.EntryIterator iterator = store.scan();
+            return createStream(iterator, Function.identity(), false, iterator::close);
+        }
+        return identifiers.stream().map(identifier -> {
+            try {
+                byte[] payload = store.read(identifier);
+                return payload == null ? null : new LogStore.Entry(identifier, payload);
+            } catch (IOException e) {
+                logError("Can't load object id: " + identifier + " of " + query.getType().getSimpleName(), e);
+                return null;
+            }
+        }).filter(Objects::nonNull);
+    }
+
+    private <T extends StorageObject> T decode(Class<T> clazz, String identifier, byte[] payload) {
+        Map<String, Object> document = readDocument(payload);
+        return document == null ? null : instantiateDocument(clazz, document, identifier);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> readDocument(byte[] payload) {
+        try {
+            Object document = LogCodec.decode(payload);
+            return document instanceof Map<?, ?> map ? (Map<String, Object>) map : null;
+        } catch (IllegalArgumentException e) {
+            logError("Can't decode a stored object", e);
+            return null;
+        }
+    }
+
+    private LogStore storeOf(Class<?> clazz) {
+        return stores.computeIfAbsent(clazz, key -> {
+            try {
+                LogStore store = LogStore.open(new File(folder, key.getSimpleName()).toPath(), settings);
+                if (store.getRecoveredBytes() > 0 || store.getSkippedBytes() > 0) {
+                    fetch(MeteorLogger.class).warn(
+                        "Recovered the log of " + key.getSimpleName() + ", removed " + store.getRecoveredBytes() +
+                        " bytes of incomplete records and skipped " + store.getSkippedBytes() +
+                        " bytes of corrupt records from " + store.getCorruptSegments() + " segments."
+                    );
+                }
+                return store;
+            } catch (IOException e) {
+                logError("Can't open the log of " + key.getSimpleName(), e);
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void closeConnection() {
+        shutdownWriteBehind();
+        if (compaction != null) {
+            compaction.shutdown();
+            try {
+                compaction.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            compaction = null;
+        }
+        for (Map.Entry<Class<?>, LogStore> entry : stores.entrySet()) {
+            try {
+                entry.getValue().close();
+            } catch (IOException e) {
+                logError("Can't close the log of " + entry.getKey().getSimpleName(), e);
+            }
+        }
+        stores.clear();
+    }
+
+    @Override
+    public String getStorageIdentity() {
+        return getClass().getName() + ":" + folder.getAbsolutePath();
+    }
+}
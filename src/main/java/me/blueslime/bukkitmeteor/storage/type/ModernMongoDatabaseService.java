@@ -3,25 +3,56 @@ package me.blueslime.bukkitmeteor.storage.type;
 import com.mongodb.ConnectionString;
 import com.mongodb.MongoClientSettings;
 import com.mongodb.client.MongoClient;
+import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.CountOptions;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
 import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.WriteModel;
 import me.blueslime.bukkitmeteor.logs.MeteorLogger;
 import me.blueslime.bukkitmeteor.storage.StorageDatabase;
-import me.blueslime.bukkitmeteor.storage.interfaces.*;
+import me.blueslime.bukkitmeteor.storage.StorageSchema;
+import me.blueslime.bukkitmeteor.storage.bson.StorageCodec;
+import me.blueslime.bukkitmeteor.storage.bson.StorageCodecProvider;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageObject;
+import me.blueslime.bukkitmeteor.storage.query.StorageQuery;
+import me.blueslime.bukkitmeteor.storage.schema.StorageField;
 import me.blueslime.utilitiesapi.utils.consumer.PluginConsumer;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
 import org.bson.Document;
+import org.bson.UuidRepresentation;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
 
-import java.lang.reflect.*;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
 
 @SuppressWarnings("unused")
 public class ModernMongoDatabaseService extends StorageDatabase {
 
+    private final StorageCodecProvider codecs = new StorageCodecProvider(this);
+    private final Map<Class<?>, CompletableFuture<Void>> prepared = new ConcurrentHashMap<>();
+
     private MongoClient mongoClient;
     private MongoDatabase database;
 
@@ -63,12 +94,19 @@ public class ModernMongoDatabaseService extends StorageDatabase {
     }
 
     /**
-     * {@inheritDoc}
+     * Connects with the {@link StorageCodecProvider} in the codec registry,
+     * storage objects are encoded and decoded without intermediate documents.
+     * UUID values use the standard binary representation (subtype 4).
      */
     @Override
     public void connect() {
         MongoClientSettings settings = MongoClientSettings.builder()
                 .applyConnectionString(new ConnectionString(uri))
+                .uuidRepresentation(UuidRepresentation.STANDARD)
+                .codecRegistry(CodecRegistries.fromRegistries(
+                    CodecRegistries.fromProviders(codecs),
+                    MongoClientSettings.getDefaultCodecRegistry()
+                ))
                 .build();
 
         this.mongoClient = MongoClients.create(settings);
@@ -90,7 +128,7 @@ public class ModernMongoDatabaseService extends StorageDatabase {
      */
     @Override
     public CompletableFuture<Void> saveOrUpdateAsync(StorageObject obj) {
-        return CompletableFuture.runAsync(() -> save(obj));
+        return submitSave(obj, () -> save(obj));
     }
 
     /**
@@ -104,129 +142,102 @@ public class ModernMongoDatabaseService extends StorageDatabase {
     private void save(StorageObject obj) {
         ensureDatabaseConnected();
 
-        Document document = createDocumentFromObject(obj);
         String identifierValue = extractIdentifier(obj);
+        Map<String, Object> state = createTrackedState(obj, identifierValue);
+        Set<String> changes = state == null ? null : findChanges(obj, identifierValue, state);
+        if (changes != null && changes.isEmpty()) {
+            return;
+        }
 
-        MongoCollection<Document> collection = database.getCollection(obj.getClass().getSimpleName());
-        ReplaceOptions options = new ReplaceOptions().upsert(true);
+        prepare(obj.getClass());
+        MongoCollection<StorageObject> collection = getCollection(obj.getClass().getSimpleName());
+        Object key = MongoIdentifiers.toKey(obj.getClass(), identifierValue);
 
-        if (identifierValue != null) {
-            collection.replaceOne(eq("_id", identifierValue), document, options);
+        if (changes != null) {
+            collection.updateOne(eq("_id", key), codecs.createUpdate(obj, changes), new UpdateOptions().upsert(true));
+        } else if (identifierValue != null) {
+            collection.replaceOne(eq("_id", key), obj, new ReplaceOptions().upsert(true));
         } else {
-            collection.insertOne(document);
+            collection.insertOne(obj);
         }
-    }
 
-    private Document createDocumentFromObject(Object obj) {
-        Document document = new Document();
-        for (Field field : obj.getClass().getDeclaredFields()) {
-            if (field.isAnnotationPresent(StorageIgnore.class)) {
-                continue;
-            }
-
-            field.setAccessible(true);
-            saveField(document, obj, field);
+        if (state != null) {
+            markPersisted(obj, identifierValue, state);
         }
-        return document;
     }
 
-    private String extractIdentifier(StorageObject obj) {
-        for (Field field : obj.getClass().getDeclaredFields()) {
-            if (field.isAnnotationPresent(StorageIdentifier.class)) {
-                field.setAccessible(true);
-                return PluginConsumer.ofUnchecked(
-                    () -> {
-                        Object value = field.get(obj);
-                        if (value == null) {
-                            return null;
-                        }
-                        return value.toString();
-                    },
-                    e -> logError("Failed to extract identifier from: " + field.getName(), e),
-                    () -> null
-                );
-            }
+    /**
+     * @return state of a tracked object or null if the object is not tracked
+     */
+    private Map<String, Object> createTrackedState(StorageObject obj, String identifier) {
+        if (identifier == null || !StorageSchema.of(obj.getClass()).isTracked()) {
+            return null;
         }
-        return null;
+        return createDocument(obj);
     }
 
-    private void saveField(Document document, Object obj, Field field) {
-        PluginConsumer.process(() -> {
-            Object value = field.get(obj);
-            String name = field.getName();
+    /**
+     * Writes the objects with one unordered bulk write per collection,
+     * tracked objects only update the changed fields and unchanged tracked objects are skipped.
+     * @param objects to save or update
+     */
+    @Override
+    public void saveAllSync(Collection<? extends StorageObject> objects) {
+        if (objects.isEmpty()) {
+            return;
+        }
+        ensureDatabaseConnected();
 
-            if (field.isAnnotationPresent(StorageKey.class)) {
-                StorageKey key = field.getAnnotation(StorageKey.class);
-                String defValue = key.defaultValue();
-                String defName = key.key();
+        Map<String, List<WriteModel<StorageObject>>> operations = new LinkedHashMap<>();
+        List<Runnable> persisted = new ArrayList<>();
+        ReplaceOptions options = new ReplaceOptions().upsert(true);
+        UpdateOptions updateOptions = new UpdateOptions().upsert(true);
 
-                if (value == null && !defValue.isEmpty()) {
-                    value = convertValue(field.getType(), defValue);
-                }
-                if (!defName.isEmpty()) {
-                    name = defName;
-                }
+        for (StorageObject obj : objects) {
+            String identifierValue = extractIdentifier(obj);
+            Map<String, Object> state = createTrackedState(obj, identifierValue);
+            Set<String> changes = state == null ? null : findChanges(obj, identifierValue, state);
+            if (changes != null && changes.isEmpty()) {
+                continue;
             }
 
-            if (value != null && value.getClass().isArray()) {
-                int length = Array.getLength(value);
-                List<Object> listToStore = new ArrayList<>();
-                for (int i = 0; i < length; i++) {
-                    Object element = Array.get(value, i);
-                    if (element != null && isComplexObject(element.getClass())) {
-                        listToStore.add(createDocumentFromObject(element));
-                    } else {
-                        listToStore.add(element);
-                    }
-                }
-                value = listToStore;
-            }
+            prepare(obj.getClass());
+            Object key = MongoIdentifiers.toKey(obj.getClass(), identifierValue);
 
-            if (value != null && value.getClass().isEnum()) {
-                value = value.toString();
+            WriteModel<StorageObject> model;
+            if (changes != null) {
+                model = new UpdateOneModel<>(eq("_id", key), codecs.createUpdate(obj, changes), updateOptions);
+            } else if (identifierValue != null) {
+                model = new ReplaceOneModel<>(eq("_id", key), obj, options);
+            } else {
+                model = new InsertOneModel<>(obj);
             }
 
-            if (value instanceof Map<?, ?> originalMap) {
-                Map<Object, Object> convertedMap = new HashMap<>();
-                for (Map.Entry<?, ?> entry : originalMap.entrySet()) {
-                    Object mapKey = entry.getKey();
-                    Object mapValue = entry.getValue();
-
-                    if (mapKey != null && isComplexObject(mapKey.getClass())) {
-                        mapKey = createDocumentFromObject(mapKey);
-                    }
-                    if (mapValue != null && isComplexObject(mapValue.getClass())) {
-                        mapValue = createDocumentFromObject(mapValue);
-                    }
-                    convertedMap.put(mapKey, mapValue);
-                }
-                value = convertedMap;
+            if (state != null) {
+                persisted.add(() -> markPersisted(obj, identifierValue, state));
             }
+            operations.computeIfAbsent(obj.getClass().getSimpleName(), k -> new ArrayList<>()).add(model);
+        }
 
-            if (value instanceof Collection<?> collection) {
-                List<Object> listToStore = new ArrayList<>();
-                for (Object element : collection) {
-                    if (element != null && isComplexObject(element.getClass())) {
-                        listToStore.add(createDocumentFromObject(element));
-                    } else {
-                        listToStore.add(element);
-                    }
-                }
-                value = listToStore;
-            } else if (isComplexObject(field.getType())) {
-                value = handleComplexObject(value);
+        for (Map.Entry<String, List<WriteModel<StorageObject>>> entry : operations.entrySet()) {
+            try {
+                getCollection(entry.getKey()).bulkWrite(entry.getValue(), new BulkWriteOptions().ordered(false));
+            } catch (RuntimeException e) {
+                logError("Can't save/update a batch of " + entry.getValue().size() + " objects at collection " + entry.getKey(), e);
+                throw e;
             }
+        }
 
-            document.append(name, value);
-        }, e -> logError("Failed to save field: " + field.getName(), e));
+        persisted.forEach(Runnable::run);
     }
 
-    private Document handleComplexObject(Object obj) {
-        if (obj == null) {
-            return null;
-        }
-
-        return createDocumentFromObject(obj);
+    private String extractIdentifier(StorageObject obj) {
+        StorageSchema schema = StorageSchema.of(obj.getClass());
+        return PluginConsumer.ofUnchecked(
+            () -> schema.extractIdentifier(obj),
+            e -> logError("Failed to extract identifier from: " + schema.getIdentifier().getFieldName(), e),
+            () -> null
+        );
     }
 
     /**
@@ -246,10 +257,44 @@ public class ModernMongoDatabaseService extends StorageDatabase {
     public <T extends StorageObject> Optional<T> loadByIdSync(Class<T> clazz, String identifier) {
         ensureDatabaseConnected();
 
-        MongoCollection<Document> collection = database.getCollection(clazz.getSimpleName());
-        Document document = collection.find(eq("_id", identifier)).first();
+        T pending = findPendingWrite(clazz, identifier);
+        if (pending != null) {
+            return Optional.of(pending);
+        }
+
+        T object = getCollection(clazz).find(eq("_id", MongoIdentifiers.toKey(clazz, identifier))).first();
 
-        return Optional.ofNullable(document != null ? instantiateObject(clazz, document, identifier) : null);
+        return Optional.ofNullable(trackLoaded(object));
+    }
+
+    /**
+     * The server only sends the requested fields, the document is read without the object codec.
+     */
+    @Override
+    protected <T extends StorageObject> Optional<Map<String, Object>> loadFields(Class<T> clazz, String identifier, List<StorageField> fields) {
+        ensureDatabaseConnected();
+
+        Document document = getDocuments(clazz)
+            .find(eq("_id", MongoIdentifiers.toKey(clazz, identifier)))
+            .projection(Projections.include(new ArrayList<>(namesOf(fields))))
+            .first();
+
+        return Optional.ofNullable(document != null ? decodeFields(fields, document, identifier) : null);
+    }
+
+    /**
+     * Increments the fields with one unordered bulk write of $inc updates.
+     */
+    @Override
+    protected <T extends StorageObject> void applyIncrements(Class<T> clazz, Map<String, Map<String, Long>> deltas) {
+        ensureDatabaseConnected();
+
+        try {
+            getDocuments(clazz).bulkWrite(MongoQueries.createIncrements(clazz, deltas), new BulkWriteOptions().ordered(false));
+        } catch (RuntimeException e) {
+            logError("Can't increment " + deltas.size() + " objects at collection " + clazz.getSimpleName(), e);
+            throw e;
+        }
     }
 
     /**
@@ -266,9 +311,50 @@ public class ModernMongoDatabaseService extends StorageDatabase {
     @Override
     public <T extends StorageObject> void deleteByIdSync(Class<T> clazz, String identifier) {
         ensureDatabaseConnected();
+        cancelPendingWrite(clazz, identifier);
 
-        MongoCollection<Document> collection = database.getCollection(clazz.getSimpleName());
-        collection.deleteOne(eq("_id", identifier));
+        getDocuments(clazz).deleteOne(eq("_id", MongoIdentifiers.toKey(clazz, identifier)));
+    }
+
+    /**
+     * Loads the objects with a single $in query.
+     */
+    @Override
+    public <T extends StorageObject> Map<String, T> loadByIdsSync(Class<T> clazz, Collection<String> identifiers) {
+        ensureDatabaseConnected();
+
+        Map<String, T> results = new HashMap<>();
+        List<String> missing = resolvePendingWrites(clazz, identifiers, results);
+        if (missing.isEmpty()) {
+            return results;
+        }
+
+        StorageSchema schema = StorageSchema.of(clazz);
+        for (T object : getCollection(clazz).find(in("_id", MongoIdentifiers.toKeys(clazz, missing)))) {
+            if (trackLoaded(object) != null) {
+                results.put(schema.extractIdentifier(object), object);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Deletes the objects with a single deleteMany.
+     */
+    @Override
+    public <T extends StorageObject> void deleteByIdsSync(Class<T> clazz, Collection<String> identifiers) {
+        ensureDatabaseConnected();
+
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(identifiers));
+        ids.remove(null);
+        if (ids.isEmpty()) {
+            return;
+        }
+        for (String identifier : ids) {
+            cancelPendingWrite(clazz, identifier);
+        }
+
+        getDocuments(clazz).deleteMany(in("_id", MongoIdentifiers.toKeys(clazz, ids)));
     }
 
     /**
@@ -284,19 +370,81 @@ public class ModernMongoDatabaseService extends StorageDatabase {
      */
     @Override
     public <T extends StorageObject> Set<T> loadAllSync(Class<T> clazz) {
+        try (Stream<T> stream = streamAll(clazz)) {
+            return stream.collect(Collectors.toCollection(HashSet::new));
+        }
+    }
+
+    /**
+     * Streams the collection with a cursor, documents are fetched in batches of {@link #STREAM_BATCH_SIZE}.
+     */
+    @Override
+    public <T extends StorageObject> Stream<T> streamAll(Class<T> clazz, boolean parallel) {
         ensureDatabaseConnected();
 
-        Set<T> results = new HashSet<>();
-        MongoCollection<Document> collection = database.getCollection(clazz.getSimpleName());
+        MongoCursor<T> cursor = getCollection(clazz)
+            .find()
+            .batchSize(STREAM_BATCH_SIZE)
+            .cursor();
 
-        for (Document document : collection.find()) {
-            T obj = instantiateObject(clazz, document, document.getString("_id"));
-            if (obj != null) {
-                results.add(obj);
-            }
+        return createStream(
+            cursor,
+            Function.identity(),
+            parallel,
+            cursor::close
+        );
+    }
+
+    /**
+     * Translates the query to a filter and sort document.
+     */
+    @Override
+    public <T extends StorageObject> Stream<T> streamQuery(StorageQuery<T> query) {
+        ensureDatabaseConnected();
+
+        // Mongo uses limit 0 as no limit
+        if (query.hasLimit() && query.getLimit() == 0) {
+            return Stream.empty();
         }
 
-        return results;
+        Class<T> clazz = query.getType();
+        FindIterable<T> find = getCollection(clazz)
+            .find(MongoQueries.createFilter(query))
+            .batchSize(STREAM_BATCH_SIZE);
+
+        Bson sort = MongoQueries.createSort(query);
+        if (sort != null) {
+            find = find.sort(sort);
+        }
+        if (query.hasLimit()) {
+            find = find.limit(query.getLimit());
+        }
+
+        MongoCursor<T> cursor = find.cursor();
+        return createStream(
+            cursor,
+            Function.identity(),
+            false,
+            cursor::close
+        );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> long countQuery(StorageQuery<T> query) {
+        ensureDatabaseConnected();
+
+        if (query.hasLimit() && query.getLimit() == 0) {
+            return 0L;
+        }
+
+        CountOptions options = new CountOptions();
+        if (query.hasLimit()) {
+            options.limit(query.getLimit());
+        }
+        return getDocuments(query.getType()).countDocuments(MongoQueries.createFilter(query), options);
     }
 
     private void ensureDatabaseConnected() {
@@ -305,234 +453,106 @@ public class ModernMongoDatabaseService extends StorageDatabase {
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private <T extends StorageObject> T instantiateObject(Class<?> clazz, Document document, String identifier) {
-        for (Constructor<?> constructor : clazz.getConstructors()) {
-            if (constructor.isAnnotationPresent(StorageConstructor.class)) {
-                try {
-                    Object[] args = resolveConstructorArgs(constructor, document, identifier);
-                    return (T) constructor.newInstance(args);
-                } catch (Exception e) {
-                    logError("Failed to instantiate object: " + clazz.getSimpleName(), e);
-                }
-            }
-        }
-        return null;
-    }
-
-    @SuppressWarnings({"unchecked", "rawtypes"})
-    private Object[] resolveConstructorArgs(Constructor<?> constructor, Document document, String identifier) {
-        Parameter[] parameters = constructor.getParameters();
-        Object[] args = new Object[parameters.length];
-
-        for (int i = 0; i < parameters.length; i++) {
-            Parameter param = parameters[i];
-            String name = param.isAnnotationPresent(StorageKey.class)
-                    ? param.getAnnotation(StorageKey.class).key()
-                    : param.getName();
-            String defValue = param.isAnnotationPresent(StorageKey.class)
-                    ? param.getAnnotation(StorageKey.class).defaultValue()
-                    : null;
-
-            if (param.isAnnotationPresent(StorageIdentifier.class)) {
-                args[i] = identifier;
-            } else if (isComplexObject(param.getType())) {
-                args[i] = instantiateObject(param.getType(), document.get(name, Document.class), identifier);
-            } else {
-                args[i] = document.get(name);
-                if ((param.getType().equals(Float.class) || param.getType().equals(float.class))
-                        && args[i] instanceof Double) {
-                    args[i] = ((Double) args[i]).floatValue();
-                }
-                if (args[i] == null && defValue != null && !defValue.isEmpty()) {
-                    args[i] = convertValue(param.getType(), defValue);
-                }
-            }
-
-            // Manejo de arrays
-            if (args[i] != null && param.getType().isArray() && List.class.isAssignableFrom(args[i].getClass())) {
-                List<?> list = (List<?>) args[i];
-                List<Object> result = new ArrayList<>();
-                Class<?> componentType = param.getType().getComponentType();
-                for (Object element : list) {
-                    if (element != null && isComplexObject(componentType)) {
-                        if (element instanceof Document) {
-                            // Usamos el componente esperado en lugar de element.getClass()
-                            result.add(createObjectFromDocument((Document) element, componentType, identifier));
-                        } else {
-                            result.add(element);
-                        }
-                    }
-                }
-                args[i] = result.toArray((Object[]) Array.newInstance(componentType, result.size()));
-            }
-
-            // Manejo de Maps
-            if (args[i] != null && Map.class.isAssignableFrom(param.getType())) {
-                Object stored = args[i];
-                Map<Object, Object> reconstructedMap = createMap(param.getType());
-
-                // Extraemos los tipos genéricos para clave y valor
-                Class<?> expectedKeyType = Object.class;
-                Class<?> expectedValueType = Object.class;
-                Type genericType = constructor.getGenericParameterTypes()[i];
-                if (genericType instanceof ParameterizedType) {
-                    Type[] typeArguments = ((ParameterizedType) genericType).getActualTypeArguments();
-                    if (typeArguments != null && typeArguments.length == 2) {
-                        if (typeArguments[0] instanceof Class) {
-                            expectedKeyType = (Class<?>) typeArguments[0];
-                        }
-                        if (typeArguments[1] instanceof Class) {
-                            expectedValueType = (Class<?>) typeArguments[1];
-                        }
-                    }
-                }
+    private MongoCollection<StorageObject> getCollection(String name) {
+        return database.getCollection(name, StorageObject.class);
+    }
 
-                if (stored instanceof Document mapDoc) {
-                    for (String key : mapDoc.keySet()) {
-                        Object mapValue = mapDoc.get(key);
-                        if (mapValue instanceof Document && isComplexObject(expectedValueType)) {
-                            mapValue = createObjectFromDocument((Document) mapValue, expectedValueType, identifier);
-                        }
-                        reconstructedMap.put(key, mapValue);
-                    }
-                } else if (stored instanceof Map) {
-                    for (Map.Entry<?, ?> entry : ((Map<?, ?>) stored).entrySet()) {
-                        Object mapKey = entry.getKey();
-                        Object mapValue = entry.getValue();
-                        if (mapKey instanceof Document && isComplexObject(expectedKeyType)) {
-                            mapKey = createObjectFromDocument((Document) mapKey, expectedKeyType, identifier);
-                        }
-                        if (mapValue instanceof Document && isComplexObject(expectedValueType)) {
-                            mapValue = createObjectFromDocument((Document) mapValue, expectedValueType, identifier);
-                        }
-                        reconstructedMap.put(mapKey, mapValue);
-                    }
-                }
-                args[i] = reconstructedMap;
-            }
+    private <T extends StorageObject> MongoCollection<T> getCollection(Class<T> clazz) {
+        prepare(clazz);
+        return database.getCollection(clazz.getSimpleName(), clazz);
+    }
 
-            // Manejo de Enum
-            if (args[i] != null && param.getType().isEnum() && args[i] instanceof String finalValue) {
-                Class<? extends Enum> enumType = param.getType().asSubclass(Enum.class);
-                args[i] = PluginConsumer.ofUnchecked(
-                        () -> Enum.valueOf(enumType, finalValue),
-                        e -> logError("Can't found enum constant for " + finalValue + " please contact the developer.", e),
-                        () -> null
-                );
-            }
+    private MongoCollection<Document> getDocuments(Class<?> clazz) {
+        prepare(clazz);
+        return database.getCollection(clazz.getSimpleName());
+    }
 
-            // Manejo de Collections
-            if (args[i] != null && Collection.class.isAssignableFrom(args[i].getClass())) {
-                if (!Collection.class.isAssignableFrom(param.getType())) {
-                    args[i] = null;
-                    fetch(MeteorLogger.class).error(
-                            "Required parameter for StorageConstructor is: " + param.getType().getSimpleName(),
-                            "This parameter is using Storage Key: " + name,
-                            "But in the object storage this key contains a Collection and the parameter is not a collection",
-                            "By default we are not gonna assign value, so the object with field key: " + name + ", will be null",
-                            "This is an error from your developer, please contact it to fix this."
-                    );
-                } else {
-                    // Extraemos el tipo esperado para los elementos de la Collection
-                    Class<?> expectedElementType = Object.class;
-                    Type genericType = constructor.getGenericParameterTypes()[i];
-                    if (genericType instanceof ParameterizedType) {
-                        Type[] typeArguments = ((ParameterizedType) genericType).getActualTypeArguments();
-                        if (typeArguments != null && typeArguments.length > 0 && typeArguments[0] instanceof Class) {
-                            expectedElementType = (Class<?>) typeArguments[0];
-                        }
-                    }
-                    Object finalValue = null;
-                    Collection<?> collection = (Collection<?>) args[i];
-                    if (List.class.isAssignableFrom(args[i].getClass())) {
-                        List<Object> array = new ArrayList<>();
-                        for (Object element : collection) {
-                            if (element != null && isComplexObject(expectedElementType)) {
-                                if (element instanceof Document) {
-                                    array.add(createObjectFromDocument((Document) element, expectedElementType, identifier));
-                                } else {
-                                    array.add(element);
-                                }
-                            } else {
-                                array.add(element);
-                            }
-                        }
-                        finalValue = array;
-                    } else if (Set.class.isAssignableFrom(args[i].getClass())) {
-                        Set<Object> array = new HashSet<>();
-                        for (Object element : collection) {
-                            if (element != null && isComplexObject(expectedElementType)) {
-                                if (element instanceof Document) {
-                                    array.add(createObjectFromDocument((Document) element, expectedElementType, identifier));
-                                } else {
-                                    array.add(element);
-                                }
-                            } else {
-                                array.add(element);
-                            }
-                        }
-                        finalValue = array;
-                    } else {
-                        if (defValue != null) {
-                            args[i] = convertValue(param.getType(), defValue);
-                        }
-                    }
-                    args[i] = finalValue != null ? finalValue
-                            : defValue != null ? convertValue(param.getType(), defValue) : null;
+    /**
+     * Migrates the collection of a class with a {@link UUID} identifier the first time the class is used,
+     * other requests of the class wait for the migration.
+     */
+    private void prepare(Class<?> clazz) {
+        if (!StorageSchema.of(clazz).hasUuidIdentifier()) {
+            return;
+        }
+        CompletableFuture<Void> current = prepared.get(clazz);
+        if (current == null) {
+            CompletableFuture<Void> created = new CompletableFuture<>();
+            current = prepared.putIfAbsent(clazz, created);
+            if (current == null) {
+                // La migración bloquea, se ejecuta fuera del mapa para no detener a las otras clases
+                try {
+                    migrateUuidIdentifiers(clazz);
+                } catch (RuntimeException e) {
+                    // No se guarda, se intentará de nuevo en el siguiente uso.
+                    prepared.remove(clazz, created);
+                    logError("Can't migrate identifiers of collection " + clazz.getSimpleName(), e);
+                } finally {
+                    created.complete(null);
                 }
+                return;
             }
         }
-        return args;
+        current.join();
     }
 
-    private <T> List<T> loadList(Document document, Field field, Class<T> elementClass, String identifier) {
-        List<T> result = new ArrayList<>();
-        String name = field.getName();
+    /**
+     * Converts the string "_id" of the documents of a class with a {@link UUID} identifier to binary UUIDs,
+     * in batches of {@link #STREAM_BATCH_SIZE}. It is called automatically the first time the class is used.
+     * @param clazz of the stored objects
+     * @return migrated documents
+     */
+    public long migrateUuidIdentifiers(Class<?> clazz) {
+        ensureDatabaseConnected();
 
-        if (field.isAnnotationPresent(StorageKey.class)) {
-            StorageKey key = field.getAnnotation(StorageKey.class);
-            String defName = key.key();
-            if (!defName.isEmpty()) {
-                name = defName;
+        MongoCollection<Document> collection = database.getCollection(clazz.getSimpleName());
+        long migrated = 0L;
+        String last = null;
+        while (true) {
+            List<Document> documents = collection.find(MongoIdentifiers.createMigrationFilter(last))
+                .sort(Sorts.ascending("_id"))
+                .limit(STREAM_BATCH_SIZE)
+                .into(new ArrayList<>());
+            if (documents.isEmpty()) {
+                break;
             }
-        }
+            last = documents.get(documents.size() - 1).getString("_id");
 
-        List<?> listFromDocument = document.getList(name, Object.class);
-        if (listFromDocument != null) {
-            for (Object element : listFromDocument) {
-                if (element instanceof Document && isComplexObject(elementClass)) {
-                    T obj = createObjectFromDocument((Document) element, elementClass, identifier);
-                    result.add(obj);
-                } else {
-                    result.add(elementClass.cast(element));
+            List<String> identifiers = new ArrayList<>(documents.size());
+            List<Document> converted = MongoIdentifiers.convert(documents, identifiers);
+            if (converted.isEmpty()) {
+                continue;
+            }
+            try {
+                collection.insertMany(converted, new InsertManyOptions().ordered(false));
+            } catch (RuntimeException e) {
+                if (!MongoIdentifiers.isDuplicateKey(e)) {
+                    throw e;
                 }
             }
+            collection.deleteMany(in("_id", identifiers));
+            migrated += identifiers.size();
         }
-        return result;
+
+        if (migrated > 0) {
+            fetch(MeteorLogger.class).info("Migrated " + migrated + " identifiers of collection " + clazz.getSimpleName() + " to binary UUIDs");
+        }
+        return migrated;
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * Creates an object from a document with the {@link StorageCodec} of its class.
+     * @param document with the stored fields
+     * @param clazz of the object
+     * @param identifier of the object, null to read it from the "_id" of the document
+     * @return object or null if it can't be created
+     */
     public <T> T createObjectFromDocument(Document document, Class<T> clazz, String identifier) {
-        Constructor<?> builder = PluginConsumer.ofUnchecked(
-            () -> {
-                for (Constructor<?> constructor : clazz.getConstructors()) {
-                    if (constructor.isAnnotationPresent(StorageConstructor.class)) {
-                        return constructor;
-                    }
-                }
-                return null;
-            },
-            e -> logError("Can't find @StorageConstructor at class: " + clazz.getSimpleName(), e),
-            () -> null
-        );
+        ensureDatabaseConnected();
 
-        Object[] args = resolveConstructorArgs(builder, document, identifier);
-        return PluginConsumer.ofUnchecked(
-            () -> (T) builder.newInstance(args),
-            e -> logError("Can't create instance of class: " + clazz.getSimpleName(), e),
-            () -> null
-        );
+        CodecRegistry registry = database.getCodecRegistry();
+        BsonDocument bson = document.toBsonDocument(Document.class, registry);
+        return codecs.codec(clazz, registry).decode(new BsonDocumentReader(bson), identifier, DecoderContext.builder().build());
     }
 
     /**
@@ -540,6 +560,12 @@ public class ModernMongoDatabaseService extends StorageDatabase {
      */
     @Override
     public void closeConnection() {
+        shutdownWriteBehind();
         disconnect();
     }
+
+    @Override
+    public String getStorageIdentity() {
+        return getClass().getName() + ":" + uri + "/" + databaseName;
+    }
 }
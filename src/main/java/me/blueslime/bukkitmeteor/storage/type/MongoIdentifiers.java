@@ -0,0 +1,108 @@
+package me.blueslime.bukkitmeteor.storage.type;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import me.blueslime.bukkitmeteor.implementation.Implements;
+import me.blueslime.bukkitmeteor.logs.MeteorLogger;
+import me.blueslime.bukkitmeteor.storage.StorageSchema;
+import org.bson.BsonType;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.gt;
+import static com.mongodb.client.model.Filters.type;
+
+/**
+ * "_id" values shared by the mongo databases.
+ * <p>
+ * Classes with a {@link UUID} identifier field use BSON binary subtype 4 (standard UUID) as "_id",
+ * the other classes keep the identifier as a string. Collections written before the identifier was a UUID
+ * are migrated document by document, the string "_id" can't be changed, so every document is inserted
+ * again with the binary "_id" and the old document is removed.
+ */
+final class MongoIdentifiers {
+
+    private MongoIdentifiers() {
+
+    }
+
+    /**
+     * @param clazz of the object
+     * @param identifier of the object
+     * @return "_id" value of the object
+     * @throws IllegalArgumentException if the class uses UUID identifiers and the identifier is not a valid UUID
+     */
+    static Object toKey(Class<?> clazz, String identifier) {
+        if (identifier == null || !StorageSchema.of(clazz).hasUuidIdentifier()) {
+            return identifier;
+        }
+        return UUID.fromString(identifier);
+    }
+
+    static List<Object> toKeys(Class<?> clazz, Collection<String> identifiers) {
+        List<Object> keys = new ArrayList<>(identifiers.size());
+        for (String identifier : identifiers) {
+            keys.add(toKey(clazz, identifier));
+        }
+        return keys;
+    }
+
+    /**
+     * Documents with a string "_id" after the last migrated one, sort them by "_id" so every batch continues the previous one.
+     * @param last "_id" of the previous batch or null for the first batch
+     * @return filter
+     */
+    static Bson createMigrationFilter(String last) {
+        Bson filter = type("_id", BsonType.STRING);
+        return last == null ? filter : and(filter, gt("_id", last));
+    }
+
+    /**
+     * Copies the documents with the binary "_id", documents without a valid UUID are not migrated
+     * @param documents with a string "_id"
+     * @param identifiers filled with the string "_id" of the converted documents
+     * @return converted documents
+     */
+    static List<Document> convert(List<Document> documents, List<String> identifiers) {
+        List<Document> converted = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            String identifier = document.getString("_id");
+            UUID uuid;
+            try {
+                uuid = UUID.fromString(identifier);
+            } catch (IllegalArgumentException e) {
+                Implements.fetch(MeteorLogger.class).warn("Can't migrate document with identifier " + identifier + ", it is not a valid UUID");
+                continue;
+            }
+            Document copy = new Document(document);
+            copy.put("_id", uuid);
+            converted.add(copy);
+            identifiers.add(identifier);
+        }
+        return converted;
+    }
+
+    /**
+     * Documents already migrated by another server fail with a duplicate key, the binary document is kept.
+     * @param throwable of the insert
+     * @return true if every error of the insert is a duplicate key
+     */
+    static boolean isDuplicateKey(Throwable throwable) {
+        if (!(throwable instanceof MongoBulkWriteException exception)) {
+            return false;
+        }
+        for (BulkWriteError error : exception.getWriteErrors()) {
+            if (ErrorCategory.fromErrorCode(error.getCode()) != ErrorCategory.DUPLICATE_KEY) {
+                return false;
+            }
+        }
+        return exception.getWriteConcernError() == null;
+    }
+}
@@ -0,0 +1,139 @@
+package me.blueslime.bukkitmeteor.storage.type;
+
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import me.blueslime.bukkitmeteor.storage.query.QueryCondition;
+import me.blueslime.bukkitmeteor.storage.query.QuerySort;
+import me.blueslime.bukkitmeteor.storage.query.StorageQuery;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.gt;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Filters.lt;
+import static com.mongodb.client.model.Filters.ne;
+import static com.mongodb.client.model.Filters.or;
+
+/**
+ * Filters, sorts and updates shared by the mongo databases.
+ */
+final class MongoQueries {
+
+    private MongoQueries() {
+
+    }
+
+    /**
+     * Translates the conditions and the keyset position of a query to a filter.
+     * @param query to translate
+     * @return filter
+     */
+    static Bson createFilter(StorageQuery<?> query) {
+        List<Bson> filters = new ArrayList<>();
+        for (QueryCondition condition : query.getConditions()) {
+            String field = condition.getField();
+            Object value = condition.getValue();
+            filters.add(switch (condition.getOperator()) {
+                case EQUALS -> eq(field, value);
+                case NOT_EQUALS -> ne(field, value);
+                case GREATER_THAN -> gt(field, value);
+                case LESS_THAN -> lt(field, value);
+                case IN -> in(field, condition.getValues());
+                // Null values and missing fields are handled in the same way
+                case EXISTS -> Boolean.TRUE.equals(value) ? ne(field, null) : eq(field, null);
+            });
+        }
+
+        Object[] after = query.getAfterValues();
+        if (after != null) {
+            List<QuerySort> order = query.getOrder();
+            List<Bson> groups = new ArrayList<>();
+            for (int i = 0; i < order.size(); i++) {
+                List<Bson> parts = new ArrayList<>();
+                for (int j = 0; j < i; j++) {
+                    parts.add(eq(order.get(j).getField(), after[j]));
+                }
+                QuerySort sort = order.get(i);
+                parts.add(sort.isDescending() ? lt(sort.getField(), after[i]) : gt(sort.getField(), after[i]));
+                groups.add(and(parts));
+            }
+            filters.add(or(groups));
+        }
+
+        return filters.isEmpty() ? new Document() : and(filters);
+    }
+
+    /**
+     * @param query to translate
+     * @return sort of the query or null if the query is not ordered
+     */
+    static Bson createSort(StorageQuery<?> query) {
+        List<Bson> sorts = new ArrayList<>();
+        for (QuerySort sort : query.getOrder()) {
+            sorts.add(sort.isDescending() ? Sorts.descending(sort.getField()) : Sorts.ascending(sort.getField()));
+        }
+        return sorts.isEmpty() ? null : Sorts.orderBy(sorts);
+    }
+
+    /**
+     * One $inc update by object, documents that don't exist are not created
+     * @param clazz of the objects
+     * @param deltas by identifier, every delta by storage name
+     * @return updates
+     */
+    static List<WriteModel<Document>> createIncrements(Class<?> clazz, Map<String, Map<String, Long>> deltas) {
+        List<WriteModel<Document>> models = new ArrayList<>(deltas.size());
+        for (Map.Entry<String, Map<String, Long>> entry : deltas.entrySet()) {
+            Document increments = new Document();
+            entry.getValue().forEach(increments::append);
+            models.add(new UpdateOneModel<>(eq("_id", MongoIdentifiers.toKey(clazz, entry.getKey())), new Document("$inc", increments)));
+        }
+        return models;
+    }
+
+    /**
+     * Update of the changed fields, $setOnInsert writes the other fields if the document was removed
+     * @param document of the object
+     * @param changes storage names of the changed fields
+     * @return update
+     */
+    static Document createUpdate(Map<String, Object> document, Set<String> changes) {
+        Document set = new Document();
+        Document unset = new Document();
+        Document insert = new Document();
+
+        for (String name : changes) {
+            Object value = document.get(name);
+            if (value != null) {
+                set.append(name, value);
+            } else {
+                unset.append(name, "");
+            }
+        }
+        for (Map.Entry<String, Object> entry : document.entrySet()) {
+            if (!changes.contains(entry.getKey()) && !entry.getKey().equals("_id")) {
+                insert.append(entry.getKey(), entry.getValue());
+            }
+        }
+
+        Document update = new Document();
+        if (!set.isEmpty()) {
+            update.append("$set", set);
+        }
+        if (!unset.isEmpty()) {
+            update.append("$unset", unset);
+        }
+        if (!insert.isEmpty()) {
+            update.append("$setOnInsert", insert);
+        }
+        return update;
+    }
+}
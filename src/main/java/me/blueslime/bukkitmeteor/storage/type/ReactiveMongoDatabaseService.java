@@ -0,0 +1,922 @@
+package me.blueslime.bukkitmeteor.storage.type;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.CountOptions;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.reactivestreams.client.FindPublisher;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import me.blueslime.bukkitmeteor.logs.MeteorLogger;
+import me.blueslime.bukkitmeteor.storage.StorageDatabase;
+import me.blueslime.bukkitmeteor.storage.StorageSchema;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageObject;
+import me.blueslime.bukkitmeteor.storage.query.StorageQuery;
+import me.blueslime.bukkitmeteor.storage.schema.StorageField;
+import org.bson.Document;
+import org.bson.UuidRepresentation;
+import org.bson.conversions.Bson;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+
+/**
+ * Mongo database on the reactive streams driver.
+ * <p>
+ * The async methods complete from the driver callbacks without holding a thread during the round trip,
+ * at most max in-flight requests are sent at the same time and the other requests wait in a queue.
+ * Futures are completed in the driver threads, so their callbacks must not block.
+ * The documents use the same layout as {@link ModernMongoDatabaseService}.
+ */
+@SuppressWarnings("unused")
+public class ReactiveMongoDatabaseService extends StorageDatabase {
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 256;
+
+    private final Map<Class<?>, CompletableFuture<Void>> prepared = new ConcurrentHashMap<>();
+    private final RequestLimiter limiter;
+
+    private MongoClient mongoClient;
+    private MongoDatabase database;
+
+    private final String databaseName;
+    private final String uri;
+
+    /**
+     * Create your mongo database connection
+     * @param uri to connect
+     * @param databaseName for this session
+     * @param register to the implements
+     */
+    public ReactiveMongoDatabaseService(String uri, String databaseName, RegistrationType register) {
+        this(uri, databaseName, DEFAULT_MAX_IN_FLIGHT, register, null);
+    }
+
+    /**
+     * Create your mongo database connection
+     * @param uri to connect
+     * @param databaseName for this session
+     * @param register to the implements
+     * @param identifier for the implements
+     */
+    public ReactiveMongoDatabaseService(String uri, String databaseName, RegistrationType register, String identifier) {
+        this(uri, databaseName, DEFAULT_MAX_IN_FLIGHT, register, identifier);
+    }
+
+    /**
+     * Create your mongo database connection
+     * @param uri to connect
+     * @param databaseName for this session
+     * @param maxInFlight requests sent at the same time
+     * @param register to the implements
+     * @param identifier for the implements
+     */
+    public ReactiveMongoDatabaseService(String uri, String databaseName, int maxInFlight, RegistrationType register, String identifier) {
+        this.limiter = new RequestLimiter(Math.max(1, maxInFlight));
+        this.databaseName = databaseName;
+        this.uri = uri;
+
+        if (register == null) {
+            register = RegistrationType.DONT_REGISTER;
+        }
+
+        if (register.isDouble() || register.isOnlyThis()) {
+            registerImpl(ReactiveMongoDatabaseService.class, identifier, this, true);
+        }
+
+        if (register.isDouble()) {
+            registerImpl(StorageDatabase.class, identifier, this, true);
+        }
+    }
+
+    /**
+     * Connects with the standard binary representation (subtype 4) of UUID values.
+     */
+    @Override
+    public void connect() {
+        MongoClientSettings settings = MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(uri))
+                .uuidRepresentation(UuidRepresentation.STANDARD)
+                .build();
+
+        this.mongoClient = MongoClients.create(settings);
+        this.database = mongoClient.getDatabase(databaseName);
+    }
+
+    public void disconnect() {
+        if (mongoClient != null) {
+            mongoClient.close();
+        }
+    }
+
+    public MongoDatabase getDatabase() {
+        return database;
+    }
+
+    /**
+     * @return requests waiting for a free slot
+     */
+    public int getWaitingRequests() {
+        return limiter.getWaiting();
+    }
+
+    /**
+     * @return requests sent and not completed
+     */
+    public int getInFlightRequests() {
+        return limiter.getInFlight();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> saveOrUpdateAsync(StorageObject obj) {
+        if (isWriteBehindEnabled()) {
+            return submitSave(obj, () -> saveOrUpdateSync(obj));
+        }
+        return saveAsync(List.of(obj));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void saveOrUpdateSync(StorageObject obj) {
+        await(saveAsync(List.of(obj)));
+    }
+
+    /**
+     * Writes the objects with one unordered bulk write per collection when write-behind is disabled.
+     */
+    @Override
+    public CompletableFuture<Void> saveAllAsync(Collection<? extends StorageObject> objects) {
+        if (isWriteBehindEnabled()) {
+            return super.saveAllAsync(objects);
+        }
+        return saveAsync(objects);
+    }
+
+    /**
+     * Writes the objects with one unordered bulk write per collection,
+     * tracked objects only update the changed fields and unchanged tracked objects are skipped.
+     */
+    @Override
+    public void saveAllSync(Collection<? extends StorageObject> objects) {
+        await(saveAsync(objects));
+    }
+
+    private CompletableFuture<Void> saveAsync(Collection<? extends StorageObject> objects) {
+        if (objects.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        ensureDatabaseConnected();
+
+        Map<Class<?>, List<WriteModel<Document>>> operations = new LinkedHashMap<>();
+        List<Runnable> persisted = new ArrayList<>();
+        ReplaceOptions options = new ReplaceOptions().upsert(true);
+        UpdateOptions updateOptions = new UpdateOptions().upsert(true);
+
+        for (StorageObject obj : objects) {
+            String identifierValue = StorageSchema.of(obj.getClass()).extractIdentifier(obj);
+            Map<String, Object> state = createDocument(obj);
+            Set<String> changes = findChanges(obj, identifierValue, state);
+            if (changes != null && changes.isEmpty()) {
+                continue;
+            }
+
+            Object key = MongoIdentifiers.toKey(obj.getClass(), identifierValue);
+
+            WriteModel<Document> model;
+            if (changes != null) {
+                model = new UpdateOneModel<>(eq("_id", key), MongoQueries.createUpdate(state, changes), updateOptions);
+            } else if (identifierValue != null) {
+                model = new ReplaceOneModel<>(eq("_id", key), new Document(state), options);
+            } else {
+                model = new InsertOneModel<>(new Document(state));
+            }
+
+            persisted.add(() -> markPersisted(obj, identifierValue, state));
+            operations.computeIfAbsent(obj.getClass(), k -> new ArrayList<>()).add(model);
+        }
+
+        List<CompletableFuture<?>> futures = new ArrayList<>(operations.size());
+        for (Map.Entry<Class<?>, List<WriteModel<Document>>> entry : operations.entrySet()) {
+            Class<?> clazz = entry.getKey();
+            String name = clazz.getSimpleName();
+            List<WriteModel<Document>> models = entry.getValue();
+            futures.add(
+                submit(clazz, () -> single(database.getCollection(name).bulkWrite(models, new BulkWriteOptions().ordered(false))))
+                    .whenComplete((result, e) -> {
+                        if (e != null) {
+                            logError("Can't save/update a batch of " + models.size() + " objects at collection " + name, unwrap(e));
+                        }
+                    })
+            );
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+            .thenRun(() -> persisted.forEach(Runnable::run));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> CompletableFuture<Optional<T>> loadByIdAsync(Class<T> clazz, String identifier) {
+        ensureDatabaseConnected();
+
+        T pending = findPendingWrite(clazz, identifier);
+        if (pending != null) {
+            return CompletableFuture.completedFuture(Optional.of(pending));
+        }
+
+        Object key = MongoIdentifiers.toKey(clazz, identifier);
+        return submit(clazz, () -> single(getCollection(clazz).find(eq("_id", key)).first()))
+            .thenApply(document -> Optional.ofNullable(document != null ? trackLoaded(instantiateObject(clazz, document)) : null));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> Optional<T> loadByIdSync(Class<T> clazz, String identifier) {
+        return await(loadByIdAsync(clazz, identifier));
+    }
+
+    /**
+     * The server only sends the requested fields.
+     */
+    @Override
+    public <T extends StorageObject> CompletableFuture<Optional<Map<String, Object>>> loadFieldsByIdAsync(Class<T> clazz, String identifier, String... keys) {
+        ensureDatabaseConnected();
+
+        List<StorageField> fields = resolveFields(clazz, keys);
+        T pending = findPendingWrite(clazz, identifier);
+        if (pending != null) {
+            return CompletableFuture.completedFuture(Optional.of(extractFields(pending, fields)));
+        }
+        if (identifier == null) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+
+        Bson projection = Projections.include(new ArrayList<>(namesOf(fields)));
+        Object key = MongoIdentifiers.toKey(clazz, identifier);
+        return submit(clazz, () -> single(getCollection(clazz).find(eq("_id", key)).projection(projection).first()))
+            .thenApply(document -> Optional.ofNullable(document != null ? decodeFields(fields, document, identifier) : null));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> Optional<Map<String, Object>> loadFieldsByIdSync(Class<T> clazz, String identifier, String... keys) {
+        return await(loadFieldsByIdAsync(clazz, identifier, keys));
+    }
+
+    /**
+     * Increments the fields with one unordered bulk write of $inc updates.
+     */
+    @Override
+    protected <T extends StorageObject> void applyIncrements(Class<T> clazz, Map<String, Map<String, Long>> deltas) {
+        ensureDatabaseConnected();
+
+        List<WriteModel<Document>> models = MongoQueries.createIncrements(clazz, deltas);
+        await(submit(clazz, () -> single(getCollection(clazz).bulkWrite(models, new BulkWriteOptions().ordered(false))))
+            .whenComplete((result, e) -> {
+                if (e != null) {
+                    logError("Can't increment " + models.size() + " objects at collection " + clazz.getSimpleName(), unwrap(e));
+                }
+            }));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> CompletableFuture<Void> deleteByIdAsync(Class<T> clazz, String identifier) {
+        ensureDatabaseConnected();
+        cancelPendingWrite(clazz, identifier);
+
+        Object key = MongoIdentifiers.toKey(clazz, identifier);
+        return submit(clazz, () -> single(getCollection(clazz).deleteOne(eq("_id", key))))
+            .thenApply(result -> null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> void deleteByIdSync(Class<T> clazz, String identifier) {
+        await(deleteByIdAsync(clazz, identifier));
+    }
+
+    /**
+     * Loads the objects with a single $in query.
+     */
+    @Override
+    public <T extends StorageObject> CompletableFuture<Map<String, T>> loadByIdsAsync(Class<T> clazz, Collection<String> identifiers) {
+        ensureDatabaseConnected();
+
+        Map<String, T> results = new HashMap<>();
+        List<String> missing = resolvePendingWrites(clazz, identifiers, results);
+        if (missing.isEmpty()) {
+            return CompletableFuture.completedFuture(results);
+        }
+
+        List<Object> keys = MongoIdentifiers.toKeys(clazz, missing);
+        return submit(clazz, () -> collect(getCollection(clazz).find(in("_id", keys))))
+            .thenApply(documents -> {
+                for (Document document : documents) {
+                    T object = trackLoaded(instantiateObject(clazz, document));
+                    if (object != null) {
+                        results.put(String.valueOf(document.get("_id")), object);
+                    }
+                }
+                return results;
+            });
+    }
+
+    /**
+     * Loads the objects with a single $in query.
+     */
+    @Override
+    public <T extends StorageObject> Map<String, T> loadByIdsSync(Class<T> clazz, Collection<String> identifiers) {
+        return await(loadByIdsAsync(clazz, identifiers));
+    }
+
+    /**
+     * Deletes the objects with a single deleteMany.
+     */
+    @Override
+    public <T extends StorageObject> CompletableFuture<Void> deleteByIdsAsync(Class<T> clazz, Collection<String> identifiers) {
+        ensureDatabaseConnected();
+
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(identifiers));
+        ids.remove(null);
+        if (ids.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        for (String identifier : ids) {
+            cancelPendingWrite(clazz, identifier);
+        }
+
+        List<Object> keys = MongoIdentifiers.toKeys(clazz, ids);
+        return submit(clazz, () -> single(getCollection(clazz).deleteMany(in("_id", keys))))
+            .thenApply(result -> null);
+    }
+
+    /**
+     * Deletes the objects with a single deleteMany.
+     */
+    @Override
+    public <T extends StorageObject> void deleteByIdsSync(Class<T> clazz, Collection<String> identifiers) {
+        await(deleteByIdsAsync(clazz, identifiers));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> CompletableFuture<Set<T>> loadAllAsync(Class<T> clazz) {
+        return submit(clazz, () -> collect(publishAll(clazz)))
+            .thenApply(HashSet::new);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> Set<T> loadAllSync(Class<T> clazz) {
+        return await(loadAllAsync(clazz));
+    }
+
+    /**
+     * Publishes every object of a class, documents are requested from the cursor only when the subscriber requests
+     * objects. Publishers are not counted in the max in-flight requests.
+     * @param clazz of the objects
+     * @return publisher of the objects, every subscription reads the collection again
+     */
+    public <T extends StorageObject> Publisher<T> publishAll(Class<T> clazz) {
+        ensureDatabaseConnected();
+
+        return new DecodingPublisher<>(
+            whenPrepared(clazz, getCollection(clazz).find().batchSize(STREAM_BATCH_SIZE)),
+            document -> instantiateObject(clazz, document)
+        );
+    }
+
+    /**
+     * Publishes the results of a query, see {@link #publishAll(Class)}.
+     * @param query to execute
+     * @return publisher of the results
+     */
+    public <T extends StorageObject> Publisher<T> publishQuery(StorageQuery<T> query) {
+        ensureDatabaseConnected();
+
+        Class<T> clazz = query.getType();
+        return new DecodingPublisher<>(whenPrepared(clazz, createFind(query)), document -> instantiateObject(clazz, document));
+    }
+
+    /**
+     * Streams the collection with a cursor, documents are fetched in batches of {@link #STREAM_BATCH_SIZE}.
+     */
+    @Override
+    public <T extends StorageObject> Stream<T> streamAll(Class<T> clazz, boolean parallel) {
+        ensureDatabaseConnected();
+
+        PublisherIterator<Document> cursor = new PublisherIterator<>(STREAM_BATCH_SIZE);
+        whenPrepared(clazz, getCollection(clazz).find().batchSize(STREAM_BATCH_SIZE)).subscribe(cursor);
+
+        return createStream(
+            cursor,
+            document -> instantiateObject(clazz, document),
+            parallel,
+            cursor::close
+        );
+    }
+
+    /**
+     * Translates the query to a filter and sort document.
+     */
+    @Override
+    public <T extends StorageObject> Stream<T> streamQuery(StorageQuery<T> query) {
+        ensureDatabaseConnected();
+
+        // Mongo uses limit 0 as no limit
+        if (query.hasLimit() && query.getLimit() == 0) {
+            return Stream.empty();
+        }
+
+        Class<T> clazz = query.getType();
+        PublisherIterator<Document> cursor = new PublisherIterator<>(STREAM_BATCH_SIZE);
+        whenPrepared(clazz, createFind(query)).subscribe(cursor);
+
+        return createStream(
+            cursor,
+            document -> instantiateObject(clazz, document),
+            false,
+            cursor::close
+        );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> long countQuery(StorageQuery<T> query) {
+        ensureDatabaseConnected();
+
+        if (query.hasLimit() && query.getLimit() == 0) {
+            return 0L;
+        }
+
+        CountOptions options = new CountOptions();
+        if (query.hasLimit()) {
+            options.limit(query.getLimit());
+        }
+        Long count = await(submit(query.getType(), () -> single(getCollection(query.getType()).countDocuments(MongoQueries.createFilter(query), options))));
+        return count == null ? 0L : count;
+    }
+
+    private FindPublisher<Document> createFind(StorageQuery<?> query) {
+        FindPublisher<Document> find = getCollection(query.getType())
+            .find(MongoQueries.createFilter(query))
+            .batchSize(STREAM_BATCH_SIZE);
+
+        Bson sort = MongoQueries.createSort(query);
+        if (sort != null) {
+            find = find.sort(sort);
+        }
+        if (query.hasLimit()) {
+            find = find.limit(query.getLimit());
+        }
+        return find;
+    }
+
+    private MongoCollection<Document> getCollection(Class<?> clazz) {
+        return database.getCollection(clazz.getSimpleName());
+    }
+
+    /**
+     * Sends a request of a class after its collection is prepared, see {@link #prepare(Class)}.
+     */
+    private <T> CompletableFuture<T> submit(Class<?> clazz, Supplier<CompletableFuture<T>> request) {
+        return prepare(clazz).thenCompose(ignored -> limiter.submit(request));
+    }
+
+    /**
+     * Subscribes to a publisher of a class after its collection is prepared.
+     */
+    private <T> Publisher<T> whenPrepared(Class<?> clazz, Publisher<T> publisher) {
+        return subscriber -> prepare(clazz).whenComplete((ignored, e) -> publisher.subscribe(subscriber));
+    }
+
+    /**
+     * Migrates the collection of a class with a {@link UUID} identifier the first time the class is used.
+     * If the migration fails the error is logged and the requests continue, documents with a string "_id"
+     * are not found by identifier until a later request of the class migrates them again.
+     * @return future completed when the collection can be used
+     */
+    private CompletableFuture<Void> prepare(Class<?> clazz) {
+        if (!StorageSchema.of(clazz).hasUuidIdentifier()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> current = prepared.get(clazz);
+        if (current != null) {
+            return current;
+        }
+        CompletableFuture<Void> created = new CompletableFuture<>();
+        current = prepared.putIfAbsent(clazz, created);
+        if (current != null) {
+            return current;
+        }
+
+        CompletableFuture<Long> migration;
+        try {
+            migration = migrateUuidIdentifiers(clazz);
+        } catch (RuntimeException e) {
+            migration = CompletableFuture.failedFuture(e);
+        }
+        migration.whenComplete((migrated, e) -> {
+            if (e != null) {
+                // No se guarda, la siguiente petición de la clase lo intenta de nuevo
+                prepared.remove(clazz, created);
+                logError("Can't migrate identifiers of collection " + clazz.getSimpleName(), unwrap(e));
+            }
+            created.complete(null);
+        });
+        return created;
+    }
+
+    /**
+     * Converts the string "_id" of the documents of a class with a {@link UUID} identifier to binary UUIDs,
+     * in batches of {@link #STREAM_BATCH_SIZE}. It is called automatically the first time the class is used.
+     * @param clazz of the stored objects
+     * @return future with the migrated documents
+     */
+    public CompletableFuture<Long> migrateUuidIdentifiers(Class<?> clazz) {
+        ensureDatabaseConnected();
+
+        return migrateBatch(getCollection(clazz), null, 0L).thenApply(migrated -> {
+            if (migrated > 0) {
+                fetch(MeteorLogger.class).info("Migrated " + migrated + " identifiers of collection " + clazz.getSimpleName() + " to binary UUIDs");
+            }
+            return migrated;
+        });
+    }
+
+    private CompletableFuture<Long> migrateBatch(MongoCollection<Document> collection, String last, long migrated) {
+        FindPublisher<Document> find = collection.find(MongoIdentifiers.createMigrationFilter(last))
+            .sort(Sorts.ascending("_id"))
+            .limit(STREAM_BATCH_SIZE);
+
+        return collect(find).thenCompose(documents -> {
+            if (documents.isEmpty()) {
+                return CompletableFuture.completedFuture(migrated);
+            }
+            String next = documents.get(documents.size() - 1).getString("_id");
+
+            List<String> identifiers = new ArrayList<>(documents.size());
+            List<Document> converted = MongoIdentifiers.convert(documents, identifiers);
+            if (converted.isEmpty()) {
+                return migrateBatch(collection, next, migrated);
+            }
+            return single(collection.insertMany(converted, new InsertManyOptions().ordered(false)))
+                .handle((result, e) -> {
+                    if (e != null && !MongoIdentifiers.isDuplicateKey(unwrap(e))) {
+                        throw new CompletionException(unwrap(e));
+                    }
+                    return null;
+                })
+                .thenCompose(ignored -> single(collection.deleteMany(in("_id", identifiers))))
+                .thenCompose(ignored -> migrateBatch(collection, next, migrated + identifiers.size()));
+        });
+    }
+
+    private <T extends StorageObject> T instantiateObject(Class<T> clazz, Document document) {
+        return instantiateDocument(clazz, document, String.valueOf(document.get("_id")));
+    }
+
+    private void ensureDatabaseConnected() {
+        if (database == null) {
+            throw new IllegalStateException("No database connection. Call connect() first.");
+        }
+    }
+
+    /**
+     * Waits for a request, sync methods must not be called from the driver threads.
+     */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static Exception unwrap(Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+        return cause instanceof Exception exception ? exception : new IllegalStateException(cause);
+    }
+
+    private static <T> CompletableFuture<T> single(Publisher<T> publisher) {
+        return collect(publisher).thenApply(values -> values.isEmpty() ? null : values.get(0));
+    }
+
+    private static <T> CompletableFuture<List<T>> collect(Publisher<T> publisher) {
+        CompletableFuture<List<T>> future = new CompletableFuture<>();
+        publisher.subscribe(new Subscriber<T>() {
+            private final List<T> values = new ArrayList<>();
+
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(T value) {
+                values.add(value);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                future.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                future.complete(values);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void closeConnection() {
+        shutdownWriteBehind();
+        disconnect();
+    }
+
+    @Override
+    public String getStorageIdentity() {
+        return getClass().getName() + ":" + uri + "/" + databaseName;
+    }
+
+    /**
+     * Limits the requests sent at the same time, the other requests wait in a queue without blocking threads.
+     */
+    private static final class RequestLimiter {
+        private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger waitingSize = new AtomicInteger();
+        private final AtomicInteger draining = new AtomicInteger();
+        private final AtomicInteger permits;
+        private final int maxInFlight;
+
+        private RequestLimiter(int maxInFlight) {
+            this.permits = new AtomicInteger(maxInFlight);
+            this.maxInFlight = maxInFlight;
+        }
+
+        private <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> request) {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            waitingSize.incrementAndGet();
+            waiting.add(() -> start(request, result));
+            drain();
+            return result;
+        }
+
+        private <T> void start(Supplier<CompletableFuture<T>> request, CompletableFuture<T> result) {
+            CompletableFuture<T> future;
+            try {
+                future = request.get();
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            future.whenComplete((value, e) -> {
+                permits.incrementAndGet();
+                drain();
+                if (e != null) {
+                    result.completeExceptionally(e);
+                } else {
+                    result.complete(value);
+                }
+            });
+        }
+
+        private void drain() {
+            // Una petición completada al instante vuelve a llamar a drain, el bucle que ya se ejecuta la atiende sin recursión
+            if (draining.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                while (!waiting.isEmpty()) {
+                    int available = permits.get();
+                    if (available <= 0) {
+                        break;
+                    }
+                    if (!permits.compareAndSet(available, available - 1)) {
+                        continue;
+                    }
+                    Runnable next = waiting.poll();
+                    if (next == null) {
+                        permits.incrementAndGet();
+                        continue;
+                    }
+                    waitingSize.decrementAndGet();
+                    next.run();
+                }
+            } while (draining.decrementAndGet() != 0);
+        }
+
+        private int getWaiting() {
+            return waitingSize.get();
+        }
+
+        private int getInFlight() {
+            return maxInFlight - permits.get();
+        }
+    }
+
+    /**
+     * Decodes the documents of a publisher keeping the demand of the subscriber,
+     * documents that can't be decoded are skipped and replaced with a new request.
+     */
+    private static final class DecodingPublisher<T> implements Publisher<T> {
+        private final Publisher<Document> source;
+        private final Function<Document, T> decoder;
+
+        private DecodingPublisher(Publisher<Document> source, Function<Document, T> decoder) {
+            this.source = source;
+            this.decoder = decoder;
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super T> subscriber) {
+            source.subscribe(new Subscriber<Document>() {
+                private Subscription subscription;
+
+                @Override
+                public void onSubscribe(Subscription subscription) {
+                    this.subscription = subscription;
+                    subscriber.onSubscribe(subscription);
+                }
+
+                @Override
+                public void onNext(Document document) {
+                    T value = decoder.apply(document);
+                    if (value == null) {
+                        subscription.request(1L);
+                    } else {
+                        subscriber.onNext(value);
+                    }
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    subscriber.onError(throwable);
+                }
+
+                @Override
+                public void onComplete() {
+                    subscriber.onComplete();
+                }
+            });
+        }
+    }
+
+    /**
+     * Blocking iterator over a publisher, at most the batch size is requested before it is consumed.
+     */
+    private static final class PublisherIterator<T> implements Iterator<T>, Subscriber<T> {
+        private static final Object COMPLETE = new Object();
+
+        private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+        private final int batchSize;
+        private final int refill;
+
+        private volatile Subscription subscription;
+        private int consumed = 0;
+        private boolean done = false;
+        private Object next;
+
+        private PublisherIterator(int batchSize) {
+            this.batchSize = batchSize;
+            this.refill = Math.max(1, batchSize / 2);
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(batchSize);
+        }
+
+        @Override
+        public void onNext(T value) {
+            queue.add(value);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            queue.add(new Failure(throwable));
+        }
+
+        @Override
+        public void onComplete() {
+            queue.add(COMPLETE);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) {
+                return true;
+            }
+            if (done) {
+                return false;
+            }
+
+            Object value;
+            try {
+                value = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new IllegalStateException("Interrupted while reading a mongo cursor", e);
+            }
+
+            if (value == COMPLETE) {
+                done = true;
+                return false;
+            }
+            if (value instanceof Failure failure) {
+                done = true;
+                if (failure.throwable() instanceof RuntimeException e) {
+                    throw e;
+                }
+                throw new IllegalStateException(failure.throwable());
+            }
+
+            next = value;
+            if (++consumed == refill) {
+                consumed = 0;
+                subscription.request(refill);
+            }
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T value = (T) next;
+            next = null;
+            return value;
+        }
+
+        private void close() {
+            done = true;
+            Subscription current = subscription;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+
+        private record Failure(Throwable throwable) {
+
+        }
+    }
+}
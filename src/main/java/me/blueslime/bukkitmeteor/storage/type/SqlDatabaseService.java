@@ -0,0 +1,1038 @@
+package me.blueslime.bukkitmeteor.storage.type;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import me.blueslime.bukkitmeteor.logs.MeteorLogger;
+import me.blueslime.bukkitmeteor.storage.StorageDatabase;
+import me.blueslime.bukkitmeteor.storage.StorageSchema;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageObject;
+import me.blueslime.bukkitmeteor.storage.query.StorageQuery;
+import me.blueslime.bukkitmeteor.storage.schema.StorageField;
+import me.blueslime.bukkitmeteor.storage.sql.*;
+import me.blueslime.utilitiesapi.utils.consumer.PluginConsumer;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Shared implementation of the SQL services, every operation borrows
+ * a connection from a {@link SqlConnectionPool}, so async calls don't serialize on a single connection.
+ * <p>
+ * Every class is stored in its own {@link SqlTable}, the table is created the first time the class is used
+ * and new fields are added as new columns, see {@link #prepareTables(Class[])}.
+ */
+@SuppressWarnings("unused")
+public abstract class SqlDatabaseService extends StorageDatabase {
+
+    private final Map<Class<?>, SqlTable> tables = new ConcurrentHashMap<>();
+    private final Gson gson = new Gson();
+
+    private final SqlPoolSettings settings;
+    private final SqlDialect dialect;
+    private final String password;
+    private final String user;
+    private final String url;
+
+    /**
+     * Limits of a multi-row statement, drivers reject statements with more than 65535 parameters.
+     */
+    private static final int MAX_PARAMETERS = 32_000;
+    private static final int MAX_ROWS_PER_STATEMENT = 1_000;
+
+    private SqlConnectionPool pool;
+
+    protected SqlDatabaseService(String url, String user, String password, SqlPoolSettings settings) {
+        this.settings = settings == null ? SqlPoolSettings.create() : settings;
+        this.password = password;
+        this.user = user;
+        this.url = url;
+        this.dialect = new SqlDialect() {
+            @Override
+            public String getColumnType(SqlColumnType type) {
+                return SqlDatabaseService.this.getColumnType(type);
+            }
+
+            @Override
+            public String getParameter(SqlColumnType type) {
+                return SqlDatabaseService.this.getParameter(type);
+            }
+
+            @Override
+            public String createUpsertClause(List<String> columns) {
+                return SqlDatabaseService.this.createUpsertClause(columns);
+            }
+
+            @Override
+            public Object encodeIdentifier(SqlColumnType type, String identifier) {
+                return SqlDatabaseService.this.encodeIdentifier(type, identifier);
+            }
+        };
+    }
+
+    /**
+     * JDBC driver class loaded before connecting.
+     * @return driver class name or null if the driver is registered automatically.
+     */
+    protected String getDriverClass() {
+        return null;
+    }
+
+    /**
+     * Creates the clause appended to an INSERT statement to update the row when the identifier already exists.
+     * @param columns of the INSERT statement
+     * @return upsert clause
+     */
+    protected abstract String createUpsertClause(List<String> columns);
+
+    /**
+     * @param type generic column type
+     * @return SQL type of the column in this database
+     */
+    protected abstract String getColumnType(SqlColumnType type);
+
+    /**
+     * Placeholder of a value in an INSERT statement
+     * @param type of the column
+     * @return placeholder
+     */
+    protected String getParameter(SqlColumnType type) {
+        return "?";
+    }
+
+    /**
+     * Value bound to the identifier column, by default the 16 bytes of UUID identifiers
+     * @param type of the identifier column
+     * @param identifier of the object
+     * @return parameter value
+     */
+    protected Object encodeIdentifier(SqlColumnType type, String identifier) {
+        if (type != SqlColumnType.UUID_IDENTIFIER || identifier == null) {
+            return identifier;
+        }
+        return SqlDialect.toBytes(UUID.fromString(identifier));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void connect() {
+        String driver = getDriverClass();
+        try {
+            if (driver != null) {
+                Class.forName(driver);
+            }
+            pool = new SqlConnectionPool(url, user, password, settings);
+            pool.start();
+        } catch (ClassNotFoundException e) {
+            logError("Can't find SQL Driver: " + driver, e);
+        } catch (SQLException e) {
+            logError("Can't connect to this SQL", e);
+        }
+    }
+
+    public void disconnect() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    /**
+     * @return connection pool or null if this service is not connected.
+     */
+    public SqlConnectionPool getConnectionPool() {
+        return pool;
+    }
+
+    /**
+     * @return active, idle and wait time metrics of the connection pool.
+     */
+    public SqlPoolMetrics getPoolMetrics() {
+        ensureDatabaseConnected();
+        return pool.getMetrics();
+    }
+
+    /**
+     * Creates or migrates the tables of these classes, use it on startup to avoid
+     * the table check on the first use of every class.
+     * @param classes to prepare
+     */
+    @SafeVarargs
+    public final void prepareTables(Class<? extends StorageObject>... classes) {
+        for (Class<? extends StorageObject> clazz : classes) {
+            getTable(clazz);
+        }
+    }
+
+    /**
+     * Gets the table of a class, the table is created or migrated if this is the first request.
+     * @param clazz of the stored objects
+     * @return table
+     */
+    public SqlTable getTable(Class<?> clazz) {
+        SqlTable table = tables.get(clazz);
+        if (table != null) {
+            return table;
+        }
+        table = SqlTable.of(clazz, dialect);
+        try {
+            prepareTable(table);
+        } catch (SQLException e) {
+            // No se guarda en caché, se intentará de nuevo en el siguiente uso.
+            logError("Can't create or update table " + table.getName(), e);
+            return table;
+        }
+        SqlTable current = tables.putIfAbsent(clazz, table);
+        return current != null ? current : table;
+    }
+
+    private void prepareTable(SqlTable table) throws SQLException {
+        boolean migrate = executeWrite(connection -> {
+            Connection raw = connection.getConnection();
+            try (Statement statement = raw.createStatement()) {
+                statement.execute(table.getCreateSql());
+
+                Set<String> existing = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+                String identifierType = null;
+                try (ResultSet rs = statement.executeQuery(table.getSelectAllSql() + " WHERE 1 = 0")) {
+                    ResultSetMetaData metaData = rs.getMetaData();
+                    for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                        existing.add(metaData.getColumnLabel(i));
+                        if (metaData.getColumnLabel(i).equalsIgnoreCase(SqlTable.ID_COLUMN)) {
+                            identifierType = metaData.getColumnTypeName(i);
+                        }
+                    }
+                }
+
+                for (SqlColumn column : table.getMissingColumns(existing)) {
+                    statement.execute(table.getAddColumnSql(column));
+
+                    if (column.isIdentifier()) {
+                        String fill = table.getFillIdentifierSql();
+                        if (fill != null) {
+                            statement.executeUpdate(fill);
+                        }
+                        statement.execute(table.getIdentifierIndexSql());
+                        identifierType = getColumnType(SqlColumnType.IDENTIFIER);
+                    }
+                }
+                return table.getIdentifierType() == SqlColumnType.UUID_IDENTIFIER &&
+                    identifierType != null && !isColumnType(identifierType, SqlColumnType.UUID_IDENTIFIER);
+            }
+        }, false);
+
+        if (migrate) {
+            executeWrite(connection -> {
+                migrateUuidIdentifiers(connection, table);
+                return null;
+            }, true);
+            fetch(MeteorLogger.class).info("Migrated identifiers of table " + table.getName() + " to binary UUIDs");
+        }
+
+        executeWrite(connection -> {
+            try (Statement statement = connection.getConnection().createStatement()) {
+                for (String index : table.getIndexSql()) {
+                    statement.execute(index);
+                }
+            }
+            return null;
+        }, false);
+    }
+
+    /**
+     * @param typeName read from the metadata of a column
+     * @param type generic column type
+     * @return true if the column already has the SQL type of this generic type
+     */
+    private boolean isColumnType(String typeName, SqlColumnType type) {
+        String expected = getColumnType(type);
+        int size = expected.indexOf('(');
+        return (size == -1 ? expected : expected.substring(0, size)).equalsIgnoreCase(typeName.trim());
+    }
+
+    /**
+     * Converts the text identifiers of a table created before its class used a {@link UUID} identifier.
+     * <p>
+     * The default implementation rebuilds the table: it is renamed, created again with the binary identifier
+     * column and the rows are copied converting every identifier. Databases that can change the type
+     * of a column in place override it. It runs in a transaction, so an invalid identifier keeps the old table.
+     * @param connection of the migration
+     * @param table to migrate
+     * @throws SQLException if the table can't be migrated or an identifier is not a valid UUID
+     */
+    protected void migrateUuidIdentifiers(PooledConnection connection, SqlTable table) throws SQLException {
+        Connection raw = connection.getConnection();
+        String old = table.getName() + "_text_ids";
+        try (Statement statement = raw.createStatement()) {
+            statement.execute("ALTER TABLE " + table.getName() + " RENAME TO " + old);
+            statement.execute(table.getCreateSql());
+
+            List<SqlColumn> columns = table.getColumns();
+            try (PreparedStatement insert = raw.prepareStatement(table.getInsertSql(1));
+                 ResultSet rs = statement.executeQuery("SELECT * FROM " + old)) {
+                String[] labels = readLabels(rs);
+                int batch = 0;
+                while (rs.next()) {
+                    Map<String, Object> row = readRow(rs, labels);
+                    for (int i = 0; i < columns.size(); i++) {
+                        Object value = row.get(columns.get(i).name());
+                        insert.setObject(i + 1, i == 0 ? table.encodeIdentifier(String.valueOf(value)) : value);
+                    }
+                    insert.addBatch();
+                    if (++batch % STREAM_BATCH_SIZE == 0) {
+                        insert.executeBatch();
+                    }
+                }
+                insert.executeBatch();
+            } catch (IllegalArgumentException e) {
+                throw new SQLException("Table " + table.getName() + " has an identifier that is not a valid UUID", e);
+            }
+            statement.execute("DROP TABLE " + old);
+        }
+    }
+
+    /**
+     * Borrows a connection and executes a function with it, connection errors
+     * remove the connection from the pool, so the next call opens a new connection.
+     * @param function to execute
+     * @return function result
+     * @param <R> result type
+     * @throws SQLException if the connection can't be acquired or the function fails
+     */
+    protected <R> R execute(SqlFunction<R> function) throws SQLException {
+        ensureDatabaseConnected();
+        try (PooledConnection connection = pool.acquire()) {
+            try {
+                return function.apply(connection);
+            } catch (SQLException e) {
+                if (isConnectionError(e)) {
+                    connection.invalidate();
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Executes a function that modifies the database.
+     * @param function to execute
+     * @param transaction true if the function must be executed in one transaction
+     * @return function result
+     * @param <R> result type
+     * @throws SQLException if the connection can't be acquired or the function fails
+     */
+    protected <R> R executeWrite(SqlFunction<R> function, boolean transaction) throws SQLException {
+        return transaction ? executeTransaction(function) : execute(function);
+    }
+
+    /**
+     * Executes a function in one transaction, the transaction is rolled back if the function fails.
+     * @param function to execute
+     * @return function result
+     * @param <R> result type
+     * @throws SQLException if the connection can't be acquired, the function fails or the commit fails
+     */
+    protected <R> R executeTransaction(SqlFunction<R> function) throws SQLException {
+        return execute(connection -> {
+            Connection raw = connection.getConnection();
+            raw.setAutoCommit(false);
+            try {
+                R result = function.apply(connection);
+                raw.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                raw.rollback();
+                throw e;
+            } finally {
+                raw.setAutoCommit(true);
+            }
+        });
+    }
+
+    /**
+     * Max parameters of a single statement, multi-row statements are split to stay under this limit.
+     * @return max parameters
+     */
+    protected int getMaxParameters() {
+        return MAX_PARAMETERS;
+    }
+
+    private boolean isConnectionError(SQLException e) {
+        String state = e.getSQLState();
+        return e instanceof SQLRecoverableException ||
+                e instanceof SQLNonTransientConnectionException ||
+                (state != null && state.startsWith("08"));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> saveOrUpdateAsync(StorageObject obj) {
+        return submitSave(obj, () -> save(obj));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void saveOrUpdateSync(StorageObject obj) {
+        save(obj);
+    }
+
+    /**
+     * Writes all objects in one transaction, objects of the same class
+     * are written with multi-row INSERT statements. Changed tracked objects
+     * only update the changed columns and unchanged tracked objects are skipped.
+     * @param objects to save or update
+     */
+    @Override
+    public void saveAllSync(Collection<? extends StorageObject> objects) {
+        if (objects.isEmpty()) {
+            return;
+        }
+        ensureDatabaseConnected();
+
+        // Repeated identifiers keep the last object
+        Map<SqlTable, Map<String, RowWrite>> groups = new LinkedHashMap<>();
+
+        for (StorageObject obj : objects) {
+            SqlTable table = getTable(obj.getClass());
+            RowWrite write = createWrite(table, obj);
+            if (write != null) {
+                groups.computeIfAbsent(table, k -> new LinkedHashMap<>()).put(write.identifier(), write);
+            }
+        }
+
+        if (groups.isEmpty()) {
+            return;
+        }
+
+        try {
+            executeWrite(connection -> {
+                for (Map.Entry<SqlTable, Map<String, RowWrite>> entry : groups.entrySet()) {
+                    SqlTable table = entry.getKey();
+                    List<Object[]> rows = new ArrayList<>();
+                    for (RowWrite write : entry.getValue().values()) {
+                        // Si la fila ya no existe se escribe completa
+                        if (write.changed() == null || update(connection, table, write) == 0) {
+                            rows.add(write.row());
+                        }
+                    }
+
+                    int columns = table.getColumns().size();
+                    int rowsPerStatement = Math.max(1, Math.min(MAX_ROWS_PER_STATEMENT, getMaxParameters() / columns));
+
+                    for (int from = 0; from < rows.size(); from += rowsPerStatement) {
+                        List<Object[]> chunk = rows.subList(from, Math.min(rows.size(), from + rowsPerStatement));
+                        PreparedStatement stmt = connection.prepareStatement(table.getInsertSql(chunk.size()));
+                        int i = 1;
+                        for (Object[] row : chunk) {
+                            for (Object value : row) {
+                                stmt.setObject(i++, value);
+                            }
+                        }
+                        stmt.executeUpdate();
+                    }
+                }
+                return null;
+            }, true);
+        } catch (SQLException e) {
+            logError("Can't save/update a batch of " + objects.size() + " objects", e);
+            throw new IllegalStateException(e);
+        }
+
+        for (Map<String, RowWrite> writes : groups.values()) {
+            writes.values().forEach(this::markPersisted);
+        }
+    }
+
+    private void save(StorageObject obj) {
+        ensureDatabaseConnected();
+
+        SqlTable table = getTable(obj.getClass());
+        RowWrite write = createWrite(table, obj);
+        if (write == null) {
+            return;
+        }
+
+        try {
+            executeWrite(connection -> {
+                if (write.changed() != null && update(connection, table, write) > 0) {
+                    return null;
+                }
+                PreparedStatement stmt = connection.prepareStatement(table.getInsertSql(1));
+                int i = 1;
+                for (Object value : write.row()) {
+                    stmt.setObject(i++, value);
+                }
+                return stmt.executeUpdate();
+            }, false);
+            markPersisted(write);
+        } catch (SQLException e) {
+            logError("Can't save/update object at table " + table.getName(), e);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Creates the row of an object and finds the changed columns of tracked objects
+     * @return write or null if the object didn't change
+     */
+    private RowWrite createWrite(SqlTable table, StorageObject obj) {
+        String identifier = extractIdentifier(obj);
+        boolean generated = identifier == null;
+        if (generated) {
+            identifier = UUID.randomUUID().toString();
+        }
+        Object[] row = createRow(table, obj, identifier);
+
+        if (!StorageSchema.of(obj.getClass()).isTracked() || generated) {
+            return new RowWrite(obj, identifier, row, null, null);
+        }
+
+        Map<String, Object> document = createDocument(obj);
+        Set<String> changes = findChanges(obj, identifier, document);
+        if (changes == null) {
+            return new RowWrite(obj, identifier, row, null, document);
+        }
+        if (changes.isEmpty()) {
+            return null;
+        }
+
+        List<Integer> changed = new ArrayList<>(changes.size());
+        List<SqlColumn> columns = table.getColumns();
+        for (int i = 1; i < columns.size(); i++) {
+            if (changes.contains(columns.get(i).name())) {
+                changed.add(i);
+            }
+        }
+        // Campos sin columna (como _id), se escribe la fila completa
+        return new RowWrite(obj, identifier, row, changed.isEmpty() ? null : changed, document);
+    }
+
+    /**
+     * Updates the changed columns of an existing row
+     * @return updated rows
+     */
+    private int update(PooledConnection connection, SqlTable table, RowWrite write) throws SQLException {
+        List<SqlColumn> columns = new ArrayList<>(write.changed().size());
+        for (int index : write.changed()) {
+            columns.add(table.getColumns().get(index));
+        }
+
+        PreparedStatement stmt = connection.prepareStatement(table.getUpdateSql(columns));
+        int i = 1;
+        for (int index : write.changed()) {
+            stmt.setObject(i++, write.row()[index]);
+        }
+        stmt.setObject(i, write.row()[0]);
+        return stmt.executeUpdate();
+    }
+
+    private void markPersisted(RowWrite write) {
+        if (write.document() != null) {
+            markPersisted(write.object(), write.identifier(), write.document());
+        }
+    }
+
+    /**
+     * Values of an object in the column order of the table,
+     * objects without identifier get a random one, so they are always inserted.
+     */
+    private Object[] createRow(SqlTable table, StorageObject obj, String identifier) {
+        List<SqlColumn> columns = table.getColumns();
+        Object[] row = new Object[columns.size()];
+        row[0] = table.encodeIdentifier(identifier);
+
+        for (int i = 1; i < row.length; i++) {
+            SqlColumn column = columns.get(i);
+            StorageField field = column.field();
+            try {
+                Object value = field.get(obj);
+
+                if (value == null) {
+                    value = convertDefault(field);
+                }
+
+                row[i] = encodeValue(column.type(), value);
+            } catch (Exception e) {
+                logError("Error processing field: " + field.getFieldName(), e);
+            }
+        }
+        return row;
+    }
+
+    private Object encodeValue(SqlColumnType type, Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (type == SqlColumnType.JSON) {
+            return gson.toJson(toDocument(value));
+        }
+        if (type.isText()) {
+            return value instanceof Enum<?> constant ? constant.name() : value.toString();
+        }
+        return value;
+    }
+
+    private String extractIdentifier(StorageObject obj) {
+        StorageSchema schema = StorageSchema.of(obj.getClass());
+        return PluginConsumer.ofUnchecked(
+                () -> schema.extractIdentifier(obj),
+                e -> logError("Error with value from field: " + schema.getIdentifier().getFieldName(), e),
+                () -> null
+        );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> CompletableFuture<Optional<T>> loadByIdAsync(Class<T> clazz, String identifier) {
+        ensureDatabaseConnected();
+        return CompletableFuture.supplyAsync(() -> loadByIdSync(clazz, identifier));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> Optional<T> loadByIdSync(Class<T> clazz, String identifier) {
+        ensureDatabaseConnected();
+        T pending = findPendingWrite(clazz, identifier);
+        if (pending != null) {
+            return Optional.of(pending);
+        }
+        SqlTable table = getTable(clazz);
+        try {
+            return execute(connection -> {
+                PreparedStatement stmt = connection.prepareStatement(table.getSelectByIdSql());
+                stmt.setObject(1, table.encodeIdentifier(identifier));
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        T obj = instantiateDocument(clazz, readRow(rs, readLabels(rs)), identifier);
+                        return Optional.ofNullable(trackLoaded(obj));
+                    }
+                }
+                return Optional.empty();
+            });
+        } catch (SQLException e) {
+            logError("Error loading object id: " + identifier, e);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Only the columns of the requested fields are selected.
+     */
+    @Override
+    protected <T extends StorageObject> Optional<Map<String, Object>> loadFields(Class<T> clazz, String identifier, List<StorageField> fields) {
+        ensureDatabaseConnected();
+        SqlTable table = getTable(clazz);
+        List<SqlColumn> selected = new ArrayList<>(fields.size());
+        for (StorageField field : fields) {
+            SqlColumn column = table.getColumn(field.getName());
+            if (column != null) {
+                selected.add(column);
+            }
+        }
+        try {
+            return execute(connection -> {
+                PreparedStatement stmt = connection.prepareStatement(table.getSelectColumnsByIdSql(selected));
+                stmt.setObject(1, table.encodeIdentifier(identifier));
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        return Optional.of(decodeFields(fields, readRow(rs, readLabels(rs)), identifier));
+                    }
+                }
+                return Optional.<Map<String, Object>>empty();
+            });
+        } catch (SQLException e) {
+            logError("Error loading fields of object id: " + identifier, e);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Increments the columns with one batch of UPDATE statements per group of columns, in one transaction.
+     * @throws IllegalStateException if the increments can't be written
+     */
+    @Override
+    protected <T extends StorageObject> void applyIncrements(Class<T> clazz, Map<String, Map<String, Long>> deltas) {
+        ensureDatabaseConnected();
+        SqlTable table = getTable(clazz);
+        Map<List<SqlColumn>, List<Map.Entry<String, Map<String, Long>>>> groups = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<String, Long>> entry : deltas.entrySet()) {
+            List<SqlColumn> columns = new ArrayList<>(entry.getValue().size());
+            for (String key : entry.getValue().keySet()) {
+                columns.add(table.getColumn(key));
+            }
+            if (!columns.isEmpty()) {
+                groups.computeIfAbsent(columns, k -> new ArrayList<>()).add(entry);
+            }
+        }
+
+        try {
+            executeWrite(connection -> {
+                for (Map.Entry<List<SqlColumn>, List<Map.Entry<String, Map<String, Long>>>> group : groups.entrySet()) {
+                    PreparedStatement stmt = connection.prepareStatement(table.getIncrementSql(group.getKey()));
+                    stmt.clearBatch();
+                    for (Map.Entry<String, Map<String, Long>> entry : group.getValue()) {
+                        int i = 1;
+                        for (SqlColumn column : group.getKey()) {
+                            stmt.setLong(i++, entry.getValue().get(column.name()));
+                        }
+                        stmt.setObject(i, table.encodeIdentifier(entry.getKey()));
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                }
+                return null;
+            }, true);
+        } catch (SQLException e) {
+            logError("Can't increment " + deltas.size() + " objects at table " + table.getName(), e);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> CompletableFuture<Void> deleteByIdAsync(Class<T> clazz, String identifier) {
+        return CompletableFuture.runAsync(() -> deleteByIdSync(clazz, identifier));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> void deleteByIdSync(Class<T> clazz, String identifier) {
+        ensureDatabaseConnected();
+        cancelPendingWrite(clazz, identifier);
+        SqlTable table = getTable(clazz);
+        try {
+            executeWrite(connection -> {
+                PreparedStatement stmt = connection.prepareStatement(table.getDeleteByIdSql());
+                stmt.setObject(1, table.encodeIdentifier(identifier));
+                return stmt.executeUpdate();
+            }, false);
+        } catch (SQLException e) {
+            logError("Error removing object with id: " + identifier, e);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> CompletableFuture<Set<T>> loadAllAsync(Class<T> clazz) {
+        return CompletableFuture.supplyAsync(() -> loadAllSync(clazz));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> Set<T> loadAllSync(Class<T> clazz) {
+        try (Stream<T> stream = streamAll(clazz)) {
+            return stream.collect(Collectors.toCollection(HashSet::new));
+        }
+    }
+
+    /**
+     * Streams the table with a forward-only cursor, rows are fetched in groups of {@link #STREAM_BATCH_SIZE}.
+     * The stream keeps a pooled connection until it is closed.
+     */
+    @Override
+    public <T extends StorageObject> Stream<T> streamAll(Class<T> clazz, boolean parallel) {
+        return streamSelect(clazz, getTable(clazz).getSelectAllSql(), Collections.emptyList(), parallel);
+    }
+
+    /**
+     * Translates the query to a parameterized WHERE, ORDER BY and LIMIT.
+     */
+    @Override
+    public <T extends StorageObject> Stream<T> streamQuery(StorageQuery<T> query) {
+        SqlQueryWriter writer = SqlQueryWriter.select(query, getTable(query.getType()).getName());
+        return streamSelect(query.getType(), writer.getSql(), writer.getParameters(), false);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> long countQuery(StorageQuery<T> query) {
+        ensureDatabaseConnected();
+        SqlQueryWriter writer = SqlQueryWriter.count(query, getTable(query.getType()).getName());
+        try {
+            long count = execute(connection -> {
+                PreparedStatement stmt = connection.prepareStatement(writer.getSql());
+                bind(stmt, writer.getParameters());
+                try (ResultSet rs = stmt.executeQuery()) {
+                    return rs.next() ? rs.getLong(1) : 0L;
+                }
+            });
+            return query.hasLimit() ? Math.min(count, query.getLimit()) : count;
+        } catch (SQLException e) {
+            logError("Error counting objects from table " + query.getType().getSimpleName(), e);
+        }
+        return 0L;
+    }
+
+    private <T extends StorageObject> Stream<T> streamSelect(Class<T> clazz, String sql, List<Object> parameters, boolean parallel) {
+        ensureDatabaseConnected();
+        SqlTable table = getTable(clazz);
+
+        PooledConnection connection = null;
+        PreparedStatement stmt = null;
+        ResultSet rs;
+        try {
+            connection = pool.acquire();
+            Connection raw = connection.getConnection();
+            // PostgreSQL only uses a cursor for the fetch size inside a transaction
+            raw.setAutoCommit(false);
+            stmt = raw.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(STREAM_BATCH_SIZE);
+            bind(stmt, parameters);
+            rs = stmt.executeQuery();
+        } catch (SQLException e) {
+            if (connection != null) {
+                if (isConnectionError(e)) {
+                    connection.invalidate();
+                }
+                closeQuietly(stmt);
+                connection.close();
+            }
+            logError("Error loading objects from table " + clazz.getSimpleName(), e);
+            return Stream.empty();
+        }
+
+        PooledConnection borrowed = connection;
+        PreparedStatement statement = stmt;
+        return createStream(
+            new RowIterator(rs),
+            row -> instantiateDocument(clazz, row, table.decodeIdentifier(row.get(SqlTable.ID_COLUMN))),
+            parallel,
+            () -> {
+                closeQuietly(statement);
+                borrowed.close();
+            }
+        );
+    }
+
+    private static void bind(PreparedStatement stmt, List<Object> parameters) throws SQLException {
+        int i = 1;
+        for (Object parameter : parameters) {
+            stmt.setObject(i++, parameter);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends StorageObject> Map<String, T> loadByIdsSync(Class<T> clazz, Collection<String> identifiers) {
+        ensureDatabaseConnected();
+        Map<String, T> results = new HashMap<>();
+        List<String> missing = resolvePendingWrites(clazz, identifiers, results);
+        SqlTable table = getTable(clazz);
+
+        for (int from = 0; from < missing.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<String> chunk = missing.subList(from, Math.min(missing.size(), from + MAX_ROWS_PER_STATEMENT));
+            try {
+                execute(connection -> {
+                    PreparedStatement stmt = connection.prepareStatement(table.getSelectByIdsSql(chunk.size()));
+                    int i = 1;
+                    for (String identifier : chunk) {
+                        stmt.setObject(i++, table.encodeIdentifier(identifier));
+                    }
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        String[] labels = readLabels(rs);
+                        while (rs.next()) {
+                            Map<String, Object> row = readRow(rs, labels);
+                            String id = table.decodeIdentifier(row.get(SqlTable.ID_COLUMN));
+                            T obj = trackLoaded(instantiateDocument(clazz, row, id));
+                            if (obj != null) {
+                                results.put(id, obj);
+                            }
+                        }
+                    }
+                    return null;
+                });
+            } catch (SQLException e) {
+                logError("Error loading " + chunk.size() + " objects from table " + table.getName(), e);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Deletes the identifiers in chunks, when a chunk fails the previous chunks stay deleted
+     * and the error is thrown as an {@link IllegalStateException}.
+     */
+    @Override
+    public <T extends StorageObject> void deleteByIdsSync(Class<T> clazz, Collection<String> identifiers) {
+        ensureDatabaseConnected();
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(identifiers));
+        ids.remove(null);
+        for (String identifier : ids) {
+            cancelPendingWrite(clazz, identifier);
+        }
+
+        SqlTable table = getTable(clazz);
+        for (int from = 0; from < ids.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<String> chunk = ids.subList(from, Math.min(ids.size(), from + MAX_ROWS_PER_STATEMENT));
+            try {
+                executeWrite(connection -> {
+                    PreparedStatement stmt = connection.prepareStatement(table.getDeleteByIdsSql(chunk.size()));
+                    int i = 1;
+                    for (String identifier : chunk) {
+                        stmt.setObject(i++, table.encodeIdentifier(identifier));
+                    }
+                    return stmt.executeUpdate();
+                }, false);
+            } catch (SQLException e) {
+                logError("Error removing " + chunk.size() + " objects from table " + table.getName(), e);
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    protected void ensureDatabaseConnected() {
+        if (pool == null || pool.isClosed()) {
+            throw new IllegalStateException("Can't find connection established.");
+        }
+    }
+
+    /* ──────────────────────────────────────────────────────────────────────
+       MÉTODOS DE INSTANCIACIÓN Y CONVERSIÓN
+       ────────────────────────────────────────────────────────────────────── */
+
+    /**
+     * JSON columns are read as text (PGobject for JSONB) and parsed before the conversion.
+     */
+    @Override
+    protected Object decodeValue(Class<?> type, Class<?> keyType, Class<?> elementType, Object value) {
+        boolean document = isComplexObject(type) || type.isArray() || Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type);
+        if (document && value != null && !(value instanceof Map<?, ?>) && !(value instanceof List<?>)) {
+            try {
+                value = gson.fromJson(value.toString(), Object.class);
+            } catch (JsonParseException e) {
+                logError("Can't read JSON value of type " + type.getSimpleName(), e);
+                return null;
+            }
+        }
+        return super.decodeValue(type, keyType, elementType, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void closeConnection() {
+        shutdownWriteBehind();
+        disconnect();
+    }
+
+    @Override
+    public String getStorageIdentity() {
+        return getClass().getName() + ":" + url;
+    }
+
+    private static String[] readLabels(ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        String[] labels = new String[metaData.getColumnCount()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = metaData.getColumnLabel(i + 1);
+        }
+        return labels;
+    }
+
+    /**
+     * Copies the current row, so it can be decoded after the cursor moves.
+     * Column names are case-insensitive like {@link ResultSet#getObject(String)}.
+     */
+    private static Map<String, Object> readRow(ResultSet rs, String[] labels) throws SQLException {
+        Map<String, Object> row = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (int i = 0; i < labels.length; i++) {
+            row.put(labels[i], rs.getObject(i + 1));
+        }
+        return row;
+    }
+
+    private static void closeQuietly(Statement statement) {
+        if (statement != null) {
+            try {
+                statement.close();
+            } catch (SQLException ignored) { }
+        }
+    }
+
+    /**
+     * Reads the rows of a result set one by one, the result set is closed when the last row is read.
+     */
+    private static class RowIterator implements Iterator<Map<String, Object>> {
+        private final ResultSet resultSet;
+        private String[] labels;
+        private Map<String, Object> next;
+        private boolean finished = false;
+
+        private RowIterator(ResultSet resultSet) {
+            this.resultSet = resultSet;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) {
+                return true;
+            }
+            if (finished) {
+                return false;
+            }
+            try {
+                if (labels == null) {
+                    labels = readLabels(resultSet);
+                }
+                if (resultSet.next()) {
+                    next = readRow(resultSet, labels);
+                    return true;
+                }
+                finished = true;
+                resultSet.close();
+                return false;
+            } catch (SQLException e) {
+                finished = true;
+                throw new IllegalStateException("Can't read the next row", e);
+            }
+        }
+
+        @Override
+        public Map<String, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Map<String, Object> row = next;
+            next = null;
+            return row;
+        }
+    }
+
+    /**
+     * Row of a save, changed has the indexes of the changed columns or null to write the whole row
+     */
+    private record RowWrite(StorageObject object, String identifier, Object[] row, List<Integer> changed, Map<String, Object> document) {
+
+    }
+
+    @FunctionalInterface
+    protected interface SqlFunction<R> {
+        R apply(PooledConnection connection) throws SQLException;
+    }
+}
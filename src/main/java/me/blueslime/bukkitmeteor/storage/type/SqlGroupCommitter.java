@@ -0,0 +1,223 @@
+package me.blueslime.bukkitmeteor.storage.type;
+
+import me.blueslime.bukkitmeteor.storage.sql.PooledConnection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Single writer of an embedded database.
+ * <p>
+ * Writes from every thread are queued and executed by one thread, the writes waiting in the queue
+ * are executed in the same transaction and committed together, so a burst of saves costs a single fsync.
+ * Transactional writes have their own savepoint, a failed write is rolled back without failing the rest of its group.
+ * Writes submitted by the writer thread itself, from inside another write, run inline in the current transaction.
+ */
+class SqlGroupCommitter {
+
+    private static final long POLL_INTERVAL = 100L;
+
+    private final BlockingQueue<Task<?>> queue = new LinkedBlockingQueue<>();
+    private final Object lock = new Object();
+    private final SqlDatabaseService database;
+    private final long writeTimeout;
+    private final int maxGroupSize;
+    private final Thread thread;
+
+    // Solo se usa en el hilo de escritura
+    private PooledConnection active = null;
+
+    // Se escribe con lock, así ninguna escritura entra en la cola después de cerrar
+    private volatile boolean closed = false;
+
+    SqlGroupCommitter(SqlDatabaseService database, int maxGroupSize, long writeTimeout, String name) {
+        this.maxGroupSize = Math.max(1, maxGroupSize);
+        this.writeTimeout = Math.max(1L, writeTimeout);
+        this.database = database;
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Queues a write and waits until its group is committed
+     * @param function to execute
+     * @param transaction true if the function must be rolled back completely when it fails
+     * @return function result
+     * @param <R> result type
+     * @throws SQLException if the write or the commit fails, or the commit is not done in the write timeout
+     */
+    <R> R submit(SqlDatabaseService.SqlFunction<R> function, boolean transaction) throws SQLException {
+        if (Thread.currentThread() == thread) {
+            // Escritura anidada, el hilo de escritura no puede esperar a su propio grupo
+            if (active == null) {
+                return transaction ? database.executeTransaction(function) : database.execute(function);
+            }
+            return execute(active, function, transaction);
+        }
+        Task<R> task = new Task<>(function, transaction);
+        synchronized (lock) {
+            if (closed) {
+                throw new SQLException("Database writer is closed.");
+            }
+            queue.add(task);
+        }
+        try {
+            return task.future.get(writeTimeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (queue.remove(task)) {
+                throw new SQLException("Timed out waiting for the commit, the write was not executed.", e);
+            }
+            throw new SQLException("Timed out waiting for the commit, the write may still be committed.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the commit.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException exception) {
+                throw exception;
+            }
+            if (cause instanceof RuntimeException exception) {
+                throw exception;
+            }
+            throw new SQLException(cause);
+        }
+    }
+
+    /**
+     * Stops accepting writes and waits until the queued writes are committed
+     * @param timeout in milliseconds
+     */
+    void close(long timeout) {
+        synchronized (lock) {
+            closed = true;
+        }
+        try {
+            thread.join(timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        failQueued();
+    }
+
+    int getQueueSize() {
+        return queue.size();
+    }
+
+    private void run() {
+        List<Task<?>> group = new ArrayList<>(maxGroupSize);
+        try {
+            while (!closed || !queue.isEmpty()) {
+                Task<?> first = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                queue.drainTo(group, maxGroupSize - 1);
+                commit(group);
+                group.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // Sin hilo de escritura nadie completaría las escrituras que quedan
+            synchronized (lock) {
+                closed = true;
+            }
+            for (Task<?> task : group) {
+                task.future.completeExceptionally(new SQLException("Database writer is closed."));
+            }
+            failQueued();
+        }
+    }
+
+    private void failQueued() {
+        Task<?> task;
+        while ((task = queue.poll()) != null) {
+            task.future.completeExceptionally(new SQLException("Database writer is closed."));
+        }
+    }
+
+    private void commit(List<Task<?>> group) {
+        try {
+            database.executeTransaction(connection -> {
+                active = connection;
+                try {
+                    for (Task<?> task : group) {
+                        task.execute(connection);
+                    }
+                } finally {
+                    active = null;
+                }
+                return null;
+            });
+        } catch (SQLException | RuntimeException e) {
+            for (Task<?> task : group) {
+                task.future.completeExceptionally(e);
+            }
+            return;
+        }
+        for (Task<?> task : group) {
+            task.complete();
+        }
+    }
+
+    /**
+     * Executes a write in the transaction of the group, transactional writes inside a savepoint.
+     * Non transactional writes keep the statements executed before a failure, like with auto-commit.
+     */
+    private static <R> R execute(PooledConnection connection, SqlDatabaseService.SqlFunction<R> function, boolean transaction) throws SQLException {
+        if (!transaction) {
+            return function.apply(connection);
+        }
+        Connection raw = connection.getConnection();
+        Savepoint savepoint = raw.setSavepoint();
+        try {
+            R result = function.apply(connection);
+            raw.releaseSavepoint(savepoint);
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            raw.rollback(savepoint);
+            throw e;
+        }
+    }
+
+    private static class Task<R> {
+        private final CompletableFuture<R> future = new CompletableFuture<>();
+        private final SqlDatabaseService.SqlFunction<R> function;
+        private final boolean transaction;
+
+        private Exception error;
+        private R result;
+
+        private Task(SqlDatabaseService.SqlFunction<R> function, boolean transaction) {
+            this.transaction = transaction;
+            this.function = function;
+        }
+
+        private void execute(PooledConnection connection) {
+            try {
+                result = SqlGroupCommitter.execute(connection, function, transaction);
+            } catch (SQLException | RuntimeException e) {
+                error = e;
+            }
+        }
+
+        private void complete() {
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+}
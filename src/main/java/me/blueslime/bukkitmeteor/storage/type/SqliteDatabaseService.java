@@ -0,0 +1,195 @@
+package me.blueslime.bukkitmeteor.storage.type;
+
+import me.blueslime.bukkitmeteor.implementation.Implements;
+import me.blueslime.bukkitmeteor.logs.MeteorLogger;
+import me.blueslime.bukkitmeteor.storage.StorageDatabase;
+import me.blueslime.bukkitmeteor.storage.sql.SqlColumnType;
+import me.blueslime.bukkitmeteor.storage.sql.SqlPoolSettings;
+
+import java.io.File;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Embedded database stored in a single SQLite file, it don't need an external server.
+ * <p>
+ * The file uses WAL mode, so loads read in parallel with the pooled connections while every write
+ * goes through a single writer thread that commits the queued writes together.
+ * Tables, columns and queries are shared with the other SQL services.
+ */
+@SuppressWarnings("unused")
+public class SqliteDatabaseService extends SqlDatabaseService {
+
+    /**
+     * Old SQLite versions don't accept more than 999 parameters in a statement.
+     */
+    private static final int MAX_PARAMETERS = 999;
+    private static final int MAX_GROUP_SIZE = 500;
+    private static final long CLOSE_TIMEOUT = 30_000L;
+    private static final long WRITE_TIMEOUT = 60_000L;
+
+    private final File file;
+
+    private SqlGroupCommitter committer;
+
+    /**
+     * Crea la base de datos en el archivo data.db de la carpeta del plugin.
+     * @param register para Implements.
+     */
+    public SqliteDatabaseService(RegistrationType register) {
+        this(register, null);
+    }
+
+    /**
+     * Crea la base de datos en el archivo data.db de la carpeta del plugin.
+     * @param register para Implements.
+     * @param identifier para Implements.
+     */
+    public SqliteDatabaseService(RegistrationType register, String identifier) {
+        this(new File(Implements.fetch(File.class, "folder"), "data.db"), null, register, identifier);
+    }
+
+    /**
+     * Crea la base de datos en un archivo.
+     * @param file de la base de datos.
+     * @param settings del pool de conexiones de lectura.
+     * @param register para Implements.
+     * @param identifier para Implements.
+     */
+    public SqliteDatabaseService(File file, SqlPoolSettings settings, RegistrationType register, String identifier) {
+        super(
+            "jdbc:sqlite:" + file.getAbsolutePath() + "?journal_mode=WAL&synchronous=NORMAL&busy_timeout=10000&foreign_keys=true",
+            null,
+            null,
+            settings == null ? SqlPoolSettings.create().setMinimumSize(1).setMaximumSize(4) : settings
+        );
+        this.file = file;
+
+        if (register == null) {
+            register = RegistrationType.DONT_REGISTER;
+        }
+
+        if (register.isDouble() || register.isOnlyThis()) {
+            registerImpl(SqliteDatabaseService.class, identifier, this, true);
+        }
+
+        if (register.isDouble()) {
+            registerImpl(StorageDatabase.class, identifier, this, true);
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return writes waiting for the writer thread
+     */
+    public int getPendingWrites() {
+        SqlGroupCommitter current = committer;
+        return current == null ? 0 : current.getQueueSize();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void connect() {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            fetch(MeteorLogger.class).warn("Can't create folder for database file: " + file.getPath());
+        }
+
+        super.connect();
+
+        if (getConnectionPool() == null || getConnectionPool().isClosed()) {
+            return;
+        }
+
+        try {
+            String mode = execute(connection -> {
+                try (Statement statement = connection.getConnection().createStatement();
+                     ResultSet rs = statement.executeQuery("PRAGMA journal_mode=WAL")) {
+                    return rs.next() ? rs.getString(1) : null;
+                }
+            });
+            if (!"wal".equalsIgnoreCase(mode)) {
+                fetch(MeteorLogger.class).warn("Can't enable WAL mode at " + file.getName() + ", journal mode: " + mode);
+            }
+        } catch (SQLException e) {
+            logError("Can't enable WAL mode at " + file.getName(), e);
+        }
+
+        committer = new SqlGroupCommitter(this, MAX_GROUP_SIZE, WRITE_TIMEOUT, "BukkitMeteor-SqliteWriter");
+    }
+
+    /**
+     * Pending writes are committed before the connections are closed.
+     */
+    @Override
+    public void disconnect() {
+        if (committer != null) {
+            committer.close(CLOSE_TIMEOUT);
+            committer = null;
+        }
+        super.disconnect();
+    }
+
+    /**
+     * Every write goes through the writer thread, so they never wait for the SQLite write lock.
+     * Transactional writes are rolled back to their own savepoint when they fail.
+     */
+    @Override
+    protected <R> R executeWrite(SqlFunction<R> function, boolean transaction) throws SQLException {
+        SqlGroupCommitter current = committer;
+        if (current == null) {
+            return super.executeWrite(function, transaction);
+        }
+        return current.submit(function, transaction);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int getMaxParameters() {
+        return MAX_PARAMETERS;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected String getDriverClass() {
+        return "org.sqlite.JDBC";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected String createUpsertClause(List<String> columns) {
+        List<String> updates = new ArrayList<>();
+        for (String col : columns) {
+            if (col.equals("_id")) continue;
+            updates.add(col + " = excluded." + col);
+        }
+        return "ON CONFLICT (_id) DO UPDATE SET " + String.join(", ", updates);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected String getColumnType(SqlColumnType type) {
+        return switch (type) {
+            case IDENTIFIER, VARCHAR, TEXT, JSON -> "TEXT";
+            case INTEGER, BIGINT, BOOLEAN -> "INTEGER";
+            case DOUBLE -> "REAL";
+            case UUID_IDENTIFIER -> "BLOB";
+        };
+    }
+}
@@ -0,0 +1,344 @@
+package me.blueslime.bukkitmeteor.storage.write;
+
+import me.blueslime.bukkitmeteor.implementation.Implements;
+import me.blueslime.bukkitmeteor.logs.MeteorLogger;
+import me.blueslime.bukkitmeteor.storage.StorageDatabase;
+import me.blueslime.bukkitmeteor.storage.StorageSchema;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write-behind layer of a {@link StorageDatabase}.
+ * <p>
+ * Only the latest state of each (class, identifier) is kept, superseded saves share the same future,
+ * and the pending objects are written in batches when the max batch size is reached or the flush interval passes.
+ * <p>
+ * Objects stay pending until their batch is written, so loads see them during the write. A save queued while
+ * its object is being written is kept as a new pending state and written by the next batch, and the objects
+ * of a failed batch are queued again unless a newer state replaced them.
+ */
+public class WriteBehindQueue {
+
+    private final Map<Object, PendingWrite> pending = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock stateLock = new ReentrantReadWriteLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private final WriteBehindSettings settings;
+    private final StorageDatabase database;
+
+    private ScheduledExecutorService executor;
+    private volatile Thread writer = null;
+    private volatile boolean closed = false;
+
+    public WriteBehindQueue(StorageDatabase database, WriteBehindSettings settings) {
+        this.settings = settings == null ? WriteBehindSettings.create() : settings;
+        this.database = database;
+    }
+
+    /**
+     * Starts the periodic flush task.
+     */
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "BukkitMeteor-WriteBehind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::flush, settings.getFlushInterval(), settings.getFlushInterval(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues an object, if this object is already pending the previous state is replaced.
+     * @param obj to save
+     * @return future completed when the object is written, or null if this queue is closed.
+     */
+    public CompletableFuture<Void> enqueue(StorageObject obj) {
+        stateLock.readLock().lock();
+        try {
+            if (closed) {
+                return null;
+            }
+
+            String identifier = StorageSchema.of(obj.getClass()).extractIdentifier(obj);
+            Object key = identifier == null ? new Object() : new PendingKey(obj.getClass(), identifier);
+
+            PendingWrite write = pending.compute(key, (k, current) -> {
+                if (current == null) {
+                    // Cerrando, solo se aceptan objetos que ya están pendientes para no escribirlos en otro orden
+                    return closed ? null : new PendingWrite(k, obj, null);
+                }
+                if (current.inFlight) {
+                    // Las escrituras no se solapan, el estado anterior ya se escribió
+                    current.previous = null;
+                    return new PendingWrite(k, obj, current);
+                }
+                coalesced.increment();
+                current.object = obj;
+                return current;
+            });
+
+            if (write == null) {
+                return null;
+            }
+            if (!closed && pending.size() >= settings.getMaxBatchSize() && flushRequested.compareAndSet(false, true)) {
+                executor.execute(this::flush);
+            }
+            return write.future;
+        } finally {
+            stateLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the pending state of an object
+     * @param clazz of the object
+     * @param identifier of the object
+     * @return pending object or null if this object is not waiting to be written.
+     */
+    public <T extends StorageObject> T getPending(Class<T> clazz, String identifier) {
+        PendingWrite write = pending.get(new PendingKey(clazz, identifier));
+        if (write == null || !clazz.isInstance(write.object)) {
+            return null;
+        }
+        return clazz.cast(write.object);
+    }
+
+    /**
+     * Removes a pending object, used when the object is deleted before being written.
+     * If the object is being written this method waits for the write, so a delete after it is not overwritten.
+     * @param clazz of the object
+     * @param identifier of the object
+     */
+    public void cancel(Class<?> clazz, String identifier) {
+        PendingWrite write = pending.remove(new PendingKey(clazz, identifier));
+        if (write == null) {
+            return;
+        }
+        PendingWrite running = write.inFlight ? write : write.previous;
+        if (!write.inFlight) {
+            write.future.complete(null);
+        }
+        if (running == null || running.future.isDone() || writer == Thread.currentThread()) {
+            return;
+        }
+        try {
+            running.future.get(settings.getDrainTimeout(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ignored) {
+            // Ya se registró en la escritura
+        } catch (TimeoutException e) {
+            Implements.fetch(MeteorLogger.class).warn("The write of " + clazz.getSimpleName() + " id " + identifier + " is still running after " + settings.getDrainTimeout() + "ms");
+        }
+    }
+
+    /**
+     * Writes all pending objects in the caller thread.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushRequested.set(false);
+            drain(pending.size());
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Stops the periodic task and writes everything that is pending,
+     * saves queued after this call are only accepted for objects that are still pending.
+     */
+    public void close() {
+        stateLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+
+        if (executor != null) {
+            executor.shutdown();
+        }
+
+        boolean locked = false;
+        try {
+            locked = flushLock.tryLock(settings.getDrainTimeout(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!locked) {
+            Implements.fetch(MeteorLogger.class).warn(
+                "A write-behind flush is still running after " + settings.getDrainTimeout() + "ms, " + pending.size() + " objects may not be written"
+            );
+            return;
+        }
+
+        try {
+            boolean written = true;
+            while (written && !pending.isEmpty()) {
+                written = drain(pending.size());
+            }
+            if (!pending.isEmpty()) {
+                Implements.fetch(MeteorLogger.class).warn("Can't write " + pending.size() + " objects of the write-behind queue before closing it");
+                IllegalStateException failure = new IllegalStateException("The write-behind queue was closed before the object was written");
+                for (Object key : pending.keySet()) {
+                    PendingWrite write = pending.remove(key);
+                    if (write != null) {
+                        write.future.completeExceptionally(failure);
+                    }
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public int getPendingSize() {
+        return pending.size();
+    }
+
+    /**
+     * @return saves that replaced a pending state instead of being written
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public long getWritten() {
+        return written.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * Writes pending objects in batches, the caller must hold the flush lock.
+     * @param limit of objects to write
+     * @return false if a batch failed
+     */
+    private boolean drain(int limit) {
+        int processed = 0;
+        while (processed < limit && !pending.isEmpty()) {
+            List<PendingWrite> batch = new ArrayList<>(Math.min(limit - processed, settings.getMaxBatchSize()));
+            for (PendingWrite candidate : pending.values()) {
+                if (batch.size() >= settings.getMaxBatchSize()) {
+                    break;
+                }
+                // El estado se fija junto a enqueue, los guardados posteriores crean otro estado pendiente
+                pending.computeIfPresent(candidate.key, (k, current) -> {
+                    if (current == candidate && !current.inFlight) {
+                        current.inFlight = true;
+                        batch.add(current);
+                    }
+                    return current;
+                });
+            }
+            if (batch.isEmpty()) {
+                return true;
+            }
+            processed += batch.size();
+            if (!write(batch)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean write(List<PendingWrite> batch) {
+        List<StorageObject> objects = new ArrayList<>(batch.size());
+        for (PendingWrite write : batch) {
+            objects.add(write.object);
+        }
+
+        RuntimeException failure = null;
+        writer = Thread.currentThread();
+        try {
+            database.saveAllSync(objects);
+        } catch (RuntimeException e) {
+            failure = e;
+        } finally {
+            writer = null;
+        }
+
+        if (failure == null) {
+            written.add(batch.size());
+            for (PendingWrite write : batch) {
+                pending.remove(write.key, write);
+                write.future.complete(null);
+            }
+            return true;
+        }
+
+        failed.add(batch.size());
+        for (PendingWrite write : batch) {
+            // Se vuelve a encolar si no se canceló ni fue reemplazado por un estado más nuevo
+            pending.replace(write.key, write, new PendingWrite(write.key, write.object, null));
+            write.future.completeExceptionally(failure);
+        }
+        return false;
+    }
+
+    private static class PendingWrite {
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private final Object key;
+        private volatile PendingWrite previous;
+        private volatile StorageObject object;
+        private volatile boolean inFlight = false;
+
+        /**
+         * @param previous state that is being written when this state was queued, or null
+         */
+        private PendingWrite(Object key, StorageObject object, PendingWrite previous) {
+            this.previous = previous;
+            this.object = object;
+            this.key = key;
+        }
+    }
+
+    private static class PendingKey {
+        private final Class<?> clazz;
+        private final String identifier;
+
+        private PendingKey(Class<?> clazz, String identifier) {
+            this.clazz = clazz;
+            this.identifier = identifier;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof PendingKey key)) return false;
+            return clazz.equals(key.clazz) && identifier.equals(key.identifier);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(clazz, identifier);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package me.blueslime.bukkitmeteor.storage.write;
+
+/**
+ * Settings of a {@link WriteBehindQueue}
+ */
+public class WriteBehindSettings {
+
+    private long flushInterval = 1_000L;
+    private int maxBatchSize = 500;
+    private long drainTimeout = 30_000L;
+
+    private WriteBehindSettings() {
+
+    }
+
+    public static WriteBehindSettings create() {
+        return new WriteBehindSettings();
+    }
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    /**
+     * Time between periodic flushes.
+     * @param flushInterval in milliseconds
+     * @return settings
+     */
+    public WriteBehindSettings setFlushInterval(long flushInterval) {
+        this.flushInterval = Math.max(1L, flushInterval);
+        return this;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * When this amount of objects is pending a flush starts without waiting for the interval,
+     * it is also the max amount of objects written in one batch.
+     * @param maxBatchSize of a flush
+     * @return settings
+     */
+    public WriteBehindSettings setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        return this;
+    }
+
+    public long getDrainTimeout() {
+        return drainTimeout;
+    }
+
+    /**
+     * Max time waiting for an in-progress flush when the queue is closed.
+     * @param drainTimeout in milliseconds
+     * @return settings
+     */
+    public WriteBehindSettings setDrainTimeout(long drainTimeout) {
+        this.drainTimeout = drainTimeout;
+        return this;
+    }
+}
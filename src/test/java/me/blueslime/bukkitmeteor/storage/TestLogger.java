@@ -0,0 +1,54 @@
+package me.blueslime.bukkitmeteor.storage;
+
+import me.blueslime.bukkitmeteor.implementation.Implements;
+import me.blueslime.bukkitmeteor.logs.LoggerType;
+import me.blueslime.bukkitmeteor.logs.MeteorLogger;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Logger that keeps the messages in memory, the storage services log through it without a server.
+ */
+public class TestLogger implements MeteorLogger {
+
+    private final List<String> messages = new CopyOnWriteArrayList<>();
+
+    /**
+     * Registers a new logger for {@link Implements#fetch(Class)}
+     * @return logger
+     */
+    public static TestLogger install() {
+        TestLogger logger = new TestLogger();
+        Implements.setEntry(MeteorLogger.class, logger);
+        return logger;
+    }
+
+    @Override
+    public void send(String... message) {
+        messages.addAll(List.of(message));
+    }
+
+    @Override
+    public MeteorLogger setPrefix(LoggerType log, String prefix) {
+        return this;
+    }
+
+    @Override
+    public String getPrefix(LoggerType prefix) {
+        return "[" + prefix.name() + "] ";
+    }
+
+    @Override
+    public void build() {
+
+    }
+
+    public List<String> getMessages() {
+        return messages;
+    }
+
+    public boolean contains(String text) {
+        return messages.stream().anyMatch(message -> message.contains(text));
+    }
+}
@@ -0,0 +1,45 @@
+package me.blueslime.bukkitmeteor.storage;
+
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageConstructor;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageIdentifier;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageKey;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageObject;
+
+/**
+ * Small stored object used by the storage tests.
+ */
+public class TestProfile implements StorageObject {
+
+    @StorageIdentifier
+    @StorageKey(key = "id")
+    private final String id;
+
+    @StorageKey(key = "name")
+    private final String name;
+
+    @StorageKey(key = "coins")
+    private final long coins;
+
+    @StorageConstructor
+    public TestProfile(
+        @StorageIdentifier @StorageKey(key = "id") String id,
+        @StorageKey(key = "name") String name,
+        @StorageKey(key = "coins") long coins
+    ) {
+        this.id = id;
+        this.name = name;
+        this.coins = coins;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCoins() {
+        return coins;
+    }
+}
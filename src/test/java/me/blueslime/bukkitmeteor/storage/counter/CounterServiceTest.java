@@ -0,0 +1,133 @@
+package me.blueslime.bukkitmeteor.storage.counter;
+
+import me.blueslime.bukkitmeteor.storage.TestLogger;
+import me.blueslime.bukkitmeteor.storage.TestProfile;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageObject;
+import me.blueslime.bukkitmeteor.storage.type.JsonDatabaseService;
+import me.blueslime.bukkitmeteor.storage.type.RegistrationType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Concurrent increments written by the flushes, and deltas of a failed flush written by the next one.
+ */
+class CounterServiceTest {
+
+    private static final int THREADS = 8;
+    private static final int INCREMENTS = 1_000;
+
+    @TempDir
+    Path folder;
+
+    private FailingDatabase database;
+    private CounterService counters;
+
+    @BeforeEach
+    void setUp() {
+        TestLogger.install();
+        database = new FailingDatabase(folder.toFile());
+        database.saveOrUpdateSync(new TestProfile("alpha", "Alpha", 0));
+        // El intervalo largo deja las escrituras a flush
+        counters = new CounterService(database, CounterSettings.create().setFlushInterval(60_000L));
+    }
+
+    @Test
+    void concurrentIncrementsAreFlushed() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < INCREMENTS; i++) {
+                    counters.increment(TestProfile.class, "alpha", "coins", 1);
+                    if (i % 250 == 0) {
+                        counters.flush();
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        counters.flush().join();
+
+        long total = (long) THREADS * INCREMENTS;
+        assertEquals(0, counters.getPending(TestProfile.class, "alpha", "coins"));
+        assertEquals(total, stored());
+        assertEquals(total, counters.getSync(TestProfile.class, "alpha", "coins"));
+        counters.shutdown();
+    }
+
+    @Test
+    void failedFlushesAreRetried() {
+        database.failing.set(true);
+        counters.increment(TestProfile.class, "alpha", "coins", 5);
+        counters.flush().join();
+
+        assertEquals(1, counters.getFailed());
+        assertEquals(5, counters.getPending(TestProfile.class, "alpha", "coins"));
+        assertEquals(0, stored());
+
+        database.failing.set(false);
+        counters.increment(TestProfile.class, "alpha", "coins", 2);
+        counters.flush().join();
+
+        assertEquals(0, counters.getPending(TestProfile.class, "alpha", "coins"));
+        assertEquals(7, stored());
+        counters.shutdown();
+    }
+
+    @Test
+    void shutdownWritesThePendingDeltas() {
+        counters.increment(new TestProfile("alpha", "Alpha", 0), "coins", 3);
+        counters.shutdown();
+
+        assertEquals(3, stored());
+    }
+
+    @Test
+    void onlyNumericFieldsCanBeIncremented() {
+        assertThrows(IllegalArgumentException.class, () -> counters.increment(TestProfile.class, "alpha", "name", 1));
+        counters.shutdown();
+    }
+
+    private long stored() {
+        return database.loadByIdSync(TestProfile.class, "alpha").orElseThrow().getCoins();
+    }
+
+    /**
+     * Database whose increments can be made to fail.
+     */
+    private static class FailingDatabase extends JsonDatabaseService {
+
+        private final AtomicBoolean failing = new AtomicBoolean(false);
+
+        private FailingDatabase(File folder) {
+            super(folder, null, RegistrationType.DONT_REGISTER, null);
+        }
+
+        @Override
+        public <T extends StorageObject> CompletableFuture<Void> incrementAsync(Class<T> clazz, Map<String, Map<String, Long>> deltas) {
+            if (failing.get()) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Can't increment " + deltas.keySet()));
+            }
+            return super.incrementAsync(clazz, deltas);
+        }
+    }
+}
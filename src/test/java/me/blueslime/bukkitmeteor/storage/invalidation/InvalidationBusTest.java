@@ -0,0 +1,202 @@
+package me.blueslime.bukkitmeteor.storage.invalidation;
+
+import me.blueslime.bukkitmeteor.storage.TestLogger;
+import me.blueslime.bukkitmeteor.storage.TestProfile;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageObject;
+import me.blueslime.bukkitmeteor.storage.type.JsonDatabaseService;
+import me.blueslime.bukkitmeteor.storage.type.RegistrationType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Batches sent between two buses over an in-memory transport.
+ */
+class InvalidationBusTest {
+
+    @TempDir
+    Path folder;
+
+    private final List<InvalidationBus> buses = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        TestLogger.install();
+    }
+
+    @AfterEach
+    void tearDown() {
+        buses.forEach(InvalidationBus::shutdown);
+    }
+
+    @Test
+    void batchesAreDecodedByTheOtherServers() throws InterruptedException {
+        Network network = new Network(1_024);
+        InvalidationBus local = bus(network);
+        InvalidationBus remote = bus(network);
+
+        List<InvalidationMessage> localMessages = new CopyOnWriteArrayList<>();
+        List<InvalidationMessage> remoteMessages = new CopyOnWriteArrayList<>();
+        local.subscribe(localMessages::add);
+        remote.subscribe(remoteMessages::add);
+
+        local.publish(TestProfile.class, "alpha", false);
+        local.publish(TestProfile.class, "beta", true);
+        // El mismo objeto se envía una sola vez con su último estado
+        local.publish(TestProfile.class, "alpha", true);
+        local.flush();
+
+        await(remoteMessages, 2);
+        assertEquals(
+            List.of(new InvalidationMessage(TestProfile.class, "alpha", true), new InvalidationMessage(TestProfile.class, "beta", true)),
+            remoteMessages
+        );
+        assertEquals(2, remote.getReceived());
+        assertEquals(0, remote.getDropped());
+
+        // Los lotes propios se ignoran
+        assertEquals(List.of(), localMessages);
+        assertEquals(0, local.getReceived());
+    }
+
+    @Test
+    void bigQueuesAreSplitInBatches() throws InterruptedException {
+        Network network = new Network(128);
+        InvalidationBus local = bus(network);
+        InvalidationBus remote = bus(network);
+
+        List<InvalidationMessage> messages = new CopyOnWriteArrayList<>();
+        remote.subscribe(messages::add);
+
+        for (int i = 0; i < 100; i++) {
+            local.publish(TestProfile.class, "profile-" + i, false);
+        }
+        local.flush();
+
+        await(messages, 100);
+        assertTrue(local.getBatches() > 1, "Batches: " + local.getBatches());
+        assertTrue(network.sizes.stream().allMatch(size -> size <= 128), "Batch sizes: " + network.sizes);
+        for (int i = 0; i < 100; i++) {
+            assertEquals("profile-" + i, messages.get(i).identifier());
+        }
+    }
+
+    @Test
+    void invalidBatchesAreDropped() {
+        Network network = new Network(1_024);
+        InvalidationBus remote = bus(network);
+
+        network.send(new byte[] { 2, 0, 0 });
+        network.send(new byte[] { 99 });
+
+        assertEquals(2, remote.getDropped());
+        assertEquals(0, remote.getReceived());
+    }
+
+    @Test
+    void failedSavesArePublished() throws InterruptedException {
+        Network network = new Network(1_024);
+        InvalidationBus local = bus(network);
+        InvalidationBus remote = bus(network);
+
+        List<InvalidationMessage> messages = new CopyOnWriteArrayList<>();
+        remote.subscribe(messages::add);
+
+        InvalidatingStorageDatabase database = new InvalidatingStorageDatabase(
+            new FailingDatabase(folder.toFile()), local, RegistrationType.DONT_REGISTER
+        );
+        assertThrows(IllegalStateException.class, () -> database.saveOrUpdateSync(new TestProfile("alpha", "Alpha", 1)));
+        assertTrue(database.saveOrUpdateAsync(new TestProfile("beta", "Beta", 2)).isCompletedExceptionally());
+        local.flush();
+
+        await(messages, 2);
+        assertEquals(List.of("alpha", "beta"), messages.stream().map(InvalidationMessage::identifier).toList());
+    }
+
+    private InvalidationBus bus(Network network) {
+        InvalidationBus bus = new InvalidationBus(network.connect(), InvalidationSettings.create().setFlushInterval(5_000L));
+        buses.add(bus);
+        return bus;
+    }
+
+    private static void await(List<?> messages, int amount) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000L;
+        while (messages.size() < amount && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertEquals(amount, messages.size());
+    }
+
+    /**
+     * Sends every batch to every connected transport, including the sender.
+     */
+    private static class Network {
+
+        private final List<Consumer<byte[]>> receivers = new CopyOnWriteArrayList<>();
+        private final List<Integer> sizes = new CopyOnWriteArrayList<>();
+        private final int maxPayload;
+
+        private Network(int maxPayload) {
+            this.maxPayload = maxPayload;
+        }
+
+        private void send(byte[] payload) {
+            sizes.add(payload.length);
+            receivers.forEach(receiver -> receiver.accept(payload));
+        }
+
+        private InvalidationTransport connect() {
+            return new InvalidationTransport() {
+                @Override
+                public void start(Consumer<byte[]> receiver) {
+                    receivers.add(receiver);
+                }
+
+                @Override
+                public void send(byte[] payload) {
+                    Network.this.send(payload);
+                }
+
+                @Override
+                public int getMaxPayload() {
+                    return maxPayload;
+                }
+
+                @Override
+                public void close() {
+
+                }
+            };
+        }
+    }
+
+    /**
+     * Database that can't save any object.
+     */
+    private static class FailingDatabase extends JsonDatabaseService {
+
+        private FailingDatabase(File folder) {
+            super(folder, null, RegistrationType.DONT_REGISTER, null);
+        }
+
+        @Override
+        public CompletableFuture<Void> saveOrUpdateAsync(StorageObject obj) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Can't save " + obj));
+        }
+
+        @Override
+        public void saveOrUpdateSync(StorageObject obj) {
+            throw new IllegalStateException("Can't save " + obj);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package me.blueslime.bukkitmeteor.storage.journal;
+
+import me.blueslime.bukkitmeteor.storage.TestLogger;
+import me.blueslime.bukkitmeteor.storage.TestProfile;
+import me.blueslime.bukkitmeteor.storage.type.JsonDatabaseService;
+import me.blueslime.bukkitmeteor.storage.type.RegistrationType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Replay of the journal after a crash, segment truncation and quarantine of records that can't be replayed.
+ */
+class JournaledStorageDatabaseTest {
+
+    @TempDir
+    Path folder;
+
+    private TestLogger logger;
+
+    @BeforeEach
+    void setUp() {
+        logger = TestLogger.install();
+    }
+
+    @Test
+    void syncedRecordsAreReplayedAfterACrash() throws IOException {
+        // El intervalo largo deja los registros sin aplicar
+        JournaledStorageDatabase crashed = journaled(JournalSettings.create().setApplyInterval(60_000L));
+        crashed.connect();
+        crashed.saveOrUpdateSync(new TestProfile("alpha", "Alpha", 10));
+        crashed.saveOrUpdateSync(new TestProfile("beta", "Beta", 20));
+        crashed.deleteByIdSync(TestProfile.class, "beta");
+
+        // Cierra solo los archivos, como si el servidor se detuviera sin aplicar el journal
+        crashed.getJournal().close();
+        assertEquals(Optional.empty(), data().loadByIdSync(TestProfile.class, "alpha"));
+
+        JournaledStorageDatabase restarted = journaled(JournalSettings.create().setApplyInterval(60_000L));
+        restarted.connect();
+        // Un guardado y un borrado pendientes
+        assertEquals(2, restarted.getPending());
+        assertEquals(10, restarted.loadByIdSync(TestProfile.class, "alpha").orElseThrow().getCoins());
+        assertEquals(Optional.empty(), restarted.loadByIdSync(TestProfile.class, "beta"));
+        restarted.closeConnection();
+
+        JsonDatabaseService stored = data();
+        assertEquals("Alpha", stored.loadByIdSync(TestProfile.class, "alpha").orElseThrow().getName());
+        assertEquals(Optional.empty(), stored.loadByIdSync(TestProfile.class, "beta"));
+    }
+
+    @Test
+    void appliedSegmentsAreDeletedUnderSteadyTraffic() throws IOException {
+        JournaledStorageDatabase database = journaled(
+            JournalSettings.create().setMaxJournalSize(1_024L).setApplyInterval(10L).setGroupCommitWindow(0L)
+        );
+        database.connect();
+
+        for (int i = 0; i < 2_000; i++) {
+            // Una clave que se guarda siempre no debe retener el checkpoint
+            database.saveOrUpdateSync(new TestProfile("hot", "Hot", i));
+            database.saveOrUpdateSync(new TestProfile("profile-" + (i % 50), "Profile", i));
+            if (i % 500 == 0) {
+                database.applyPending();
+            }
+        }
+        database.applyPending();
+
+        WriteAheadJournal journal = database.getJournal();
+        assertEquals(journal.getSyncedSequence(), journal.getCheckpoint());
+        assertTrue(journal.getSegments() <= 2, "Segments left: " + journal.getSegments());
+        assertTrue(segmentFiles().size() <= 2, "Segment files left: " + segmentFiles());
+        assertTrue(journal.getSize() <= 2 * 1_024L + 1_024L, "Journal size: " + journal.getSize());
+
+        database.closeConnection();
+        assertEquals(1_999, data().loadByIdSync(TestProfile.class, "hot").orElseThrow().getCoins());
+    }
+
+    @Test
+    void unknownRecordsAreQuarantined() throws Exception {
+        Path journalFolder = folder.resolve("journal");
+        try (WriteAheadJournal journal = WriteAheadJournal.open(journalFolder, JournalSettings.create())) {
+            journal.append(
+                WriteAheadJournal.PUT, "me.blueslime.missing.Profile", "ghost", "{}".getBytes(StandardCharsets.UTF_8)
+            ).future().join();
+        }
+
+        JournaledStorageDatabase database = journaled(JournalSettings.create().setApplyInterval(60_000L));
+        database.connect();
+        assertEquals(0, database.getPending());
+        assertTrue(Files.size(journalFolder.resolve("journal-quarantine.log")) > 0);
+        assertTrue(logger.contains("quarantine"));
+
+        database.applyPending();
+        assertEquals(1L, database.getJournal().getCheckpoint());
+        database.closeConnection();
+        long quarantined = Files.size(journalFolder.resolve("journal-quarantine.log"));
+
+        // El registro en cuarentena no se repite otra vez
+        JournaledStorageDatabase restarted = journaled(JournalSettings.create().setApplyInterval(60_000L));
+        restarted.connect();
+        assertEquals(0, restarted.getPending());
+        assertEquals(quarantined, Files.size(journalFolder.resolve("journal-quarantine.log")));
+        restarted.closeConnection();
+    }
+
+    private JournaledStorageDatabase journaled(JournalSettings settings) {
+        return new JournaledStorageDatabase(data(), folder.resolve("journal").toFile(), settings, RegistrationType.DONT_REGISTER, null);
+    }
+
+    private JsonDatabaseService data() {
+        return new JsonDatabaseService(folder.resolve("data").toFile(), null, RegistrationType.DONT_REGISTER, null);
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(folder.resolve("journal"))) {
+            return files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith("journal-") && !name.equals("journal-quarantine.log");
+            }).toList();
+        }
+    }
+}
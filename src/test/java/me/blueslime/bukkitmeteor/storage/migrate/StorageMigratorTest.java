@@ -0,0 +1,96 @@
+package me.blueslime.bukkitmeteor.storage.migrate;
+
+import me.blueslime.bukkitmeteor.storage.TestLogger;
+import me.blueslime.bukkitmeteor.storage.TestProfile;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageObject;
+import me.blueslime.bukkitmeteor.storage.type.JsonDatabaseService;
+import me.blueslime.bukkitmeteor.storage.type.RegistrationType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A migration that fails for some objects only writes those objects when it is executed again.
+ */
+class StorageMigratorTest {
+
+    private static final int PROFILES = 120;
+
+    @TempDir
+    Path folder;
+
+    @BeforeEach
+    void setUp() {
+        TestLogger.install();
+    }
+
+    @Test
+    void secondRunResumesFromTheCheckpoint() {
+        JsonDatabaseService source = new JsonDatabaseService(folder.resolve("source").toFile(), null, RegistrationType.DONT_REGISTER, null);
+        FailingDatabase target = new FailingDatabase(folder.resolve("target").toFile());
+        source.connect();
+        target.connect();
+
+        List<TestProfile> profiles = new ArrayList<>(PROFILES);
+        for (int i = 0; i < PROFILES; i++) {
+            profiles.add(new TestProfile("profile-" + i, "Profile " + i, i));
+        }
+        source.saveAllSync(profiles);
+
+        target.failing.add("profile-7");
+        target.failing.add("profile-93");
+
+        MigrationSettings settings = MigrationSettings.create()
+            .setCheckpointFolder(folder.resolve("migrations").toFile())
+            .setBatchSize(16)
+            .setWorkers(3)
+            .setMaxRetries(0)
+            .setCountTotal(false);
+
+        MigrationProgress first = new StorageMigrator(source, target, settings).migrateSync(TestProfile.class).get(0);
+        assertEquals(PROFILES, first.getRead());
+        assertEquals(PROFILES - 2, first.getWritten());
+        assertEquals(2, first.getFailed());
+
+        target.failing.clear();
+        target.saves.clear();
+
+        MigrationProgress second = new StorageMigrator(source, target, settings.setVerify(true)).migrateSync(TestProfile.class).get(0);
+        assertEquals(PROFILES - 2, second.getSkipped());
+        assertEquals(2, second.getWritten());
+        assertEquals(Set.of("profile-7", "profile-93"), target.saves);
+        assertTrue(second.getVerification().matches(), String.valueOf(second.getVerification()));
+    }
+
+    /**
+     * Target database that can't save some identifiers.
+     */
+    private static class FailingDatabase extends JsonDatabaseService {
+
+        private final Set<String> failing = ConcurrentHashMap.newKeySet();
+        private final Set<String> saves = ConcurrentHashMap.newKeySet();
+
+        private FailingDatabase(File folder) {
+            super(folder, null, RegistrationType.DONT_REGISTER, null);
+        }
+
+        @Override
+        public void saveOrUpdateSync(StorageObject obj) {
+            String identifier = ((TestProfile) obj).getId();
+            if (failing.contains(identifier)) {
+                throw new IllegalStateException("Can't save " + identifier);
+            }
+            saves.add(identifier);
+            super.saveOrUpdateSync(obj);
+        }
+    }
+}
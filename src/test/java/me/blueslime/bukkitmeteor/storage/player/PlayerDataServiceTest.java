@@ -0,0 +1,157 @@
+package me.blueslime.bukkitmeteor.storage.player;
+
+import me.blueslime.bukkitmeteor.storage.TestLogger;
+import me.blueslime.bukkitmeteor.storage.TestProfile;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageObject;
+import me.blueslime.bukkitmeteor.storage.type.JsonDatabaseService;
+import me.blueslime.bukkitmeteor.storage.type.RegistrationType;
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Data kept in memory while a quit save is pending, and sessions released after a denied login.
+ */
+class PlayerDataServiceTest {
+
+    @TempDir
+    Path folder;
+
+    private TestLogger logger;
+    private GatedDatabase database;
+
+    @BeforeEach
+    void setUp() {
+        logger = TestLogger.install();
+        database = new GatedDatabase(folder.toFile());
+        database.connect();
+    }
+
+    @Test
+    void fastRejoinKeepsTheDataInMemory() throws InterruptedException {
+        PlayerDataService<TestProfile> service = service(PlayerDataSettings.create());
+        UUID uuid = UUID.randomUUID();
+        Player player = player(uuid);
+        database.loads.complete(null);
+
+        login(service, uuid);
+        service.onJoin(new PlayerJoinEvent(player, "joined"));
+        assertTrue(service.isLoaded(uuid));
+        service.update(uuid, profile -> new TestProfile(profile.getId(), profile.getName(), 5));
+
+        // El guardado de la salida queda pendiente hasta abrir saves
+        service.onQuit(new PlayerQuitEvent(player, "left"));
+        assertEquals(1, service.getSessions());
+
+        login(service, uuid);
+        service.onJoin(new PlayerJoinEvent(player, "joined"));
+        assertEquals(5, service.get(uuid).getCoins());
+        assertEquals(1, database.requests.get());
+
+        database.saves.complete(null);
+        await(() -> stored(uuid) == 5);
+        assertEquals(1, service.getSessions());
+
+        service.update(uuid, profile -> new TestProfile(profile.getId(), profile.getName(), 7));
+        service.onQuit(new PlayerQuitEvent(player, "left"));
+
+        await(() -> service.getSessions() == 0);
+        assertEquals(7, stored(uuid));
+        assertEquals(1, database.requests.get());
+    }
+
+    @Test
+    void deniedLoginReleasesTheSession() throws InterruptedException {
+        PlayerDataService<TestProfile> service = service(PlayerDataSettings.create().setLoadTimeout(200L));
+        UUID uuid = UUID.randomUUID();
+
+        AsyncPlayerPreLoginEvent event = login(service, uuid);
+        assertEquals(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, event.getLoginResult());
+        assertTrue(logger.contains("was not loaded in 200ms"));
+
+        service.onDeniedPreLogin(event);
+        assertFalse(service.isLoaded(uuid));
+
+        // La carga tardía libera la sesión del jugador que ya no entra
+        database.loads.complete(null);
+        await(() -> service.getSessions() == 0);
+
+        // Una nueva entrada carga los datos otra vez
+        assertEquals(AsyncPlayerPreLoginEvent.Result.ALLOWED, login(service, uuid).getLoginResult());
+        assertTrue(service.isLoaded(uuid));
+        assertEquals(2, database.requests.get());
+    }
+
+    private PlayerDataService<TestProfile> service(PlayerDataSettings settings) {
+        return new PlayerDataService<>(TestProfile.class, database, uuid -> new TestProfile(uuid.toString(), "Player", 0), settings);
+    }
+
+    private static AsyncPlayerPreLoginEvent login(PlayerDataService<TestProfile> service, UUID uuid) {
+        AsyncPlayerPreLoginEvent event = new AsyncPlayerPreLoginEvent("Player", InetAddress.getLoopbackAddress(), uuid);
+        service.onPreLogin(event);
+        service.onDeniedPreLogin(event);
+        return event;
+    }
+
+    private long stored(UUID uuid) {
+        return database.loadByIdSync(TestProfile.class, uuid.toString()).map(TestProfile::getCoins).orElse(-1L);
+    }
+
+    private static Player player(UUID uuid) {
+        // Solo se usa el uuid del jugador
+        return (Player) Proxy.newProxyInstance(
+            Player.class.getClassLoader(),
+            new Class<?>[] { Player.class },
+            (proxy, method, args) -> method.getName().equals("getUniqueId") ? uuid : null
+        );
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000L;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    /**
+     * Database whose loads and saves wait until their gate is completed.
+     */
+    private static class GatedDatabase extends JsonDatabaseService {
+
+        private final CompletableFuture<Void> loads = new CompletableFuture<>();
+        private final CompletableFuture<Void> saves = new CompletableFuture<>();
+        private final AtomicInteger requests = new AtomicInteger();
+
+        private GatedDatabase(File folder) {
+            super(folder, null, RegistrationType.DONT_REGISTER, null);
+        }
+
+        @Override
+        public <T extends StorageObject> CompletableFuture<Optional<T>> loadByIdAsync(Class<T> clazz, String identifier) {
+            requests.incrementAndGet();
+            return loads.thenApplyAsync(ignored -> super.loadByIdSync(clazz, identifier));
+        }
+
+        @Override
+        public CompletableFuture<Void> saveOrUpdateAsync(StorageObject obj) {
+            return saves.thenRunAsync(() -> super.saveOrUpdateSync(obj));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package me.blueslime.bukkitmeteor.storage.shard;
+
+import me.blueslime.bukkitmeteor.storage.TestLogger;
+import me.blueslime.bukkitmeteor.storage.TestProfile;
+import me.blueslime.bukkitmeteor.storage.type.JsonDatabaseService;
+import me.blueslime.bukkitmeteor.storage.type.RegistrationType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Routing of the objects between file shards and the dual reads of an online resharding.
+ */
+class ShardedStorageDatabaseTest {
+
+    private static final int PROFILES = 200;
+
+    @TempDir
+    Path folder;
+
+    @BeforeEach
+    void setUp() {
+        TestLogger.install();
+    }
+
+    @Test
+    void objectsAreStoredInTheirOwnerShard() {
+        List<StorageShard> shards = List.of(shard("a"), shard("b"), shard("c"));
+        ShardedStorageDatabase database = new ShardedStorageDatabase(shards, RegistrationType.DONT_REGISTER);
+        database.connect();
+
+        database.saveAllSync(profiles());
+
+        for (StorageShard shard : shards) {
+            Set<String> stored = identifiers(shard);
+            assertFalse(stored.isEmpty(), "Shard " + shard.name() + " is empty");
+            for (String identifier : stored) {
+                assertEquals(shard, database.ownerOf(identifier));
+            }
+        }
+        assertEquals(PROFILES, shards.stream().mapToInt(shard -> identifiers(shard).size()).sum());
+        assertEquals(PROFILES, database.loadAllSync(TestProfile.class).size());
+        assertEquals(42, database.loadByIdSync(TestProfile.class, "profile-42").orElseThrow().getCoins());
+
+        database.deleteByIdSync(TestProfile.class, "profile-42");
+        assertEquals(Optional.empty(), database.loadByIdSync(TestProfile.class, "profile-42"));
+        assertFalse(identifiers(database.ownerOf("profile-42")).contains("profile-42"));
+    }
+
+    @Test
+    void movedObjectsAreReadFromThePreviousShard() {
+        StorageShard a = shard("a");
+        StorageShard b = shard("b");
+        StorageShard c = shard("c");
+        ShardedStorageDatabase database = new ShardedStorageDatabase(List.of(a, b), RegistrationType.DONT_REGISTER);
+        database.connect();
+        database.saveAllSync(profiles());
+
+        database.startResharding(List.of(a, b, c));
+        assertTrue(database.isResharding());
+
+        List<String> moved = new ArrayList<>();
+        for (int i = 0; i < PROFILES; i++) {
+            if (database.ownerOf("profile-" + i) == c) {
+                moved.add("profile-" + i);
+            }
+        }
+        assertFalse(moved.isEmpty());
+
+        // Dual reads, el nuevo dueño aún no tiene los objetos
+        for (String identifier : moved) {
+            assertTrue(database.loadByIdSync(TestProfile.class, identifier).isPresent(), identifier);
+        }
+        assertEquals(moved.size(), database.loadByIdsSync(TestProfile.class, moved).size());
+
+        // Una escritura durante el resharding va al nuevo dueño y gana a la copia anterior
+        String updated = moved.get(0);
+        database.saveOrUpdateSync(new TestProfile(updated, "Updated", -1));
+        assertEquals(-1, database.loadByIdSync(TestProfile.class, updated).orElseThrow().getCoins());
+
+        assertEquals(moved.size() - 1, database.migrateSync(TestProfile.class));
+        database.finishResharding();
+        assertFalse(database.isResharding());
+
+        assertEquals(Set.copyOf(moved), identifiers(c));
+        assertTrue(identifiers(a).stream().noneMatch(moved::contains));
+        assertTrue(identifiers(b).stream().noneMatch(moved::contains));
+        assertEquals(PROFILES, database.loadAllSync(TestProfile.class).size());
+        assertEquals("Updated", database.loadByIdSync(TestProfile.class, updated).orElseThrow().getName());
+    }
+
+    private StorageShard shard(String name) {
+        return new StorageShard(name, new JsonDatabaseService(folder.resolve(name).toFile(), null, RegistrationType.DONT_REGISTER, null));
+    }
+
+    private static List<TestProfile> profiles() {
+        List<TestProfile> profiles = new ArrayList<>(PROFILES);
+        for (int i = 0; i < PROFILES; i++) {
+            profiles.add(new TestProfile("profile-" + i, "Profile " + i, i));
+        }
+        return profiles;
+    }
+
+    private static Set<String> identifiers(StorageShard shard) {
+        return shard.database().loadAllSync(TestProfile.class).stream()
+            .map(TestProfile::getId)
+            .collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,162 @@
+package me.blueslime.bukkitmeteor.storage.type;
+
+import me.blueslime.bukkitmeteor.storage.file.FileStorageSettings;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageConstructor;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageIdentifier;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageKey;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Many threads saving, loading and deleting the same identifiers of a file database.
+ */
+class FileDatabaseServiceStressTest {
+
+    private static final int THREADS = 16;
+    private static final int OPERATIONS = 2_000;
+    private static final int IDENTIFIERS = 10;
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void overlappingWritesNeverExposePartialFiles() throws Exception {
+        // Pocas franjas de bloqueo para que identificadores distintos compartan bloqueo
+        JsonDatabaseService database = new JsonDatabaseService(
+            folder.toFile(), FileStorageSettings.create().setLockStripes(4), RegistrationType.DONT_REGISTER, null
+        );
+        database.connect();
+
+        AtomicInteger loads = new AtomicInteger();
+        List<String> invalid = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int thread = 0; thread < THREADS; thread++) {
+            long seed = thread;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                start.await();
+                for (int i = 0; i < OPERATIONS; i++) {
+                    String identifier = "record-" + random.nextInt(IDENTIFIERS);
+                    int operation = random.nextInt(10);
+                    if (operation < 5) {
+                        database.saveOrUpdateSync(Record.of(identifier, random.nextInt(200)));
+                    } else if (operation < 9) {
+                        database.loadByIdSync(Record.class, identifier).ifPresent(record -> {
+                            loads.incrementAndGet();
+                            if (!record.isValid(identifier)) {
+                                invalid.add(identifier);
+                            }
+                        });
+                    } else {
+                        database.deleteByIdSync(Record.class, identifier);
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        assertTrue(loads.get() > 0);
+        assertEquals(List.of(), invalid);
+
+        Set<String> files;
+        try (Stream<Path> stream = Files.walk(folder)) {
+            files = stream.filter(Files::isRegularFile)
+                .map(file -> file.getFileName().toString())
+                .collect(Collectors.toSet());
+        }
+        assertTrue(files.stream().noneMatch(name -> name.endsWith(".tmp")), "Temporary files left: " + files);
+
+        Set<String> stored = files.stream()
+            .map(name -> name.substring(0, name.length() - ".json".length()))
+            .collect(Collectors.toSet());
+        assertEquals(stored, database.getIdentifiers(Record.class));
+
+        for (String identifier : stored) {
+            Record record = database.loadByIdSync(Record.class, identifier).orElseThrow();
+            assertTrue(record.isValid(identifier));
+        }
+    }
+
+    @Test
+    void nullIdentifiersAreIgnored() throws IOException {
+        JsonDatabaseService database = new JsonDatabaseService(folder.toFile(), null, RegistrationType.DONT_REGISTER, null);
+
+        assertDoesNotThrow(() -> database.deleteByIdSync(Record.class, null));
+        assertEquals(Optional.empty(), database.loadByIdSync(Record.class, null));
+        assertEquals(Optional.empty(), database.loadFieldsByIdSync(Record.class, null, "values"));
+        assertFalse(database.exists(Record.class, null));
+    }
+
+    @Test
+    void failedDeletesThrow() throws IOException {
+        JsonDatabaseService database = new JsonDatabaseService(folder.toFile(), null, RegistrationType.DONT_REGISTER, null);
+        database.saveOrUpdateSync(Record.of("record", 3));
+
+        Path file;
+        try (Stream<Path> stream = Files.walk(folder)) {
+            file = stream.filter(path -> path.getFileName().toString().equals("record.json")).findFirst().orElseThrow();
+        }
+        // Una carpeta con archivos no se puede borrar como archivo
+        Files.delete(file);
+        Files.createDirectories(file.resolve("child"));
+
+        assertThrows(IllegalStateException.class, () -> database.deleteByIdSync(Record.class, "record"));
+        assertTrue(Files.exists(file));
+    }
+
+    /**
+     * Every value of the list is the size of the list, a mixed or partial file breaks it.
+     */
+    public static class Record implements StorageObject {
+
+        @StorageIdentifier
+        @StorageKey(key = "id")
+        private final String id;
+
+        @StorageKey(key = "values")
+        private final List<Integer> values;
+
+        @StorageConstructor
+        public Record(@StorageIdentifier @StorageKey(key = "id") String id, @StorageKey(key = "values") List<Integer> values) {
+            this.id = id;
+            this.values = values;
+        }
+
+        static Record of(String id, int size) {
+            return new Record(id, new ArrayList<>(Collections.nCopies(size, size)));
+        }
+
+        boolean isValid(String identifier) {
+            if (!identifier.equals(id) || values == null) {
+                return false;
+            }
+            for (Integer value : values) {
+                if (value == null || value != values.size()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package me.blueslime.bukkitmeteor.storage.write;
+
+import me.blueslime.bukkitmeteor.storage.TestLogger;
+import me.blueslime.bukkitmeteor.storage.TestProfile;
+import me.blueslime.bukkitmeteor.storage.interfaces.StorageObject;
+import me.blueslime.bukkitmeteor.storage.type.JsonDatabaseService;
+import me.blueslime.bukkitmeteor.storage.type.RegistrationType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Coalescing of repeated saves and the drain of the queue when it is closed.
+ */
+class WriteBehindQueueTest {
+
+    @TempDir
+    Path folder;
+
+    private RecordingDatabase database;
+
+    @BeforeEach
+    void setUp() {
+        TestLogger.install();
+        database = new RecordingDatabase(folder.toFile());
+    }
+
+    @Test
+    void repeatedSavesAreWrittenOnce() {
+        WriteBehindQueue queue = queue();
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(queue.enqueue(new TestProfile("alpha", "Alpha", i)));
+        }
+        assertEquals(1, queue.getPendingSize());
+        assertEquals(99, queue.getCoalesced());
+        assertEquals(99, queue.getPending(TestProfile.class, "alpha").getCoins());
+        // Los guardados reemplazados comparten el mismo futuro
+        assertTrue(futures.stream().allMatch(future -> future == futures.get(0)));
+
+        queue.flush();
+
+        assertTrue(futures.get(0).isDone());
+        assertEquals(List.of(1), database.batches);
+        assertEquals(1, queue.getWritten());
+        assertEquals(99, database.loadByIdSync(TestProfile.class, "alpha").orElseThrow().getCoins());
+        assertNull(queue.getPending(TestProfile.class, "alpha"));
+        queue.close();
+    }
+
+    @Test
+    void closeDrainsThePendingObjects() {
+        WriteBehindQueue queue = queue();
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            futures.add(queue.enqueue(new TestProfile("profile-" + i, "Profile", i)));
+        }
+        queue.close();
+
+        assertTrue(futures.stream().allMatch(future -> future.isDone() && !future.isCompletedExceptionally()));
+        assertEquals(0, queue.getPendingSize());
+        assertEquals(25, queue.getWritten());
+        assertEquals(25, database.getIdentifiers(TestProfile.class).size());
+
+        // Un objeto que no estaba pendiente ya no se acepta
+        assertNull(queue.enqueue(new TestProfile("late", "Late", 0)));
+    }
+
+    @Test
+    void failedBatchesAreQueuedAgain() {
+        WriteBehindQueue queue = queue();
+        database.failing.set(true);
+
+        CompletableFuture<Void> first = queue.enqueue(new TestProfile("alpha", "Alpha", 1));
+        queue.flush();
+
+        assertTrue(first.isCompletedExceptionally());
+        assertEquals(1, queue.getFailed());
+        assertEquals(1, queue.getPendingSize());
+
+        database.failing.set(false);
+        queue.close();
+
+        assertEquals(1, queue.getWritten());
+        assertEquals(1, database.loadByIdSync(TestProfile.class, "alpha").orElseThrow().getCoins());
+    }
+
+    private WriteBehindQueue queue() {
+        // El intervalo largo deja las escrituras a flush y close
+        WriteBehindQueue queue = new WriteBehindQueue(database, WriteBehindSettings.create().setFlushInterval(60_000L));
+        queue.start();
+        return queue;
+    }
+
+    /**
+     * Database that keeps the size of every written batch.
+     */
+    private static class RecordingDatabase extends JsonDatabaseService {
+
+        private final List<Integer> batches = new CopyOnWriteArrayList<>();
+        private final AtomicBoolean failing = new AtomicBoolean(false);
+
+        private RecordingDatabase(File folder) {
+            super(folder, null, RegistrationType.DONT_REGISTER, null);
+        }
+
+        @Override
+        public void saveAllSync(Collection<? extends StorageObject> objects) {
+            if (failing.get()) {
+                throw new IllegalStateException("Can't save " + objects.size() + " objects");
+            }
+            batches.add(objects.size());
+            super.saveAllSync(objects);
+        }
+    }
+}